@@ -0,0 +1,40 @@
+package org.example.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Kör alla (eller filtrerade) benchmarks med GC-profilern och sparar
+ * resultatet som JSON i target/jmh/jmh-<tidpunkt>.json.
+ *
+ * Starta med: mvn -Pjmh compile exec:exec [-Dbench.include=Scoring]
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+
+        File dir = new File("target/jmh");
+        dir.mkdirs();
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        File result = new File(dir, "jmh-" + stamp + ".json");
+
+        Options opt = new OptionsBuilder()
+                .include("org\\.example\\.bench\\..*" + include + ".*")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.getPath())
+                .build();
+
+        new Runner(opt).run();
+        System.out.println("Resultat sparat i " + result.getPath());
+    }
+}
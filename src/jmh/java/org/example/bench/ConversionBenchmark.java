@@ -0,0 +1,42 @@
+package org.example.bench;
+
+import org.example.atg.AtgParser;
+import org.example.domain.Driver;
+import org.example.domain.DriverLoader;
+import org.example.domain.NameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strömmande konvertering av rå ATG JSON (AtgParser.streamConvert), från ett
+ * lopp upp till stora heldagsdumpar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"1", "8", "64"})
+    int races;
+
+    byte[] raw;
+    NameIndex<Driver> drivers;
+
+    @Setup
+    public void setup() {
+        raw = SyntheticCards.rawAtgJson(races);
+        drivers = DriverLoader.loadDrivers();
+    }
+
+    @Benchmark
+    public AtgParser.ConvertResult streamConvertJson() throws IOException {
+        return AtgParser.streamConvert("V86", new ByteArrayInputStream(raw), OutputStream.nullOutputStream(), drivers);
+    }
+}
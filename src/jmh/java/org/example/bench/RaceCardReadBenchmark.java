@@ -0,0 +1,53 @@
+package org.example.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.domain.MappedRaceCard;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceToAnalyze;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inläsning av ett konverterat kort: JSON via ObjectMapper (som --analyze
+ * gjort hittills) mot binärformatet, helt kort eller ett enskilt lopp.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RaceCardReadBenchmark {
+
+    @Param({"1", "8"})
+    int races;
+
+    final ObjectMapper mapper = new ObjectMapper();
+    byte[] json;
+    byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        RaceCard card = SyntheticCards.card(races, 1);
+        json = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(card);
+        binary = SyntheticCards.binary(card);
+    }
+
+    @Benchmark
+    public RaceCard jsonReadValue() throws IOException {
+        return mapper.readValue(json, RaceCard.class);
+    }
+
+    @Benchmark
+    public RaceCard binaryWholeCard() throws IOException {
+        return MappedRaceCard.wrap(binary).toRaceCard();
+    }
+
+    @Benchmark
+    public RaceToAnalyze binarySingleRace() throws IOException {
+        MappedRaceCard card = MappedRaceCard.wrap(binary);
+        return card.race(card.raceCount() - 1);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.bench;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.Entry;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceToAnalyze;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Poängsättning och ranking: per ekipage (scoreEntry), per lopp (rankRace)
+ * och batch-vägen över primitiva arrayer, för ett kort eller ett helt arkiv.
+ * Throughput räknas per kort-arkiv (alla cards på en gång).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+    /** 1 = ett heldagskort, 2000 = några års V86-omgångar */
+    @Param({"1", "2000"})
+    int cards;
+
+    final ScoreCalculator calc = new ScoreCalculator(ScoreWeights.DEFAULTS);
+    final RaceAnalyzer analyzer = new RaceAnalyzer(new ScoreCalculator(ScoreWeights.DEFAULTS));
+    final BatchScorer scorer = new BatchScorer(calc);
+
+    List<RaceCard> archive;
+    ScoreBatch[] batches;
+
+    @Setup
+    public void setup() {
+        archive = SyntheticCards.cards(cards, 8);
+        batches = archive.stream().map(ScoreBatch::of).toArray(ScoreBatch[]::new);
+    }
+
+    @Benchmark
+    public double scoreEntry() {
+        double sum = 0;
+        for (RaceCard card : archive) {
+            for (RaceToAnalyze race : card.races()) {
+                for (Entry e : race.starters()) {
+                    sum += calc.scoreEntry(e);
+                }
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void rankRace(Blackhole bh) {
+        for (RaceCard card : archive) {
+            for (RaceToAnalyze race : card.races()) {
+                bh.consume(analyzer.rankRace(race));
+            }
+        }
+    }
+
+    @Benchmark
+    public double batchScore() {
+        double sum = 0;
+        for (ScoreBatch b : batches) {
+            scorer.score(b);
+            sum += b.score(0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int batchScoreAndRank() {
+        int sum = 0;
+        for (ScoreBatch b : batches) {
+            scorer.scoreAndRank(b);
+            sum += b.ranked(0, 0);
+        }
+        return sum;
+    }
+}
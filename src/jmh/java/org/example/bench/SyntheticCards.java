@@ -0,0 +1,90 @@
+package org.example.bench;
+
+import org.example.domain.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Syntetiska spelkort i realistiska storlekar för benchmarks.
+ * Samma frö ger alltid samma kort, så körningar går att jämföra.
+ */
+final class SyntheticCards {
+
+    static final String[] TRACKS = {"Solvalla", "Åby", "Bergsåker", "Färjestad", "Romme", "Bollnäs"};
+    static final String[] DRIVERS = {"Örjan Kihlström", "Björn Goop", "Magnus A Djuse", "Erik Adielsson", "Olle Okänd"};
+
+    private SyntheticCards() {}
+
+    /** Ett kort med races lopp à 12 starter och 5 historiska lopp per häst. */
+    static RaceCard card(int races, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        List<RaceToAnalyze> out = new ArrayList<>(races);
+        for (int r = 1; r <= races; r++) {
+            List<Entry> starters = new ArrayList<>(12);
+            for (int s = 1; s <= 12; s++) {
+                List<RaceResult> last = new ArrayList<>(5);
+                for (int k = 0; k < 5; k++) {
+                    last.add(new RaceResult(TRACKS[rnd.nextInt(TRACKS.length)], rnd.nextBoolean() ? 2140 : 1640,
+                            1 + rnd.nextInt(12), 1 + rnd.nextInt(12), 72000 + rnd.nextInt(6000), rnd.nextInt(10) == 0));
+                }
+                Driver d = new Driver(DRIVERS[rnd.nextInt(DRIVERS.length)], 1 + rnd.nextInt(5));
+                starters.add(new Entry(s, new Horse("Häst " + seed + "-" + r + "-" + s, "Tränare", d, List.copyOf(last))));
+            }
+            Track t = new Track(TRACKS[r % TRACKS.length], 196, false);
+            out.add(new RaceToAnalyze(r, t, 2140, rnd.nextBoolean(), List.copyOf(starters)));
+        }
+        return new RaceCard("V86", "2025-10-29", List.copyOf(out));
+    }
+
+    /** Många kort, som ett arkiv med historiska omgångar. */
+    static List<RaceCard> cards(int count, int races) {
+        List<RaceCard> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            out.add(card(races, i));
+        }
+        return out;
+    }
+
+    /** Rå ATG JSON (det AtgParser läser) med races lopp à 12 starter och lite extra brus. */
+    static byte[] rawAtgJson(int races) {
+        SplittableRandom rnd = new SplittableRandom(races);
+        StringBuilder sb = new StringBuilder(races * 12 * 400);
+        sb.append("{\"id\":\"V86_2025-10-29_40_1\",\"status\":\"bettable\",\"races\":[");
+        for (int r = 1; r <= races; r++) {
+            if (r > 1) sb.append(',');
+            sb.append("{\"id\":\"2025-10-29_40_").append(r).append("\",\"number\":").append(r)
+              .append(",\"distance\":2140,\"startMethod\":\"").append(rnd.nextBoolean() ? "auto" : "volte")
+              .append("\",\"date\":\"2025-10-29\",\"track\":{\"id\":40,\"name\":\"").append(TRACKS[r % TRACKS.length])
+              .append("\"},\"starts\":[");
+            for (int s = 1; s <= 12; s++) {
+                if (s > 1) sb.append(',');
+                String[] driver = DRIVERS[rnd.nextInt(DRIVERS.length)].split(" ", 2);
+                sb.append("{\"number\":").append(s)
+                  .append(",\"horse\":{\"name\":\"Häst ").append(r).append('-').append(s)
+                  .append("\",\"age\":5,\"trainer\":{\"firstName\":\"T\",\"lastName\":\"Tränare\"}")
+                  .append(",\"statistics\":{\"life\":{\"starts\":").append(rnd.nextInt(80))
+                  .append(",\"placement\":{\"1\":").append(rnd.nextInt(10)).append("}}}}")
+                  .append(",\"driver\":{\"firstName\":\"").append(driver[0]).append("\",\"lastName\":\"")
+                  .append(driver[1]).append("\"}")
+                  .append(",\"pools\":{\"vinnare\":{\"odds\":").append(100 + rnd.nextInt(5000)).append("}}}");
+            }
+            sb.append("]}");
+        }
+        sb.append("]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] binary(RaceCard card) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryRaceCardWriter.write(card, out);
+            return out.toByteArray();
+        } catch (java.io.IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.bench;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreWeights;
+import org.example.system.RowCodec;
+import org.example.system.SystemCoupon;
+import org.example.system.SystemProbability;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fördelningen av antal fel för ett V86-system: DP över avdelningarna mot
+ * att räkna upp varje rad. Throughput räknas per kupong.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SystemProbabilityBenchmark {
+
+    /** Hästar per avdelning i kupongerna (4 ger 65 536 rader på V86). */
+    @Param({"2", "4"})
+    int picks;
+
+    ScoreBatch batch;
+    double[] winProb;
+    SystemCoupon[] coupons;
+    final SystemProbability dp = new SystemProbability(2);
+    int next;
+
+    @Setup
+    public void setup() {
+        batch = ScoreBatch.of(SyntheticCards.card(8, 42));
+        new BatchScorer(ScoreWeights.DEFAULTS).scoreAndRank(batch);
+        winProb = new RaceSimulator().winProbabilities(batch);
+
+        Random rnd = new Random(1);
+        coupons = new SystemCoupon[1024];
+        for (int c = 0; c < coupons.length; c++) {
+            long[] masks = new long[batch.raceCount()];
+            for (int leg = 0; leg < masks.length; leg++) {
+                while (Long.bitCount(masks[leg]) < Math.min(picks, batch.starters(leg))) {
+                    masks[leg] |= SystemCoupon.bit(batch.startNumber(batch.ranked(leg, rnd.nextInt(batch.starters(leg)))));
+                }
+            }
+            coupons[c] = SystemCoupon.of(masks);
+        }
+    }
+
+    @Benchmark
+    public double dynamicProgram() {
+        SystemCoupon coupon = coupons[next++ & (coupons.length - 1)];
+        double[] errors = dp.errors(batch, winProb, coupon);
+        return errors[0] + errors[1] + errors[2];
+    }
+
+    @Benchmark
+    public double enumerateRows() {
+        SystemCoupon coupon = coupons[next++ & (coupons.length - 1)];
+        // bara alla rätt: varje rad i systemet är ett möjligt vinnarutfall
+        double[] sum = {0};
+        coupon.forEachRow(row -> {
+            double p = 1;
+            int from = 0;
+            for (int leg = 0; leg < batch.raceCount(); leg++) {
+                int n = RowCodec.get(row, leg);
+                for (int i = from; i < from + batch.starters(leg); i++) {
+                    if (batch.startNumber(i) == n) p *= winProb[i];
+                }
+                from += batch.starters(leg);
+            }
+            sum[0] += p;
+        });
+        return sum[0];
+    }
+}
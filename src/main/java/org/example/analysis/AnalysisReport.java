@@ -0,0 +1,88 @@
+package org.example.analysis;
+
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.domain.Driver;
+import org.example.domain.Entry;
+import org.example.domain.Horse;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceToAnalyze;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rapporten för en analyserad omgång, samma som --analyze skriver ut:
+ * som text ({@link #text}) eller som {@link CardReport} för JSON.
+ * Kuskbetyget är det poängsättningen använde ({@link ScoreCalculator#driverRating}).
+ */
+public final class AnalysisReport {
+
+    private AnalysisReport() {
+    }
+
+    public static String text(RaceCard card, RaceAnalyzer analyzer) {
+        return text(card, analyzer.rankCard(card), analyzer.calculator());
+    }
+
+    /**
+     * Textrapport för en omgång som calc har rankat (ett lopp per element, i
+     * kortets ordning).
+     */
+    public static String text(RaceCard card, List<List<EntryScore>> rankings, ScoreCalculator calc) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Analys för ").append(card.gameType()).append(' ').append(card.date()).append(" ===")
+                .append(System.lineSeparator());
+
+        for (int r = 0; r < card.races().size(); r++) {
+            RaceToAnalyze race = card.races().get(r);
+            List<EntryScore> ranking = rankings.get(r);
+
+            sb.append(System.lineSeparator())
+                    .append("Lopp ").append(race.raceNumber()).append(" (").append(race.track().name()).append("):")
+                    .append(System.lineSeparator());
+
+            for (EntryScore es : ranking) {
+                Entry e = es.entry();
+                Horse h = e.horse();
+                Driver d = h.driver();
+
+                sb.append(String.format(
+                        "Spår %2d | %-18s | %-18s (%.1f/5) | Score %.2f%n",
+                        e.startNumber(),
+                        h.name(),
+                        d.name(),
+                        calc.driverRating(d),
+                        es.score()
+                ));
+            }
+        }
+
+        sb.append(System.lineSeparator()).append("Tips:").append(System.lineSeparator());
+        sb.append("- Spik?: topphästen om den har klart högre score än tvåan.").append(System.lineSeparator());
+        sb.append("- Gardera?: om topp 3 ligger nära varandra i score.").append(System.lineSeparator());
+        return sb.toString();
+    }
+
+    /** Samma rapport som data, t.ex. för JSON. source är filen kortet lästes från. */
+    public static CardReport report(String source, RaceCard card, List<List<EntryScore>> rankings,
+                                    ScoreCalculator calc) {
+        List<RaceReport> races = new ArrayList<>(card.races().size());
+        for (int r = 0; r < card.races().size(); r++) {
+            RaceToAnalyze race = card.races().get(r);
+            List<RankedEntry> starters = new ArrayList<>(rankings.get(r).size());
+            for (EntryScore es : rankings.get(r)) {
+                Entry e = es.entry();
+                Driver d = e.horse().driver();
+                starters.add(new RankedEntry(e.startNumber(), e.horse().name(), d.name(), calc.driverRating(d), es.score()));
+            }
+            races.add(new RaceReport(race.raceNumber(), race.track().name(), starters));
+        }
+        return new CardReport(source, card.gameType(), card.date(), races);
+    }
+
+    public record CardReport(String source, String gameType, String date, List<RaceReport> races) {}
+
+    public record RaceReport(int raceNumber, String track, List<RankedEntry> starters) {}
+
+    public record RankedEntry(int startNumber, String horse, String driver, double driverRating, double score) {}
+}
@@ -0,0 +1,106 @@
+package org.example.analysis;
+
+import org.example.analysis.RaceAnalyzer.EntryScore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Poängsätter och rankar ett helt kort på en gång över primitiva arrayer.
+ *
+ * Ger exakt samma score som {@link ScoreCalculator#score} och samma
+ * ordning som {@link RaceAnalyzer#rankRace} (stabil sortering, högst först),
+ * men utan att gå via Entry -> Horse -> Driver eller boxa resultat.
+ * Tänkt för backtester och simuleringar som poängsätter miljontals gånger.
+ */
+public class BatchScorer {
+
+    private final ScoreCalculator calc;
+
+    public BatchScorer() {
+        this(new ScoreCalculator());
+    }
+
+    public BatchScorer(ScoreWeights weights) {
+        this(new ScoreCalculator(weights));
+    }
+
+    public BatchScorer(ScoreCalculator calc) {
+        this.calc = calc;
+    }
+
+    public ScoreCalculator calculator() {
+        return calc;
+    }
+
+    /** Räknar score för alla starter i batchen. */
+    public void score(ScoreBatch b) {
+        b.driverRatings(calc.ratings());
+        b.raceFactors(calc);
+        double[] rating = b.driverRating;
+        int[] finishes = b.finishes;
+        int[] finishCount = b.finishCount;
+        int[] post = b.startNumber;
+        double[] raceWeights = calc.raceWeights();
+        double[] raceValues = b.raceFactorValues;
+        int k = raceWeights.length;
+        double[] out = b.score;
+
+        for (int i = 0; i < out.length; i++) {
+            int good = calc.goodRuns(finishes, i * ScoreBatch.MAX_FORM_WINDOW, finishCount[i]);
+            double s = calc.combine(
+                    calc.driverFactor(rating[i]),
+                    calc.formFactor(good),
+                    calc.startPositionFactor(post[i]));
+            for (int f = 0; f < k; f++) {
+                s += raceWeights[f] * raceValues[i * k + f];
+            }
+            out[i] = s;
+        }
+    }
+
+    /**
+     * Sorterar varje lopps indexintervall i order på score, högst först.
+     * Insertion sort: stabil och snabbast för fält på 15-20 hästar.
+     */
+    public void rank(ScoreBatch b) {
+        int[] order = b.order;
+        double[] score = b.score;
+
+        for (int r = 0; r < b.raceCount(); r++) {
+            int from = b.raceStart[r];
+            int to = b.raceStart[r + 1];
+
+            for (int i = from; i < to; i++) {
+                order[i] = i;
+            }
+            for (int i = from + 1; i < to; i++) {
+                int idx = order[i];
+                double s = score[idx];
+                int j = i - 1;
+                while (j >= from && Double.compare(score[order[j]], s) < 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = idx;
+            }
+        }
+    }
+
+    /** score + rank */
+    public void scoreAndRank(ScoreBatch b) {
+        score(b);
+        rank(b);
+    }
+
+    /** Ett lopps ranking som EntryScore-lista, som RaceAnalyzer.rankRace. */
+    public List<EntryScore> toEntryScores(ScoreBatch b, int race) {
+        int n = b.starters(race);
+        List<EntryScore> out = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            int idx = b.ranked(race, k);
+            out.add(new EntryScore(b.entry(idx), b.score(idx)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.analysis;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceCardLoader;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Analyserar många RaceCard-filer parallellt (--analyze med flera filer,
+ * en katalog eller ett glob-mönster).
+ *
+ * Korten läses och rankas på en fast trådpool. Högst {@link #WINDOW_PER_THREAD}
+ * kort per tråd är i luften samtidigt, och rapporten skrivs i filordning så
+ * fort nästa kort i tur är klart, så en hel säsong ryms utan att alla kort
+ * hålls i minnet. Inom ett kort rankas loppen i arbetstråden; kärnorna är
+ * redan upptagna av andra kort.
+ *
+ * Kort som inte går att läsa rapporteras på stderr och hoppas över.
+ */
+public class CardBatchAnalyzer {
+
+    /** Rapportformat. */
+    public enum Format { TEXT, JSON }
+
+    /** Kort i luften per tråd (lästa men inte skrivna). */
+    static final int WINDOW_PER_THREAD = 4;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private final RaceAnalyzer analyzer;
+    private final int threads;
+
+    public CardBatchAnalyzer(RaceAnalyzer analyzer, int threads) {
+        this.analyzer = analyzer;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** CLI: --analyze <FIL|KATALOG|GLOB>... [--json] [--threads N] */
+    public static void analyzeAll(List<String> args, Format format, int threads, RaceAnalyzer analyzer)
+            throws IOException {
+        List<Path> files = expand(args);
+        if (files.isEmpty()) {
+            System.err.println("Inga RaceCard-filer hittades för " + String.join(" ", args));
+            return;
+        }
+
+        CardBatchAnalyzer batch = new CardBatchAnalyzer(analyzer, threads);
+        Writer out = new OutputStreamWriter(System.out, System.out.charset());
+        Summary s = batch.analyze(files, format, out);
+        out.flush();
+
+        if (files.size() > 1) {
+            System.err.printf(Locale.ROOT,
+                    "✅ Analyserade %d kort (%d misslyckades), %d lopp och %d starter på %.2f s (%.1f kort/s, %d trådar)%n",
+                    s.cards(), s.failed(), s.races(), s.starters(), s.seconds(), s.cardsPerSecond(),
+                    Math.min(batch.threads, files.size()));
+        }
+    }
+
+    /**
+     * Analyserar files och skriver rapporten till out i samma ordning som
+     * files. JSON blir en array med en {@link AnalysisReport.CardReport} per
+     * kort. out stängs inte.
+     */
+    public Summary analyze(List<Path> files, Format format, Writer out) throws IOException {
+        int cards = 0;
+        int failed = 0;
+        int races = 0;
+        int starters = 0;
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())));
+        JsonGenerator json = format == Format.JSON ? MAPPER.getFactory().createGenerator(out) : null;
+        try {
+            if (json != null) json.writeStartArray();
+
+            ArrayDeque<Future<Analyzed>> inFlight = new ArrayDeque<>();
+            int window = threads * WINDOW_PER_THREAD;
+            int next = 0;
+            while (next < files.size() || !inFlight.isEmpty()) {
+                while (next < files.size() && inFlight.size() < window) {
+                    Path file = files.get(next++);
+                    inFlight.add(pool.submit(() -> analyzeFile(file)));
+                }
+
+                Analyzed a = inFlight.poll().get();
+                if (a.error() != null) {
+                    failed++;
+                    System.err.println("❌ " + a.file().getFileName() + ": " + a.error());
+                    continue;
+                }
+
+                cards++;
+                races += a.card().races().size();
+                for (List<EntryScore> race : a.rankings()) starters += race.size();
+                if (json != null) {
+                    MAPPER.writeValue(json, AnalysisReport.report(a.file().toString(), a.card(), a.rankings(),
+                            analyzer.calculator()));
+                    json.flush();
+                } else {
+                    if (cards > 1) out.write(System.lineSeparator());
+                    out.write(AnalysisReport.text(a.card(), a.rankings(), analyzer.calculator()));
+                    out.flush();
+                }
+            }
+
+            if (json != null) {
+                json.writeEndArray();
+                json.writeRaw(System.lineSeparator());
+                json.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Avbruten analys av " + files.size() + " kort", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Fel vid analys av " + files.size() + " kort", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Summary(cards, failed, races, starters, seconds);
+    }
+
+    private Analyzed analyzeFile(Path file) {
+        try {
+            if (!Files.isRegularFile(file)) {
+                return new Analyzed(file, null, null, "Filen finns inte");
+            }
+            RaceCard card = RaceCardLoader.load(file);
+            return new Analyzed(file, card, analyzer.rankCard(card, Runnable::run), null);
+        } catch (Exception e) {
+            return new Analyzed(file, null, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Argument -> filer, i argumentordning och utan dubbletter.
+     * <ul>
+     *   <li>glob-mönster (*, ?, [..], {..}) matchas mot filer under den
+     *       fasta delen av sökvägen, t.ex. arkiv/2025/converted-V86-*.json</li>
+     *   <li>en katalog ger dess converted-*.json och *.rcb</li>
+     *   <li>allt annat tas som en fil</li>
+     * </ul>
+     * Träffar på mönster och kataloger sorteras på namn.
+     */
+    public static List<Path> expand(List<String> args) {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String arg : args) {
+            int glob = firstGlobChar(arg);
+            if (glob >= 0) {
+                int slash = Math.max(arg.lastIndexOf('/', glob), arg.lastIndexOf('\\', glob));
+                Path base = slash < 0 ? Path.of(".") : Path.of(arg.substring(0, slash + 1));
+                PathMatcher m = FileSystems.getDefault().getPathMatcher("glob:" + arg.substring(slash + 1));
+                files.addAll(list(base, Integer.MAX_VALUE, p -> m.matches(base.relativize(p))));
+            } else {
+                Path p = Path.of(arg);
+                if (Files.isDirectory(p)) {
+                    files.addAll(list(p, 1, f -> {
+                        String n = f.getFileName().toString();
+                        return (n.startsWith("converted-") && n.endsWith(".json")) || n.endsWith(".rcb");
+                    }));
+                } else {
+                    files.add(p);
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static int firstGlobChar(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') return i;
+        }
+        return -1;
+    }
+
+    private static List<Path> list(Path dir, int depth, Predicate<Path> filter) {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> s = Files.walk(dir, depth)) {
+            return s.filter(Files::isRegularFile).filter(filter).sorted().toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte lista " + dir, e);
+        }
+    }
+
+    private record Analyzed(Path file, RaceCard card, List<List<EntryScore>> rankings, String error) {}
+
+    /**
+     * Resultat av en batchanalys.
+     */
+    public record Summary(int cards, int failed, int races, int starters, double seconds) {
+
+        public double cardsPerSecond() {
+            return seconds > 0 ? cards / seconds : 0;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.example.analysis;
+
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.domain.Entry;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceResult;
+import org.example.domain.RaceToAnalyze;
+import org.example.domain.Track;
+import org.example.history.PostPositionStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Poängsätter med en lista {@link ScoringFactor} och en vikt per faktor.
+ *
+ * Varje starts faktorvärden (särdragsvektorn) räknas en gång och cachas på
+ * hästen, dess senaste resultat och de lopp-/startuppgifter som någon faktor
+ * deklarerat att den läser. Score blir sedan en skalärprodukt med vikterna.
+ * Nya vikter ({@link #withWeight}) eller en struken häst ger alltså inga
+ * nya beräkningar; det gör bara en start vars indata faktiskt ändrats.
+ *
+ * Cachen delas mellan motorer som skapats ur varandra och är trådsäker.
+ */
+public class FactorEngine {
+
+    private final List<ScoringFactor> factors;
+    private final double[] weights;
+    private final Set<FactorInput> inputs;
+    private final Map<FeatureKey, double[]> cache;
+    private final LongAdder computed;
+
+    public FactorEngine(List<ScoringFactor> factors, double[] weights) {
+        this(List.copyOf(factors), weights.clone(), new ConcurrentHashMap<>(), new LongAdder());
+        if (factors.size() != weights.length) {
+            throw new IllegalArgumentException(factors.size() + " faktorer men " + weights.length + " vikter");
+        }
+        Set<String> names = new HashSet<>();
+        for (ScoringFactor f : factors) {
+            if (!names.add(f.name())) {
+                throw new IllegalArgumentException("Faktornamnet finns redan: " + f.name());
+            }
+        }
+    }
+
+    private FactorEngine(List<ScoringFactor> factors, double[] weights,
+                         Map<FeatureKey, double[]> cache, LongAdder computed) {
+        this.factors = factors;
+        this.weights = weights;
+        this.cache = cache;
+        this.computed = computed;
+        Set<FactorInput> in = EnumSet.noneOf(FactorInput.class);
+        for (ScoringFactor f : factors) {
+            in.addAll(f.inputs());
+        }
+        this.inputs = in;
+    }
+
+    /** Som {@link #standard(ScoreCalculator)} med bara manuella kuskbetyg. */
+    public static FactorEngine standard(ScoreWeights w) {
+        return standard(new ScoreCalculator(w));
+    }
+
+    /** Som {@link #standard(ScoreCalculator)} med bara manuella kuskbetyg och spårstatistiken stats. */
+    public static FactorEngine standard(ScoreWeights w, PostPositionStats stats) {
+        return standard(new ScoreCalculator(w, null, stats));
+    }
+
+    /**
+     * Kusk, form, spår, upplopp, distans, startmetod och galopp, plus
+     * spårstatistik om calc har någon, med vikterna och ratings ur calc
+     * (samma score som {@link ScoreCalculator#score}).
+     */
+    public static FactorEngine standard(ScoreCalculator calc) {
+        ScoreWeights w = calc.weights();
+        List<ScoringFactor> factors = new ArrayList<>(List.of(
+                Factors.driver(calc), Factors.form(w), Factors.post(w),
+                Factors.stretch(), Factors.distance(), Factors.startMethod(), Factors.gallop()));
+        if (calc.postStats() != null) {
+            factors.add(Factors.postStats(calc.postStats()));
+        }
+        double[] weights = {w.driverWeight(), w.formWeight(), w.postWeight(),
+                w.stretchWeight(), w.distanceWeight(), w.startMethodWeight(), w.gallopWeight(),
+                w.postStatsWeight()};
+        return new FactorEngine(factors, Arrays.copyOf(weights, factors.size()));
+    }
+
+    /** Samma faktorer och cache, ny vikt för faktorn name. */
+    public FactorEngine withWeight(String name, double weight) {
+        double[] w = weights.clone();
+        w[indexOf(name)] = weight;
+        return new FactorEngine(factors, w, cache, computed);
+    }
+
+    /** Samma faktorer och cache, nya vikter (en per faktor, i samma ordning). */
+    public FactorEngine withWeights(double... weights) {
+        if (weights.length != factors.size()) {
+            throw new IllegalArgumentException(factors.size() + " faktorer men " + weights.length + " vikter");
+        }
+        return new FactorEngine(factors, weights.clone(), cache, computed);
+    }
+
+    public List<ScoringFactor> factors() {
+        return factors;
+    }
+
+    public double weight(String name) {
+        return weights[indexOf(name)];
+    }
+
+    /** Faktorvärdena för en start, i faktorordning. Delas; ändra inte. */
+    public double[] features(Entry e, RaceToAnalyze race) {
+        return cache.computeIfAbsent(key(e, race), k -> {
+            computed.increment();
+            double[] v = new double[factors.size()];
+            for (int f = 0; f < v.length; f++) {
+                v[f] = factors.get(f).value(e, race);
+            }
+            return v;
+        });
+    }
+
+    public double score(Entry e, RaceToAnalyze race) {
+        double[] v = features(e, race);
+        double s = 0;
+        for (int f = 0; f < v.length; f++) {
+            s += weights[f] * v[f];
+        }
+        return s;
+    }
+
+    /** Som {@link RaceAnalyzer#rankRace}: högst score först, stabil vid lika. */
+    public List<EntryScore> rankRace(RaceToAnalyze race) {
+        return race.starters().stream()
+                .map(e -> new EntryScore(e, score(e, race)))
+                .sorted(Comparator.comparingDouble(EntryScore::score).reversed())
+                .toList();
+    }
+
+    /** Fyller cachen för ett helt kort, ett lopp per uppgift. */
+    public void prepare(RaceCard card) {
+        card.races().parallelStream().forEach(race -> race.starters().forEach(e -> features(e, race)));
+    }
+
+    /** Antal särdragsvektorer som faktiskt räknats (cachemissar). */
+    public long computed() {
+        return computed.sum();
+    }
+
+    public int cacheSize() {
+        return cache.size();
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private int indexOf(String name) {
+        for (int f = 0; f < factors.size(); f++) {
+            if (factors.get(f).name().equals(name)) return f;
+        }
+        throw new IllegalArgumentException("Okänd faktor: " + name);
+    }
+
+    // Bara de uppgifter som någon faktor läser ingår; övriga är null/0
+    private FeatureKey key(Entry e, RaceToAnalyze race) {
+        boolean last = inputs.contains(FactorInput.LAST_RACES);
+        List<RaceResult> lastRaces = e.horse().lastRaces();
+        return new FeatureKey(
+                e.horse().name(),
+                last && !lastRaces.isEmpty() ? lastRaces.get(0) : null,
+                last ? lastRaces.size() : 0,
+                inputs.contains(FactorInput.DRIVER) ? e.horse().driver().name() : null,
+                inputs.contains(FactorInput.DRIVER) ? e.horse().driver().rating() : 0,
+                inputs.contains(FactorInput.START_NUMBER) ? e.startNumber() : 0,
+                inputs.contains(FactorInput.TRACK) ? race.track() : null,
+                inputs.contains(FactorInput.DISTANCE) ? race.distanceMeters() : 0,
+                inputs.contains(FactorInput.START_METHOD) && race.autoStart());
+    }
+
+    private record FeatureKey(String horse, RaceResult latest, int lastCount,
+                              String driver, int driverRating, int startNumber,
+                              Track track, int distance, boolean autoStart) {}
+}
@@ -0,0 +1,20 @@
+package org.example.analysis;
+
+/**
+ * Det en {@link ScoringFactor} läser. Bestämmer vad som ingår i
+ * cachenyckeln för en hästs särdragsvektor i {@link FactorEngine}.
+ */
+public enum FactorInput {
+    /** Kusken och dess betyg. */
+    DRIVER,
+    /** Startnumret/spåret. */
+    START_NUMBER,
+    /** Hästens senaste lopp (Horse.lastRaces). */
+    LAST_RACES,
+    /** Banan (namn, upplopp, snäv bana). */
+    TRACK,
+    /** Loppets distans. */
+    DISTANCE,
+    /** Autostart eller voltstart. */
+    START_METHOD
+}
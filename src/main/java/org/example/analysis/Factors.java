@@ -0,0 +1,141 @@
+package org.example.analysis;
+
+import org.example.domain.Entry;
+import org.example.domain.RaceResult;
+import org.example.domain.RaceToAnalyze;
+import org.example.domain.Track;
+import org.example.history.PostPositionStats;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToDoubleBiFunction;
+
+import static org.example.analysis.FactorInput.*;
+
+/**
+ * De inbyggda faktorerna.
+ *
+ * driver, form och post räknar exakt som {@link ScoreCalculator} med samma
+ * {@link ScoreWeights} (och för driver samma ratings). Övriga är
+ * loppfaktorer med egna vikter i ScoreWeights (0 tills --tune gett dem
+ * något), som {@link ScoreCalculator#score} och
+ * {@link FactorEngine#standard(ScoreCalculator)} lägger till.
+ */
+public final class Factors {
+
+    /** Antal senaste lopp som distans- och galoppfaktorn tittar på. */
+    static final int RECENT = 5;
+
+    private Factors() {
+    }
+
+    /** Kuskfaktorn med bara manuella kuskbetyg. */
+    public static ScoringFactor driver(ScoreWeights w) {
+        return driver(new ScoreCalculator(w));
+    }
+
+    /** Kuskfaktorn med calc:s vikter och ratings (se {@link ScoreCalculator#driverRating}). */
+    public static ScoringFactor driver(ScoreCalculator calc) {
+        return of("driver", EnumSet.of(DRIVER), (e, race) -> calc.driverFactor(calc.driverRating(e.horse().driver())));
+    }
+
+    public static ScoringFactor form(ScoreWeights w) {
+        ScoreCalculator calc = new ScoreCalculator(w);
+        return of("form", EnumSet.of(LAST_RACES), (e, race) -> calc.formFactor(calc.goodRuns(e.horse())));
+    }
+
+    public static ScoringFactor post(ScoreWeights w) {
+        ScoreCalculator calc = new ScoreCalculator(w);
+        return of("post", EnumSet.of(START_NUMBER), (e, race) -> calc.startPositionFactor(e.startNumber()));
+    }
+
+    /**
+     * Upploppets längd mot spåret: långt upplopp gör innerspåren mindre
+     * värda och ger ytterspåren (5-) chansen. Okänt upplopp = 5.
+     */
+    public static ScoringFactor stretch() {
+        return of("stretch", EnumSet.of(TRACK, START_NUMBER), (e, race) -> {
+            Track t = race.track();
+            if (t == null || t.stretchLengthMeters() <= 0) return 5.0;
+            // 150 m -> 0, 250 m -> 10
+            double s = Math.max(0, Math.min(10, (t.stretchLengthMeters() - 150) / 10.0));
+            if (t.isTightTrack()) s = Math.max(0, s - 2);
+            return e.startNumber() <= 4 ? 10 - s : s;
+        });
+    }
+
+    /**
+     * Distansform: andel topp-3 bland de senaste loppen på ungefär samma
+     * distans (±200 m). Inga sådana lopp = 5.
+     */
+    public static ScoringFactor distance() {
+        return of("distance", EnumSet.of(DISTANCE, LAST_RACES), (e, race) -> {
+            int similar = 0;
+            int good = 0;
+            List<RaceResult> last = e.horse().lastRaces();
+            for (int k = 0; k < Math.min(RECENT, last.size()); k++) {
+                RaceResult rr = last.get(k);
+                if (Math.abs(rr.distanceMeters() - race.distanceMeters()) <= 200) {
+                    similar++;
+                    if (rr.finishPosition() <= 3) good++;
+                }
+            }
+            return similar == 0 ? 5.0 : good * 10.0 / similar;
+        });
+    }
+
+    /**
+     * Startmetod: vid autostart är andra ledet (spår 9-) en klar nackdel;
+     * vid voltstart är alla lika.
+     */
+    public static ScoringFactor startMethod() {
+        return of("startMethod", EnumSet.of(START_METHOD, START_NUMBER), (e, race) -> {
+            if (!race.autoStart()) return 5.0;
+            return e.startNumber() <= 8 ? 8.0 : 2.0;
+        });
+    }
+
+    /** Galoppsäkerhet: 10 utan galopp i de senaste loppen, 0 om galopp i alla. */
+    public static ScoringFactor gallop() {
+        return of("gallop", EnumSet.of(LAST_RACES), (e, race) -> {
+            List<RaceResult> last = e.horse().lastRaces();
+            int n = Math.min(RECENT, last.size());
+            if (n == 0) return 5.0;
+            int gallops = 0;
+            for (int k = 0; k < n; k++) {
+                if (last.get(k).gallop()) gallops++;
+            }
+            return (1.0 - (double) gallops / n) * 10.0;
+        });
+    }
+
+    /**
+     * Spårstatistik ur historiken: hur spåret gått på den här banan, i den
+     * här distansklassen och med den här startmetoden (se
+     * {@link PostPositionStats}). 5 = som en genomsnittlig start, 10 = dubbelt
+     * så ofta segrare.
+     */
+    public static ScoringFactor postStats(PostPositionStats stats) {
+        return of("postStats", EnumSet.of(TRACK, DISTANCE, START_METHOD, START_NUMBER), (e, race) -> {
+            if (race.track() == null) return 5.0;
+            double adv = stats.advantage(race.track().name(), race.distanceMeters(), race.autoStart(),
+                    e.startNumber());
+            return Math.max(0, Math.min(10, 5 * adv));
+        });
+    }
+
+    /** En faktor ur ett namn, dess inputs och en funktion. */
+    public static ScoringFactor of(String name, Set<FactorInput> inputs,
+                                   ToDoubleBiFunction<Entry, RaceToAnalyze> value) {
+        return new SimpleFactor(name, Set.copyOf(inputs), value);
+    }
+
+    private record SimpleFactor(String name, Set<FactorInput> inputs,
+                                ToDoubleBiFunction<Entry, RaceToAnalyze> fn) implements ScoringFactor {
+        @Override
+        public double value(Entry entry, RaceToAnalyze race) {
+            return fn.applyAsDouble(entry, race);
+        }
+    }
+}
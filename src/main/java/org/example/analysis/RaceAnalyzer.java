@@ -1,25 +1,69 @@
 package org.example.analysis;
 
 import org.example.domain.Entry;
+import org.example.domain.RaceCard;
 import org.example.domain.RaceToAnalyze;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Rankar ett lopp baserat på ScoreCalculator.
+ * Rankar ett lopp, eller alla lopp i ett kort, baserat på ScoreCalculator.
+ *
+ * ScoreCalculator är oföränderlig, så samma RaceAnalyzer kan användas från
+ * flera trådar samtidigt.
  */
 public class RaceAnalyzer {
 
-    private final ScoreCalculator calc = new ScoreCalculator();
+    private final ScoreCalculator calc;
+
+    /** Med standardvikterna, se {@link ScoreCalculator#ScoreCalculator()}. */
+    public RaceAnalyzer() {
+        this(new ScoreCalculator());
+    }
+
+    public RaceAnalyzer(ScoreCalculator calc) {
+        this.calc = calc;
+    }
+
+    public ScoreCalculator calculator() {
+        return calc;
+    }
 
     public List<EntryScore> rankRace(RaceToAnalyze race) {
         return race.starters().stream()
-                .map(e -> new EntryScore(e, calc.scoreEntry(e)))
+                .map(e -> new EntryScore(e, calc.score(e, race)))
                 .sorted(Comparator.comparingDouble(EntryScore::score).reversed())
                 .toList();
     }
 
+    /** Alla lopp i kortet, i kortets ordning. Loppen rankas parallellt. */
+    public List<List<EntryScore>> rankCard(RaceCard card) {
+        return rankCard(card, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Som {@link #rankCard(RaceCard)}, men loppen rankas på executor.
+     * Runnable::run rankar dem i anropande tråd, t.ex. när många kort redan
+     * analyseras parallellt (se {@link CardBatchAnalyzer}).
+     */
+    public List<List<EntryScore>> rankCard(RaceCard card, Executor executor) {
+        List<RaceToAnalyze> races = card.races();
+        List<CompletableFuture<List<EntryScore>>> futures = new ArrayList<>(races.size());
+        for (RaceToAnalyze race : races) {
+            futures.add(CompletableFuture.supplyAsync(() -> rankRace(race), executor));
+        }
+        List<List<EntryScore>> out = new ArrayList<>(races.size());
+        for (CompletableFuture<List<EntryScore>> f : futures) {
+            out.add(f.join());
+        }
+        return out;
+    }
+
     /**
      * Ekipage + score.
      */
@@ -0,0 +1,282 @@
+package org.example.analysis;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Monte Carlo-simulering av lopputgångar utifrån våra score.
+ *
+ * Modell (Plackett-Luce): varje häst får styrka w = exp(score / temperature)
+ * och en slumpad "tid" T = Exp(1) / w; lägst T vinner, sedan tvåa osv.
+ * Vinstchansen blir då w / sum(w) och platschanser (topp 3) och
+ * V-spelsutfall kommer ur simuleringen.
+ *
+ * Simuleringarna delas upp med fork/join; varje deluppgift får en egen
+ * SplittableRandom (split vid varje fork), så samma frö ger samma resultat
+ * oavsett antal kärnor.
+ */
+public class RaceSimulator {
+
+    /** Standard: skillnad på 1.5 i score ~ e gånger starkare. */
+    public static final double DEFAULT_TEMPERATURE = 1.5;
+
+    /** Antal placeringar som räknas som "plats". */
+    static final int PLACES = 3;
+
+    private static final long LEAF_SIMULATIONS = 20_000;
+
+    private final double temperature;
+    private final ForkJoinPool pool;
+
+    public RaceSimulator() {
+        this(DEFAULT_TEMPERATURE);
+    }
+
+    public RaceSimulator(double temperature) {
+        this(temperature, ForkJoinPool.commonPool());
+    }
+
+    public RaceSimulator(double temperature, ForkJoinPool pool) {
+        this.temperature = temperature;
+        this.pool = pool;
+    }
+
+    /**
+     * Exakta vinstchanser enligt modellen (softmax per lopp), indexerat som batchen.
+     * Batchen måste vara poängsatt.
+     */
+    public double[] winProbabilities(ScoreBatch b) {
+        double[] p = new double[b.size()];
+        for (int r = 0; r < b.raceCount(); r++) {
+            int from = b.raceStart[r];
+            int to = b.raceStart[r + 1];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, b.score[i]);
+            }
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                p[i] = Math.exp((b.score[i] - max) / temperature);
+                sum += p[i];
+            }
+            for (int i = from; i < to; i++) {
+                p[i] /= sum;
+            }
+        }
+        return p;
+    }
+
+    /** Exakta vinstchanser för ett enskilt lopp givet starternas score. */
+    public double[] winProbabilities(double[] raceScores) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double s : raceScores) {
+            max = Math.max(max, s);
+        }
+        double[] p = new double[raceScores.length];
+        double sum = 0;
+        for (int i = 0; i < p.length; i++) {
+            p[i] = Math.exp((raceScores[i] - max) / temperature);
+            sum += p[i];
+        }
+        for (int i = 0; i < p.length; i++) {
+            p[i] /= sum;
+        }
+        return p;
+    }
+
+    /**
+     * Kör simulations simulerade omgångar (alla lopp i batchen per omgång).
+     * Batchen måste vara poängsatt och rankad.
+     */
+    public SimulationResult simulate(ScoreBatch b, long simulations, long seed) {
+        if (simulations <= 0) {
+            throw new IllegalArgumentException("Antal simuleringar måste vara > 0: " + simulations);
+        }
+        Tally t = pool.invoke(new SimTask(b, invStrengths(b), simulations, new SplittableRandom(seed)));
+        return t.toResult(b);
+    }
+
+    /**
+     * Simulerar i omgångar om batchSize tills alla vinstchansers
+     * 95%-konfidensintervall är smalare än ±halfWidth, eller tills
+     * maxSimulations nåtts. progress (kan vara null) får ett delresultat
+     * efter varje omgång.
+     *
+     * @throws IllegalArgumentException om batchSize eller maxSimulations
+     *         inte är positiva, eller halfWidth är negativ eller NaN
+     */
+    public SimulationResult simulateUntil(ScoreBatch b, double halfWidth, long batchSize, long maxSimulations,
+                                          long seed, Consumer<SimulationResult> progress) {
+        if (batchSize <= 0 || maxSimulations <= 0) {
+            throw new IllegalArgumentException("batchSize och maxSimulations måste vara > 0: "
+                    + batchSize + ", " + maxSimulations);
+        }
+        if (!(halfWidth >= 0)) {
+            throw new IllegalArgumentException("Precisionen måste vara >= 0: " + halfWidth);
+        }
+        double[] inv = invStrengths(b);
+        SplittableRandom rng = new SplittableRandom(seed);
+        Tally total = new Tally(b.size(), b.raceCount());
+        SimulationResult result;
+        do {
+            long n = Math.min(batchSize, maxSimulations - total.simulations);
+            total.add(pool.invoke(new SimTask(b, inv, n, rng.split())));
+            result = total.toResult(b);
+            if (progress != null) {
+                progress.accept(result);
+            }
+        } while (result.maxHalfWidth() > halfWidth && total.simulations < maxSimulations);
+        return result;
+    }
+
+    // 1/w per häst, så att T = Exp(1) * (1/w)
+    private double[] invStrengths(ScoreBatch b) {
+        double[] inv = new double[b.size()];
+        for (int r = 0; r < b.raceCount(); r++) {
+            int from = b.raceStart[r];
+            int to = b.raceStart[r + 1];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, b.score[i]);
+            }
+            for (int i = from; i < to; i++) {
+                inv[i] = Math.exp(-(b.score[i] - max) / temperature);
+            }
+        }
+        return inv;
+    }
+
+    private static final class SimTask extends RecursiveTask<Tally> {
+        private final ScoreBatch b;
+        private final double[] inv;
+        private final long n;
+        private final SplittableRandom rng;
+
+        SimTask(ScoreBatch b, double[] inv, long n, SplittableRandom rng) {
+            this.b = b;
+            this.inv = inv;
+            this.n = n;
+            this.rng = rng;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (n <= LEAF_SIMULATIONS) {
+                return run();
+            }
+            long half = n / 2;
+            SimTask left = new SimTask(b, inv, half, rng.split());
+            SimTask right = new SimTask(b, inv, n - half, rng.split());
+            left.fork();
+            Tally t = right.compute();
+            t.add(left.join());
+            return t;
+        }
+
+        private Tally run() {
+            int races = b.raceCount();
+            Tally t = new Tally(b.size(), races);
+            int[] top = new int[PLACES];
+            double[] topT = new double[PLACES];
+
+            for (long s = 0; s < n; s++) {
+                int topPickWins = 0;
+                for (int r = 0; r < races; r++) {
+                    int from = b.raceStart[r];
+                    int to = b.raceStart[r + 1];
+                    if (from == to) continue;
+
+                    int kept = 0;
+                    for (int i = from; i < to; i++) {
+                        double time = -Math.log(1.0 - rng.nextDouble()) * inv[i];
+                        // håll de PLACES snabbaste, sorterade
+                        int pos = kept < PLACES ? kept++ : PLACES;
+                        while (pos > 0 && topT[pos - 1] > time) {
+                            if (pos < PLACES) {
+                                topT[pos] = topT[pos - 1];
+                                top[pos] = top[pos - 1];
+                            }
+                            pos--;
+                        }
+                        if (pos < PLACES) {
+                            topT[pos] = time;
+                            top[pos] = i;
+                        }
+                    }
+
+                    t.wins[top[0]]++;
+                    for (int k = 0; k < kept; k++) {
+                        t.places[top[k]]++;
+                    }
+                    if (top[0] == b.order[from]) {
+                        topPickWins++;
+                    }
+                }
+                t.topPickLegs[topPickWins]++;
+            }
+            t.simulations = n;
+            return t;
+        }
+    }
+
+    // Räknare per deluppgift; slås ihop efter join
+    private static final class Tally {
+        final long[] wins;
+        final long[] places;
+        final long[] topPickLegs;
+        long simulations;
+
+        Tally(int starters, int races) {
+            wins = new long[starters];
+            places = new long[starters];
+            topPickLegs = new long[races + 1];
+        }
+
+        void add(Tally o) {
+            for (int i = 0; i < wins.length; i++) {
+                wins[i] += o.wins[i];
+                places[i] += o.places[i];
+            }
+            for (int i = 0; i < topPickLegs.length; i++) {
+                topPickLegs[i] += o.topPickLegs[i];
+            }
+            simulations += o.simulations;
+        }
+
+        SimulationResult toResult(ScoreBatch b) {
+            double n = Math.max(1, simulations);
+            double[] win = new double[wins.length];
+            double[] place = new double[places.length];
+            double maxHalfWidth = 0;
+            for (int i = 0; i < win.length; i++) {
+                win[i] = wins[i] / n;
+                place[i] = places[i] / n;
+                maxHalfWidth = Math.max(maxHalfWidth, 1.96 * Math.sqrt(win[i] * (1 - win[i]) / n));
+            }
+            double[] legs = new double[topPickLegs.length];
+            for (int i = 0; i < legs.length; i++) {
+                legs[i] = topPickLegs[i] / n;
+            }
+            return new SimulationResult(win, place, legs, simulations, maxHalfWidth);
+        }
+    }
+
+    /**
+     * Resultat av en simulering.
+     *
+     * @param win          vinstchans per start (index som i ScoreBatch)
+     * @param place        chans till topp 3 per start
+     * @param topPickLegs  topPickLegs[k] = chansen att vår etta vinner exakt k av loppen
+     * @param maxHalfWidth största 95%-intervallhalvbredden bland vinstchanserna
+     */
+    public record SimulationResult(double[] win, double[] place, double[] topPickLegs,
+                                   long simulations, double maxHalfWidth) {
+
+        /** Chansen att våra ettor vinner alla lopp. */
+        public double allTopPicksWin() {
+            return topPickLegs[topPickLegs.length - 1];
+        }
+    }
+}
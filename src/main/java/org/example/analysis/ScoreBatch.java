@@ -0,0 +1,178 @@
+package org.example.analysis;
+
+import org.example.domain.Driver;
+import org.example.domain.Entry;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceResult;
+import org.example.domain.RaceToAnalyze;
+import org.example.history.RatingEngine;
+
+import java.util.List;
+
+/**
+ * Ett helt spelkort utlagt som struct-of-arrays för {@link BatchScorer}.
+ *
+ * Alla starter i alla lopp ligger i samma arrayer; lopp r omfattar
+ * index raceStart[r] till raceStart[r + 1] (exklusivt). Efter ranking
+ * innehåller order samma intervall, sorterat på score (högst först).
+ *
+ * Formen lagras som de senaste placeringarna (högst MAX_FORM_WINDOW per
+ * start, nyast först) så att samma batch kan poängsättas med olika
+ * {@link ScoreWeights}. Kuskbetyget är det manuella tills
+ * {@link #driverRatings} byter till inlärda ratings.
+ *
+ * Utläggningen allokerar; poängsättning och ranking gör det inte (utom
+ * första gången med en ny {@link ScoreCalculator} som har loppfaktorer), så
+ * samma batch kan återanvändas (t.ex. med ändrade ratings) i simuleringar.
+ */
+public final class ScoreBatch {
+
+    /** Max antal senaste placeringar per start som lagras. */
+    public static final int MAX_FORM_WINDOW = 10;
+
+    final int[] raceStart;
+    final int[] raceNumber;
+
+    final int[] startNumber;
+    final double[] driverRating;
+    final int[] finishes;      // start i på index i * MAX_FORM_WINDOW ...
+    final int[] finishCount;
+
+    final double[] score;
+    final int[] order;
+
+    private final Entry[] entries;
+    private final RaceToAnalyze[] races;
+    private RatingEngine.Snapshot ratingSource;
+
+    double[] raceFactorValues = new double[0];   // start i på index i * antal faktorer ...
+    private ScoreCalculator raceFactorSource;
+
+    private ScoreBatch(int races, int starters) {
+        raceStart = new int[races + 1];
+        raceNumber = new int[races];
+        startNumber = new int[starters];
+        driverRating = new double[starters];
+        finishes = new int[starters * MAX_FORM_WINDOW];
+        finishCount = new int[starters];
+        score = new double[starters];
+        order = new int[starters];
+        entries = new Entry[starters];
+        this.races = new RaceToAnalyze[races];
+    }
+
+    public static ScoreBatch of(RaceCard card) {
+        return of(card.races());
+    }
+
+    public static ScoreBatch of(List<RaceToAnalyze> races) {
+        int starters = 0;
+        for (RaceToAnalyze race : races) {
+            starters += race.starters().size();
+        }
+
+        ScoreBatch b = new ScoreBatch(races.size(), starters);
+        int i = 0;
+        for (int r = 0; r < races.size(); r++) {
+            RaceToAnalyze race = races.get(r);
+            b.raceStart[r] = i;
+            b.raceNumber[r] = race.raceNumber();
+            b.races[r] = race;
+            for (Entry e : race.starters()) {
+                b.entries[i] = e;
+                b.startNumber[i] = e.startNumber();
+                b.driverRating[i] = e.horse().driver().rating();
+                int n = 0;
+                for (RaceResult rr : e.horse().lastRaces()) {
+                    if (n == MAX_FORM_WINDOW) break;
+                    b.finishes[i * MAX_FORM_WINDOW + n++] = rr.finishPosition();
+                }
+                b.finishCount[i] = n;
+                b.order[i] = i;
+                i++;
+            }
+        }
+        b.raceStart[races.size()] = i;
+        return b;
+    }
+
+    /**
+     * Sätter kuskbetygen från ratings (manuellt betyg för kuskar med för få
+     * starter), eller tillbaka till de manuella om ratings är null. Gör
+     * ingenting om batchen redan har betygen från samma ögonblicksbild.
+     */
+    public void driverRatings(RatingEngine.Snapshot ratings) {
+        if (ratings == ratingSource) return;
+        for (int i = 0; i < entries.length; i++) {
+            Driver d = entries[i].horse().driver();
+            driverRating[i] = ratings == null ? d.rating() : ratings.driverRating(d.name(), d.rating());
+        }
+        ratingSource = ratings;
+    }
+
+    /**
+     * Räknar calc:s loppfaktorer ({@link ScoreCalculator#raceFactors}) för
+     * alla starter. Gör ingenting om batchen redan har dem för samma calc;
+     * allokerar bara när faktorerna byts.
+     */
+    void raceFactors(ScoreCalculator calc) {
+        if (calc == raceFactorSource) return;
+        ScoringFactor[] f = calc.raceFactors();
+        if (f.length > 0) {
+            double[] v = new double[entries.length * f.length];
+            for (int r = 0; r < races.length; r++) {
+                for (int i = raceStart[r]; i < raceStart[r + 1]; i++) {
+                    for (int k = 0; k < f.length; k++) {
+                        v[i * f.length + k] = f[k].value(entries[i], races[r]);
+                    }
+                }
+            }
+            raceFactorValues = v;
+        }
+        raceFactorSource = calc;
+    }
+
+    public int raceCount() {
+        return raceNumber.length;
+    }
+
+    public int size() {
+        return startNumber.length;
+    }
+
+    public int raceNumber(int race) {
+        return raceNumber[race];
+    }
+
+    /** Antal starter i lopp race (0-baserat). */
+    public int starters(int race) {
+        return raceStart[race + 1] - raceStart[race];
+    }
+
+    /** Index (i batchen) för den som rankas på plats rank (0 = bäst) i lopp race. */
+    public int ranked(int race, int rank) {
+        return order[raceStart[race] + rank];
+    }
+
+    public double score(int index) {
+        return score[index];
+    }
+
+    public int startNumber(int index) {
+        return startNumber[index];
+    }
+
+    /** Kuskbetyget som poängsättningen använder för en start, se {@link #driverRatings}. */
+    public double driverRating(int index) {
+        return driverRating[index];
+    }
+
+    public Entry entry(int index) {
+        return entries[index];
+    }
+
+    /** Ändrar kuskbetyget för en start (t.ex. kuskbyte eller simulering). */
+    public void setDriverRating(int index, double rating) {
+        driverRating[index] = rating;
+    }
+}
@@ -4,50 +4,184 @@ import org.example.domain.Entry;
 import org.example.domain.Driver;
 import org.example.domain.Horse;
 import org.example.domain.RaceResult;
+import org.example.domain.RaceToAnalyze;
+import org.example.history.PostPositionStats;
+import org.example.history.RatingEngine;
 
 /**
  * Räkna ut ett "styrkevärde" för ett ekipage.
- * Kan tweakas över tid.
+ * Kan tweakas över tid, via {@link ScoreWeights} (se {@link org.example.backtest.WeightTuner}).
+ *
+ * Faktorerna finns också i primitiv form (rating, antal bra lopp, spår)
+ * så att {@link BatchScorer} räknar exakt samma sak utan objektgrafen.
+ * Nya faktorer läggs som {@link ScoringFactor} i {@link FactorEngine}.
+ *
+ * Med en {@link RatingEngine.Snapshot} ersätts det manuella kuskbetyget av
+ * kuskens inlärda rating när kusken har tillräckligt många starter.
+ *
+ * {@link #score(Entry, RaceToAnalyze)} lägger till loppfaktorerna i
+ * {@link Factors} (upplopp, distans, startmetod, galopp och, med
+ * {@link PostPositionStats}, spårstatistik) med sina vikter ur
+ * {@link ScoreWeights}; det är samma score som
+ * {@link FactorEngine#standard(ScoreCalculator)} ger.
  */
 public class ScoreCalculator {
 
+    private final ScoreWeights w;
+    private final RatingEngine.Snapshot ratings;
+    private final PostPositionStats postStats;
+    private final ScoringFactor[] raceFactors;   // de med vikt != 0, i FactorEngine-ordning
+    private final double[] raceWeights;
+
+    /** Standardvikterna och bara manuella kuskbetyg. */
+    public ScoreCalculator() {
+        this(ScoreWeights.DEFAULTS);
+    }
+
+    /** Bara manuella kuskbetyg. */
+    public ScoreCalculator(ScoreWeights weights) {
+        this(weights, null);
+    }
+
+    /** @param ratings inlärda ratings, null = bara manuella kuskbetyg */
+    public ScoreCalculator(ScoreWeights weights, RatingEngine.Snapshot ratings) {
+        this(weights, ratings, null);
+    }
+
+    /**
+     * @param ratings   inlärda ratings, null = bara manuella kuskbetyg
+     * @param postStats spårstatistik ur historiken, null = ingen spårstatistikfaktor
+     */
+    public ScoreCalculator(ScoreWeights weights, RatingEngine.Snapshot ratings, PostPositionStats postStats) {
+        this.w = weights;
+        this.ratings = ratings;
+        this.postStats = postStats;
+
+        ScoringFactor[] all = {Factors.stretch(), Factors.distance(), Factors.startMethod(), Factors.gallop(),
+                postStats == null ? null : Factors.postStats(postStats)};
+        double[] allWeights = {weights.stretchWeight(), weights.distanceWeight(), weights.startMethodWeight(),
+                weights.gallopWeight(), weights.postStatsWeight()};
+        int n = 0;
+        for (int k = 0; k < all.length; k++) {
+            if (all[k] != null && allWeights[k] != 0) n++;
+        }
+        raceFactors = new ScoringFactor[n];
+        raceWeights = new double[n];
+        n = 0;
+        for (int k = 0; k < all.length; k++) {
+            if (all[k] != null && allWeights[k] != 0) {
+                raceFactors[n] = all[k];
+                raceWeights[n++] = allWeights[k];
+            }
+        }
+    }
+
+    /** Samma vikter och ratings med annan spårstatistik (t.ex. historiken före en viss dag). */
+    public ScoreCalculator withPostStats(PostPositionStats stats) {
+        return new ScoreCalculator(w, ratings, stats);
+    }
+
+    public ScoreWeights weights() {
+        return w;
+    }
+
+    /** Inlärda ratings, eller null. */
+    public RatingEngine.Snapshot ratings() {
+        return ratings;
+    }
+
+    /** Spårstatistiken, eller null. */
+    public PostPositionStats postStats() {
+        return postStats;
+    }
+
+    /** Score i loppet: kusk, form och spår plus loppfaktorerna. */
+    public double score(Entry e, RaceToAnalyze race) {
+        double s = scoreEntry(e);
+        for (int k = 0; k < raceFactors.length; k++) {
+            s += raceWeights[k] * raceFactors[k].value(e, race);
+        }
+        return s;
+    }
+
+    /** Kusk, form och spår, utan loppfaktorerna (som kräver loppet). */
     public double scoreEntry(Entry e) {
         double driverScore = driverFactor(e.horse().driver());
         double formScore   = formFactor(e.horse());
         double postScore   = startPositionFactor(e.startNumber());
 
-        // Viktning kan du ändra
-        return driverScore * 0.5
-             + formScore   * 0.4
-             + postScore   * 0.1;
+        return combine(driverScore, formScore, postScore);
+    }
+
+    /** Loppfaktorerna med vikt != 0, i den ordning de läggs till. */
+    ScoringFactor[] raceFactors() {
+        return raceFactors;
+    }
+
+    double[] raceWeights() {
+        return raceWeights;
+    }
+
+    double combine(double driverScore, double formScore, double postScore) {
+        return driverScore * w.driverWeight()
+             + formScore   * w.formWeight()
+             + postScore   * w.postWeight();
     }
 
     private double driverFactor(Driver d) {
-        // Kusken: 1-5 -> 2.0-10.0
-        return d.rating() * 2.0;
+        return driverFactor(driverRating(d));
+    }
+
+    /** Kuskbetyget 1-5 som används: inlärt om det finns, annars det manuella. */
+    public double driverRating(Driver d) {
+        return ratings == null ? d.rating() : ratings.driverRating(d.name(), d.rating());
+    }
+
+    double driverFactor(double rating) {
+        // Kusken: 1-5 -> 2.0-10.0 med standardvikterna
+        return rating * w.driverMultiplier();
     }
 
     private double formFactor(Horse h) {
-        // Enkel form: hur många topp-3 på senaste 5 starter
+        return formFactor(goodRuns(h));
+    }
+
+    // Enkel form: hur många topp-3 på senaste 5 starter (standardvikterna)
+    int goodRuns(Horse h) {
         int goodRuns = 0;
         int racesCounted = 0;
 
         for (RaceResult rr : h.lastRaces()) {
             racesCounted++;
-            if (rr.finishPosition() <= 3) {
+            if (rr.finishPosition() <= w.formMaxPlace()) {
+                goodRuns++;
+            }
+            if (racesCounted == w.formWindow()) break;
+        }
+        return goodRuns;
+    }
+
+    /** Samma formräkning på placeringar, nyast först (se {@link ScoreBatch}). */
+    int goodRuns(int[] finishes, int from, int count) {
+        int n = Math.min(count, w.formWindow());
+        int goodRuns = 0;
+        for (int k = 0; k < n; k++) {
+            if (finishes[from + k] <= w.formMaxPlace()) {
                 goodRuns++;
             }
-            if (racesCounted == 5) break;
         }
+        return goodRuns;
+    }
 
-        return (goodRuns / 5.0) * 10.0; // 0..10
+    double formFactor(int goodRuns) {
+        return (goodRuns / (double) w.formWindow()) * 10.0; // 0..10
     }
 
-    private double startPositionFactor(int startNumber) {
-        // Placeholder: bättre spår = lite högre poäng.
-        if (startNumber == 1) return 10.0;
-        if (startNumber <= 4) return 8.0;
-        if (startNumber <= 8) return 5.0;
-        return 3.0;
+    double startPositionFactor(int startNumber) {
+        // Bättre spår = lite högre poäng.
+        if (startNumber == 1) return w.postOne();
+        if (startNumber <= 4) return w.postInner();
+        if (startNumber <= 8) return w.postMiddle();
+        return w.postOuter();
     }
 }
@@ -0,0 +1,110 @@
+package org.example.analysis;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Alla vikter och trösklar i {@link ScoreCalculator}.
+ *
+ * DEFAULTS är de värden som tidigare var hårdkodade, med vikt 0 för
+ * loppfaktorerna (upplopp, distans, startmetod, galopp, spårstatistik)
+ * tills --tune gett dem något; saknas de i filen blir de 0. CLI:t läser
+ * {@link #DEFAULT_FILE} med {@link #loadOrDefaults}, så att analysen använder
+ * det {@link org.example.backtest.WeightTuner} senast exporterade; biblioteket
+ * läser aldrig filer på egen hand.
+ *
+ * @param driverWeight     vikt för kuskfaktorn
+ * @param formWeight       vikt för formfaktorn
+ * @param postWeight       vikt för spårfaktorn
+ * @param driverMultiplier kuskbetyg 1-5 gånger detta ger kuskfaktorn
+ * @param formWindow       antal senaste starter som formen räknas på (1-{@value ScoreBatch#MAX_FORM_WINDOW})
+ * @param formMaxPlace     placering som räknas som ett bra lopp (t.ex. 3 = topp 3)
+ * @param postOne          spårfaktor spår 1
+ * @param postInner        spårfaktor spår 2-4
+ * @param postMiddle       spårfaktor spår 5-8
+ * @param postOuter        spårfaktor spår 9 och ut
+ * @param stretchWeight    vikt för upploppsfaktorn ({@link Factors#stretch})
+ * @param distanceWeight   vikt för distansformen ({@link Factors#distance})
+ * @param startMethodWeight vikt för startmetodsfaktorn ({@link Factors#startMethod})
+ * @param gallopWeight     vikt för galoppsäkerheten ({@link Factors#gallop})
+ * @param postStatsWeight  vikt för spårstatistiken ur historiken ({@link Factors#postStats})
+ */
+public record ScoreWeights(
+        double driverWeight,
+        double formWeight,
+        double postWeight,
+        double driverMultiplier,
+        int formWindow,
+        int formMaxPlace,
+        double postOne,
+        double postInner,
+        double postMiddle,
+        double postOuter,
+        double stretchWeight,
+        double distanceWeight,
+        double startMethodWeight,
+        double gallopWeight,
+        double postStatsWeight
+) {
+
+    public static final ScoreWeights DEFAULTS = new ScoreWeights(
+            0.5, 0.4, 0.1,
+            2.0,
+            5, 3,
+            10.0, 8.0, 5.0, 3.0);
+
+    /** Filnamnet som tunern skriver och analysen läser. */
+    public static final String FILE_NAME = "score-weights.json";
+
+    /** Tunerns standardfil, utanför datakatalogerna (och ignorerad av git). */
+    public static final Path DEFAULT_FILE = Path.of("config", FILE_NAME);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public ScoreWeights {
+        if (formWindow < 1 || formWindow > ScoreBatch.MAX_FORM_WINDOW) {
+            throw new IllegalArgumentException("formWindow måste vara 1-" + ScoreBatch.MAX_FORM_WINDOW + ": " + formWindow);
+        }
+    }
+
+    /** Kusk, form och spår; loppfaktorerna får vikt 0 (som i äldre viktfiler). */
+    public ScoreWeights(double driverWeight, double formWeight, double postWeight, double driverMultiplier,
+                        int formWindow, int formMaxPlace,
+                        double postOne, double postInner, double postMiddle, double postOuter) {
+        this(driverWeight, formWeight, postWeight, driverMultiplier, formWindow, formMaxPlace,
+                postOne, postInner, postMiddle, postOuter, 0, 0, 0, 0, 0);
+    }
+
+    /** file om den finns, annars score-weights.json i resources, annars DEFAULTS. */
+    public static ScoreWeights loadOrDefaults(Path file) {
+        try {
+            if (Files.isRegularFile(file)) {
+                return load(file);
+            }
+            try (InputStream is = ScoreWeights.class.getResourceAsStream("/" + FILE_NAME)) {
+                if (is != null) {
+                    return MAPPER.readValue(is, ScoreWeights.class);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Fel vid läsning av " + file + ": " + e.getMessage(), e);
+        }
+        return DEFAULTS;
+    }
+
+    public static ScoreWeights load(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), ScoreWeights.class);
+    }
+
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), this);
+    }
+}
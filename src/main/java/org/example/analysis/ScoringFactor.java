@@ -0,0 +1,23 @@
+package org.example.analysis;
+
+import org.example.domain.Entry;
+import org.example.domain.RaceToAnalyze;
+
+import java.util.Set;
+
+/**
+ * En faktor i poängsättningen, t.ex. kusk, form eller spår.
+ *
+ * value ska bara bero på de inputs faktorn deklarerar; {@link FactorEngine}
+ * cachar värdena på just dem. Värdena ligger som de inbyggda på ungefär
+ * 0..10 och vägs ihop av motorn, inte av faktorn.
+ */
+public interface ScoringFactor {
+
+    /** Unikt namn, t.ex. "driver". Används när vikter sätts per faktor. */
+    String name();
+
+    Set<FactorInput> inputs();
+
+    double value(Entry entry, RaceToAnalyze race);
+}
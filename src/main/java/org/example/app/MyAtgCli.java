@@ -1,16 +1,44 @@
 package org.example.app;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.BatchScorer;
+import org.example.analysis.CardBatchAnalyzer;
 import org.example.analysis.RaceAnalyzer;
 import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.atg.AtgBatchConverter;
+import org.example.atg.AtgDayFetcher;
 import org.example.atg.AtgParser;
+import org.example.atg.AtgResultIngester;
+import org.example.atg.GameType;
+import org.example.backtest.Backtester;
+import org.example.backtest.WeightTuner;
 import org.example.domain.*;
+import org.example.history.HistoryStore;
+import org.example.history.RatingEngine;
+import org.example.live.CardAnalysis;
+import org.example.live.CardDelta;
+import org.example.live.CardWatcher;
+import org.example.server.AnalysisServer;
+import org.example.system.RowFileWriter;
+import org.example.system.RowReducer;
+import org.example.system.SystemBuilder.BuiltSystem;
+import org.example.system.ValueAnalyzer;
+import org.example.system.ValueAnalyzer.CardValue;
+import org.example.system.ValueAnalyzer.SystemValue;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * CLI för MyAtgWinner
@@ -28,10 +56,89 @@ import java.util.Map;
  *         --convert V75 v75-2025-11-02.json
  *
  *       Skriver ut converted-<SPELFORM>-<DATUM>.json
+ *       Med --binary sist skrivs i stället det kompakta binärformatet converted-<SPELFORM>-<DATUM>.rcb
  *
- *   --analyze <RaceCard.json>
- *       Kör vår ranking på en RaceCard-fil som har fält:
+ *   --convert-all <KATALOG> [TRÅDAR]
+ *       Konvertera alla råfiler i en katalog parallellt (spelform ur filnamn eller root.id).
+ *       Skriver converted-*.json i samma katalog och en sammanfattning (filer/s, MB/s).
+ *
+ *   --ingest <RÅFIL.json|KATALOG> [HISTORIK]
+ *       Läs in avgjorda lopp (rådata med result per start) i hästhistoriken
+ *       (standard katalogen history/): placering, km-tid, galopp och spår.
+ *       Nya starter läggs till, redan inlästa hoppas över. Konverteringar
+ *       fyller sedan i lastRaces ur history/. Varje nytt lopp uppdaterar också
+ *       hästarnas, kuskarnas och tränarnas rating (history/ratings.bin), som
+ *       analysen använder i stället för det manuella kuskbetyget. Omgångens
+ *       facit skrivs som results-<SPELFORM>-<DATUM>.json bredvid råfilen, för
+ *       --backtest och --tune.
+ *
+ *   --fetch <SPELFORM|ALL> <DATUM>
+ *       Hämta omgången/omgångarna direkt från ATG:s API och konvertera i samma svep.
+ *       Svaren cachas i .atg-cache/ (avgjorda omgångar hämtas aldrig igen).
+ *       Ex:
+ *         --fetch V86 2025-10-29
+ *         --fetch ALL 2025-11-02
+ *
+ *   --analyze <RaceCard.json|RaceCard.rcb|KATALOG|GLOB>... [--json] [--threads N]
+ *       Kör vår ranking på en eller flera RaceCard-filer som har fält:
  *         gameType, date, races[] { raceNumber, track, starters[] { horse{driver{rating}}}}
+ *       Binära .rcb-filer känns igen automatiskt. Flera filer, en katalog
+ *       (converted-*.json och *.rcb) eller ett mönster som "arkiv/converted-V86-*.json"
+ *       analyseras parallellt (standard en tråd per kärna) och skrivs ut i filordning,
+ *       som text eller med --json som en JSON-array med ett objekt per kort.
+ *
+ *   --simulate <RaceCard.json|.rcb> [PRECISION]
+ *       Monte Carlo-simulering av omgången: vinst- och platschans per häst samt
+ *       chansen att våra ettor vinner alla lopp. Kör tills alla vinstchanser är
+ *       kända med ±PRECISION (standard 0.002) eller max 20 miljoner omgångar.
+ *
+ *   --system <RaceCard.json|.rcb> <BUDGET>
+ *       Bygg ett system (spikar och garderingar) som maximerar chansen för
+ *       alla rätt inom BUDGET kronor, med spelformens radpris (V86 0.25 kr osv).
+ *       Ex:
+ *         --system converted-V86-2025-10-29.json 500
+ *
+ *   --value <RaceCard.json|.rcb> [BUDGET]
+ *       Jämför våra vinstchanser med publikens spelprocent (eller odds):
+ *       under-/överstreckade hästar, spelvärde på vinnare och förväntad
+ *       återbetalning för systemet som --system bygger (standard 500 kr).
+ *
+ *   --reduce <RaceCard.json|.rcb> <BUDGET> [MAXFEL] [UTFIL]
+ *       Bygg det fulla systemet för BUDGET kronor (som --system) och reducera
+ *       det till färre rader med garanti: finns vinnarraden i det fulla systemet
+ *       har någon reducerad rad högst MAXFEL fel (standard 1).
+ *       Raderna skrivs strömmande till UTFIL (standard reduced-<SPELFORM>-<DATUM>.txt).
+ *       Ex:
+ *         --reduce converted-V86-2025-10-29.json 2000 1
+ *
+ *   --backtest <KATALOG> [TRÅDAR]
+ *       Spela upp arkiverade omgångar (converted-X.json|.rcb + results-X.json)
+ *       genom vår ranking: träffprocent, topp 3, ROI och rangkorrelation.
+ *       Med manuella kuskbetyg: history/ratings.bin har lärt sig av samma lopp.
+ *       Spårstatistiken räknas per omgång ur history/ före omgångens datum.
+ *
+ *   --tune <KATALOG> [KANDIDATER] [UTFIL]
+ *       Sök bättre vikter för ScoreCalculator mot samma arkiv (slumpsökning med
+ *       KANDIDATER förslag, standard 5000, sedan koordinatsökning) och skriv dem
+ *       till UTFIL (standard config/score-weights.json), som analysen sedan läser.
+ *       Loppfaktorerna (upplopp, distans, startmetod, galopp och spårstatistik
+ *       ur history/) tunas också. Med manuella kuskbetyg, som --backtest.
+ *
+ *   --live <RaceCard.json|.rcb> <BUDGET>
+ *       Analysera omgången och ta sedan emot sena ändringar på stdin, en per rad:
+ *         stryk <AVD> <STARTNR>
+ *         kusk <AVD> <STARTNR> <KUSK>
+ *         budget <KRONOR>
+ *         system
+ *       Bara den ändrade avdelningen poängsätts om; systemet byggs om direkt.
+ *
+ *   --watch <KATALOG> [TRÅDAR]
+ *       Bevaka katalogen: nya råfiler konverteras och nya converted-*.json|.rcb
+ *       analyseras till analysis-<SPELFORM>-<DATUM>.txt. Körs tills Ctrl-C.
+ *
+ *   --serve [PORT]
+ *       Starta analysservern (standard port 8080): ladda upp/konvertera kort,
+ *       ranking, simulering och system som JSON över HTTP. Körs tills Ctrl-C.
  */
 public class MyAtgCli {
 
@@ -48,13 +155,43 @@ public class MyAtgCli {
 
                 case "--convert" -> {
                     if (args.length < 3) {
-                        System.err.println("Använd: --convert <SPELFORM> <FIL.json>");
+                        System.err.println("Använd: --convert <SPELFORM> <FIL.json> [--binary]");
                         System.err.println("Ex: --convert V86 v86-2025-10-29.json");
                         return;
                     }
                     String gameType = args[1];    // V86, V75, V64, V65, V5, V4, osv
                     String fileName = args[2];    // t.ex. v86-2025-10-29.json
-                    AtgParser.convert(gameType, fileName);
+                    boolean binary = args.length > 3 && "--binary".equals(args[3]);
+                    AtgParser.convert(gameType, fileName, binary ? RaceCardFormat.BINARY : RaceCardFormat.JSON, history());
+                }
+
+                case "--convert-all" -> {
+                    if (args.length < 2) {
+                        System.err.println("Använd: --convert-all <KATALOG> [TRÅDAR]");
+                        return;
+                    }
+                    int threads = args.length > 2
+                            ? Integer.parseInt(args[2])
+                            : Runtime.getRuntime().availableProcessors();
+                    AtgBatchConverter.convertAll(args[1], threads, history());
+                }
+
+                case "--ingest" -> {
+                    if (args.length < 2) {
+                        System.err.println("Använd: --ingest <RÅFIL.json|KATALOG> [HISTORIK]");
+                        return;
+                    }
+                    Path dir = args.length > 2 ? Path.of(args[2]) : HistoryStore.DEFAULT_DIR;
+                    AtgResultIngester.ingestResults(args[1], dir);
+                }
+
+                case "--fetch" -> {
+                    if (args.length < 3) {
+                        System.err.println("Använd: --fetch <SPELFORM|ALL> <DATUM>");
+                        System.err.println("Ex: --fetch V86 2025-10-29");
+                        return;
+                    }
+                    AtgDayFetcher.fetch(args[1], args[2], Path.of(".atg-cache"), history());
                 }
 
                 case "--analyze" -> {
@@ -62,9 +199,87 @@ public class MyAtgCli {
                         System.err.println("Ange fil, ex: --analyze converted-V86-2025-10-29.json");
                         return;
                     }
-                    analyzeFile(args[1]);
+                    analyzeFiles(Arrays.copyOfRange(args, 1, args.length));
+                }
+
+                case "--simulate" -> {
+                    if (args.length < 2) {
+                        System.err.println("Ange fil, ex: --simulate converted-V86-2025-10-29.json [0.002]");
+                        return;
+                    }
+                    double precision = args.length > 2 ? Double.parseDouble(args[2]) : 0.002;
+                    simulateFile(args[1], precision);
+                }
+
+                case "--system" -> {
+                    if (args.length < 3) {
+                        System.err.println("Använd: --system <FIL> <BUDGET>");
+                        System.err.println("Ex: --system converted-V86-2025-10-29.json 500");
+                        return;
+                    }
+                    systemFile(args[1], Double.parseDouble(args[2]));
+                }
+
+                case "--value" -> {
+                    if (args.length < 2) {
+                        System.err.println("Använd: --value <FIL> [BUDGET]");
+                        return;
+                    }
+                    valueFile(args[1], args.length > 2 ? Double.parseDouble(args[2]) : 500);
+                }
+
+                case "--reduce" -> {
+                    if (args.length < 3) {
+                        System.err.println("Använd: --reduce <FIL> <BUDGET> [MAXFEL] [UTFIL]");
+                        System.err.println("Ex: --reduce converted-V86-2025-10-29.json 2000 1");
+                        return;
+                    }
+                    int maxErrors = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+                    String outFile = args.length > 4 ? args[4] : null;
+                    reduceFile(args[1], Double.parseDouble(args[2]), maxErrors, outFile);
+                }
+
+                case "--backtest" -> {
+                    if (args.length < 2) {
+                        System.err.println("Använd: --backtest <KATALOG> [TRÅDAR]");
+                        return;
+                    }
+                    int threads = args.length > 2
+                            ? Integer.parseInt(args[2])
+                            : Runtime.getRuntime().availableProcessors();
+                    Backtester.backtest(args[1], threads, weights(), history());
                 }
 
+                case "--tune" -> {
+                    if (args.length < 2) {
+                        System.err.println("Använd: --tune <KATALOG> [KANDIDATER] [UTFIL]");
+                        return;
+                    }
+                    int candidates = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+                    Path out = args.length > 3 ? Path.of(args[3]) : ScoreWeights.DEFAULT_FILE;
+                    WeightTuner.tune(args[1], candidates, weights(), history(), out);
+                }
+
+                case "--live" -> {
+                    if (args.length < 3) {
+                        System.err.println("Använd: --live <FIL> <BUDGET>");
+                        return;
+                    }
+                    liveFile(args[1], Double.parseDouble(args[2]));
+                }
+
+                case "--watch" -> {
+                    if (args.length < 2) {
+                        System.err.println("Använd: --watch <KATALOG> [TRÅDAR]");
+                        return;
+                    }
+                    int threads = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+                    CardWatcher.watch(args[1], threads, history(), new RaceAnalyzer(calculator()));
+                }
+
+                case "--serve" -> AnalysisServer.serve(args.length > 1 ? Integer.parseInt(args[1]) : 8080,
+                        history(), new BatchScorer(calculator()));
+
                 default -> printHelp();
             }
         } catch (Exception e) {
@@ -88,11 +303,53 @@ public class MyAtgCli {
                     java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --convert V5  v5-2025-11-03.json
                     java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --convert V75 v75-2025-11-02.json
 
-                  (Kommandot skriver ut converted-<SPELFORM>-<DATUM>.json)
+                  (Kommandot skriver ut converted-<SPELFORM>-<DATUM>.json, eller .rcb med --binary sist)
+
+                  Konvertera ett helt arkiv av sparade rådatafiler parallellt:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --convert-all arkiv/
+
+                  Läs in resultat från avgjorda omgångar i hästhistoriken och ratingen (history/):
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --ingest resultat/
+
+                  Hämta och konvertera direkt från ATG (en spelform eller ALL för hela dagen):
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --fetch V86 2025-10-29
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --fetch ALL 2025-11-02
 
                   Analysera en konverterad omgång:
                     java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --analyze converted-V86-2025-10-29.json
 
+                  Analysera ett helt arkiv parallellt, som JSON:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --analyze "arkiv/converted-*.json" --json
+
+
+                  Simulera vinst-/platschanser för en konverterad omgång:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --simulate converted-V86-2025-10-29.json
+
+                  Bygg ett system för 500 kr:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --system converted-V86-2025-10-29.json 500
+
+                  Hitta understreckade hästar och systemets spelvärde:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --value converted-V86-2025-10-29.json 500
+
+                  Reducera ett större system till max 1 fel och skriv radfilen:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --reduce converted-V86-2025-10-29.json 2000 1
+
+                  Backtesta rankingen mot ett arkiv med facit (results-*.json):
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --backtest arkiv/
+
+                  Tuna vikterna mot arkivet (skriver config/score-weights.json som analysen läser):
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --tune arkiv/
+
+                  Live under tävlingsdagen (strykningar/kuskbyten på stdin):
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --live converted-V86-2025-10-29.json 500
+
+                  Bevaka en katalog och konvertera/analysera nya filer automatiskt:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --watch omgangar/
+
+                  Starta analysservern och fråga den över HTTP:
+                    java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --serve 8080
+                    curl --data-binary @v86-2025-10-29.json localhost:8080/convert/V86
+                    curl 'localhost:8080/cards/V86-2025-10-29/system?budget=500'
 
                 Flöde per omgång:
                   1. På atg.se → DevTools/Network → välj spelet (V64, V75, V86...) → Copy response → spara som t.ex. v64-2025-11-02.json
@@ -101,51 +358,239 @@ public class MyAtgCli {
                 """);
     }
 
+    /* === Filer i arbetskatalogen: bara CLI:t läser dem, biblioteket får dem som parametrar === */
+
+    /** config/score-weights.json från --tune, annars standardvikterna. */
+    private static ScoreWeights weights() {
+        return ScoreWeights.loadOrDefaults(ScoreWeights.DEFAULT_FILE);
+    }
+
+    /** Ratings från --ingest (history/ratings.bin), eller null = manuella kuskbetyg. */
+    private static RatingEngine.Snapshot ratings() {
+        Path file = HistoryStore.DEFAULT_DIR.resolve(RatingEngine.FILE_NAME);
+        return Files.isRegularFile(file) ? RatingEngine.load(file).snapshot() : null;
+    }
+
+    /** Historiken från --ingest (history/), eller null. Katalogen skapas inte. */
+    private static HistoryStore history() {
+        return Files.isDirectory(HistoryStore.DEFAULT_DIR) ? HistoryStore.open(HistoryStore.DEFAULT_DIR) : null;
+    }
+
+    /** Vikter, ratings och (om vikten inte är 0) spårstatistik ur history/. */
+    private static ScoreCalculator calculator() {
+        ScoreWeights w = weights();
+        HistoryStore history = w.postStatsWeight() == 0 ? null : history();
+        return new ScoreCalculator(w, ratings(), history == null ? null : history.postPositionStats());
+    }
+
     /* === --list-drivers === */
     private static void listDrivers() {
-        Map<String, Driver> drivers = DriverLoader.loadDrivers();
+        NameIndex<Driver> drivers = DriverLoader.loadDrivers();
         System.out.println("=== Kuskar i drivers.json ===");
         drivers.values().forEach(d ->
                 System.out.printf("%-20s rating %d/5%n", d.name(), d.rating()));
     }
 
-    /* === --analyze FILE.json === */
-    private static void analyzeFile(String filename) throws IOException {
+    /* === --analyze FILE.json... [--json] [--threads N] === */
+    private static void analyzeFiles(String[] args) throws IOException {
+        List<String> files = new ArrayList<>();
+        CardBatchAnalyzer.Format format = CardBatchAnalyzer.Format.TEXT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--json" -> format = CardBatchAnalyzer.Format.JSON;
+                case "--threads" -> {
+                    if (i + 1 == args.length) {
+                        System.err.println("--threads behöver ett antal, ex: --threads 8");
+                        return;
+                    }
+                    threads = Integer.parseInt(args[++i]);
+                }
+                default -> files.add(args[i]);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Ange fil, ex: --analyze converted-V86-2025-10-29.json");
+            return;
+        }
+        CardBatchAnalyzer.analyzeAll(files, format, threads, new RaceAnalyzer(calculator()));
+    }
+
+    /* === --simulate FILE.json [PRECISION] === */
+    private static void simulateFile(String filename, double precision) throws IOException {
         File file = new File(filename);
         if (!file.exists()) {
             System.err.println("Filen finns inte: " + filename);
             return;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        RaceCard card = mapper.readValue(file, new TypeReference<>() {});
-        RaceAnalyzer analyzer = new RaceAnalyzer();
+        RaceCard card = RaceCardLoader.load(file.toPath());
+        ScoreBatch batch = ScoreBatch.of(card);
+        new BatchScorer(calculator()).scoreAndRank(batch);
 
-        System.out.println("=== Analys för " + card.gameType() + " " + card.date() + " ===");
+        RaceSimulator sim = new RaceSimulator();
+        long start = System.nanoTime();
+        RaceSimulator.SimulationResult res = sim.simulateUntil(batch, precision, 1_000_000, 20_000_000, 1L, null);
+        double ms = (System.nanoTime() - start) / 1e6;
 
-        for (RaceToAnalyze race : card.races()) {
-            List<EntryScore> ranking = analyzer.rankRace(race);
+        System.out.println("=== Simulering för " + card.gameType() + " " + card.date() + " ===");
+        System.out.printf("%,d omgångar på %.0f ms (±%.4f)%n", res.simulations(), ms, res.maxHalfWidth());
 
+        for (int r = 0; r < batch.raceCount(); r++) {
+            RaceToAnalyze race = card.races().get(r);
             System.out.println("\nLopp " + race.raceNumber() + " (" + race.track().name() + "):");
+            for (int k = 0; k < batch.starters(r); k++) {
+                int i = batch.ranked(r, k);
+                System.out.printf("Spår %2d | %-18s | Score %5.2f | Vinst %5.1f%% | Plats %5.1f%%%n",
+                        batch.startNumber(i),
+                        batch.entry(i).horse().name(),
+                        batch.score(i),
+                        res.win()[i] * 100,
+                        res.place()[i] * 100);
+            }
+        }
+
+        System.out.printf("%nChans att alla våra ettor vinner: %.4f%%%n", res.allTopPicksWin() * 100);
+    }
 
-            ranking.forEach(es -> {
-                Entry e = es.entry();
-                Horse h = e.horse();
-                Driver d = h.driver();
-
-                System.out.printf(
-                        "Spår %2d | %-18s | %-18s (%d/5) | Score %.2f%n",
-                        e.startNumber(),
-                        h.name(),
-                        d.name(),
-                        d.rating(),
-                        es.score()
-                );
-            });
-        }
-
-        System.out.println("\nTips:");
-        System.out.println("- Spik?: topphästen om den har klart högre score än tvåan.");
-        System.out.println("- Gardera?: om topp 3 ligger nära varandra i score.");
+    /* === --system FILE.json BUDGET === */
+    private static void systemFile(String filename, double budget) throws IOException {
+        File file = new File(filename);
+        if (!file.exists()) {
+            System.err.println("Filen finns inte: " + filename);
+            return;
+        }
+        WeekendSystemBuilder.printSystem(RaceCardLoader.load(file.toPath()), budget, new BatchScorer(calculator()));
+    }
+
+    /* === --value FILE.json [BUDGET] === */
+    private static void valueFile(String filename, double budget) throws IOException {
+        File file = new File(filename);
+        if (!file.exists()) {
+            System.err.println("Filen finns inte: " + filename);
+            return;
+        }
+
+        RaceCard card = RaceCardLoader.load(file.toPath());
+        BatchScorer scorer = new BatchScorer(calculator());
+        CardValue value = new ValueAnalyzer(scorer, ValueAnalyzer.DEFAULT_TOP_TIER_SHARE).analyze(card);
+        ScoreBatch batch = value.batch();
+
+        System.out.printf("=== Spelvärde för %s %s (omsättning %,.0f kr) ===%n",
+                card.gameType(), card.date(), card.turnover());
+        for (int r = 0; r < batch.raceCount(); r++) {
+            System.out.println("\nAvd " + (r + 1) + " (lopp " + batch.raceNumber(r) + "):");
+            for (int k = 0; k < batch.starters(r); k++) {
+                int i = batch.ranked(r, k);
+                double overlay = value.overlay(i);
+                String mark = overlay >= 1.5 ? " ▲" : overlay <= 0.67 ? " ▼" : "";
+                System.out.printf("Spår %2d | %-18s | Vår %5.1f%% | Publik %5.1f%% | p/q %5.2f | Odds %6.2f | EV %s%s%n",
+                        batch.startNumber(i),
+                        batch.entry(i).horse().name(),
+                        value.modelProbability(i) * 100,
+                        value.publicShare(i) * 100,
+                        overlay,
+                        batch.entry(i).winOdds(),
+                        Double.isNaN(value.winEv(i)) ? "   -  " : String.format("%+6.2f", value.winEv(i)),
+                        mark);
+            }
+        }
+
+        System.out.println();
+        BuiltSystem system = WeekendSystemBuilder.printSystem(card, budget, scorer);
+        SystemValue sv = value.value(system.coupon());
+        System.out.printf("Publikens andel av raderna: %.6f%% | Förväntad återbetalning: %.2f kr | Värde: %.2f%n",
+                sv.publicShare() * 100, sv.expectedReturn(), sv.valueRatio());
+    }
+
+    /* === --reduce FILE.json BUDGET [MAXFEL] [UTFIL] === */
+    private static void reduceFile(String filename, double budget, int maxErrors, String outFile) throws IOException {
+        File file = new File(filename);
+        if (!file.exists()) {
+            System.err.println("Filen finns inte: " + filename);
+            return;
+        }
+
+        RaceCard card = RaceCardLoader.load(file.toPath());
+        BuiltSystem system = WeekendSystemBuilder.printSystem(card, budget, new BatchScorer(calculator()));
+        double rowPrice = GameType.parse(card.gameType()).rowPrice();
+        Path out = Path.of(outFile != null ? outFile : "reduced-" + card.gameType() + "-" + card.date() + ".txt");
+
+        long start = System.nanoTime();
+        RowReducer.Result res;
+        try (RowFileWriter writer = new RowFileWriter(out, system.coupon().legs())) {
+            res = new RowReducer(maxErrors).reduce(system.coupon(), writer);
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%n=== Reducerat till max %d fel ===%n", res.maxErrors());
+        System.out.printf("Rader: %,d -> %,d (%.1f%%) | Kostnad: %.2f kr | (%.0f ms)%n",
+                res.fullRows(), res.reducedRows(), res.ratio() * 100, res.reducedRows() * rowPrice, ms);
+        System.out.println("✅ Skrev " + out);
+    }
+
+    /* === --live FILE.json BUDGET === */
+    private static void liveFile(String filename, double budget) throws IOException {
+        File file = new File(filename);
+        if (!file.exists()) {
+            System.err.println("Filen finns inte: " + filename);
+            return;
+        }
+
+        RaceCard card = RaceCardLoader.load(file.toPath());
+        NameIndex<Driver> drivers = DriverLoader.loadDrivers();
+        ScoreCalculator calc = calculator();
+        CardAnalysis analysis = CardAnalysis.of(card, calc, budget);
+
+        System.out.println("=== Live för " + card.gameType() + " " + card.date() + " ===");
+        for (int leg = 1; leg <= analysis.legs(); leg++) {
+            printLeg(analysis, leg, calc);
+        }
+        printLiveSystem(analysis.system());
+        System.out.println("\nÄndringar: stryk <AVD> <NR> | kusk <AVD> <NR> <NAMN> | budget <KR> | system | sluta");
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.equals("sluta") || line.equals("q")) break;
+            try {
+                if (line.equals("system")) {
+                    printLiveSystem(analysis.system());
+                } else if (line.startsWith("budget ")) {
+                    printLiveSystem(analysis.setBudget(Double.parseDouble(line.substring(7).trim())));
+                } else {
+                    CardAnalysis.Update u = analysis.apply(CardDelta.parse(line, drivers));
+                    System.out.printf("(%.2f ms)%n", u.nanos() / 1e6);
+                    printLeg(analysis, u.delta().leg(), calc);
+                    printLiveSystem(u.system());
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("⚠ " + e.getMessage());
+            }
+        }
+    }
+
+    /** Kuskbetyget som visas är det poängsättningen använde (inlärt eller manuellt). */
+    private static void printLeg(CardAnalysis analysis, int leg, ScoreCalculator calc) {
+        List<EntryScore> ranking = analysis.ranking(leg);
+        double[] p = analysis.winProbabilities(leg);
+        System.out.println("\nAvd " + leg + " (lopp " + analysis.race(leg).raceNumber() + "):");
+        for (int k = 0; k < ranking.size(); k++) {
+            Entry e = ranking.get(k).entry();
+            System.out.printf("Spår %2d | %-18s | %-18s (%.1f/5) | Score %5.2f | Vinst %5.1f%%%n",
+                    e.startNumber(), e.horse().name(), e.horse().driver().name(), calc.driverRating(e.horse().driver()),
+                    ranking.get(k).score(), p[k] * 100);
+        }
+    }
+
+    private static void printLiveSystem(BuiltSystem system) {
+        if (system == null) {
+            System.out.println("\nInget system (budgeten räcker inte till en rad).");
+            return;
+        }
+        System.out.printf("%nSystem: %s%nRader: %,d | Kostnad: %.2f kr | Chans för alla rätt: %.4f%%%n",
+                system.coupon(), system.rows(), system.cost(), system.hitProbability() * 100);
     }
 }
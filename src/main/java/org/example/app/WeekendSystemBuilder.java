@@ -1,23 +1,29 @@
 package org.example.app;
 
+import org.example.analysis.BatchScorer;
 import org.example.analysis.RaceAnalyzer;
 import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.atg.GameType;
 import org.example.domain.*;
+import org.example.system.SystemBuilder;
+import org.example.system.SystemBuilder.BuiltSystem;
+import org.example.system.SystemProbability;
 
 import java.util.List;
-import java.util.Map;
 
 public class WeekendSystemBuilder {
 
     public static void main(String[] args) {
         // === 1. Läs in kuskbetyg ===
-        Map<String, Driver> driverMap = DriverLoader.loadDrivers();
-        System.out.println("Läste in " + driverMap.size() + " kuskar från drivers.json");
+        NameIndex<Driver> drivers = DriverLoader.loadDrivers();
+        System.out.println("Läste in " + drivers.size() + " kuskar från drivers.json");
 
         // === 2. Hämta kuskar med lookup ===
-        Driver kilstrom = DriverLoader.find(driverMap, "Örjan Kihlström");
-        Driver goop     = DriverLoader.find(driverMap, "Björn Goop");
-        Driver random   = DriverLoader.find(driverMap, "Olle Okänd");
+        Driver kilstrom = DriverLoader.find(drivers, "Örjan Kihlström");
+        Driver goop     = DriverLoader.find(drivers, "Björn Goop");
+        Driver random   = DriverLoader.find(drivers, "Olle Okänd");
 
         // Resten av koden som tidigare...
         // 2. Bygg hästar
@@ -99,5 +105,61 @@ public class WeekendSystemBuilder {
         System.out.println("\nTips:");
         System.out.println("- Spik?: ta #1 i rank om den har tydligt högre score än #2");
         System.out.println("- Gardera?: om topp 3 ligger nära varandra i score\n");
+
+        // 6. Bygg ett system (spikar/garderingar) inom budget
+        printSystem(card, 1.0);
+    }
+
+    /**
+     * Bygger och skriver ut bästa systemet för kortet inom budget (kronor).
+     * Vinstchanserna kommer från våra score (se {@link RaceSimulator#winProbabilities}).
+     */
+    public static BuiltSystem printSystem(RaceCard card, double budget) {
+        return printSystem(card, budget, new BatchScorer());
+    }
+
+    /** Som ovan, poängsatt med scorer. */
+    public static BuiltSystem printSystem(RaceCard card, double budget, BatchScorer scorer) {
+        GameType type = GameType.parse(card.gameType());
+        ScoreBatch batch = ScoreBatch.of(card);
+        scorer.scoreAndRank(batch);
+        double[] winProb = new RaceSimulator().winProbabilities(batch);
+
+        long start = System.nanoTime();
+        BuiltSystem system = new SystemBuilder().build(batch, winProb, budget, type.rowPrice());
+        double ms = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("=== System för %s %s, budget %.2f kr (%.2f kr/rad) ===%n",
+                card.gameType(), card.date(), budget, type.rowPrice());
+
+        for (int r = 0; r < batch.raceCount(); r++) {
+            int[] numbers = system.coupon().startNumbers(r);
+            double legProb = 0;
+            for (int k = 0; k < system.picks()[r]; k++) {
+                legProb += winProb[batch.ranked(r, k)];
+            }
+            String kind = system.coupon().isSpik(r) ? "Spik" : "Gardering";
+            StringBuilder horses = new StringBuilder();
+            for (int k = 0; k < system.picks()[r]; k++) {
+                int i = batch.ranked(r, k);
+                if (k > 0) horses.append(", ");
+                horses.append(batch.startNumber(i)).append(' ').append(batch.entry(i).horse().name());
+            }
+            System.out.printf("Avd %d (lopp %2d) | %-9s | %2d st | %5.1f%% | %s%n",
+                    r + 1, batch.raceNumber(r), kind, numbers.length, legProb * 100, horses);
+        }
+
+        System.out.printf("%nRader: %,d | Kostnad: %.2f kr | Chans för alla rätt: %.4f%% | (%.1f ms)%n",
+                system.rows(), system.cost(), system.hitProbability() * 100, ms);
+        double[] errors = new SystemProbability(Math.min(2, batch.raceCount() - 1))
+                .errors(batch, winProb, system.coupon());
+        StringBuilder tiers = new StringBuilder();
+        for (int e = 0; e < errors.length; e++) {
+            if (e > 0) tiers.append(" | ");
+            tiers.append(String.format("%d rätt: %.4f%%", batch.raceCount() - e, errors[e] * 100));
+        }
+        System.out.println(tiers);
+        System.out.println("Kupong: " + system.coupon());
+        return system;
     }
 }
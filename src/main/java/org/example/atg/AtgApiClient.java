@@ -1,20 +1,64 @@
 package org.example.atg;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
 /**
  * ATG API via Java HttpClient med headers som efterliknar en riktig webbläsare.
+ *
+ * Många endpoints kan hämtas samtidigt med {@link #fetchAll}: en virtuell
+ * tråd per endpoint och en semafor som begränsar antalet anrop i luften.
+ *
+ * Med en {@link AtgResponseCache} sparas svaren komprimerat på disk och
+ * revalideras med ETag/Last-Modified i stället för att laddas ner på nytt.
  */
 public class AtgApiClient implements AutoCloseable {
 
 	private static final String BASE_URL = "https://api.atg.se/";
+
+    /** Standard för hur många anrop som får vara i luften samtidigt. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
     private final HttpClient client;
+    private final String baseUrl;
+    private final AtgResponseCache cache;
 
     public AtgApiClient() {
+        this(BASE_URL);
+    }
+
+    /** Mot api.atg.se med svarscache. */
+    public AtgApiClient(AtgResponseCache cache) {
+        this(BASE_URL, cache);
+    }
+
+    /**
+     * @param baseUrl t.ex. "http://localhost:8080/" mot en lokal stubbserver
+     */
+    public AtgApiClient(String baseUrl) {
+        this(baseUrl, null);
+    }
+
+    /**
+     * @param cache svarscache, eller null för att alltid hämta från nätet
+     */
+    public AtgApiClient(String baseUrl, AtgResponseCache cache) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.cache = cache;
         this.client = HttpClient.newBuilder()
                 .version(HttpClient.Version.HTTP_2)
                 .followRedirects(HttpClient.Redirect.NORMAL)
@@ -22,9 +66,22 @@ public class AtgApiClient implements AutoCloseable {
     }
 
     private String fetch(String endpoint) throws IOException, InterruptedException {
-        String url = BASE_URL + endpoint;
+        try (InputStream in = open(endpoint)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
+    // Öppnar svaret som ström; via cachen om en sådan är satt
+    private InputStream open(String endpoint) throws IOException, InterruptedException {
+        String url = baseUrl + endpoint;
+
+        AtgResponseCache.Entry cached = cache != null ? cache.lookup(endpoint) : null;
+        if (cached != null && cache.isFresh(endpoint, cached)) {
+            System.out.println("💾 Från cache: " + endpoint);
+            return cache.open(cached);
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 // viktiga headers för att likna en vanlig browser
                 .header("Accept", "application/json, text/plain, */*")
@@ -38,32 +95,151 @@ public class AtgApiClient implements AutoCloseable {
                 .header("Sec-Fetch-Site", "same-origin")
                 .header("Sec-Fetch-Mode", "cors")
                 .header("Sec-Fetch-Dest", "empty")
-                .GET()
-                .build();
+                .GET();
+
+        // revalidera: servern svarar 304 om inget ändrats
+        if (cached != null) {
+            if (cached.etag() != null) {
+                builder.header("If-None-Match", cached.etag());
+            }
+            if (cached.lastModified() != null) {
+                builder.header("If-Modified-Since", cached.lastModified());
+            }
+        }
 
         System.out.println("🔍 Hämtar från: " + url);
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<InputStream> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
 
         int status = response.statusCode();
         System.out.println("📡 ATG svar: " + status);
 
+        if (status == 304 && cached != null) {
+            response.body().close();
+            return cache.open(cache.touch(endpoint, cached));
+        }
+
         if (status != 200) {
-            System.out.println("❌ Feltext:\n" + response.body());
+            String body;
+            try (InputStream in = response.body()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            System.out.println("❌ Feltext:\n" + body);
             throw new IOException("ATG svarade " + status + " för " + endpoint);
         }
 
-        return response.body();
+        if (cache == null) {
+            return response.body();
+        }
+        try (InputStream in = response.body()) {
+            AtgResponseCache.Entry stored = cache.store(endpoint, in,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+            return cache.open(stored);
+        }
     }
 
     /** Hämtar kalendern med tillgängliga V86-omgångar. */
     public String getV86Calendar() throws IOException, InterruptedException {
-        return fetch("products/V86");
+        return getCalendar(GameType.V86);
     }
 
     /** Hämtar en specifik V86-omgångs detaljer (hästar, kuskar, banor...) */
     public String getV86ProductForDate(String date) throws IOException, InterruptedException {
-        return fetch("products/V86/" + date);
+        return getProduct(GameType.V86, date);
+    }
+
+    /** Kalendern med tillgängliga omgångar för en spelform. */
+    public String getCalendar(GameType type) throws IOException, InterruptedException {
+        return fetch(type.calendarEndpoint());
+    }
+
+    /** En spelforms omgång(ar) för ett datum; innehåller spel-id:n för {@link #openGame}. */
+    public String getProduct(GameType type, String date) throws IOException, InterruptedException {
+        return fetch(type.productEndpoint(date));
+    }
+
+    /**
+     * Ett helt spel (alla lopp och starter), t.ex. "V86_2025-10-29_40_1".
+     * Svaret kommer som ström och ska stängas av anroparen; det är samma
+     * format som {@link AtgParser} konverterar.
+     */
+    public InputStream openGame(String gameId) throws IOException, InterruptedException {
+        return open("games/" + gameId);
+    }
+
+    /** Ett enskilt lopp, t.ex. "2025-10-29_40_5". Ska stängas av anroparen. */
+    public InputStream openRace(String raceId) throws IOException, InterruptedException {
+        return open("races/" + raceId);
+    }
+
+    /** Hämtar flera V86-omgångar samtidigt, se {@link #fetchAll}. */
+    public List<FetchResult> getV86ProductsForDates(List<String> dates, int maxInFlight) {
+        return fetchAll(dates.stream().map(GameType.V86::productEndpoint).toList(), maxInFlight);
+    }
+
+    /**
+     * Hämtar alla endpoints samtidigt (högst maxInFlight åt gången) och
+     * returnerar svaren i den ordning de blev klara.
+     */
+    public List<FetchResult> fetchAll(List<String> endpoints, int maxInFlight) {
+        List<FetchResult> results = new ArrayList<>(endpoints.size());
+        fetchAll(endpoints, maxInFlight, results::add);
+        return results;
+    }
+
+    /**
+     * Hämtar alla endpoints med en virtuell tråd per endpoint, högst
+     * maxInFlight anrop i luften. onResult anropas i den anropande tråden,
+     * ett svar i taget, i den ordning svaren blir klara.
+     *
+     * Ett fel (HTTP-status eller nätverk) stoppar inte resten; det kommer
+     * tillbaka som ett FetchResult med error satt. Ett Error i en hämtning
+     * kommer tillbaka inslaget i en ExecutionException.
+     */
+    public void fetchAll(List<String> endpoints, int maxInFlight, Consumer<FetchResult> onResult) {
+        Semaphore inFlight = new Semaphore(Math.max(1, maxInFlight));
+        BlockingQueue<FetchResult> done = new LinkedBlockingQueue<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String endpoint : endpoints) {
+                executor.submit(() -> {
+                    FetchResult result;
+                    try {
+                        inFlight.acquire();
+                        try {
+                            result = new FetchResult(endpoint, fetch(endpoint), null);
+                        } finally {
+                            inFlight.release();
+                        }
+                    } catch (Throwable t) {
+                        if (t instanceof InterruptedException) {
+                            Thread.currentThread().interrupt();
+                        }
+                        // även ett Error måste ge ett svar, annars väntar done.take() för evigt
+                        result = new FetchResult(endpoint, null,
+                                t instanceof Exception e ? e : new ExecutionException(t));
+                    }
+                    done.add(result);
+                });
+            }
+
+            for (int i = 0; i < endpoints.size(); i++) {
+                onResult.accept(done.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Avbruten hämtning", e);
+        }
+    }
+
+    /**
+     * Svar från en endpoint i en bulk-hämtning. body är null om error är satt.
+     */
+    public record FetchResult(String endpoint, String body, Exception error) {
+        public boolean ok() {
+            return error == null;
+        }
     }
 
     @Override
@@ -0,0 +1,254 @@
+package org.example.atg;
+
+import org.example.analysis.ScoreWeights;
+import org.example.domain.Driver;
+import org.example.domain.DriverLoader;
+import org.example.domain.NameIndex;
+import org.example.domain.RaceCardFormat;
+import org.example.history.HistoryStore;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Konverterar en hel katalog med sparade ATG-rådatafiler parallellt.
+ *
+ * Spelform tas från filnamnet (v86-2025-10-29.json) eller, om det inte går,
+ * från root.id i filen ("V86_2025-10-29_40_1"). Datum tas som vanligt av
+ * {@link AtgParser} under konverteringen.
+ *
+ * Kusktabellen (och historiken, om en skickas med) läses en gång och delas
+ * av alla arbetstrådar.
+ *
+ * Två råfiler för samma spelform och dag skriver inte över varandra. Alla
+ * kort skrivs först till dolda mellanfiler och får sina namn när hela
+ * katalogen är konverterad, i råfilernas sökvägsordning: den första får
+ * converted-V86-2025-10-29.json, nästa -2 osv (se {@link OutputNames}).
+ * Samma arkiv ger alltså alltid samma kort under samma namn, oavsett vilken
+ * tråd som blir klar först.
+ */
+public class AtgBatchConverter {
+
+    private static final Pattern GAME_TYPE_IN_NAME = Pattern.compile("(?i)(?:^|[^a-z0-9])(v\\d{1,2})(?:[-_.]|$)");
+
+    private final NameIndex<Driver> knownDrivers;
+    private final HistoryStore history;
+    private final int threads;
+
+    public AtgBatchConverter(NameIndex<Driver> knownDrivers, int threads) {
+        this(knownDrivers, null, threads);
+    }
+
+    /** @param history hästarnas senaste starter, null = ingen historik */
+    public AtgBatchConverter(NameIndex<Driver> knownDrivers, HistoryStore history, int threads) {
+        this.knownDrivers = knownDrivers;
+        this.history = history;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** CLI: --convert-all <katalog> [trådar] */
+    public static void convertAll(String dir, int threads, HistoryStore history) {
+        AtgBatchConverter converter = new AtgBatchConverter(DriverLoader.loadDrivers(), history, threads);
+        Summary s = converter.convertDirectory(Path.of(dir));
+
+        System.out.printf(Locale.ROOT,
+                "✅ Konverterade %d filer (%d misslyckades, %d hoppades över) på %.2f s%n",
+                s.converted(), s.failed(), s.skipped(), s.seconds());
+        System.out.printf(Locale.ROOT,
+                "   %.1f filer/s, %.1f MB/s (%.1f MB rådata, %d trådar)%n",
+                s.filesPerSecond(), s.megabytesPerSecond(), s.bytes() / (1024.0 * 1024.0), converter.threads);
+    }
+
+    /**
+     * Konverterar alla råfiler i dir. converted-*.json skrivs i samma katalog.
+     */
+    public Summary convertDirectory(Path dir) {
+        List<Path> files = findRawFiles(dir);
+
+        AtomicInteger converted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        List<Staged> staged = Collections.synchronizedList(new ArrayList<>());
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, files.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        String gameType = detectGameType(file);
+                        if (gameType == null) {
+                            System.err.println("⚠ Kunde inte avgöra spelform för " + file.getFileName() + ", hoppar över");
+                            skipped.incrementAndGet();
+                            return;
+                        }
+                        long size = Files.size(file);
+                        Path[] wanted = new Path[1];
+                        Path out = AtgParser.convertFile(gameType, file, dir, RaceCardFormat.JSON, knownDrivers,
+                                history, target -> {
+                                    wanted[0] = target;
+                                    return target.resolveSibling(".staged-" + UUID.randomUUID() + "-"
+                                            + target.getFileName());
+                                });
+                        staged.add(new Staged(file, wanted[0], out));
+                        bytes.addAndGet(size);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        System.err.println("❌ " + file.getFileName() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+
+            // Namnen delas ut i sökvägsordning, inte i den ordning trådarna blev klara
+            OutputNames names = new OutputNames();
+            staged.sort(Comparator.comparing(Staged::source));
+            for (Staged st : staged) {
+                try {
+                    Path out = names.claim(st.target(), st.source());
+                    Files.move(st.file(), out, StandardCopyOption.REPLACE_EXISTING);
+                    converted.incrementAndGet();
+                    System.out.println("  " + st.source().getFileName() + " -> " + out.getFileName());
+                } catch (IOException e) {
+                    failed.incrementAndGet();
+                    System.err.println("❌ " + st.source().getFileName() + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Avbruten batchkonvertering av " + dir, e);
+        } catch (Exception e) {
+            throw new RuntimeException("Fel vid batchkonvertering av " + dir, e);
+        } finally {
+            pool.shutdown();
+            synchronized (staged) {
+                for (Staged st : staged) {
+                    try {
+                        Files.deleteIfExists(st.file());
+                    } catch (IOException ignored) {
+                        // en kvarglömd dold mellanfil skadar inget
+                    }
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Summary(converted.get(), failed.get(), skipped.get(), bytes.get(), seconds);
+    }
+
+    /** Råfilerna i dir, se {@link #isRawFile}. */
+    static List<Path> findRawFiles(Path dir) {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(Files::isRegularFile)
+                    .filter(AtgBatchConverter::isRawFile)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte lista " + dir, e);
+        }
+    }
+
+    /**
+     * Om filen (efter namnet) är sparad ATG-rådata: *.json som inte är våra
+     * egna filer (converted-*, analysis-*, results-*, score-weights.json)
+     * eller dolda/temporära (.*). Används av konverteringen, inläsningen av
+     * resultat och katalogbevakningen.
+     */
+    public static boolean isRawFile(Path file) {
+        String n = file.getFileName().toString();
+        return n.toLowerCase(Locale.ROOT).endsWith(".json")
+                && !n.startsWith(".")
+                && !n.startsWith("converted-")
+                && !n.startsWith("analysis-")
+                && !n.startsWith("results-")
+                && !n.equals(ScoreWeights.FILE_NAME);
+    }
+
+    /**
+     * Spelform ur filnamnet, annars ur root.id. null om ingen hittas.
+     */
+    public static String detectGameType(Path file) throws IOException {
+        Matcher m = GAME_TYPE_IN_NAME.matcher(file.getFileName().toString());
+        if (m.find()) {
+            return m.group(1).toUpperCase(Locale.ROOT);
+        }
+
+        // Läs bara fram till första loppet; root.id står normalt först
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+             AtgRaceReader reader = new AtgRaceReader(AtgParser.mapper(), in)) {
+            reader.nextRace();
+            return AtgParser.extractGameType(reader.id());
+        }
+    }
+
+    // Ett konverterat kort i sin mellanfil, innan det fått sitt namn
+    private record Staged(Path source, Path target, Path file) {}
+
+    /**
+     * Håller reda på vilken råfil som äger varje utfil, så att två råfiler
+     * som ger samma namn (samma spelform och dag) inte skriver över
+     * varandra. Samma råfil får alltid tillbaka sitt eget namn; vem som får
+     * grundnamnet avgörs av i vilken ordning claim anropas.
+     */
+    public static final class OutputNames {
+
+        private final Map<Path, Path> owners = new ConcurrentHashMap<>();
+
+        /** Utfilen för source: target, eller target-2, -3 ... om den redan ägs av en annan råfil. */
+        public Path claim(Path target, Path source) {
+            Path src = source.toAbsolutePath().normalize();
+            String name = target.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            for (int n = 1; ; n++) {
+                Path candidate = n == 1 ? target
+                        : target.resolveSibling(name.substring(0, dot) + "-" + n + name.substring(dot));
+                Path owner = owners.putIfAbsent(candidate, src);
+                if (owner == null || owner.equals(src)) {
+                    if (n > 1) {
+                        System.err.println("⚠ " + source.getFileName() + " ger samma omgång som "
+                                + owners.get(target).getFileName() + ", skriver " + candidate.getFileName());
+                    }
+                    return candidate;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resultat av en batchkörning.
+     */
+    public record Summary(int converted, int failed, int skipped, long bytes, double seconds) {
+
+        public double filesPerSecond() {
+            return seconds > 0 ? converted / seconds : 0;
+        }
+
+        public double megabytesPerSecond() {
+            return seconds > 0 ? bytes / (1024.0 * 1024.0) / seconds : 0;
+        }
+    }
+}
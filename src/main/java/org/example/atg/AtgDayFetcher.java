@@ -0,0 +1,154 @@
+package org.example.atg;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.example.domain.Driver;
+import org.example.domain.DriverLoader;
+import org.example.domain.NameIndex;
+import org.example.domain.RaceCardFormat;
+import org.example.history.HistoryStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Hämtar och konverterar en hel tävlingsdag i ett svep.
+ *
+ * 1. products/<SPELFORM>/<DATUM> (liten) ger spel-id:n, t.ex. "V86_2025-10-29_40_1"
+ * 2. games/<ID> (stor) strömmas rakt in i {@link AtgParser} utan att
+ *    läsas in som en String.
+ *
+ * Produkterna för flera spelformer hämtas samtidigt via {@link AtgApiClient#fetchAll}.
+ */
+public class AtgDayFetcher {
+
+    private final AtgApiClient client;
+    private final NameIndex<Driver> knownDrivers;
+    private final HistoryStore history;
+    private final Path outDir;
+
+    public AtgDayFetcher(AtgApiClient client, NameIndex<Driver> knownDrivers, Path outDir) {
+        this(client, knownDrivers, null, outDir);
+    }
+
+    /** @param history hästarnas senaste starter, null = ingen historik */
+    public AtgDayFetcher(AtgApiClient client, NameIndex<Driver> knownDrivers, HistoryStore history, Path outDir) {
+        this.client = client;
+        this.knownDrivers = knownDrivers;
+        this.history = history;
+        this.outDir = outDir;
+    }
+
+    /** CLI: --fetch <SPELFORM|ALL> <DATUM> */
+    public static void fetch(String gameType, String date, Path cacheDir, HistoryStore history) {
+        List<GameType> types = "ALL".equalsIgnoreCase(gameType)
+                ? Arrays.asList(GameType.values())
+                : List.of(GameType.parse(gameType));
+
+        try (AtgApiClient client = new AtgApiClient(new AtgResponseCache(cacheDir))) {
+            AtgDayFetcher fetcher = new AtgDayFetcher(client, DriverLoader.loadDrivers(), history, Path.of(""));
+            List<Path> files = fetcher.fetchAndConvert(types, date);
+
+            System.out.println("✅ Konverterade " + files.size() + " spel för " + date + ":");
+            files.forEach(f -> System.out.println("  " + f.getFileName()));
+        }
+    }
+
+    /**
+     * Hämtar produkterna för alla spelformer samtidigt och konverterar varje
+     * spel som hittas. Spelformer som inte går den dagen hoppas över.
+     */
+    public List<Path> fetchAndConvert(List<GameType> types, String date) {
+        List<String> endpoints = types.stream().map(t -> t.productEndpoint(date)).toList();
+        List<Path> out = new ArrayList<>();
+
+        // Produkterna är små; spelen strömmas ett i taget efteråt
+        Map<String, String> products = new HashMap<>();
+        client.fetchAll(endpoints, AtgApiClient.DEFAULT_MAX_IN_FLIGHT, r -> {
+            if (r.ok()) {
+                products.put(r.endpoint(), r.body());
+            } else {
+                System.err.println("⚠ Ingen omgång för " + r.endpoint() + ": " + r.error().getMessage());
+            }
+        });
+
+        for (GameType type : types) {
+            String product = products.get(type.productEndpoint(date));
+            if (product != null) {
+                out.addAll(convertGames(type, date, product));
+            }
+        }
+        return out;
+    }
+
+    /** Hämtar och konverterar alla spel för en spelform och ett datum. */
+    public List<Path> fetchAndConvert(GameType type, String date) {
+        try {
+            return convertGames(type, date, client.getProduct(type, date));
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte hämta " + type + " " + date, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Avbruten hämtning av " + type + " " + date, e);
+        }
+    }
+
+    private List<Path> convertGames(GameType type, String date, String productJson) {
+        List<String> gameIds = findGameIds(productJson, type, date);
+        if (gameIds.isEmpty()) {
+            System.err.println("⚠ Hittade inga " + type + "-spel för " + date);
+        }
+
+        List<Path> out = new ArrayList<>();
+        for (int i = 0; i < gameIds.size(); i++) {
+            String gameId = gameIds.get(i);
+            // Flera spel samma dag (t.ex. två V4) får löpnummer i filnamnet
+            String suffix = gameIds.size() > 1 ? Integer.toString(i + 1) : null;
+            try (InputStream in = client.openGame(gameId)) {
+                out.add(AtgParser.convertToFile(type.name(), in, outDir, suffix, RaceCardFormat.JSON, knownDrivers,
+                        history, UnaryOperator.identity()));
+            } catch (IOException e) {
+                System.err.println("❌ " + gameId + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Avbruten hämtning av " + gameId, e);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Alla "id"-fält i produktsvaret som ser ut som ett spel-id för
+     * spelformen och datumet, t.ex. "V86_2025-10-29_40_1".
+     */
+    static List<String> findGameIds(String productJson, GameType type, String date) {
+        String prefix = type.name() + "_" + date + "_";
+        Set<String> ids = new LinkedHashSet<>();
+        try {
+            collectIds(AtgParser.mapper().readTree(productJson), prefix, ids);
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte tolka produktsvar för " + type + " " + date, e);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private static void collectIds(JsonNode node, String prefix, Set<String> ids) {
+        if (node.isObject()) {
+            JsonNode id = node.get("id");
+            if (id != null && id.isTextual() && id.asText().startsWith(prefix)) {
+                ids.add(id.asText());
+            }
+        }
+        for (JsonNode child : node) {
+            collectIds(child, prefix, ids);
+        }
+    }
+}
@@ -2,15 +2,31 @@ package org.example.atg;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.example.domain.Driver;
 import org.example.domain.DriverLoader;
-
-import java.io.File;
+import org.example.domain.NameIndex;
+import org.example.domain.Entry;
+import org.example.domain.Horse;
+import org.example.domain.RaceCardFormat;
+import org.example.domain.RaceCardSink;
+import org.example.domain.RaceToAnalyze;
+import org.example.domain.Track;
+import org.example.domain.TrackLoader;
+import org.example.history.HistoryStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 /**
  * Konverterar ATG:s rådata (oavsett speltyp: V4, V5, V64, V65, V75, V86, osv)
@@ -33,136 +49,263 @@ import java.util.Map;
  *   track.name       -> bana
  *   starts[]         -> deltagare
  *
+ * root (valfritt):
+ *   pools.<SPEL>.turnover            -> omsättning (öre)
+ *
  * starts[] element:
  *   number           -> startspår
  *   horse.name       -> hästens namn
- *   horse.trainer    -> tränare
+ *   horse.trainer    -> tränare (sträng eller firstName / lastName)
  *   driver.firstName / driver.lastName  -> kusk
  *   (ibland driver.name istället)
+ *   pools.vinnare.odds               -> vinnarodds * 100
+ *   pools.<SPEL>.betDistribution     -> spelprocent * 100
  *
  * Om vissa fält saknas (t.ex. starts[] heter participants[]),
  * försöker vi fallbacka.
+ *
+ * Konverteringen strömmar: rådatan läses lopp för lopp med {@link AtgRaceReader}
+ * och varje lopp skrivs direkt till en {@link RaceCardSink} (JSON eller vårt
+ * binära format). Hela filen hålls alltså aldrig i minnet, varken som träd
+ * eller som sträng. På vägen fyller {@link TrackEnricher} i banprofilen
+ * (upplopp, snäv bana) ur tracks.json och, om en {@link HistoryStore} skickas
+ * med, {@link HistoryEnricher} hästarnas senaste starter ur historiken.
  */
 public class AtgParser {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
     /**
      * @param gameType   t.ex. "V64", "V75", "V86", "V4", "V5", "V65", "V85"
      * @param inputFile  filnamn på rå ATG JSON
      */
     public static void convert(String gameType, String inputFile) {
-        try {
-            // 1. Läs rå json
-            File inFile = new File(inputFile);
-            JsonNode root = MAPPER.readTree(inFile);
-
-            // 2. Försök hitta datum.
-            //    Vi har sett id i stil med: "V86_2025-10-29_40_1"
-            //    Vi försöker parsa ut YYYY-MM-DD ur root.id. Annars fall-back: första race.date.
-            String date = extractDate(root);
-
-            // 3. Ladda kusk ratings
-            Map<String, Driver> knownDrivers = DriverLoader.loadDrivers();
-
-            // 4. Bygg RaceCard-output
-            ObjectNode raceCardOut = MAPPER.createObjectNode();
-            raceCardOut.put("gameType", gameType);
-            raceCardOut.put("date", date);
-
-            var racesArrayOut = MAPPER.createArrayNode();
-
-            for (JsonNode raceNode : root.path("races")) {
-                // race info
-                int raceNumber = raceNode.path("number").asInt();
-                int distance = raceNode.path("distance").asInt();
-                String startMethod = raceNode.path("startMethod").asText();
-                boolean autoStart = isAutoStart(startMethod);
-
-                String trackName = raceNode.path("track").path("name").asText("?");
-
-                ObjectNode trackOut = MAPPER.createObjectNode();
-                trackOut.put("name", trackName);
-                // placeholder tills vi kopplar tracks.json:
-                trackOut.put("stretchLengthMeters", 0);
-                trackOut.put("isTightTrack", false);
-
-                ObjectNode raceOut = MAPPER.createObjectNode();
-                raceOut.put("raceNumber", raceNumber);
-                raceOut.set("track", trackOut);
-                raceOut.put("distanceMeters", distance);
-                raceOut.put("autoStart", autoStart);
-
-                // starters
-                var startersArrayOut = MAPPER.createArrayNode();
-
-                JsonNode startsNode = findStartsArray(raceNode);
-                if (startsNode != null && startsNode.isArray()) {
-                    for (JsonNode startNode : startsNode) {
-                        int startNumber = startNode.path("number").asInt();
-
-                        // horse
-                        JsonNode horseNode = startNode.path("horse");
-                        String horseName = horseNode.path("name").asText("?");
-                        String trainer = horseNode.path("trainer").asText("?");
-
-                        // driver
-                        JsonNode driverNode = startNode.path("driver");
-                        String driverFullName = extractDriverName(driverNode);
-                        int rating = lookupDriverRating(driverFullName, knownDrivers);
-
-                        ObjectNode driverOut = MAPPER.createObjectNode();
-                        driverOut.put("name", driverFullName);
-                        driverOut.put("rating", rating);
-
-                        // lastRaces -> tom tills vi gör historik
-                        var lastRacesArray = MAPPER.createArrayNode();
-
-                        ObjectNode horseOut = MAPPER.createObjectNode();
-                        horseOut.put("name", horseName);
-                        horseOut.put("trainer", trainer);
-                        horseOut.set("driver", driverOut);
-                        horseOut.set("lastRaces", lastRacesArray);
-
-                        ObjectNode starterOut = MAPPER.createObjectNode();
-                        starterOut.put("startNumber", startNumber);
-                        starterOut.set("horse", horseOut);
-
-                        startersArrayOut.add(starterOut);
-                    }
-                } else {
-                    System.err.println("⚠ Hittade inga starts/participants för lopp " + raceNumber);
-                }
+        convert(gameType, inputFile, RaceCardFormat.JSON);
+    }
 
-                raceOut.set("starters", startersArrayOut);
+    /**
+     * Som {@link #convert(String, String)} men med valfritt utformat
+     * (RaceCardFormat.BINARY ger converted-<speltyp>-<datum>.rcb).
+     */
+    public static void convert(String gameType, String inputFile, RaceCardFormat format) {
+        convert(gameType, inputFile, format, null);
+    }
 
-                racesArrayOut.add(raceOut);
-            }
+    /** Som ovan; hästarnas lastRaces fylls i ur history (null = ingen historik). */
+    public static void convert(String gameType, String inputFile, RaceCardFormat format, HistoryStore history) {
+        // Ladda kusk ratings
+        NameIndex<Driver> knownDrivers = DriverLoader.loadDrivers();
 
-            raceCardOut.set("races", racesArrayOut);
+        Path outPath = convertFile(gameType, Path.of(inputFile), Path.of(""), format, knownDrivers, history,
+                UnaryOperator.identity());
+        String outName = outPath.getFileName().toString();
 
-            // 5. Skriv fil
-            String safeDate = (date == null || date.isBlank()) ? "UNKNOWNDATE" : date;
-            String outName = "converted-" + gameType + "-" + safeDate + ".json";
-            Path outPath = Path.of(outName);
+        System.out.println("✅ Sparade konverterad fil: " + outName);
+        System.out.println("Analysera nu med:");
+        System.out.println("  java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --analyze " + outName);
+    }
 
-            String pretty = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(raceCardOut);
-            Files.writeString(outPath, pretty);
+    /**
+     * Konverterar en rådatafil till converted-<speltyp>-<datum>.json i outDir.
+     *
+     * @return sökvägen till den konverterade filen
+     */
+    public static Path convertFile(String gameType, Path inputFile, Path outDir, NameIndex<Driver> knownDrivers) {
+        return convertFile(gameType, inputFile, outDir, RaceCardFormat.JSON, knownDrivers);
+    }
 
-            System.out.println("✅ Sparade konverterad fil: " + outName);
-            System.out.println("Analysera nu med:");
-            System.out.println("  java -cp target/my-atg-winner-1.0-SNAPSHOT.jar org.example.app.MyAtgCli --analyze " + outName);
+    /** Som ovan men med valfritt utformat. */
+    public static Path convertFile(String gameType, Path inputFile, Path outDir, RaceCardFormat format,
+                                   NameIndex<Driver> knownDrivers) {
+        return convertFile(gameType, inputFile, outDir, format, knownDrivers, null, UnaryOperator.identity());
+    }
 
+    /**
+     * Som ovan med historik (null = ingen); target får välja den slutliga
+     * sökvägen när namnet är känt, eller null för att inte skriva något (då
+     * returneras null). Utfilen får råfilens ändringstid, så att det går att
+     * se vilken råfil ett kort kommer från (se {@link org.example.live.CardWatcher}).
+     */
+    public static Path convertFile(String gameType, Path inputFile, Path outDir, RaceCardFormat format,
+                                   NameIndex<Driver> knownDrivers, HistoryStore history,
+                                   UnaryOperator<Path> target) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(inputFile))) {
+            FileTime modified = Files.getLastModifiedTime(inputFile);
+            Path out = convertToFile(gameType, in, outDir, null, format, knownDrivers, history, target);
+            if (out != null) {
+                Files.setLastModifiedTime(out, modified);
+            }
+            return out;
         } catch (IOException e) {
             throw new RuntimeException("Kunde inte läsa/parsa " + inputFile, e);
         }
     }
 
+    /**
+     * Konverterar rådata från en ström (t.ex. direkt från ATG:s API) till en
+     * fil i outDir. Skriver först till en temp-fil i samma katalog (datumet
+     * är inte känt förrän rådatan lästs) och flyttar sedan på plats.
+     *
+     * @param suffix läggs till filnamnet före .json, eller null
+     * @return sökvägen till den konverterade filen
+     */
+    public static Path convertToFile(String gameType, InputStream in, Path outDir, String suffix,
+                                     RaceCardFormat format, NameIndex<Driver> knownDrivers) throws IOException {
+        return convertToFile(gameType, in, outDir, suffix, format, knownDrivers, null, UnaryOperator.identity());
+    }
+
+    /**
+     * Som ovan med historik (null = ingen); target får byta den slutliga
+     * sökvägen (en befintlig fil ersätts), eller ge null för att inte skriva
+     * något (då returneras null).
+     */
+    public static Path convertToFile(String gameType, InputStream in, Path outDir, String suffix,
+                                     RaceCardFormat format, NameIndex<Driver> knownDrivers, HistoryStore history,
+                                     UnaryOperator<Path> target) throws IOException {
+        Path dir = outDir.toAbsolutePath();
+        // Inte createTempFile: den ger rw------- och filen ska få vanliga rättigheter
+        Path tmp = dir.resolve(".converting-" + UUID.randomUUID() + ".tmp");
+        try {
+            ConvertResult result;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                result = streamConvert(gameType, in, format.writer(out), knownDrivers, TrackLoader.tracks(), history);
+            }
+
+            String name = outputFileName(gameType, result.date(), format);
+            if (suffix != null) {
+                name = name.replace(format.extension(), "-" + suffix + format.extension());
+            }
+            Path outPath = target.apply(dir.resolve(name));
+            if (outPath == null) {
+                return null;
+            }
+            Files.move(tmp, outPath, StandardCopyOption.REPLACE_EXISTING);
+            return outPath;
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    /**
+     * Strömmande konvertering: läser rå ATG JSON från in och skriver
+     * RaceCard-JSON till out. Bara ett lopp i taget hålls i minnet.
+     * Strömmarna stängs inte.
+     */
+    public static ConvertResult streamConvert(String gameType, InputStream in, OutputStream out,
+                                              NameIndex<Driver> knownDrivers) throws IOException {
+        return streamConvert(gameType, in, RaceCardFormat.JSON.writer(out), knownDrivers);
+    }
+
+    /**
+     * Strömmande konvertering till valfri {@link RaceCardSink} (JSON eller binärt).
+     *
+     * Datum tas från root.id om det står före races[], annars från första
+     * loppets date. Finns inget av dem lämnas datumet först i sink.end
+     * (från ett root.id efter races[], eller "UNKNOWN").
+     */
+    public static ConvertResult streamConvert(String gameType, InputStream in, RaceCardSink sink,
+                                              NameIndex<Driver> knownDrivers) throws IOException {
+        return streamConvert(gameType, in, sink, knownDrivers, TrackLoader.tracks());
+    }
+
+    /**
+     * Som ovan men med valfri bantabell; varje lopp får sin banprofil via
+     * {@link TrackEnricher} innan det når sink.
+     */
+    public static ConvertResult streamConvert(String gameType, InputStream in, RaceCardSink sink,
+                                              NameIndex<Driver> knownDrivers, NameIndex<Track> tracks)
+            throws IOException {
+        return streamConvert(gameType, in, sink, knownDrivers, tracks, null);
+    }
+
+    /**
+     * Som ovan men med historik; hästarnas lastRaces fylls i av
+     * {@link HistoryEnricher}. null (eller tom historik) ändrar ingenting.
+     */
+    public static ConvertResult streamConvert(String gameType, InputStream in, RaceCardSink sink,
+                                              NameIndex<Driver> knownDrivers, NameIndex<Track> tracks,
+                                              HistoryStore history) throws IOException {
+        sink = new TrackEnricher(tracks, history == null ? sink : new HistoryEnricher(history, sink));
+        try (AtgRaceReader reader = new AtgRaceReader(MAPPER, in)) {
+            // Första loppet läses innan vi skriver datum: då har vi sett root.id
+            // (om den står före races) och första loppets date.
+            AtgRaceReader.RawRace raw = reader.nextRace();
+            String date = extractDate(reader.id(), reader.firstRaceDate());
+            sink.begin(gameType, "UNKNOWN".equals(date) ? null : date);
+
+            int races = 0;
+            int starters = 0;
+            for (; raw != null; raw = reader.nextRace()) {
+                if (raw.starts() == null) {
+                    System.err.println("⚠ Hittade inga starts/participants för lopp " + raw.number());
+                }
+                RaceToAnalyze race = toRace(gameType, raw, knownDrivers);
+                sink.race(race);
+                races++;
+                starters += race.starters().size();
+            }
+
+            date = extractDate(reader.id(), reader.firstRaceDate());
+            sink.end(date, reader.turnover(gameType));
+
+            return new ConvertResult(gameType, date, races, starters);
+        }
+    }
+
+    /** converted-<speltyp>-<datum>.json */
+    public static String outputFileName(String gameType, String date) {
+        return outputFileName(gameType, date, RaceCardFormat.JSON);
+    }
+
+    /** converted-<speltyp>-<datum>.json / .rcb */
+    public static String outputFileName(String gameType, String date, RaceCardFormat format) {
+        String safeDate = (date == null || date.isBlank()) ? "UNKNOWNDATE" : date;
+        return "converted-" + gameType + "-" + safeDate + format.extension();
+    }
+
+    // Ett rålopp -> vårt RaceToAnalyze
+    static RaceToAnalyze toRace(String gameType, AtgRaceReader.RawRace raw, NameIndex<Driver> knownDrivers) {
+        // bara namnet här; banprofilen fylls i av TrackEnricher
+        Track track = new Track(raw.trackName(), 0, false);
+
+        List<Entry> starters = new ArrayList<>();
+        if (raw.starts() != null) {
+            for (JsonNode startNode : raw.starts()) {
+                int startNumber = startNode.path("number").asInt();
+
+                // horse
+                JsonNode horseNode = startNode.path("horse");
+                String horseName = horseNode.path("name").asText("?");
+                String trainer = extractTrainerName(horseNode.path("trainer"));
+
+                // driver
+                JsonNode driverNode = startNode.path("driver");
+                String driverFullName = extractDriverName(driverNode);
+                int rating = lookupDriverRating(driverFullName, knownDrivers);
+
+                // spelinformation: pools.vinnare.odds (3.45 står som 345) och
+                // pools.<spelform>.betDistribution (25.34 % står som 2534)
+                JsonNode pools = startNode.path("pools");
+                double winOdds = pools.path("vinnare").path("odds").asDouble(0) / 100.0;
+                double betDistribution = pools.path(gameType).path("betDistribution").asDouble(0) / 10_000.0;
+
+                // lastRaces fylls i av HistoryEnricher
+                Horse horse = new Horse(horseName, trainer, new Driver(driverFullName, rating), List.of());
+                starters.add(new Entry(startNumber, horse, winOdds, betDistribution));
+            }
+        }
+
+        return new RaceToAnalyze(raw.number(), track, raw.distance(), isAutoStart(raw.startMethod()), starters);
+    }
+
     // Försök hitta datum för omgången
-    private static String extractDate(JsonNode root) {
+    static String extractDate(String id, String firstRaceDate) {
         // 1. Försök root.id -> "V86_2025-10-29_40_1"
-        String id = root.path("id").asText("");
-        if (!id.isEmpty()) {
+        if (id != null && !id.isEmpty()) {
             // leta efter första token som ser ut som YYYY-MM-DD
             String[] parts = id.split("_");
             for (String p : parts) {
@@ -173,48 +316,51 @@ public class AtgParser {
         }
 
         // 2. fallback: plocka från första race.date
-        if (root.has("races") && root.get("races").isArray() && root.get("races").size() > 0) {
-            JsonNode firstRace = root.get("races").get(0);
-            String d = firstRace.path("date").asText("");
-            if (!d.isEmpty()) {
-                return d;
-            }
+        if (firstRaceDate != null && !firstRaceDate.isEmpty()) {
+            return firstRaceDate;
         }
 
         return "UNKNOWN";
     }
 
-    // ATG kan kalla det "starts", "start", "participants".
-    private static JsonNode findStartsArray(JsonNode raceNode) {
-        if (raceNode.has("starts") && raceNode.get("starts").isArray()) {
-            return raceNode.get("starts");
+    // Spelform ur root.id -> "V86_2025-10-29_40_1" ger "V86"
+    static String extractGameType(String id) {
+        if (id == null || id.isEmpty()) {
+            return null;
         }
-        if (raceNode.has("start") && raceNode.get("start").isArray()) {
-            return raceNode.get("start");
-        }
-        if (raceNode.has("participants") && raceNode.get("participants").isArray()) {
-            return raceNode.get("participants");
-        }
-        return null;
+        String first = id.split("_")[0];
+        return first.matches("(?i)V\\d{1,2}") ? first.toUpperCase() : null;
     }
 
     // Bygg kusknamn snyggt oavsett fältupplägg
-    private static String extractDriverName(JsonNode driverNode) {
-        if (driverNode == null || driverNode.isMissingNode()) {
-            return "Okänd kusk";
+    static String extractDriverName(JsonNode driverNode) {
+        return extractPersonName(driverNode, "Okänd kusk");
+    }
+
+    // Tränaren står som sträng eller som objekt (name / firstName + lastName)
+    static String extractTrainerName(JsonNode trainerNode) {
+        if (trainerNode != null && trainerNode.isTextual()) {
+            return trainerNode.asText().isBlank() ? "?" : trainerNode.asText();
         }
-        String full = driverNode.path("name").asText("");
+        return extractPersonName(trainerNode, "?");
+    }
+
+    private static String extractPersonName(JsonNode node, String unknown) {
+        if (node == null || node.isMissingNode() || node.isNull()) {
+            return unknown;
+        }
+        String full = node.path("name").asText("");
         if (!full.isBlank()) {
             return full;
         }
-        String first = driverNode.path("firstName").asText("");
-        String last = driverNode.path("lastName").asText("");
+        String first = node.path("firstName").asText("");
+        String last = node.path("lastName").asText("");
         String merged = (first + " " + last).trim();
-        return merged.isBlank() ? "Okänd kusk" : merged;
+        return merged.isBlank() ? unknown : merged;
     }
 
-    // slå i drivers.json
-    private static int lookupDriverRating(String driverFullName, Map<String, Driver> knownDrivers) {
+    // slå i drivers.json (normaliserat namn, se NameIndex)
+    private static int lookupDriverRating(String driverFullName, NameIndex<Driver> knownDrivers) {
         Driver d = knownDrivers.get(driverFullName);
         if (d != null) {
             return d.rating();
@@ -223,9 +369,23 @@ public class AtgParser {
         return 1;
     }
 
-    private static boolean isAutoStart(String startMethod) {
+    static boolean isAutoStart(String startMethod) {
         if (startMethod == null) return false;
         String s = startMethod.toLowerCase();
         return s.contains("auto"); // "auto", "autostart"
     }
+
+    private static void deleteQuietly(Path p) {
+        if (p == null) return;
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException ignored) {
+            // temp-filen får ligga kvar
+        }
+    }
+
+    /**
+     * Sammanfattning av en konvertering.
+     */
+    public record ConvertResult(String gameType, String date, int races, int starters) {}
 }
@@ -0,0 +1,202 @@
+package org.example.atg;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Läser ATG:s rådata token för token och lämnar ut ett lopp i taget.
+ *
+ * Bara det aktuella loppet (och dess starts[]) finns i minnet, så
+ * minnesåtgången är i stort sett konstant oavsett hur stor filen är.
+ * Varje element i starts[] läses som ett litet JsonNode-träd så att
+ * samma fält-fallbacks som tidigare kan användas per start.
+ *
+ * Fält i roten som inte är "id", "pools" eller "races" hoppas över.
+ */
+public class AtgRaceReader implements AutoCloseable {
+
+    private final JsonParser parser;
+
+    private String id;
+    private JsonNode pools;
+    private String firstRaceDate;
+    private boolean racesSeen;
+    private boolean inRaces;
+    private boolean done;
+
+    public AtgRaceReader(ObjectMapper mapper, InputStream in) throws IOException {
+        this.parser = mapper.createParser(in);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Förväntade ett JSON-objekt i roten");
+        }
+    }
+
+    /** root.id om den har lästs hittills, annars null. */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * V-spelets omsättning i kronor ur root.pools.&lt;spelform&gt;.turnover
+     * (ATG anger belopp i öre), 0 om den saknas eller inte lästs än.
+     */
+    public double turnover(String gameType) {
+        if (pools == null || gameType == null) return 0;
+        return pools.path(gameType).path("turnover").asDouble(0) / 100.0;
+    }
+
+    /** date från första loppet (fallback om root.id saknar datum). */
+    public String firstRaceDate() {
+        return firstRaceDate;
+    }
+
+    /**
+     * Nästa lopp i races[], eller null när alla lopp är lästa.
+     * När null returneras är hela roten genomläst (även fält efter races[]).
+     */
+    public RawRace nextRace() throws IOException {
+        if (done) {
+            return null;
+        }
+        if (!inRaces) {
+            if (racesSeen || !readRootFields()) {
+                done = true;
+                return null;
+            }
+            inRaces = true;
+        }
+
+        JsonToken t = parser.nextToken();
+        while (t != null && t != JsonToken.END_ARRAY) {
+            if (t == JsonToken.START_OBJECT) {
+                RawRace race = readRace();
+                if (firstRaceDate == null && race.date() != null && !race.date().isEmpty()) {
+                    firstRaceDate = race.date();
+                }
+                return race;
+            }
+            parser.skipChildren();
+            t = parser.nextToken();
+        }
+
+        // races[] slut -> läs klart roten (id kan ligga efter races)
+        inRaces = false;
+        readRootFields();
+        done = true;
+        return null;
+    }
+
+    // Läser rotfält tills races[] hittas (true) eller roten tar slut (false)
+    private boolean readRootFields() throws IOException {
+        JsonToken t;
+        while ((t = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("id".equals(name) && value.isScalarValue()) {
+                id = parser.getValueAsString("");
+            } else if ("pools".equals(name) && value == JsonToken.START_OBJECT) {
+                pools = parser.readValueAsTree();
+            } else if ("races".equals(name) && value == JsonToken.START_ARRAY && !racesSeen) {
+                racesSeen = true;
+                return true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    private RawRace readRace() throws IOException {
+        int number = 0;
+        int distance = 0;
+        String startMethod = "";
+        String date = "";
+        String trackName = "?";
+        List<JsonNode> starts = null;
+        List<JsonNode> start = null;
+        List<JsonNode> participants = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "number" -> number = parser.getValueAsInt(0);
+                case "distance" -> distance = parser.getValueAsInt(0);
+                case "startMethod" -> startMethod = scalarText(value);
+                case "date" -> date = scalarText(value);
+                case "track" -> trackName = readTrackName(value);
+                case "starts" -> starts = readArray(value);
+                case "start" -> start = readArray(value);
+                case "participants" -> participants = readArray(value);
+                default -> parser.skipChildren();
+            }
+        }
+
+        // ATG kan kalla det "starts", "start", "participants" (samma prioritet som förut)
+        List<JsonNode> found = starts != null ? starts : start != null ? start : participants;
+        return new RawRace(number, distance, startMethod, date, trackName, found);
+    }
+
+    private String readTrackName(JsonToken value) throws IOException {
+        String trackName = "?";
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return trackName;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken v = parser.nextToken();
+            if ("name".equals(name) && v.isScalarValue()) {
+                trackName = parser.getValueAsString("?");
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return trackName;
+    }
+
+    private List<JsonNode> readArray(JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<JsonNode> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            list.add(parser.readValueAsTree());
+        }
+        return list;
+    }
+
+    private String scalarText(JsonToken value) throws IOException {
+        if (!value.isScalarValue()) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getValueAsString("");
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Ett lopp som det ser ut i rådatan. starts är null om inget
+     * starts/start/participants-fält fanns.
+     */
+    public record RawRace(
+            int number,
+            int distance,
+            String startMethod,
+            String date,
+            String trackName,
+            List<JsonNode> starts
+    ) {}
+}
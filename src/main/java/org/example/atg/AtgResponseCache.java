@@ -0,0 +1,242 @@
+package org.example.atg;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Beständig svarscache för {@link AtgApiClient}.
+ *
+ * Varje endpoint sparas som en gzip-fil (svaret) plus en liten .meta-fil med
+ * ETag, Last-Modified och när svaret sparades. Så länge svaret är färskt
+ * enligt TTL:en används det utan nätverk; annars revalideras det med
+ * If-None-Match / If-Modified-Since och ett 304 ger cachat svar.
+ *
+ * TTL per endpoint-familj (första matchande regel vinner):
+ *   1. egna regler satta med {@link #ttl(String, Duration)}
+ *   2. endpoints med ett datum före idag (avgjorda omgångar) -> för evigt,
+ *      men bara för svar som sparats (eller revaliderats) efter den dagen;
+ *      en startlista från tävlingsdagen revalideras enligt regel 3-4
+ *   3. kalendern products/V86 osv -> 5 minuter
+ *   4. övrigt -> 0 (revalidera alltid, men bara 304 om inget ändrats)
+ *
+ * Metafilen är det som gör en post giltig: den skrivs sist och innehåller
+ * endpointen och svarets storlek. En meta som inte går att läsa, hör till en
+ * annan endpoint eller inte stämmer med svaret räknas som cachemiss.
+ */
+public class AtgResponseCache {
+
+    /** TTL för svar som aldrig blir inaktuella. */
+    public static final Duration FOREVER = ChronoUnit.FOREVER.getDuration();
+
+    private static final Pattern CALENDAR = Pattern.compile("products/V\\d{1,2}/?");
+    private static final Pattern DATE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+
+    private final Path dir;
+    private final Clock clock;
+    private final List<Rule> rules = new ArrayList<>();
+
+    public AtgResponseCache(Path dir) {
+        this(dir, Clock.systemDefaultZone());
+    }
+
+    /** Med en egen klocka (dagsgränserna räknas i dess tidszon). */
+    public AtgResponseCache(Path dir, Clock clock) {
+        this.dir = dir;
+        this.clock = clock;
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte skapa cachekatalog " + dir, e);
+        }
+    }
+
+    /**
+     * Sätter TTL för endpoints som matchar regex (hela endpointen).
+     * Senast tillagda regeln vinner över tidigare.
+     */
+    public AtgResponseCache ttl(String endpointRegex, Duration ttl) {
+        rules.add(0, new Rule(Pattern.compile(endpointRegex), ttl));
+        return this;
+    }
+
+    /** TTL som gäller för endpointen (för ett svar sparat efter dess datum). */
+    public Duration ttlFor(String endpoint) {
+        Duration custom = customTtl(endpoint);
+        if (custom != null) {
+            return custom;
+        }
+        return settledDate(endpoint) != null ? FOREVER : familyTtl(endpoint);
+    }
+
+    private Duration customTtl(String endpoint) {
+        for (Rule r : rules) {
+            if (r.pattern().matcher(endpoint).matches()) {
+                return r.ttl();
+            }
+        }
+        return null;
+    }
+
+    // Endpointens datum om det är före idag, annars null
+    private LocalDate settledDate(String endpoint) {
+        Matcher m = DATE.matcher(endpoint);
+        if (m.find()) {
+            try {
+                LocalDate date = LocalDate.parse(m.group(1));
+                if (date.isBefore(LocalDate.now(clock))) {
+                    return date;
+                }
+            } catch (DateTimeParseException e) {
+                // ser ut som ett datum men är det inte: inget permanent svar
+            }
+        }
+        return null;
+    }
+
+    private static Duration familyTtl(String endpoint) {
+        if (CALENDAR.matcher(endpoint).matches()) {
+            return Duration.ofMinutes(5);
+        }
+        return Duration.ZERO;
+    }
+
+    /** Cachad post för endpointen, eller null. */
+    public Entry lookup(String endpoint) {
+        Path meta = metaFile(endpoint);
+        Path body = bodyFile(endpoint);
+        if (!Files.exists(meta) || !Files.exists(body)) {
+            return null;
+        }
+        Properties p = new Properties();
+        try (Reader r = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+            p.load(r);
+            if (!endpoint.equals(p.getProperty("endpoint"))
+                    || Long.parseLong(p.getProperty("bodyBytes", "-1")) != Files.size(body)) {
+                return null; // meta hör inte till det här svaret
+            }
+            return new Entry(
+                    p.getProperty("etag"),
+                    p.getProperty("lastModified"),
+                    Instant.ofEpochMilli(Long.parseLong(p.getProperty("storedAt"))),
+                    body);
+        } catch (IOException | IllegalArgumentException | DateTimeException e) {
+            return null; // trasig meta = ingen cache
+        }
+    }
+
+    /**
+     * Färskt enligt TTL:en. Ett svar för en avgjord dag är permanent först om
+     * det sparades efter dagens slut; annars kan det vara startlistan från
+     * före loppen och revalideras (ett 304 via {@link #touch} gör det sedan
+     * permanent).
+     */
+    public boolean isFresh(String endpoint, Entry entry) {
+        Duration ttl = customTtl(endpoint);
+        if (ttl == null) {
+            LocalDate date = settledDate(endpoint);
+            Instant dayEnd = date == null ? null : date.plusDays(1).atStartOfDay(clock.getZone()).toInstant();
+            ttl = dayEnd != null && !entry.storedAt().isBefore(dayEnd) ? FOREVER : familyTtl(endpoint);
+        }
+        if (ttl.equals(FOREVER)) {
+            return true;
+        }
+        Duration age = Duration.between(entry.storedAt(), clock.instant());
+        return age.compareTo(ttl) < 0;
+    }
+
+    /** Öppnar det cachade svaret (okomprimerat). */
+    public InputStream open(Entry entry) throws IOException {
+        return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(entry.bodyFile())));
+    }
+
+    /**
+     * Sparar ett nytt svar. Både svar och meta skrivs till temp-filer och
+     * flyttas på plats, så en samtidig läsare ser aldrig en halv fil. Den
+     * gamla metan tas bort innan svaret byts och den nya skrivs sist, så
+     * ett avbrott däremellan ger en miss, aldrig gammal ETag med nytt svar.
+     */
+    public Entry store(String endpoint, InputStream body, String etag, String lastModified) throws IOException {
+        Path tmp = Files.createTempFile(dir, ".body-", ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                body.transferTo(out);
+            }
+            Files.deleteIfExists(metaFile(endpoint));
+            Files.move(tmp, bodyFile(endpoint), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        Entry entry = new Entry(etag, lastModified, clock.instant(), bodyFile(endpoint));
+        writeMeta(endpoint, entry);
+        return entry;
+    }
+
+    /** Svaret var oförändrat (304): förnya storedAt. */
+    public Entry touch(String endpoint, Entry entry) throws IOException {
+        Entry fresh = new Entry(entry.etag(), entry.lastModified(), clock.instant(), entry.bodyFile());
+        writeMeta(endpoint, fresh);
+        return fresh;
+    }
+
+    private void writeMeta(String endpoint, Entry entry) throws IOException {
+        Properties p = new Properties();
+        if (entry.etag() != null) p.setProperty("etag", entry.etag());
+        if (entry.lastModified() != null) p.setProperty("lastModified", entry.lastModified());
+        p.setProperty("storedAt", Long.toString(entry.storedAt().toEpochMilli()));
+        p.setProperty("endpoint", endpoint);
+        p.setProperty("bodyBytes", Long.toString(Files.size(entry.bodyFile())));
+
+        Path tmp = Files.createTempFile(dir, ".meta-", ".tmp");
+        try {
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                p.store(w, null);
+            }
+            Files.move(tmp, metaFile(endpoint), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path bodyFile(String endpoint) {
+        return dir.resolve(key(endpoint) + ".json.gz");
+    }
+
+    private Path metaFile(String endpoint) {
+        return dir.resolve(key(endpoint) + ".meta");
+    }
+
+    // Läsbart filnamn + hash så att t.ex. "a/b" och "a_b" inte krockar
+    private static String key(String endpoint) {
+        String safe = endpoint.replaceAll("[^A-Za-z0-9._-]", "_");
+        return safe + "-" + Integer.toHexString(endpoint.hashCode());
+    }
+
+    /**
+     * En cachad post. storedAt = när svaret senast hämtades eller revaliderades.
+     */
+    public record Entry(String etag, String lastModified, Instant storedAt, Path bodyFile) {}
+
+    private record Rule(Pattern pattern, Duration ttl) {}
+}
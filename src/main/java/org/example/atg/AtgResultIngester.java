@@ -0,0 +1,341 @@
+package org.example.atg;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.example.domain.RaceOutcome;
+import org.example.domain.RaceResult;
+import org.example.domain.RoundResult;
+import org.example.history.HistoryStore;
+import org.example.history.RatingEngine;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Läser avgjorda lopp ur ATG:s rådata (samma format som {@link AtgParser}
+ * konverterar) och lägger till varje start i {@link HistoryStore}.
+ *
+ * Fält per start (utöver dem AtgParser redan läser):
+ * <pre>
+ *   postPosition              -> spår (annars startnumret)
+ *   distance                  -> distans med tillägg (annars loppets)
+ *   scratched                 -> struken, hoppas över
+ *   result.finishOrder/place  -> placering
+ *   result.kmTime{minutes, seconds, tenths} -> km-tid i ms
+ *   result.galloped           -> galopp
+ *   result.disqualified       -> diskad (räknas som ej fullföljt)
+ * </pre>
+ * Starter utan result (loppet inte avgjort än) hoppas över.
+ *
+ * En fil läses i ett svep med {@link AtgRaceReader}, ett lopp i taget, och
+ * alla starter hamnar i samma {@link HistoryStore.Batch}; på disk läggs de
+ * bara till, äldre data skrivs aldrig om. Starter som redan finns (samma
+ * häst, bana och dag) hoppas över, så en fil kan läsas in igen.
+ *
+ * Med en {@link RatingEngine} räknas varje nytt avgjort lopp också in i
+ * hästarnas, kuskarnas och tränarnas rating (lopp som redan fanns räknas
+ * inte en gång till). Med en ratingfil sparas ratingen efter varje fil,
+ * direkt när filens batch är skriven, så ett avbrott mitt i en katalog
+ * inte lämnar inlästa lopp som aldrig blir ratade.
+ *
+ * Omgångens facit (målordning och vinnarodds per lopp) kan också skrivas
+ * som results-<SPELFORM>-<DATUM>.json bredvid det konverterade kortet, så
+ * att {@link org.example.backtest.Backtester} och
+ * {@link org.example.backtest.WeightTuner} hittar paret.
+ */
+public class AtgResultIngester {
+
+    private final HistoryStore store;
+    private final RatingEngine ratings;
+    private final Path ratingFile;
+
+    // ett lopps starter till ratingmotorn, återanvänds
+    private String[] horses = new String[24];
+    private String[] drivers = new String[24];
+    private String[] trainers = new String[24];
+    private int[] finishes = new int[24];
+
+    public AtgResultIngester(HistoryStore store) {
+        this(store, null);
+    }
+
+    public AtgResultIngester(HistoryStore store, RatingEngine ratings) {
+        this(store, ratings, null);
+    }
+
+    /** ratingFile (kan vara null) skrivs efter varje fil som gav nya starter. */
+    public AtgResultIngester(HistoryStore store, RatingEngine ratings, Path ratingFile) {
+        this.store = store;
+        this.ratings = ratings;
+        this.ratingFile = ratingFile;
+    }
+
+    /** Läser en fil med rådata. */
+    public IngestResult ingestFile(Path file) {
+        return ingestFile(file, null);
+    }
+
+    /**
+     * Som ovan, och skriver omgångens facit till resultsDir (se
+     * {@link #writeResults}). resultsDir null = inget facit.
+     */
+    public IngestResult ingestFile(Path file, Path resultsDir) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            RoundResult[] round = new RoundResult[1];
+            IngestResult res = ingest(in, resultsDir == null ? null : r -> round[0] = r);
+            if (ratings != null && ratingFile != null && res.added() > 0) {
+                ratings.save(ratingFile);
+            }
+            if (round[0] != null) {
+                writeResults(round[0], resultsDir);
+            }
+            return res;
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte läsa/parsa " + file, e);
+        }
+    }
+
+    /** Läser rådata från en ström (stängs inte). */
+    public IngestResult ingest(InputStream in) throws IOException {
+        return ingest(in, null);
+    }
+
+    /**
+     * Som ovan; results (kan vara null) får omgångens facit efter sista
+     * loppet, om minst ett lopp var avgjort och spelformen står i root.id.
+     */
+    public IngestResult ingest(InputStream in, Consumer<RoundResult> results) throws IOException {
+        int races = 0;
+        int added = 0;
+        int skipped = 0;
+        String fallbackDate = null;
+        List<RaceOutcome> outcomes = results == null ? null : new ArrayList<>();
+
+        try (AtgRaceReader reader = new AtgRaceReader(AtgParser.mapper(), in);
+             HistoryStore.Batch batch = store.batch()) {
+            AtgRaceReader.RawRace raw;
+            while ((raw = reader.nextRace()) != null) {
+                if (fallbackDate == null) {
+                    fallbackDate = AtgParser.extractDate(reader.id(), reader.firstRaceDate());
+                }
+                String date = raw.date() != null && !raw.date().isEmpty() ? raw.date() : fallbackDate;
+                int ymd = HistoryStore.dateYmd(date.length() > 10 ? date.substring(0, 10) : date);
+                if (ymd == 0 || raw.starts() == null) continue;
+
+                int flags = AtgParser.isAutoStart(raw.startMethod()) ? HistoryStore.FLAG_AUTOSTART : 0;
+                int finished = 0;
+                boolean anyNew = false;
+                for (JsonNode start : raw.starts()) {
+                    RaceResult rr = toResult(raw, start);
+                    if (rr == null) continue;
+                    String horse = start.path("horse").path("name").asText("");
+                    if (horse.isBlank()) continue;
+                    if (batch.addIfAbsent(horse, ymd, rr, flags) >= 0) {
+                        added++;
+                        anyNew = true;
+                    } else {
+                        skipped++;
+                    }
+                    if (ratings != null) collect(finished, horse, start, rr.finishPosition());
+                    finished++;
+                }
+                if (finished > 0) races++;
+                if (ratings != null && anyNew) {
+                    ratings.race(horses, drivers, trainers, finishes, finished);
+                }
+                if (outcomes != null && finished > 0) {
+                    outcomes.add(outcome(raw));
+                }
+            }
+
+            if (outcomes != null && !outcomes.isEmpty()) {
+                String gameType = AtgParser.extractGameType(reader.id());
+                if (gameType != null) {
+                    String date = fallbackDate.length() > 10 ? fallbackDate.substring(0, 10) : fallbackDate;
+                    results.accept(new RoundResult(gameType, date, List.copyOf(outcomes)));
+                }
+            }
+        }
+        return new IngestResult(races, added, skipped);
+    }
+
+    /** Målordningen (startnummer, ettan först) och vinnarens odds i ett avgjort lopp. */
+    private static RaceOutcome outcome(AtgRaceReader.RawRace raw) {
+        List<Placed> placed = new ArrayList<>();
+        for (JsonNode start : raw.starts()) {
+            RaceResult rr = toResult(raw, start);
+            if (rr != null && rr.finishPosition() != HistoryStore.NOT_FINISHED) {
+                placed.add(new Placed(rr.finishPosition(), start.path("number").asInt(),
+                        start.path("pools").path("vinnare").path("odds").asDouble(0) / 100.0));
+            }
+        }
+        placed.sort(Comparator.comparingInt(Placed::finish));
+        List<Integer> order = new ArrayList<>(placed.size());
+        for (Placed p : placed) order.add(p.startNumber());
+        return new RaceOutcome(raw.number(), order, placed.isEmpty() ? 0 : placed.get(0).odds());
+    }
+
+    private record Placed(int finish, int startNumber, double odds) {}
+
+    /**
+     * Skriver facit som dir/results-<SPELFORM>-<DATUM>.json (atomiskt, en
+     * befintlig fil ersätts).
+     *
+     * @return sökvägen till filen
+     */
+    public static Path writeResults(RoundResult round, Path dir) throws IOException {
+        Path file = dir.resolve(resultsFileName(round.gameType(), round.date()));
+        Path tmp = dir.resolve("." + file.getFileName() + ".tmp");
+        try {
+            AtgParser.mapper().writeValue(tmp.toFile(), round);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return file;
+    }
+
+    /** results-<speltyp>-<datum>.json, samma nyckel som converted-<speltyp>-<datum>.json */
+    public static String resultsFileName(String gameType, String date) {
+        return "results-" + gameType + "-" + date + ".json";
+    }
+
+    private void collect(int i, String horse, JsonNode start, int finish) {
+        if (i == horses.length) {
+            horses = Arrays.copyOf(horses, i * 2);
+            drivers = Arrays.copyOf(drivers, i * 2);
+            trainers = Arrays.copyOf(trainers, i * 2);
+            finishes = Arrays.copyOf(finishes, i * 2);
+        }
+        String driver = AtgParser.extractDriverName(start.path("driver"));
+        String trainer = AtgParser.extractTrainerName(start.path("horse").path("trainer"));
+        horses[i] = horse;
+        drivers[i] = "Okänd kusk".equals(driver) ? null : driver;
+        trainers[i] = "?".equals(trainer) ? null : trainer;
+        finishes[i] = finish;
+    }
+
+    /** En start -> RaceResult, eller null om den är struken eller saknar resultat. */
+    static RaceResult toResult(AtgRaceReader.RawRace raw, JsonNode start) {
+        JsonNode result = start.path("result");
+        if (start.path("scratched").asBoolean(false) || !result.isObject()) {
+            return null;
+        }
+
+        int finish = result.path("finishOrder").asInt(0);
+        if (finish <= 0) finish = result.path("place").asInt(0);
+        if (finish <= 0 || result.path("disqualified").asBoolean(false)) {
+            finish = HistoryStore.NOT_FINISHED;
+        }
+
+        JsonNode km = result.path("kmTime");
+        long timeMs = 0;
+        if (km.isObject()) {
+            timeMs = ((km.path("minutes").asLong(0) * 60 + km.path("seconds").asLong(0)) * 10
+                    + km.path("tenths").asLong(0)) * 100;
+        }
+
+        int post = start.path("postPosition").asInt(0);
+        if (post <= 0) post = start.path("number").asInt(0);
+        int distance = start.path("distance").asInt(0);
+        if (distance <= 0) distance = raw.distance();
+
+        return new RaceResult(raw.trackName(), distance, post, finish, timeMs,
+                result.path("galloped").asBoolean(false));
+    }
+
+    /**
+     * Läser alla *.json i katalogen (underkataloger också) i omgångarnas
+     * datumordning, och i namnordning inom samma dag, så att ratingen räknas
+     * i den ordning loppen kördes. Filer utan datum läses sist. Filer som
+     * inte är rådata ({@link AtgBatchConverter#isRawFile}) hoppas över.
+     * Facit skrivs bredvid varje råfil, där --convert-all lägger korten.
+     */
+    public IngestResult ingestDirectory(Path dir) {
+        List<Path> files;
+        try (Stream<Path> s = Files.walk(dir)) {
+            files = s.filter(Files::isRegularFile)
+                    .filter(AtgBatchConverter::isRawFile)
+                    .map(f -> new Dated(roundYmd(f), f))
+                    .sorted(Comparator.comparingInt(Dated::ymd).thenComparing(Dated::file))
+                    .map(Dated::file)
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte lista " + dir, e);
+        }
+
+        IngestResult total = new IngestResult(0, 0, 0);
+        for (Path file : files) {
+            total = total.plus(ingestFile(file, file.toAbsolutePath().getParent()));
+        }
+        return total;
+    }
+
+    private record Dated(int ymd, Path file) {}
+
+    /**
+     * Omgångens datum (yyyymmdd) som {@link AtgParser#extractDate} ger det,
+     * läst fram till första loppet. Integer.MAX_VALUE om det inte går.
+     */
+    static int roundYmd(Path file) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+             AtgRaceReader reader = new AtgRaceReader(AtgParser.mapper(), in)) {
+            reader.nextRace();
+            String date = AtgParser.extractDate(reader.id(), reader.firstRaceDate());
+            int ymd = HistoryStore.dateYmd(date.length() > 10 ? date.substring(0, 10) : date);
+            return ymd > 0 ? ymd : Integer.MAX_VALUE;
+        } catch (IOException | RuntimeException e) {
+            // trasig fil: läses sist, och ingestFile rapporterar felet
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * CLI: läser en fil eller katalog in i storen i dir, uppdaterar ratingen
+     * i dir/{@link RatingEngine#FILE_NAME} (efter varje fil) och skriver facit
+     * bredvid råfilerna.
+     */
+    public static void ingestResults(String path, Path dir) {
+        HistoryStore store = HistoryStore.open(dir);
+        Path ratingFile = dir.resolve(RatingEngine.FILE_NAME);
+        RatingEngine ratings = RatingEngine.load(ratingFile);
+        AtgResultIngester ingester = new AtgResultIngester(store, ratings, ratingFile);
+        Path p = Path.of(path);
+
+        long start = System.nanoTime();
+        IngestResult res = Files.isDirectory(p)
+                ? ingester.ingestDirectory(p)
+                : ingester.ingestFile(p, p.toAbsolutePath().getParent());
+        double ms = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("✅ %d avgjorda lopp, %d nya starter, %d redan inlästa (%.0f ms)%n",
+                res.races(), res.added(), res.skipped(), ms);
+        System.out.printf("Historik i %s: %,d starter för %,d hästar%n", dir, store.rowCount(), store.horseCount());
+        System.out.printf("Ratings: %,d lopp, %,d hästar, %,d kuskar, %,d tränare%n", ratings.races(),
+                ratings.size(RatingEngine.Kind.HORSE), ratings.size(RatingEngine.Kind.DRIVER),
+                ratings.size(RatingEngine.Kind.TRAINER));
+    }
+
+    /**
+     * Sammanfattning av en inläsning.
+     *
+     * @param races   avgjorda lopp (minst en start med resultat)
+     * @param added   nya starter i historiken
+     * @param skipped starter som redan fanns
+     */
+    public record IngestResult(int races, int added, int skipped) {
+
+        IngestResult plus(IngestResult o) {
+            return new IngestResult(races + o.races, added + o.added, skipped + o.skipped);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.atg;
+
+import java.util.Locale;
+
+/**
+ * ATG:s V-spel som vi kan hämta och konvertera.
+ */
+public enum GameType {
+    V4(1.0), V5(0.5), V64(1.0), V65(1.0), V75(0.5), V85(0.5), V86(0.25);
+
+    private final double rowPrice;
+
+    GameType(double rowPrice) {
+        this.rowPrice = rowPrice;
+    }
+
+    /** Radpris i kronor, t.ex. 0.25 för V86 */
+    public double rowPrice() {
+        return rowPrice;
+    }
+
+    /** "v86" / "V86" -> V86 */
+    public static GameType parse(String s) {
+        try {
+            return valueOf(s.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Okänd spelform: " + s, e);
+        }
+    }
+
+    /** Kalendern, t.ex. products/V86 */
+    String calendarEndpoint() {
+        return "products/" + name();
+    }
+
+    /** En dags omgång(ar), t.ex. products/V86/2025-10-29 */
+    String productEndpoint(String date) {
+        return "products/" + name() + "/" + date;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.atg;
+
+import org.example.domain.Entry;
+import org.example.domain.Horse;
+import org.example.domain.RaceCardSink;
+import org.example.domain.RaceResult;
+import org.example.domain.RaceToAnalyze;
+import org.example.history.HistoryStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steg i konverteringen som fyller i hästarnas lastRaces ur
+ * {@link HistoryStore} (resultat som lästs in med {@link AtgResultIngester}).
+ *
+ * Bara starter före kortets datum tas med, så ett gammalt kort som
+ * konverteras om får den form hästarna hade då. Är datumet okänt när
+ * loppen kommer (inget root.id eller date före races[]) fylls ingenting i,
+ * eftersom det inte går att veta vilka starter som ligger före kortet.
+ * Uppslaget är en
+ * hashning av namnet plus en gång bakåt i hästens kedja; hästar utan
+ * historik lämnas orörda.
+ */
+public class HistoryEnricher implements RaceCardSink {
+
+    /** Antal senaste starter per häst (samma fönster som poängsättningen). */
+    public static final int LAST_RACES = 10;
+
+    private final HistoryStore store;
+    private final RaceCardSink next;
+    // 0 = okänt datum, då fylls ingenting i
+    private int beforeYmd;
+
+    public HistoryEnricher(HistoryStore store, RaceCardSink next) {
+        this.store = store;
+        this.next = next;
+    }
+
+    @Override
+    public void begin(String gameType, String date) throws IOException {
+        beforeYmd = HistoryStore.dateYmd(date);
+        next.begin(gameType, date);
+    }
+
+    @Override
+    public void race(RaceToAnalyze race) throws IOException {
+        next.race(beforeYmd > 0 ? enrich(store, race, beforeYmd) : race);
+    }
+
+    @Override
+    public void end(String date) throws IOException {
+        next.end(date);
+    }
+
+    @Override
+    public void end(String date, double turnover) throws IOException {
+        next.end(date, turnover);
+    }
+
+    /** Loppet med historik för hästar som saknar lastRaces, eller samma lopp. */
+    public static RaceToAnalyze enrich(HistoryStore store, RaceToAnalyze race, int beforeYmd) {
+        if (store.rowCount() == 0) return race;
+        List<Entry> starters = null;
+        for (int s = 0; s < race.starters().size(); s++) {
+            Entry e = race.starters().get(s);
+            Horse h = e.horse();
+            if (!h.lastRaces().isEmpty()) continue;
+            List<RaceResult> last = store.lastRaces(h.name(), LAST_RACES, beforeYmd);
+            if (last.isEmpty()) continue;
+            if (starters == null) starters = new ArrayList<>(race.starters());
+            starters.set(s, e.withHorse(new Horse(h.name(), h.trainer(), h.driver(), last)));
+        }
+        if (starters == null) return race;
+        return new RaceToAnalyze(race.raceNumber(), race.track(), race.distanceMeters(), race.autoStart(),
+                List.copyOf(starters));
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.atg;
+
+import org.example.domain.NameIndex;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceCardSink;
+import org.example.domain.RaceToAnalyze;
+import org.example.domain.Track;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steg i konverteringen som ersätter rådatans platshållarbana (bara namn)
+ * med banprofilen ur tracks.json: upploppets längd och om banan är snäv.
+ *
+ * Banan slås upp en gång per lopp i ett {@link NameIndex} som läses en
+ * gång per JVM, så "Åby" och "ABY" är samma bana. Namnet behålls som ATG
+ * stavar det (det är det historiken och facit använder). Okända banor
+ * lämnas orörda.
+ *
+ * Används som dekoratör runt en {@link RaceCardSink}, eller direkt på ett
+ * redan konverterat kort med {@link #enrich(NameIndex, RaceCard)}.
+ */
+public class TrackEnricher implements RaceCardSink {
+
+    private final NameIndex<Track> tracks;
+    private final RaceCardSink next;
+
+    public TrackEnricher(NameIndex<Track> tracks, RaceCardSink next) {
+        this.tracks = tracks;
+        this.next = next;
+    }
+
+    @Override
+    public void begin(String gameType, String date) throws IOException {
+        next.begin(gameType, date);
+    }
+
+    @Override
+    public void race(RaceToAnalyze race) throws IOException {
+        next.race(enrich(tracks, race));
+    }
+
+    @Override
+    public void end(String date) throws IOException {
+        next.end(date);
+    }
+
+    @Override
+    public void end(String date, double turnover) throws IOException {
+        next.end(date, turnover);
+    }
+
+    /** Kortet med banprofil på varje lopp vars bana finns i tabellen. */
+    public static RaceCard enrich(NameIndex<Track> tracks, RaceCard card) {
+        List<RaceToAnalyze> races = new ArrayList<>(card.races().size());
+        for (RaceToAnalyze race : card.races()) {
+            races.add(enrich(tracks, race));
+        }
+        return new RaceCard(card.gameType(), card.date(), races, card.turnover());
+    }
+
+    /** Loppet med banprofil, eller samma lopp om banan är okänd. */
+    public static RaceToAnalyze enrich(NameIndex<Track> tracks, RaceToAnalyze race) {
+        Track current = race.track();
+        if (current == null) return race;
+        Track known = tracks.get(current.name());
+        if (known == null
+                || (known.stretchLengthMeters() == current.stretchLengthMeters()
+                    && known.isTightTrack() == current.isTightTrack())) {
+            return race;
+        }
+        Track profiled = new Track(current.name(), known.stretchLengthMeters(), known.isTightTrack());
+        return new RaceToAnalyze(race.raceNumber(), profiled, race.distanceMeters(), race.autoStart(),
+                race.starters());
+    }
+}
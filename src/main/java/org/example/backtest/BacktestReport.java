@@ -0,0 +1,27 @@
+package org.example.backtest;
+
+/**
+ * Sammanställning av en backtest.
+ *
+ * @param rounds           omgångar som gick igenom
+ * @param failed           omgångar som inte gick att läsa
+ * @param races            lopp med facit
+ * @param hitRate          andel lopp där vår etta vann
+ * @param topPickTop3Rate  andel lopp där vår etta kom topp 3
+ * @param winnerInTop3Rate andel lopp där vinnaren fanns i vår topp 3
+ * @param oddsRaces        lopp med känt vinnarodds (underlag för roi)
+ * @param roi              (utdelning - insats) / insats för 1 kr vinnare på ettan
+ * @param meanSpearman     medel av rangkorrelationen per lopp
+ */
+public record BacktestReport(
+        int rounds,
+        int failed,
+        long races,
+        double hitRate,
+        double topPickTop3Rate,
+        double winnerInTop3Rate,
+        long oddsRaces,
+        double roi,
+        double meanSpearman,
+        double seconds
+) {}
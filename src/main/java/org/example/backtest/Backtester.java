@@ -0,0 +1,283 @@
+package org.example.backtest;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.analysis.ScoreBatch;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceCardLoader;
+import org.example.domain.RaceOutcome;
+import org.example.domain.RoundResult;
+import org.example.domain.RoundResultLoader;
+import org.example.history.HistoryStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Spelar upp arkiverade omgångar genom vår poängsättning och mäter hur bra
+ * rankingen var mot facit.
+ *
+ * En omgång = converted-<SPELFORM>-<DATUM>.json|.rcb plus
+ * results-<SPELFORM>-<DATUM>.json i samma katalog (underkataloger söks också).
+ * Omgångarna läses och poängsätts en och en på en fast trådpool, så hela
+ * arkivet aldrig ligger i minnet; mätvärdena samlas i LongAdder/DoubleAdder
+ * utan lås.
+ *
+ * Mått per lopp:
+ *   - träff: vår etta vann
+ *   - topp 3: vår etta kom topp 3
+ *   - vinnare i vår topp 3
+ *   - ROI: 1 kr vinnare på vår etta till slutodds (lopp utan odds räknas inte)
+ *   - Spearman: rangkorrelation mellan vår ranking och målordningen
+ */
+public class Backtester {
+
+    private final BatchScorer scorer;
+    private final HistoryStore history;
+    private final int threads;
+
+    /**
+     * scorer:s ratings får inte ha lärts på de omgångar som spelas upp
+     * (t.ex. history/ratings.bin efter --ingest av samma arkiv): då vet
+     * poängsättningen redan utfallet. Använd en ögonblicksbild från före
+     * den första omgången, eller inga ratings. Detsamma gäller
+     * spårstatistiken; se {@link #Backtester(BatchScorer, HistoryStore, int)}.
+     */
+    public Backtester(BatchScorer scorer, int threads) {
+        this(scorer, null, threads);
+    }
+
+    /**
+     * @param history historik för spårstatistiken, null = scorer:s egen. Har
+     *                vikterna spårstatistik räknas den för varje omgång bara
+     *                ur starter före omgångens datum.
+     */
+    public Backtester(BatchScorer scorer, HistoryStore history, int threads) {
+        this.scorer = scorer;
+        this.history = history;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * CLI: --backtest <katalog> [trådar], med manuella kuskbetyg (se
+     * konstruktorn) och spårstatistik ur history (null = ingen).
+     */
+    public static void backtest(String dir, int threads, ScoreWeights weights, HistoryStore history) {
+        BacktestReport r = new Backtester(new BatchScorer(weights), history, threads).run(Path.of(dir));
+
+        System.out.printf(Locale.ROOT, "=== Backtest: %d omgångar, %d lopp (%d misslyckades) på %.2f s ===%n",
+                r.rounds(), r.races(), r.failed(), r.seconds());
+        System.out.printf(Locale.ROOT, "Vår etta vann:         %5.1f%%%n", r.hitRate() * 100);
+        System.out.printf(Locale.ROOT, "Vår etta topp 3:       %5.1f%%%n", r.topPickTop3Rate() * 100);
+        System.out.printf(Locale.ROOT, "Vinnaren i vår topp 3: %5.1f%%%n", r.winnerInTop3Rate() * 100);
+        System.out.printf(Locale.ROOT, "ROI vinnare på ettan:  %+5.1f%% (%d lopp med odds)%n", r.roi() * 100, r.oddsRaces());
+        System.out.printf(Locale.ROOT, "Spearman (medel):      %6.3f%n", r.meanSpearman());
+    }
+
+    /** Alla omgångar i dir som har både kort och facit. */
+    public BacktestReport run(Path dir) {
+        return run(findRounds(dir));
+    }
+
+    public BacktestReport run(List<Round> rounds) {
+        Metrics m = new Metrics();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, rounds.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Round round : rounds) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        evaluate(RaceCardLoader.load(round.card()), RoundResultLoader.load(round.results()), m);
+                        m.rounds.increment();
+                    } catch (Exception e) {
+                        m.failed.increment();
+                        System.err.println("❌ " + round.results().getFileName() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Avbruten backtest", e);
+        } catch (Exception e) {
+            throw new RuntimeException("Fel vid backtest", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return m.toReport(seconds);
+    }
+
+    // Spårstatistik från före omgången, så att facit inte ingår i den
+    private BatchScorer scorerFor(RaceCard card) {
+        ScoreCalculator calc = scorer.calculator();
+        if (history == null || calc.weights().postStatsWeight() == 0) return scorer;
+        return new BatchScorer(calc.withPostStats(history.postPositionStatsBefore(HistoryStore.dateYmd(card.date()))));
+    }
+
+    /** Poängsätter ett kort och lägger till dess lopp i m. */
+    void evaluate(RaceCard card, RoundResult result, Metrics m) {
+        Map<Integer, RaceOutcome> outcomes = new HashMap<>();
+        for (RaceOutcome o : result.races()) {
+            outcomes.put(o.raceNumber(), o);
+        }
+
+        ScoreBatch batch = ScoreBatch.of(card);
+        scorerFor(card).scoreAndRank(batch);
+
+        for (int r = 0; r < batch.raceCount(); r++) {
+            RaceOutcome outcome = outcomes.get(batch.raceNumber(r));
+            if (outcome == null || outcome.finishOrder().isEmpty() || batch.starters(r) == 0) {
+                continue;
+            }
+            m.races.increment();
+
+            int n = batch.starters(r);
+            int top = batch.startNumber(batch.ranked(r, 0));
+            int topPlace = outcome.placeOf(top);
+            if (topPlace == 1) m.topPickWins.increment();
+            if (topPlace >= 1 && topPlace <= 3) m.topPickTop3.increment();
+
+            int winner = outcome.winner();
+            for (int k = 0; k < Math.min(3, n); k++) {
+                if (batch.startNumber(batch.ranked(r, k)) == winner) {
+                    m.winnerInTop3.increment();
+                    break;
+                }
+            }
+
+            if (outcome.winnerOdds() > 0) {
+                m.oddsRaces.increment();
+                m.stake.add(1.0);
+                if (topPlace == 1) {
+                    m.returns.add(outcome.winnerOdds());
+                }
+            }
+
+            double rho = spearman(batch, r, outcome);
+            if (!Double.isNaN(rho)) {
+                m.spearmanSum.add(rho);
+                m.spearmanRaces.increment();
+            }
+        }
+    }
+
+    /**
+     * Spearman mellan vår ranking och målordningen, bland hästar som
+     * fullföljde. NaN om färre än 3 sådana.
+     */
+    static double spearman(ScoreBatch b, int race, RaceOutcome outcome) {
+        int n = b.starters(race);
+        int[] place = new int[n];
+        int finishers = 0;
+        for (int k = 0; k < n; k++) {
+            place[k] = outcome.placeOf(b.startNumber(b.ranked(race, k)));
+            if (place[k] > 0) finishers++;
+        }
+        if (finishers < 3) {
+            return Double.NaN;
+        }
+
+        // Ranga om båda till 1..finishers bland dem som fullföljde
+        int ourRank = 0;
+        double d2 = 0;
+        for (int k = 0; k < n; k++) {
+            if (place[k] == 0) continue;
+            ourRank++;
+            int finishRank = 1;
+            for (int j = 0; j < n; j++) {
+                if (place[j] > 0 && place[j] < place[k]) finishRank++;
+            }
+            double d = ourRank - finishRank;
+            d2 += d * d;
+        }
+        double m = finishers;
+        return 1.0 - 6.0 * d2 / (m * (m * m - 1));
+    }
+
+    /**
+     * Par av kort och facit. För varje results-X.json används converted-X.rcb
+     * om den finns, annars converted-X.json.
+     */
+    public static List<Round> findRounds(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            return s.filter(Files::isRegularFile)
+                    .filter(p -> {
+                        String n = p.getFileName().toString();
+                        return n.startsWith("results-") && n.endsWith(".json");
+                    })
+                    .sorted()
+                    .map(Backtester::roundFor)
+                    .filter(r -> r != null)
+                    .toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte lista " + dir, e);
+        }
+    }
+
+    private static Round roundFor(Path results) {
+        String n = results.getFileName().toString();
+        String key = n.substring("results-".length(), n.length() - ".json".length());
+        for (String ext : new String[] {".rcb", ".json"}) {
+            Path card = results.resolveSibling("converted-" + key + ext);
+            if (Files.isRegularFile(card)) {
+                return new Round(card, results);
+            }
+        }
+        System.err.println("⚠ Inget konverterat kort för " + n + ", hoppar över");
+        return null;
+    }
+
+    /** Ett kort och dess facit. */
+    public record Round(Path card, Path results) {}
+
+    /** Trådsäkra räknare; varje omgång lägger till utan lås. */
+    static final class Metrics {
+        final LongAdder rounds = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder races = new LongAdder();
+        final LongAdder topPickWins = new LongAdder();
+        final LongAdder topPickTop3 = new LongAdder();
+        final LongAdder winnerInTop3 = new LongAdder();
+        final LongAdder oddsRaces = new LongAdder();
+        final DoubleAdder stake = new DoubleAdder();
+        final DoubleAdder returns = new DoubleAdder();
+        final DoubleAdder spearmanSum = new DoubleAdder();
+        final LongAdder spearmanRaces = new LongAdder();
+
+        BacktestReport toReport(double seconds) {
+            long n = races.sum();
+            double st = stake.sum();
+            long sr = spearmanRaces.sum();
+            return new BacktestReport(
+                    rounds.intValue(),
+                    failed.intValue(),
+                    n,
+                    n == 0 ? 0 : (double) topPickWins.sum() / n,
+                    n == 0 ? 0 : (double) topPickTop3.sum() / n,
+                    n == 0 ? 0 : (double) winnerInTop3.sum() / n,
+                    oddsRaces.sum(),
+                    st == 0 ? 0 : (returns.sum() - st) / st,
+                    sr == 0 ? 0 : spearmanSum.sum() / sr,
+                    seconds);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package org.example.backtest;
+
+import org.example.analysis.Factors;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreWeights;
+import org.example.analysis.ScoringFactor;
+import org.example.domain.Driver;
+import org.example.domain.Entry;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceCardLoader;
+import org.example.domain.RaceOutcome;
+import org.example.domain.RaceResult;
+import org.example.domain.RaceToAnalyze;
+import org.example.domain.RoundResult;
+import org.example.domain.RoundResultLoader;
+import org.example.history.HistoryStore;
+import org.example.history.RatingEngine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Söker bättre {@link ScoreWeights} mot historiska omgångar.
+ *
+ * Alla lopp med facit läses en gång och läggs ut i primitiva arrayer:
+ * kuskbetyg, spårgrupp (1, 2-4, 5-8, 9-), formfaktorn för varje
+ * formfönster 1..{@value ScoreBatch#MAX_FORM_WINDOW} och loppfaktorerna i
+ * {@link Factors}. En kandidat blir då bara en koefficientvektor, och score
+ * per start en skalärprodukt:
+ * <pre>
+ *   driverWeight * driverMultiplier * rating
+ *   + formWeight * form[formWindow][i]
+ *   + postWeight * post[grupp(i)]
+ *   + stretchWeight * stretch[i] + ... + postStatsWeight * postStats[i]
+ * </pre>
+ * Målet är medel-log-likelihood för vinnaren under samma softmax som
+ * {@link RaceSimulator} använder, så vikterna kalibreras också för
+ * simuleringen. Var femte omgång hålls utanför som validering.
+ *
+ * Först slumpsökning (kandidaterna utvärderas parallellt), sedan
+ * koordinatsökning från den bästa där varje steg provar alla grannar
+ * parallellt. driverMultiplier och formMaxPlace behålls från startvikterna.
+ *
+ * Kuskbetyget tas ur samma ratings som poängsättningen får
+ * ({@link RatingEngine.Snapshot#driverRating}), eller det manuella om de är
+ * null. Som i {@link Backtester} får de inte ha lärts på omgångarna som
+ * tunas; --tune kör därför med manuella betyg. Spårstatistiken räknas av
+ * samma skäl per omgång ur historiken före dess datum; utan historik
+ * behålls postStatsWeight från startvikterna.
+ */
+public class WeightTuner {
+
+    private static final int HOLDOUT_EVERY = 5;
+
+    private static final int RACE_FACTORS = 5;   // upplopp, distans, startmetod, galopp, spårstatistik
+
+    private final ScoreWeights base;
+    private final RatingEngine.Snapshot ratings;
+    private final HistoryStore history;
+    private final double temperature;
+
+    public WeightTuner(ScoreWeights base) {
+        this(base, null, null, RaceSimulator.DEFAULT_TEMPERATURE);
+    }
+
+    /**
+     * @param ratings ratings från före de tunade omgångarna, null = bara manuella kuskbetyg
+     * @param history historik för spårstatistiken, null = postStatsWeight tunas inte
+     */
+    public WeightTuner(ScoreWeights base, RatingEngine.Snapshot ratings, HistoryStore history, double temperature) {
+        this.base = base;
+        this.ratings = ratings;
+        this.history = history;
+        this.temperature = temperature;
+    }
+
+    /**
+     * CLI: --tune <katalog> [kandidater] [utfil], med start i base, manuella
+     * kuskbetyg och spårstatistik ur history (null = ingen).
+     */
+    public static void tune(String dir, int candidates, ScoreWeights base, HistoryStore history, Path outFile)
+            throws IOException {
+        WeightTuner tuner = new WeightTuner(base, null, history, RaceSimulator.DEFAULT_TEMPERATURE);
+        List<Backtester.Round> rounds = Backtester.findRounds(Path.of(dir));
+
+        long start = System.nanoTime();
+        Features train = tuner.features(rounds, false);
+        Features validation = tuner.features(rounds, true);
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "Läste %d omgångar: %d lopp träning, %d validering (%.2f s)%n",
+                rounds.size(), train.races(), validation.races(), loadSeconds);
+
+        Result r = tuner.search(train, candidates, 1L);
+        Score before = tuner.evaluate(validation, tuner.base);
+        Score after = tuner.evaluate(validation, r.best());
+
+        System.out.printf(Locale.ROOT, "%d kandidater på %.2f s%n", r.evaluations(), r.seconds());
+        System.out.printf(Locale.ROOT, "Träning:   log-lik %.4f -> %.4f, träff %.1f%% -> %.1f%%%n",
+                r.baseline().logLikelihood(), r.score().logLikelihood(),
+                r.baseline().hitRate() * 100, r.score().hitRate() * 100);
+        System.out.printf(Locale.ROOT, "Validering: log-lik %.4f -> %.4f, träff %.1f%% -> %.1f%%%n",
+                before.logLikelihood(), after.logLikelihood(), before.hitRate() * 100, after.hitRate() * 100);
+        System.out.println(r.best());
+
+        r.best().save(outFile);
+        System.out.println("✅ Skrev " + outFile);
+    }
+
+    /**
+     * Läser omgångarna parallellt och lägger ut alla lopp med vinnare.
+     *
+     * @param holdout true = bara var femte omgång (validering), false = övriga
+     */
+    public Features features(List<Backtester.Round> rounds, boolean holdout) {
+        List<Backtester.Round> selected = new ArrayList<>();
+        for (int i = 0; i < rounds.size(); i++) {
+            if ((i % HOLDOUT_EVERY == HOLDOUT_EVERY - 1) == holdout) {
+                selected.add(rounds.get(i));
+            }
+        }
+
+        List<Features.Builder> parts = selected.parallelStream()
+                .map(round -> {
+                    try {
+                        Features.Builder b = new Features.Builder(base.formMaxPlace(), ratings, history);
+                        b.add(RaceCardLoader.load(round.card()), RoundResultLoader.load(round.results()));
+                        return b;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Kunde inte läsa " + round.results(), e);
+                    }
+                })
+                .toList();
+
+        Features.Builder all = new Features.Builder(base.formMaxPlace(), ratings, history);
+        parts.forEach(all::append);
+        return all.build();
+    }
+
+    /** Slumpsökning med candidates kandidater, sedan koordinatsökning. */
+    public Result search(Features f, int candidates, long seed) {
+        long start = System.nanoTime();
+        SplittableRandom rnd = new SplittableRandom(seed);
+
+        // Kandidaterna dras i förväg så att resultatet inte beror på trådarna
+        ScoreWeights[] pool = new ScoreWeights[Math.max(1, candidates)];
+        pool[0] = base;
+        for (int c = 1; c < pool.length; c++) {
+            pool[c] = randomWeights(rnd);
+        }
+        Score[] scores = new Score[pool.length];
+        IntStream.range(0, pool.length).parallel().forEach(c -> scores[c] = evaluate(f, pool[c]));
+        int evaluations = pool.length;
+
+        int bestIdx = 0;
+        for (int c = 1; c < pool.length; c++) {
+            if (scores[c].logLikelihood() > scores[bestIdx].logLikelihood()) bestIdx = c;
+        }
+        ScoreWeights best = pool[bestIdx];
+        Score bestScore = scores[bestIdx];
+
+        // Koordinatsökning: multiplikativa steg som krymper när inget hjälper
+        double step = 0.5;
+        while (step > 0.01) {
+            List<ScoreWeights> neighbours = neighbours(best, step);
+            Score[] ns = new Score[neighbours.size()];
+            IntStream.range(0, ns.length).parallel().forEach(k -> ns[k] = evaluate(f, neighbours.get(k)));
+            evaluations += ns.length;
+
+            int k = -1;
+            for (int i = 0; i < ns.length; i++) {
+                if (ns[i].logLikelihood() > (k < 0 ? bestScore : ns[k]).logLikelihood() + 1e-12) k = i;
+            }
+            if (k < 0) {
+                step /= 2;
+            } else {
+                best = neighbours.get(k);
+                bestScore = ns[k];
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(best, bestScore, evaluate(f, base), evaluations, seconds);
+    }
+
+    /** Medel-log-likelihood och träffprocent för en viktvektor. */
+    public Score evaluate(Features f, ScoreWeights w) {
+        double a = w.driverWeight() * w.driverMultiplier() / temperature;
+        double b = w.formWeight() / temperature;
+        double[] c = {
+                w.postWeight() * w.postOne() / temperature,
+                w.postWeight() * w.postInner() / temperature,
+                w.postWeight() * w.postMiddle() / temperature,
+                w.postWeight() * w.postOuter() / temperature};
+        double[] d = {
+                w.stretchWeight() / temperature,
+                w.distanceWeight() / temperature,
+                w.startMethodWeight() / temperature,
+                w.gallopWeight() / temperature,
+                w.postStatsWeight() / temperature};
+        double[] form = f.form[w.formWindow() - 1];
+        double[][] race = f.race;
+
+        double logLik = 0;
+        int hits = 0;
+        double[] s = new double[f.maxField];
+        for (int r = 0; r < f.races(); r++) {
+            int from = f.raceStart[r];
+            int to = f.raceStart[r + 1];
+            double max = Double.NEGATIVE_INFINITY;
+            int top = from;
+            for (int i = from; i < to; i++) {
+                double v = a * f.rating[i] + b * form[i] + c[f.postGroup[i]]
+                        + d[0] * race[0][i] + d[1] * race[1][i] + d[2] * race[2][i]
+                        + d[3] * race[3][i] + d[4] * race[4][i];
+                s[i - from] = v;
+                if (v > max) {
+                    max = v;
+                    top = i;
+                }
+            }
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += Math.exp(s[i - from] - max);
+            }
+            int winner = f.winner[r];
+            logLik += s[winner - from] - max - Math.log(sum);
+            if (top == winner) hits++;
+        }
+        int n = Math.max(1, f.races());
+        return new Score(logLik / n, (double) hits / n);
+    }
+
+    private ScoreWeights randomWeights(SplittableRandom rnd) {
+        return new ScoreWeights(
+                rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(),
+                base.driverMultiplier(),
+                1 + rnd.nextInt(ScoreBatch.MAX_FORM_WINDOW),
+                base.formMaxPlace(),
+                rnd.nextDouble(10), rnd.nextDouble(10), rnd.nextDouble(10), rnd.nextDouble(10),
+                rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble(),
+                history == null ? base.postStatsWeight() : rnd.nextDouble());
+    }
+
+    // Varje kontinuerlig parameter * (1 +- step) (från 0: +step), formfönstret +-1
+    private List<ScoreWeights> neighbours(ScoreWeights w, double step) {
+        List<ScoreWeights> out = new ArrayList<>();
+        double[] v = {w.driverWeight(), w.formWeight(), w.postWeight(),
+                w.postOne(), w.postInner(), w.postMiddle(), w.postOuter(),
+                w.stretchWeight(), w.distanceWeight(), w.startMethodWeight(), w.gallopWeight(),
+                w.postStatsWeight()};
+        int tuned = history == null ? v.length - 1 : v.length;
+        for (int p = 0; p < tuned; p++) {
+            for (double factor : new double[] {1 - step, 1 + step}) {
+                double[] x = v.clone();
+                x[p] = v[p] == 0 ? (factor > 1 ? step : 0) : v[p] * factor;
+                if (x[p] != v[p]) out.add(weights(w, x, w.formWindow()));
+            }
+        }
+        for (int d : new int[] {-1, 1}) {
+            int window = w.formWindow() + d;
+            if (window >= 1 && window <= ScoreBatch.MAX_FORM_WINDOW) {
+                out.add(weights(w, v, window));
+            }
+        }
+        return out;
+    }
+
+    private static ScoreWeights weights(ScoreWeights w, double[] x, int formWindow) {
+        return new ScoreWeights(x[0], x[1], x[2], w.driverMultiplier(), formWindow, w.formMaxPlace(),
+                x[3], x[4], x[5], x[6], x[7], x[8], x[9], x[10], x[11]);
+    }
+
+    /**
+     * Förberäknade särdrag för alla lopp, struct-of-arrays.
+     * form[w - 1][i] = formfaktorn med formfönster w, race[k][i] =
+     * loppfaktor k (upplopp, distans, startmetod, galopp, spårstatistik).
+     */
+    public static final class Features {
+        final int[] raceStart;
+        final int[] winner;
+        final double[] rating;
+        final byte[] postGroup;
+        final double[][] form;
+        final double[][] race;
+        final int maxField;
+
+        private Features(int[] raceStart, int[] winner, double[] rating, byte[] postGroup, double[][] form,
+                         double[][] race) {
+            this.raceStart = raceStart;
+            this.winner = winner;
+            this.rating = rating;
+            this.postGroup = postGroup;
+            this.form = form;
+            this.race = race;
+            int max = 0;
+            for (int r = 0; r + 1 < raceStart.length; r++) {
+                max = Math.max(max, raceStart[r + 1] - raceStart[r]);
+            }
+            this.maxField = max;
+        }
+
+        public int races() {
+            return winner.length;
+        }
+
+        public int starts() {
+            return rating.length;
+        }
+
+        /** Samlar lopp i växande listor; byggs ihop till arrayer i build(). */
+        static final class Builder {
+            private final int formMaxPlace;
+            private final RatingEngine.Snapshot ratings;
+            private final HistoryStore history;
+            private final List<Integer> raceSizes = new ArrayList<>();
+            private final List<Integer> winners = new ArrayList<>();   // index inom loppet
+            private final List<double[]> rows = new ArrayList<>();     // rating, grupp, form 1..MAX, loppfaktorer
+
+            Builder(int formMaxPlace, RatingEngine.Snapshot ratings, HistoryStore history) {
+                this.formMaxPlace = formMaxPlace;
+                this.ratings = ratings;
+                this.history = history;
+            }
+
+            void add(RaceCard card, RoundResult result) {
+                Map<Integer, RaceOutcome> outcomes = new HashMap<>();
+                for (RaceOutcome o : result.races()) {
+                    outcomes.put(o.raceNumber(), o);
+                }
+                ScoringFactor[] factors = {Factors.stretch(), Factors.distance(), Factors.startMethod(),
+                        Factors.gallop(), history == null ? null
+                        : Factors.postStats(history.postPositionStatsBefore(HistoryStore.dateYmd(card.date())))};
+                for (RaceToAnalyze race : card.races()) {
+                    RaceOutcome o = outcomes.get(race.raceNumber());
+                    if (o == null) continue;
+                    int winnerIdx = -1;
+                    List<Entry> starters = race.starters();
+                    for (int k = 0; k < starters.size(); k++) {
+                        if (starters.get(k).startNumber() == o.winner()) winnerIdx = k;
+                    }
+                    if (winnerIdx < 0) continue;
+
+                    raceSizes.add(starters.size());
+                    winners.add(winnerIdx);
+                    for (Entry e : starters) {
+                        rows.add(row(e, race, factors));
+                    }
+                }
+            }
+
+            private double[] row(Entry e, RaceToAnalyze race, ScoringFactor[] factors) {
+                double[] row = new double[2 + ScoreBatch.MAX_FORM_WINDOW + RACE_FACTORS];
+                Driver d = e.horse().driver();
+                row[0] = ratings == null ? d.rating() : ratings.driverRating(d.name(), d.rating());
+                int post = e.startNumber();
+                row[1] = post == 1 ? 0 : post <= 4 ? 1 : post <= 8 ? 2 : 3;
+
+                // samma formräkning som ScoreCalculator, för varje fönster
+                int good = 0;
+                int seen = 0;
+                List<RaceResult> last = e.horse().lastRaces();
+                for (int w = 1; w <= ScoreBatch.MAX_FORM_WINDOW; w++) {
+                    if (seen < last.size()) {
+                        if (last.get(seen).finishPosition() <= formMaxPlace) good++;
+                        seen++;
+                    }
+                    row[1 + w] = (good / (double) w) * 10.0;
+                }
+                for (int k = 0; k < RACE_FACTORS; k++) {
+                    row[2 + ScoreBatch.MAX_FORM_WINDOW + k] = factors[k] == null ? 0 : factors[k].value(e, race);
+                }
+                return row;
+            }
+
+            void append(Builder o) {
+                raceSizes.addAll(o.raceSizes);
+                winners.addAll(o.winners);
+                rows.addAll(o.rows);
+            }
+
+            Features build() {
+                int races = raceSizes.size();
+                int n = rows.size();
+                int[] raceStart = new int[races + 1];
+                int[] winner = new int[races];
+                for (int r = 0; r < races; r++) {
+                    raceStart[r + 1] = raceStart[r] + raceSizes.get(r);
+                    winner[r] = raceStart[r] + winners.get(r);
+                }
+                double[] rating = new double[n];
+                byte[] group = new byte[n];
+                double[][] form = new double[ScoreBatch.MAX_FORM_WINDOW][n];
+                double[][] race = new double[RACE_FACTORS][n];
+                for (int i = 0; i < n; i++) {
+                    double[] row = rows.get(i);
+                    rating[i] = row[0];
+                    group[i] = (byte) row[1];
+                    for (int w = 0; w < ScoreBatch.MAX_FORM_WINDOW; w++) {
+                        form[w][i] = row[2 + w];
+                    }
+                    for (int k = 0; k < RACE_FACTORS; k++) {
+                        race[k][i] = row[2 + ScoreBatch.MAX_FORM_WINDOW + k];
+                    }
+                }
+                return new Features(raceStart, winner, rating, group, form, race);
+            }
+        }
+    }
+
+    /** Medel-log-likelihood för vinnaren och andel lopp där vår etta vann. */
+    public record Score(double logLikelihood, double hitRate) {}
+
+    /**
+     * @param best       bästa vikterna
+     * @param score      deras resultat på träningsdata
+     * @param baseline   startvikternas resultat på träningsdata
+     */
+    public record Result(ScoreWeights best, Score score, Score baseline, int evaluations, double seconds) {}
+}
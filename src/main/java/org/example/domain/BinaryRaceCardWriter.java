@@ -0,0 +1,143 @@
+package org.example.domain;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Skriver RaceCard i vårt kompakta binärformat (.rcb), lopp för lopp.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   header:   int MAGIC, short VERSION, short 0
+ *   lopp:     ett block per lopp, fasta fältbredder (se {@link MappedRaceCard})
+ *   tabell:   long offset per lopp
+ *   strängar: int antal, sedan per sträng: int längd + UTF-8
+ *   trailer:  int gameType, int date, int antal lopp, double omsättning,
+ *             long tabell-offset, long sträng-offset, int MAGIC
+ * </pre>
+ * Version 2 lade till odds och spelprocent per start och omsättningen i
+ * trailern; {@link MappedRaceCard} läser även version 1 (de fälten blir 0).
+ * Alla namn (häst, kusk, tränare, bana) lagras en gång i strängtabellen och
+ * refereras med index. Eftersom tabellerna ligger sist kan filen skrivas
+ * strömmande; läsaren börjar i trailern.
+ *
+ * Strömmen stängs inte.
+ */
+public class BinaryRaceCardWriter implements RaceCardSink {
+
+    static final int MAGIC = 0x41544752; // "ATGR"
+    static final short VERSION = 2;
+    static final int TRAILER_BYTES = 4 + 4 + 4 + 8 + 8 + 8 + 4;
+    static final int TRAILER_BYTES_V1 = 4 + 4 + 4 + 8 + 8 + 4;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private final List<Long> raceOffsets = new ArrayList<>();
+    private int gameTypeId;
+
+    public BinaryRaceCardWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    @Override
+    public void begin(String gameType, String date) throws IOException {
+        gameTypeId = intern(gameType);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+    }
+
+    @Override
+    public void race(RaceToAnalyze race) throws IOException {
+        raceOffsets.add((long) out.size());
+
+        Track track = race.track();
+        out.writeInt(race.raceNumber());
+        out.writeInt(intern(track.name()));
+        out.writeInt(track.stretchLengthMeters());
+        out.writeByte(track.isTightTrack() ? 1 : 0);
+        out.writeInt(race.distanceMeters());
+        out.writeByte(race.autoStart() ? 1 : 0);
+        out.writeInt(race.starters().size());
+
+        for (Entry e : race.starters()) {
+            Horse h = e.horse();
+            out.writeInt(e.startNumber());
+            out.writeInt(intern(h.name()));
+            out.writeInt(intern(h.trainer()));
+            out.writeInt(intern(h.driver().name()));
+            out.writeInt(h.driver().rating());
+            out.writeDouble(e.winOdds());
+            out.writeDouble(e.betDistribution());
+            out.writeInt(h.lastRaces().size());
+            for (RaceResult rr : h.lastRaces()) {
+                out.writeInt(intern(rr.track()));
+                out.writeInt(rr.distanceMeters());
+                out.writeInt(rr.startPosition());
+                out.writeInt(rr.finishPosition());
+                out.writeLong(rr.timeInMs());
+                out.writeByte(rr.gallop() ? 1 : 0);
+            }
+        }
+    }
+
+    @Override
+    public void end(String date) throws IOException {
+        end(date, 0);
+    }
+
+    @Override
+    public void end(String date, double turnover) throws IOException {
+        int dateId = intern(date);
+
+        long raceTable = out.size();
+        for (long offset : raceOffsets) {
+            out.writeLong(offset);
+        }
+
+        long stringTable = out.size();
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        out.writeInt(gameTypeId);
+        out.writeInt(dateId);
+        out.writeInt(raceOffsets.size());
+        out.writeDouble(turnover);
+        out.writeLong(raceTable);
+        out.writeLong(stringTable);
+        out.writeInt(MAGIC);
+        out.flush();
+    }
+
+    /** Skriver en hel RaceCard på en gång. */
+    public static void write(RaceCard card, OutputStream out) throws IOException {
+        BinaryRaceCardWriter w = new BinaryRaceCardWriter(out);
+        w.begin(card.gameType(), card.date());
+        for (RaceToAnalyze race : card.races()) {
+            w.race(race);
+        }
+        w.end(card.date(), card.turnover());
+    }
+
+    private int intern(String s) {
+        String key = s == null ? "" : s;
+        Integer id = stringIds.get(key);
+        if (id == null) {
+            id = strings.size();
+            strings.add(key);
+            stringIds.put(key, id);
+        }
+        return id;
+    }
+}
@@ -4,33 +4,39 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Läser in kuskbetyg från drivers.json i resources.
+ *
+ * Filen läses en gång per JVM; alla som slår upp kuskar delar samma
+ * {@link NameIndex}, så "Orjan Kihlstrom" och "Örjan Kihlström" är samma kusk.
  */
 public class DriverLoader {
 
-    public static Map<String, Driver> loadDrivers() {
-        Map<String, Driver> driverMap = new HashMap<>();
+    private static final class Holder {
+        static final NameIndex<Driver> DRIVERS = NameIndex.of(read(), Driver::name);
+    }
+
+    public static NameIndex<Driver> loadDrivers() {
+        return Holder.DRIVERS;
+    }
+
+    /** Kusken, eller en okänd kusk med betyg 3. */
+    public static Driver find(NameIndex<Driver> drivers, String name) {
+        Driver d = drivers.get(name);
+        return d != null ? d : new Driver(name, 3);
+    }
+
+    private static List<Driver> read() {
         try (InputStream is = DriverLoader.class.getResourceAsStream("/drivers.json")) {
             if (is == null) {
                 throw new RuntimeException("drivers.json saknas i resources!");
             }
             ObjectMapper mapper = new ObjectMapper();
-            List<Driver> drivers = mapper.readValue(is, new TypeReference<>() {});
-            for (Driver d : drivers) {
-                driverMap.put(d.name().toLowerCase(), d);
-            }
+            return mapper.readValue(is, new TypeReference<>() {});
         } catch (Exception e) {
             throw new RuntimeException("Fel vid läsning av drivers.json: " + e.getMessage(), e);
         }
-        return driverMap;
-    }
-
-    public static Driver find(Map<String, Driver> map, String name) {
-        return map.getOrDefault(name.toLowerCase(), new Driver(name, 3));
     }
 }
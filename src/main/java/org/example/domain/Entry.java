@@ -2,8 +2,24 @@ package org.example.domain;
 
 /**
  * En start i ett specifikt lopp: hästen X från spår Y.
+ *
+ * @param winOdds          vinnaroddset (t.ex. 3.45), 0 om okänt
+ * @param betDistribution  andel av V-spelets rader som har hästen (0-1), 0 om okänt
  */
 public record Entry(
         int startNumber,
-        Horse horse
-) {}
+        Horse horse,
+        double winOdds,
+        double betDistribution
+) {
+
+    /** Utan spelinformation (odds och spelprocent okända). */
+    public Entry(int startNumber, Horse horse) {
+        this(startNumber, horse, 0, 0);
+    }
+
+    /** Samma start med en annan häst (t.ex. efter kuskbyte); spelinformationen behålls. */
+    public Entry withHorse(Horse horse) {
+        return new Entry(startNumber, horse, winOdds, betDistribution);
+    }
+}
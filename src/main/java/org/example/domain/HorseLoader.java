@@ -11,6 +11,15 @@ import java.util.List;
  */
 public class HorseLoader {
 
+    private static final class Holder {
+        static final NameIndex<Horse> INDEX = NameIndex.of(loadHorses(), Horse::name);
+    }
+
+    /** Som loadHorses, men läst en gång per JVM och uppslagbar på namn. */
+    public static NameIndex<Horse> horses() {
+        return Holder.INDEX;
+    }
+
     public static List<Horse> loadHorses() {
         try (InputStream is = HorseLoader.class.getResourceAsStream("/horses.json")) {
             if (is == null) {
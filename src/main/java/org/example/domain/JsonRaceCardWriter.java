@@ -0,0 +1,103 @@
+package org.example.domain;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Skriver RaceCard-JSON (samma form som --analyze läser) lopp för lopp
+ * med en JsonGenerator. Strömmen stängs inte.
+ */
+public class JsonRaceCardWriter implements RaceCardSink {
+
+    private final JsonGenerator gen;
+    private boolean dateWritten;
+
+    public JsonRaceCardWriter(JsonFactory factory, OutputStream out) throws IOException {
+        this.gen = factory.createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.useDefaultPrettyPrinter();
+    }
+
+    @Override
+    public void begin(String gameType, String date) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("gameType", gameType);
+        if (date != null) {
+            gen.writeStringField("date", date);
+            dateWritten = true;
+        }
+        gen.writeArrayFieldStart("races");
+    }
+
+    @Override
+    public void race(RaceToAnalyze race) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("raceNumber", race.raceNumber());
+
+        Track track = race.track();
+        gen.writeObjectFieldStart("track");
+        gen.writeStringField("name", track.name());
+        gen.writeNumberField("stretchLengthMeters", track.stretchLengthMeters());
+        gen.writeBooleanField("isTightTrack", track.isTightTrack());
+        gen.writeEndObject();
+
+        gen.writeNumberField("distanceMeters", race.distanceMeters());
+        gen.writeBooleanField("autoStart", race.autoStart());
+
+        gen.writeArrayFieldStart("starters");
+        for (Entry e : race.starters()) {
+            Horse h = e.horse();
+            gen.writeStartObject();
+            gen.writeNumberField("startNumber", e.startNumber());
+            gen.writeNumberField("winOdds", e.winOdds());
+            gen.writeNumberField("betDistribution", e.betDistribution());
+
+            gen.writeObjectFieldStart("horse");
+            gen.writeStringField("name", h.name());
+            gen.writeStringField("trainer", h.trainer());
+
+            gen.writeObjectFieldStart("driver");
+            gen.writeStringField("name", h.driver().name());
+            gen.writeNumberField("rating", h.driver().rating());
+            gen.writeEndObject();
+
+            gen.writeArrayFieldStart("lastRaces");
+            for (RaceResult rr : h.lastRaces()) {
+                gen.writeStartObject();
+                gen.writeStringField("track", rr.track());
+                gen.writeNumberField("distanceMeters", rr.distanceMeters());
+                gen.writeNumberField("startPosition", rr.startPosition());
+                gen.writeNumberField("finishPosition", rr.finishPosition());
+                gen.writeNumberField("timeInMs", rr.timeInMs());
+                gen.writeBooleanField("gallop", rr.gallop());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+
+            gen.writeEndObject(); // horse
+            gen.writeEndObject(); // starter
+        }
+        gen.writeEndArray();
+
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void end(String date) throws IOException {
+        end(date, 0);
+    }
+
+    @Override
+    public void end(String date, double turnover) throws IOException {
+        gen.writeEndArray();
+        if (!dateWritten) {
+            gen.writeStringField("date", date);
+        }
+        gen.writeNumberField("turnover", turnover);
+        gen.writeEndObject();
+        gen.close(); // stänger inte strömmen, bara generatorn
+    }
+}
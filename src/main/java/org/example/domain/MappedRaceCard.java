@@ -0,0 +1,200 @@
+package org.example.domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Läser en binär RaceCard (.rcb, se {@link BinaryRaceCardWriter}) via
+ * en minnesmappad fil.
+ *
+ * Öppning läser bara trailern och lopptabellen; ett enskilt lopp avkodas
+ * först när det efterfrågas med {@link #race(int)}. Strängar avkodas vid
+ * första användning och återanvänds sedan.
+ *
+ * Läser version 1 (utan odds, spelprocent och omsättning) och version 2.
+ *
+ * Läsningar använder absoluta positioner, så instansen kan delas mellan trådar.
+ */
+public class MappedRaceCard {
+
+    private static final int STARTER_FIXED_BYTES_V1 = 6 * 4;
+    private static final int STARTER_FIXED_BYTES = 6 * 4 + 2 * 8;
+    private static final int LAST_RACE_BYTES = 4 * 4 + 8 + 1;
+
+    private final ByteBuffer buf;
+    private final long[] raceOffsets;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final String gameType;
+    private final String date;
+    private final double turnover;
+    private final boolean v1;
+
+    private MappedRaceCard(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        int size = buf.limit();
+        if (size < 8 + BinaryRaceCardWriter.TRAILER_BYTES_V1
+                || buf.getInt(0) != BinaryRaceCardWriter.MAGIC
+                || buf.getInt(size - 4) != BinaryRaceCardWriter.MAGIC) {
+            throw new IOException("Inte en binär RaceCard-fil");
+        }
+        short version = buf.getShort(4);
+        if (version != 1 && version != BinaryRaceCardWriter.VERSION) {
+            throw new IOException("Okänd version av binär RaceCard: " + version);
+        }
+        v1 = version == 1;
+
+        int t = size - (v1 ? BinaryRaceCardWriter.TRAILER_BYTES_V1 : BinaryRaceCardWriter.TRAILER_BYTES);
+        int gameTypeId = buf.getInt(t);
+        int dateId = buf.getInt(t + 4);
+        int raceCount = buf.getInt(t + 8);
+        if (!v1) {
+            turnover = buf.getDouble(t + 12);
+            t += 8;
+        } else {
+            turnover = 0;
+        }
+        int raceTable = (int) buf.getLong(t + 12);
+        int stringTable = (int) buf.getLong(t + 20);
+
+        raceOffsets = new long[raceCount];
+        for (int i = 0; i < raceCount; i++) {
+            raceOffsets[i] = buf.getLong(raceTable + i * 8);
+        }
+
+        int stringCount = buf.getInt(stringTable);
+        stringOffsets = new int[stringCount];
+        strings = new String[stringCount];
+        int pos = stringTable + 4;
+        for (int i = 0; i < stringCount; i++) {
+            stringOffsets[i] = pos;
+            pos += 4 + buf.getInt(pos);
+        }
+
+        gameType = string(gameTypeId);
+        date = string(dateId);
+    }
+
+    /** Mappar filen read-only. */
+    public static MappedRaceCard open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new MappedRaceCard(mapped);
+        }
+    }
+
+    /** Läser från en buffert i minnet (t.ex. ett uppladdat binärt kort). */
+    public static MappedRaceCard wrap(byte[] bytes) throws IOException {
+        return new MappedRaceCard(ByteBuffer.wrap(bytes));
+    }
+
+    /** true om filen börjar med vårt binära magic-nummer. */
+    public static boolean isBinary(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            while (head.hasRemaining() && ch.read(head) >= 0) {
+                // läs tills 4 byte eller EOF
+            }
+            return head.position() == 4 && head.getInt(0) == BinaryRaceCardWriter.MAGIC;
+        }
+    }
+
+    public String gameType() {
+        return gameType;
+    }
+
+    public String date() {
+        return date;
+    }
+
+    /** V-spelets omsättning i kronor, 0 om okänd. */
+    public double turnover() {
+        return turnover;
+    }
+
+    public int raceCount() {
+        return raceOffsets.length;
+    }
+
+    /** Loppnumret för lopp nr index (0-baserat) utan att avkoda loppet. */
+    public int raceNumber(int index) {
+        return buf.getInt((int) raceOffsets[index]);
+    }
+
+    /** Avkodar ett lopp (0-baserat index), övriga lopp rörs inte. */
+    public RaceToAnalyze race(int index) {
+        int pos = (int) raceOffsets[index];
+
+        int raceNumber = buf.getInt(pos);
+        String trackName = string(buf.getInt(pos + 4));
+        int stretch = buf.getInt(pos + 8);
+        boolean tight = buf.get(pos + 12) != 0;
+        int distance = buf.getInt(pos + 13);
+        boolean autoStart = buf.get(pos + 17) != 0;
+        int starterCount = buf.getInt(pos + 18);
+        pos += 22;
+
+        List<Entry> starters = new ArrayList<>(starterCount);
+        for (int s = 0; s < starterCount; s++) {
+            int startNumber = buf.getInt(pos);
+            String horseName = string(buf.getInt(pos + 4));
+            String trainer = string(buf.getInt(pos + 8));
+            String driverName = string(buf.getInt(pos + 12));
+            int rating = buf.getInt(pos + 16);
+            double winOdds = 0;
+            double betDistribution = 0;
+            if (!v1) {
+                winOdds = buf.getDouble(pos + 20);
+                betDistribution = buf.getDouble(pos + 28);
+            }
+            int lastCount = buf.getInt(pos + (v1 ? 20 : 36));
+            pos += v1 ? STARTER_FIXED_BYTES_V1 : STARTER_FIXED_BYTES;
+
+            List<RaceResult> lastRaces = new ArrayList<>(lastCount);
+            for (int r = 0; r < lastCount; r++) {
+                lastRaces.add(new RaceResult(
+                        string(buf.getInt(pos)),
+                        buf.getInt(pos + 4),
+                        buf.getInt(pos + 8),
+                        buf.getInt(pos + 12),
+                        buf.getLong(pos + 16),
+                        buf.get(pos + 24) != 0));
+                pos += LAST_RACE_BYTES;
+            }
+
+            Horse horse = new Horse(horseName, trainer, new Driver(driverName, rating), List.copyOf(lastRaces));
+            starters.add(new Entry(startNumber, horse, winOdds, betDistribution));
+        }
+
+        return new RaceToAnalyze(raceNumber, new Track(trackName, stretch, tight), distance, autoStart,
+                List.copyOf(starters));
+    }
+
+    /** Avkodar hela kortet. */
+    public RaceCard toRaceCard() {
+        List<RaceToAnalyze> races = new ArrayList<>(raceCount());
+        for (int i = 0; i < raceCount(); i++) {
+            races.add(race(i));
+        }
+        return new RaceCard(gameType, date, List.copyOf(races), turnover);
+    }
+
+    private String string(int id) {
+        String s = strings[id];
+        if (s == null) {
+            int pos = stringOffsets[id];
+            byte[] bytes = new byte[buf.getInt(pos)];
+            buf.get(pos + 4, bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = s; // kapplöpning ofarlig: samma värde
+        }
+        return s;
+    }
+}
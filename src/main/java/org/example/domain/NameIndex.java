@@ -0,0 +1,223 @@
+package org.example.domain;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Oföränderligt namnregister för kuskar, hästar och banor.
+ *
+ * Namn slås upp på en normaliserad nyckel ({@link #key}): Unicode NFD,
+ * diakritiska tecken borttagna, gemener och skiljetecken/mellanslag
+ * hopslagna till ett mellanslag. "ÖRJAN  Kihlström" och "Orjan Kihlstrom"
+ * är alltså samma kusk. Varje nyckel får ett tätt heltals-id (0..size-1)
+ * i inläsningsordning; vid dubbletter vinner den första.
+ *
+ * Uppslag är O(1). Prefix- och närmaste-namn-sökning finns för inmatning
+ * från människor (live-läget, servern), inte för de heta looparna.
+ *
+ * Instansen kan delas fritt mellan trådar.
+ */
+public final class NameIndex<T> {
+
+    private static final NameIndex<?> EMPTY = new NameIndex<>(List.of(), x -> "");
+
+    private final Map<String, Integer> ids;
+    private final String[] keys;       // per id
+    private final List<T> values;      // per id
+    private final int[] byKey;         // id:n sorterade på nyckel, för prefixsökning
+
+    private NameIndex(Collection<? extends T> items, Function<? super T, String> nameOf) {
+        Map<String, Integer> idMap = new HashMap<>(Math.max(16, items.size() * 2));
+        List<String> keyList = new ArrayList<>(items.size());
+        List<T> valueList = new ArrayList<>(items.size());
+        for (T item : items) {
+            String k = key(nameOf.apply(item));
+            if (idMap.putIfAbsent(k, valueList.size()) == null) {
+                keyList.add(k);
+                valueList.add(item);
+            }
+        }
+        this.ids = idMap;
+        this.keys = keyList.toArray(new String[0]);
+        this.values = Collections.unmodifiableList(valueList);
+        this.byKey = new int[keys.length];
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        for (int i = 0; i < order.length; i++) byKey[i] = order[i];
+    }
+
+    public static <T> NameIndex<T> of(Collection<? extends T> items, Function<? super T, String> nameOf) {
+        return new NameIndex<>(items, nameOf);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> NameIndex<T> empty() {
+        return (NameIndex<T>) EMPTY;
+    }
+
+    /** Id för namnet, eller -1 om det saknas. */
+    public int id(String name) {
+        Integer id = ids.get(key(name));
+        return id == null ? -1 : id;
+    }
+
+    /** Posten för namnet, eller null. */
+    public T get(String name) {
+        Integer id = ids.get(key(name));
+        return id == null ? null : values.get(id);
+    }
+
+    public T get(int id) {
+        return values.get(id);
+    }
+
+    /** Normaliserad nyckel för id. */
+    public String key(int id) {
+        return keys[id];
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /** Alla poster i id-ordning. */
+    public List<T> values() {
+        return values;
+    }
+
+    /** Poster vars nyckel börjar med prefixets nyckel, i nyckelordning. */
+    public List<T> withPrefix(String prefix) {
+        String p = key(prefix);
+        int lo = 0;
+        int hi = byKey.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[byKey[mid]].compareTo(p) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        List<T> out = new ArrayList<>();
+        for (int i = lo; i < byKey.length && keys[byKey[i]].startsWith(p); i++) {
+            out.add(values.get(byKey[i]));
+        }
+        return out;
+    }
+
+    /**
+     * Exakt träff om den finns, annars posten med minst redigeringsavstånd
+     * (Levenshtein på nycklarna) om det är högst maxEdits. null annars.
+     * Vid lika avstånd vinner lägst id.
+     */
+    public T closest(String name, int maxEdits) {
+        String k = key(name);
+        Integer exact = ids.get(k);
+        if (exact != null) return values.get(exact);
+
+        int best = -1;
+        int bestDistance = maxEdits + 1;
+        int[] row = new int[k.length() + 1];
+        for (int id = 0; id < keys.length; id++) {
+            String c = keys[id];
+            if (Math.abs(c.length() - k.length()) >= bestDistance) continue;
+            int d = distance(k, c, bestDistance - 1, row);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = id;
+            }
+        }
+        return best < 0 ? null : values.get(best);
+    }
+
+    /**
+     * Normaliserad nyckel: NFD, utan diakritiska tecken, gemener, och allt
+     * som inte är bokstav eller siffra blir ett enda mellanslag (trimmat).
+     */
+    public static String key(String name) {
+        if (name == null) return "";
+        if (isKey(name)) return name;
+
+        String s = isAscii(name) ? name : Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean gap = false;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            i += Character.charCount(cp);
+            int type = Character.getType(cp);
+            if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+                    || type == Character.COMBINING_SPACING_MARK) {
+                continue;
+            }
+            if (!Character.isLetterOrDigit(cp)) {
+                gap = sb.length() > 0;
+                continue;
+            }
+            if (gap) {
+                sb.append(' ');
+                gap = false;
+            }
+            appendFolded(sb, Character.toLowerCase(cp));
+        }
+        return sb.toString();
+    }
+
+    // Bokstäver som inte delas upp av NFD
+    private static void appendFolded(StringBuilder sb, int cp) {
+        switch (cp) {
+            case 'ø' -> sb.append('o');
+            case 'æ' -> sb.append("ae");
+            case 'ß' -> sb.append("ss");
+            case 'đ', 'ð' -> sb.append('d');
+            case 'ł' -> sb.append('l');
+            case 'þ' -> sb.append("th");
+            default -> sb.appendCodePoint(cp);
+        }
+    }
+
+    // Redan en nyckel (vanligt för data som lästs in en gång): ingen ny sträng
+    private static boolean isKey(String s) {
+        if (s.isEmpty()) return true;
+        if (s.charAt(0) == ' ' || s.charAt(s.length() - 1) == ' ') return false;
+        char prev = 'a';
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (c == ' ' && prev != ' ');
+            if (!ok) return false;
+            prev = c;
+        }
+        return true;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    // Levenshtein med en rad; avbryter när hela raden överstiger limit
+    private static int distance(String a, String b, int limit, int[] row) {
+        for (int i = 0; i <= a.length(); i++) row[i] = i;
+        for (int j = 1; j <= b.length(); j++) {
+            int diag = row[0];
+            row[0] = j;
+            int rowMin = row[0];
+            char bc = b.charAt(j - 1);
+            for (int i = 1; i <= a.length(); i++) {
+                int up = row[i];
+                int cost = a.charAt(i - 1) == bc ? 0 : 1;
+                row[i] = Math.min(Math.min(row[i - 1] + 1, up + 1), diag + cost);
+                diag = up;
+                rowMin = Math.min(rowMin, row[i]);
+            }
+            if (rowMin > limit) return limit + 1;
+        }
+        return row[a.length()];
+    }
+}
@@ -4,9 +4,18 @@ import java.util.List;
 
 /**
  * Hela omgången, t.ex. "V86 2025-10-18".
+ *
+ * @param turnover  V-spelets omsättning i kronor, 0 om okänd
  */
 public record RaceCard(
         String gameType,
         String date,
-        List<RaceToAnalyze> races
-) {}
+        List<RaceToAnalyze> races,
+        double turnover
+) {
+
+    /** Utan omsättning. */
+    public RaceCard(String gameType, String date, List<RaceToAnalyze> races) {
+        this(gameType, date, races, 0);
+    }
+}
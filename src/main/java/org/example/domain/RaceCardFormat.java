@@ -0,0 +1,38 @@
+package org.example.domain;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Filformat för konverterade RaceCards.
+ */
+public enum RaceCardFormat {
+
+    /** converted-*.json, läsbar och det vi alltid haft */
+    JSON(".json"),
+
+    /** converted-*.rcb, kompakt binärformat som kan minnesmappas */
+    BINARY(".rcb");
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String extension;
+
+    RaceCardFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /** Ny skrivare för formatet; strömmen stängs inte. */
+    public RaceCardSink writer(OutputStream out) throws IOException {
+        return switch (this) {
+            case JSON -> new JsonRaceCardWriter(JSON_FACTORY, out);
+            case BINARY -> new BinaryRaceCardWriter(out);
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Läser en konverterad RaceCard-fil, JSON eller binär (.rcb).
+ * Formatet avgörs av filens första byte, inte filändelsen.
+ */
+public class RaceCardLoader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static RaceCard load(Path file) throws IOException {
+        if (MappedRaceCard.isBinary(file)) {
+            return MappedRaceCard.open(file).toRaceCard();
+        }
+        return MAPPER.readValue(file.toFile(), RaceCard.class);
+    }
+}
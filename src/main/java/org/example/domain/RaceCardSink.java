@@ -0,0 +1,32 @@
+package org.example.domain;
+
+import java.io.IOException;
+
+/**
+ * Mottagare för en RaceCard som byggs upp lopp för lopp, t.ex. av den
+ * strömmande konverteringen. Bara ett lopp i taget behöver finnas i minnet.
+ *
+ * Anropsordning: begin, race (0..n gånger), end.
+ */
+public interface RaceCardSink {
+
+    /**
+     * @param date datum om det redan är känt, annars null (kommer då i end)
+     */
+    void begin(String gameType, String date) throws IOException;
+
+    void race(RaceToAnalyze race) throws IOException;
+
+    /**
+     * @param date omgångens slutliga datum
+     */
+    void end(String date) throws IOException;
+
+    /**
+     * Som {@link #end(String)} med V-spelets omsättning (kronor, 0 om okänd),
+     * som i rådatan kan stå efter loppen. Format utan plats för den ignorerar den.
+     */
+    default void end(String date, double turnover) throws IOException {
+        end(date);
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.domain;
+
+import java.util.List;
+
+/**
+ * Utfallet i ett avgjort lopp.
+ *
+ * @param finishOrder startnummer i målordning (ettan först); strukna,
+ *                    diskade och hästar som inte fullföljt saknas
+ * @param winnerOdds  vinnarens slutodds (0 om okänt)
+ */
+public record RaceOutcome(
+        int raceNumber,
+        List<Integer> finishOrder,
+        double winnerOdds
+) {
+
+    /** Vinnarens startnummer, 0 om loppet saknar resultat. */
+    public int winner() {
+        return finishOrder.isEmpty() ? 0 : finishOrder.get(0);
+    }
+
+    /** Placering (1-baserad) för ett startnummer, 0 om den inte fullföljde. */
+    public int placeOf(int startNumber) {
+        int i = finishOrder.indexOf(startNumber);
+        return i < 0 ? 0 : i + 1;
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.domain;
+
+import java.util.List;
+
+/**
+ * Facit för en hel omgång, t.ex. "V86 2025-10-29" (results-V86-2025-10-29.json).
+ */
+public record RoundResult(
+        String gameType,
+        String date,
+        List<RaceOutcome> races
+) {}
@@ -0,0 +1,18 @@
+package org.example.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Läser en resultatfil (results-<SPELFORM>-<DATUM>.json).
+ */
+public class RoundResultLoader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static RoundResult load(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), RoundResult.class);
+    }
+}
@@ -11,6 +11,15 @@ import java.util.List;
  */
 public class TrackLoader {
 
+    private static final class Holder {
+        static final NameIndex<Track> INDEX = NameIndex.of(loadTracks(), Track::name);
+    }
+
+    /** Som loadTracks, men läst en gång per JVM och uppslagbar på namn. */
+    public static NameIndex<Track> tracks() {
+        return Holder.INDEX;
+    }
+
     public static List<Track> loadTracks() {
         try (InputStream is = TrackLoader.class.getResourceAsStream("/tracks.json")) {
             if (is == null) {
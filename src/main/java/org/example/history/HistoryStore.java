@@ -0,0 +1,492 @@
+package org.example.history;
+
+import org.example.domain.NameIndex;
+import org.example.domain.RaceResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historiska lopp (RaceResult-rader) per häst, lagrat kolumnvis.
+ *
+ * Varje kolumn är en primitiv array (bana, distans, spår, placering, tid,
+ * flaggor...) och raderna för en häst är länkade bakåt via prevRow, så
+ * "senaste N starterna för häst X" går i O(N) utan att skapa objekt.
+ * Kedjan hålls sorterad på datum även om en äldre dag läggs till efter en
+ * nyare.
+ *
+ * På disk (om en katalog anges) är allt append-only:
+ * <pre>
+ *   horses.txt  ett hästnamn per rad, radnummer = häst-id
+ *   tracks.txt  ett bannamn per rad, radnummer = ban-id
+ *   rows.bin    en post per start med fast bredd ({@link #ROW_BYTES} byte)
+ * </pre>
+ * Nya resultat läggs till med {@link #batch()} utan att äldre data skrivs om.
+ * En halvskriven sista post eller rad (avbruten skrivning) kapas bort när
+ * storen öppnas, så att nästa batch hamnar i linje med fast bredd.
+ *
+ * Läsningar kan göras från flera trådar så länge ingen batch skrivs samtidigt.
+ */
+public class HistoryStore {
+
+    /** Flagga: hästen galopperade. */
+    public static final int FLAG_GALLOP = 1;
+
+    /** Flagga: loppet gick med autostart (annars voltstart eller okänt). */
+    public static final int FLAG_AUTOSTART = 2;
+
+    /** Placering för starter som inte fullföljde (diskade, distanserade, brutna). */
+    public static final int NOT_FINISHED = 99;
+
+    /** Katalogen som CLI:t använder om inget annat anges. */
+    public static final Path DEFAULT_DIR = Path.of("history");
+
+    static final int ROW_BYTES = 6 * 4 + 8 + 1;
+
+    private static final String HORSES = "horses.txt";
+    private static final String TRACKS = "tracks.txt";
+    private static final String ROWS = "rows.bin";
+
+    private final Path dir;
+
+    private final Map<String, Integer> horseIds = new HashMap<>();
+    private final List<String> horseNames = new ArrayList<>();
+    private final Map<String, Integer> trackIds = new HashMap<>();
+    private final List<String> trackNames = new ArrayList<>();
+
+    // kolumner, en post per start
+    private int rows;
+    private int[] horse = new int[1024];
+    private int[] track = new int[1024];
+    private int[] date = new int[1024];
+    private int[] distance = new int[1024];
+    private int[] startPos = new int[1024];
+    private int[] finishPos = new int[1024];
+    private long[] timeMs = new long[1024];
+    private byte[] flags = new byte[1024];
+    private int[] prevRow = new int[1024];
+
+    private volatile PostPositionStats postStats;
+    private final Map<Integer, PostPositionStats> postStatsBefore = new ConcurrentHashMap<>();
+
+    // per häst: senaste raden och antal starter
+    private int[] lastRow = new int[256];
+    private int[] startCount = new int[256];
+
+    private HistoryStore(Path dir) {
+        this.dir = dir;
+        Arrays.fill(lastRow, -1);
+    }
+
+    /** Tom store som bara lever i minnet (tester, benchmarks). */
+    public static HistoryStore inMemory() {
+        return new HistoryStore(null);
+    }
+
+    /** Öppnar (eller skapar) en store i katalogen och läser in allt. */
+    public static HistoryStore open(Path dir) {
+        HistoryStore store = new HistoryStore(dir);
+        try {
+            Files.createDirectories(dir);
+            store.loadNames(dir.resolve(HORSES), store.horseNames, store.horseIds);
+            store.loadNames(dir.resolve(TRACKS), store.trackNames, store.trackIds);
+            store.ensureHorseCapacity(store.horseNames.size());
+            store.loadRows(dir.resolve(ROWS));
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte läsa historik i " + dir, e);
+        }
+        return store;
+    }
+
+    /** "2025-10-29" -> 20251029, 0 om datumet inte går att läsa. */
+    public static int dateYmd(String date) {
+        if (date == null || !date.matches("\\d{4}-\\d{2}-\\d{2}")) return 0;
+        return Integer.parseInt(date.substring(0, 4) + date.substring(5, 7) + date.substring(8, 10));
+    }
+
+    /* === Läsning (allokeringsfri) === */
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int horseCount() {
+        return horseNames.size();
+    }
+
+    /** Häst-id, eller -1 om hästen saknar historik. */
+    public int horseId(String horseName) {
+        Integer id = horseIds.get(key(horseName));
+        return id == null ? -1 : id;
+    }
+
+    public String horseName(int horseId) {
+        return horseNames.get(horseId);
+    }
+
+    public int trackCount() {
+        return trackNames.size();
+    }
+
+    /** Ban-id, eller -1 om banan inte finns i historiken. */
+    public int trackIdOf(String trackName) {
+        Integer id = trackIds.get(key(trackName));
+        return id == null ? -1 : id;
+    }
+
+    /** Antal starter hästen har i historiken. */
+    public int starts(int horseId) {
+        return horseId < 0 ? 0 : startCount[horseId];
+    }
+
+    /**
+     * Fyller rowsOut med radnummer för hästens senaste starter, nyast först.
+     * Högst min(n, rowsOut.length) rader.
+     *
+     * @return antal rader som fylldes i
+     */
+    public int lastStarts(int horseId, int n, int[] rowsOut) {
+        if (horseId < 0) return 0;
+        int limit = Math.min(n, rowsOut.length);
+        int count = 0;
+        for (int r = lastRow[horseId]; r >= 0 && count < limit; r = prevRow[r]) {
+            rowsOut[count++] = r;
+        }
+        return count;
+    }
+
+    /** true om hästen redan har en start på banan den dagen. */
+    public boolean hasStart(int horseId, int dateYmd, int trackId) {
+        if (horseId < 0 || trackId < 0) return false;
+        for (int r = lastRow[horseId]; r >= 0 && date[r] >= dateYmd; r = prevRow[r]) {
+            if (date[r] == dateYmd && track[r] == trackId) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Antal starter bland de senaste window där hästen kom topp-maxPlace.
+     * Samma formräkning som ScoreCalculator gör på Horse.lastRaces.
+     */
+    public int topFinishes(int horseId, int window, int maxPlace) {
+        if (horseId < 0) return 0;
+        int good = 0;
+        int seen = 0;
+        for (int r = lastRow[horseId]; r >= 0 && seen < window; r = prevRow[r]) {
+            seen++;
+            if (finishPos[r] <= maxPlace) {
+                good++;
+            }
+        }
+        return good;
+    }
+
+    public int horse(int row) { return horse[row]; }
+    public int trackId(int row) { return track[row]; }
+    public String trackName(int row) { return trackNames.get(track[row]); }
+    public int date(int row) { return date[row]; }
+    public int distance(int row) { return distance[row]; }
+    public int startPosition(int row) { return startPos[row]; }
+    public int finishPosition(int row) { return finishPos[row]; }
+    public long timeInMs(int row) { return timeMs[row]; }
+    public boolean gallop(int row) { return (flags[row] & FLAG_GALLOP) != 0; }
+    public boolean autoStart(int row) { return (flags[row] & FLAG_AUTOSTART) != 0; }
+    public int flags(int row) { return flags[row]; }
+
+    /** Senaste n starterna som RaceResult (nyast först), t.ex. för Horse.lastRaces. */
+    public List<RaceResult> lastRaces(String horseName, int n) {
+        return lastRaces(horseName, n, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Senaste n starterna före dagen beforeYmd (nyast först). Ett kort som
+     * konverteras i efterhand får alltså bara den form som fanns då.
+     */
+    public List<RaceResult> lastRaces(String horseName, int n, int beforeYmd) {
+        int id = horseId(horseName);
+        if (id < 0 || n <= 0) return List.of();
+        int r = lastRow[id];
+        while (r >= 0 && date[r] >= beforeYmd) {
+            r = prevRow[r];
+        }
+        List<RaceResult> out = new ArrayList<>(Math.min(n, startCount[id]));
+        for (; r >= 0 && out.size() < n; r = prevRow[r]) {
+            out.add(new RaceResult(trackName(r), distance[r], startPos[r], finishPos[r], timeMs[r], gallop(r)));
+        }
+        return List.copyOf(out);
+    }
+
+    /**
+     * Spårstatistik per bana, distansklass och startmetod, räknad ur hela
+     * historiken. Räknas en gång och cachas tills nya rader lagts till.
+     */
+    public PostPositionStats postPositionStats() {
+        PostPositionStats stats = postStats;
+        if (stats == null || stats.rows() != rows) {
+            stats = PostPositionStats.of(this);
+            postStats = stats;
+        }
+        return stats;
+    }
+
+    /**
+     * Spårstatistik bara ur starter före dateYmd, t.ex. för backtest där
+     * omgångens egna och senare lopp inte får ingå. Räknas en gång per dag
+     * och cachas tills nya rader lagts till, så omgångar med samma datum
+     * (och upprepade backtest under viktjakten) delar på samma genomläsning.
+     */
+    public PostPositionStats postPositionStatsBefore(int dateYmd) {
+        return postStatsBefore.compute(dateYmd, (d, stats) ->
+                stats != null && stats.rows() == rows ? stats : PostPositionStats.before(this, d));
+    }
+
+    /* === Skrivning === */
+
+    /**
+     * Ny batch för att lägga till resultat. Raderna syns direkt i minnet;
+     * på disk skrivs de när batchen stängs (namn först, sedan rader).
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Samlar nya rader och skriver dem append-only till disk vid close().
+     */
+    public class Batch implements AutoCloseable {
+
+        private final List<String> newHorses = new ArrayList<>();
+        private final List<String> newTracks = new ArrayList<>();
+        private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+        private final DataOutputStream rowOut = new DataOutputStream(rowBytes);
+
+        private Batch() {}
+
+        /**
+         * Lägger till en start.
+         *
+         * @param dateYmd t.ex. 20251029
+         * @param extraFlags FLAG_GALLOP osv, utöver rr.gallop()
+         * @return radnumret
+         */
+        public int add(String horseName, int dateYmd, RaceResult rr, int extraFlags) {
+            int h = intern(horseName, horseNames, horseIds, newHorses);
+            ensureHorseCapacity(horseNames.size());
+            int t = intern(rr.track(), trackNames, trackIds, newTracks);
+            int f = extraFlags | (rr.gallop() ? FLAG_GALLOP : 0);
+
+            int row = appendRow(h, t, dateYmd, rr.distanceMeters(), rr.startPosition(),
+                    rr.finishPosition(), rr.timeInMs(), (byte) f);
+            try {
+                writeRow(rowOut, h, t, dateYmd, rr.distanceMeters(), rr.startPosition(),
+                        rr.finishPosition(), rr.timeInMs(), (byte) f);
+            } catch (IOException e) {
+                throw new RuntimeException(e); // ByteArrayOutputStream kastar inte
+            }
+            return row;
+        }
+
+        public int add(String horseName, int dateYmd, RaceResult rr) {
+            return add(horseName, dateYmd, rr, 0);
+        }
+
+        /**
+         * Som {@link #add(String, int, RaceResult, int)} om hästen inte redan
+         * har en start på samma bana samma dag, annars -1. Samma resultatfil
+         * kan alltså läsas in flera gånger.
+         */
+        public int addIfAbsent(String horseName, int dateYmd, RaceResult rr, int extraFlags) {
+            if (hasStart(horseId(horseName), dateYmd, trackIdOf(rr.track()))) {
+                return -1;
+            }
+            return add(horseName, dateYmd, rr, extraFlags);
+        }
+
+        @Override
+        public void close() {
+            if (dir == null) return;
+            try {
+                appendLines(dir.resolve(HORSES), newHorses);
+                appendLines(dir.resolve(TRACKS), newTracks);
+                rowOut.flush();
+                Files.write(dir.resolve(ROWS), rowBytes.toByteArray(),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new RuntimeException("Kunde inte skriva historik i " + dir, e);
+            }
+        }
+    }
+
+    /* === internt === */
+
+    // Namn jämförs normaliserade (skiftläge, diakritiska tecken, mellanslag);
+    // på disk och i horseName/trackName ligger namnet som det först stavades
+    static String key(String name) {
+        return NameIndex.key(name);
+    }
+
+    private static int intern(String name, List<String> names, Map<String, Integer> ids, List<String> added) {
+        String k = key(name);
+        Integer id = ids.get(k);
+        if (id == null) {
+            String display = name == null ? "" : name.trim();
+            id = names.size();
+            names.add(display);
+            ids.put(k, id);
+            added.add(display);
+        }
+        return id;
+    }
+
+    private int appendRow(int h, int t, int d, int dist, int sp, int fp, long ms, byte f) {
+        if (rows == horse.length) {
+            grow(rows * 2);
+        }
+        int r = rows++;
+        horse[r] = h;
+        track[r] = t;
+        date[r] = d;
+        distance[r] = dist;
+        startPos[r] = sp;
+        finishPos[r] = fp;
+        timeMs[r] = ms;
+        flags[r] = f;
+
+        // in i hästens kedja efter datum; vanligen direkt först
+        int prev = lastRow[h];
+        int next = -1;
+        while (prev >= 0 && date[prev] > d) {
+            next = prev;
+            prev = prevRow[prev];
+        }
+        prevRow[r] = prev;
+        if (next < 0) {
+            lastRow[h] = r;
+        } else {
+            prevRow[next] = r;
+        }
+        startCount[h]++;
+        return r;
+    }
+
+    private void grow(int capacity) {
+        horse = Arrays.copyOf(horse, capacity);
+        track = Arrays.copyOf(track, capacity);
+        date = Arrays.copyOf(date, capacity);
+        distance = Arrays.copyOf(distance, capacity);
+        startPos = Arrays.copyOf(startPos, capacity);
+        finishPos = Arrays.copyOf(finishPos, capacity);
+        timeMs = Arrays.copyOf(timeMs, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        prevRow = Arrays.copyOf(prevRow, capacity);
+    }
+
+    private void ensureHorseCapacity(int horses) {
+        if (horses <= lastRow.length) return;
+        int old = lastRow.length;
+        int capacity = Math.max(horses, old * 2);
+        lastRow = Arrays.copyOf(lastRow, capacity);
+        startCount = Arrays.copyOf(startCount, capacity);
+        Arrays.fill(lastRow, old, capacity, -1);
+    }
+
+    private static void writeRow(DataOutputStream out, int h, int t, int d, int dist, int sp, int fp,
+                                 long ms, byte f) throws IOException {
+        out.writeInt(h);
+        out.writeInt(t);
+        out.writeInt(d);
+        out.writeInt(dist);
+        out.writeInt(sp);
+        out.writeInt(fp);
+        out.writeLong(ms);
+        out.writeByte(f);
+    }
+
+    private void loadRows(Path file) throws IOException {
+        if (!Files.exists(file)) return;
+        long size = Files.size(file);
+        int count = (int) (size / ROW_BYTES);
+        truncate(file, (long) count * ROW_BYTES); // halvskriven sista post
+        grow(Math.max(1024, count));
+        try (InputStream raw = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16))) {
+            for (int i = 0; i < count; i++) {
+                appendRow(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readLong(), in.readByte());
+            }
+        } catch (EOFException e) {
+            // trunkerad fil: behåll det som gick att läsa
+        }
+    }
+
+    private void loadNames(Path file, List<String> names, Map<String, Integer> ids) throws IOException {
+        if (!Files.exists(file)) return;
+        truncate(file, completeLines(file)); // halvskriven sista rad
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                ids.putIfAbsent(key(line), names.size());
+                names.add(line);
+            }
+        }
+    }
+
+    // antal byte fram till och med sista radslutet
+    private static long completeLines(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(4096);
+            for (long end = ch.size(); end > 0; ) {
+                long from = Math.max(0, end - buf.capacity());
+                buf.clear().limit((int) (end - from));
+                while (buf.hasRemaining() && ch.read(buf, from + buf.position()) >= 0) {
+                    // läs hela blocket
+                }
+                for (int i = buf.position() - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') return from + i + 1;
+                }
+                end = from;
+            }
+            return 0;
+        }
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        if (Files.size(file) <= size) return;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        }
+    }
+
+    private static void appendLines(Path file, List<String> lines) throws IOException {
+        if (lines.isEmpty()) return;
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)),
+                StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                w.write(line);
+                w.write('\n');
+            }
+        }
+    }
+}
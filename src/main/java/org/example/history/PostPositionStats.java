@@ -0,0 +1,120 @@
+package org.example.history;
+
+/**
+ * Hur spåren har gått: starter och segrar per bana, distansklass,
+ * startmetod och spår, räknat i ett svep över {@link HistoryStore}.
+ *
+ * Allt ligger i platta int-arrayer; uppslag under poängsättning är några
+ * indexberäkningar utan I/O eller allokering. Hämta via
+ * {@link HistoryStore#postPositionStats()}, som cachar tills historiken växer.
+ *
+ * Få starter på en bana ger brusiga andelar, så {@link #winRate} krymper
+ * banans andel mot samma spårs andel över alla banor, som i sin tur krymps
+ * mot den genomsnittliga segerandelen per start.
+ */
+public final class PostPositionStats {
+
+    /** Högsta spår som räknas (volte med tre led räcker till 15). */
+    public static final int MAX_POST = 20;
+
+    /** Hur många "låtsasstarter" den mer allmänna andelen väger. */
+    static final double PRIOR_STARTS = 30;
+
+    private static final int CLASSES = 3;
+    private static final int POSTS = MAX_POST + 1;
+
+    private final HistoryStore store;
+    private final int rows;
+    private final int tracks;
+    private final int[] starts;     // [((bana * CLASSES + klass) * 2 + auto) * POSTS + spår]
+    private final int[] wins;
+    private final int[] allStarts;  // samma utan bana
+    private final int[] allWins;
+    private final double overallRate;
+
+    private PostPositionStats(HistoryStore store, int rows, int tracks, int beforeYmd) {
+        this.store = store;
+        this.rows = rows;
+        this.tracks = tracks;
+        this.starts = new int[tracks * CLASSES * 2 * POSTS];
+        this.wins = new int[starts.length];
+        this.allStarts = new int[CLASSES * 2 * POSTS];
+        this.allWins = new int[allStarts.length];
+
+        long total = 0;
+        long won = 0;
+        for (int r = 0; r < rows; r++) {
+            int post = store.startPosition(r);
+            if (post < 1 || post > MAX_POST || store.date(r) >= beforeYmd) continue;
+            int group = distanceClass(store.distance(r)) * 2 + (store.autoStart(r) ? 1 : 0);
+            int i = (store.trackId(r) * CLASSES * 2 + group) * POSTS + post;
+            int j = group * POSTS + post;
+            boolean win = store.finishPosition(r) == 1;
+            starts[i]++;
+            allStarts[j]++;
+            total++;
+            if (win) {
+                wins[i]++;
+                allWins[j]++;
+                won++;
+            }
+        }
+        this.overallRate = won == 0 ? 0.1 : (double) won / total;
+    }
+
+    static PostPositionStats of(HistoryStore store) {
+        return before(store, Integer.MAX_VALUE);
+    }
+
+    static PostPositionStats before(HistoryStore store, int beforeYmd) {
+        return new PostPositionStats(store, store.rowCount(), store.trackCount(), beforeYmd);
+    }
+
+    /** Antal historikrader när statistiken räknades (även de före ett datum räknas här). */
+    public int rows() {
+        return rows;
+    }
+
+    /** 0: sprint (-1799 m), 1: medel (1800-2399 m), 2: lång (2400- m). */
+    public static int distanceClass(int meters) {
+        return meters < 1800 ? 0 : meters < 2400 ? 1 : 2;
+    }
+
+    /** Segerandel per start över hela historiken. */
+    public double overallRate() {
+        return overallRate;
+    }
+
+    public int starts(String trackName, int distance, boolean autoStart, int post) {
+        int i = index(trackName, distance, autoStart, post);
+        return i < 0 ? 0 : starts[i];
+    }
+
+    public int wins(String trackName, int distance, boolean autoStart, int post) {
+        int i = index(trackName, distance, autoStart, post);
+        return i < 0 ? 0 : wins[i];
+    }
+
+    /** Krympt segerandel för spåret (se klassbeskrivningen). */
+    public double winRate(String trackName, int distance, boolean autoStart, int post) {
+        if (post < 1 || post > MAX_POST) return overallRate;
+        int j = (distanceClass(distance) * 2 + (autoStart ? 1 : 0)) * POSTS + post;
+        double postRate = (allWins[j] + PRIOR_STARTS * overallRate) / (allStarts[j] + PRIOR_STARTS);
+        int i = index(trackName, distance, autoStart, post);
+        if (i < 0) return postRate;
+        return (wins[i] + PRIOR_STARTS * postRate) / (starts[i] + PRIOR_STARTS);
+    }
+
+    /** winRate relativt en genomsnittlig start: 1 = som alla andra, 2 = dubbelt så bra. */
+    public double advantage(String trackName, int distance, boolean autoStart, int post) {
+        return winRate(trackName, distance, autoStart, post) / overallRate;
+    }
+
+    private int index(String trackName, int distance, boolean autoStart, int post) {
+        if (post < 1 || post > MAX_POST) return -1;
+        int t = store.trackIdOf(trackName);
+        if (t < 0 || t >= tracks) return -1;
+        int group = distanceClass(distance) * 2 + (autoStart ? 1 : 0);
+        return (t * CLASSES * 2 + group) * POSTS + post;
+    }
+}
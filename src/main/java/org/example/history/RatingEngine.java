@@ -0,0 +1,307 @@
+package org.example.history;
+
+import org.example.domain.NameIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inlärd styrka (Elo-skala, start {@link #INITIAL}) för hästar, kuskar och
+ * tränare, uppdaterad ett avgjort lopp i taget.
+ *
+ * Ett ekipages styrka är en viktad summa av hästens, kuskens och tränarens
+ * rating. Efter loppet jämförs varje ekipages utfall (andel av fältet det
+ * slog, delade placeringar räknas halvt) med förväntan mot fältets
+ * medelstyrka, och skillnaden fördelas på de tre med var sin K-faktor.
+ * Placeringarna räknas med en räknesortering, så ett lopp kostar O(starter)
+ * och historiken behöver aldrig räknas om.
+ *
+ * Allt ligger i primitiva arrayer per slag, indexerade med ett internerat
+ * id per normaliserat namn ({@link NameIndex#key}). {@link #save} skriver en
+ * ögonblicksbild atomiskt; {@link #snapshot()} ger en oföränderlig kopia som
+ * poängsättningen kan läsa medan nya lopp läggs till.
+ *
+ * Själva motorn är inte trådsäker; en skrivare i taget.
+ */
+public final class RatingEngine {
+
+    /** Vad en rating gäller. */
+    public enum Kind { HORSE, DRIVER, TRAINER }
+
+    /** Rating för den som inte har startat. */
+    public static final double INITIAL = 1500;
+
+    /** Antal starter innan en kusks inlärda rating ersätter den manuella. */
+    public static final int MIN_STARTS = 10;
+
+    /** Filnamnet i historikkatalogen. */
+    public static final String FILE_NAME = "ratings.bin";
+
+    static final int MAGIC = 0x4D41_5252; // "MARR"
+    static final short VERSION = 1;
+
+    // andel av ekipagets styrka och K-faktor per slag (HORSE, DRIVER, TRAINER)
+    static final double[] SHARE = {0.6, 0.3, 0.1};
+    static final double[] K = {32, 16, 12};
+
+    private static final int PLACES = HistoryStore.NOT_FINISHED + 1;
+
+    private final Table[] tables = {new Table(), new Table(), new Table()};
+    private long races;
+
+    // återanvänds mellan lopp
+    private int[][] ids = new int[3][32];
+    private double[] strength = new double[32];
+    private final int[] placeCount = new int[PLACES + 1];
+    private final int[] worseThan = new int[PLACES + 1];
+
+    public RatingEngine() {
+    }
+
+    /** Läser en ögonblicksbild, eller en tom motor om filen saknas. */
+    public static RatingEngine load(Path file) {
+        RatingEngine engine = new RatingEngine();
+        if (!Files.exists(file)) return engine;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Inte en ratingfil");
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Okänd version av ratingfil: " + version);
+            }
+            engine.races = in.readLong();
+            for (Table t : engine.tables) {
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    int id = t.intern(in.readUTF());
+                    t.rating[id] = in.readDouble();
+                    t.starts[id] = in.readInt();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte läsa ratings i " + file, e);
+        }
+        return engine;
+    }
+
+    /** Skriver en ögonblicksbild (temp-fil och atomisk flytt). */
+    public void save(Path file) {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeLong(races);
+                for (Table t : tables) {
+                    out.writeInt(t.size());
+                    for (int id = 0; id < t.size(); id++) {
+                        out.writeUTF(t.names.get(id));
+                        out.writeDouble(t.rating[id]);
+                        out.writeInt(t.starts[id]);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte skriva ratings till " + file, e);
+        }
+    }
+
+    /** Antal lopp som har räknats in. */
+    public long races() {
+        return races;
+    }
+
+    public int size(Kind kind) {
+        return tables[kind.ordinal()].size();
+    }
+
+    /** Rating för namnet, {@link #INITIAL} om det inte har startat. */
+    public double rating(Kind kind, String name) {
+        Table t = tables[kind.ordinal()];
+        int id = t.id(name);
+        return id < 0 ? INITIAL : t.rating[id];
+    }
+
+    public int starts(Kind kind, String name) {
+        Table t = tables[kind.ordinal()];
+        int id = t.id(name);
+        return id < 0 ? 0 : t.starts[id];
+    }
+
+    /**
+     * Räknar in ett avgjort lopp.
+     *
+     * @param horses   hästarnas namn, ett per start
+     * @param drivers  kuskarnas namn (null/tomt = okänd, påverkas inte)
+     * @param trainers tränarnas namn (null/tomt = okänd, påverkas inte)
+     * @param finish   placering per start, {@link HistoryStore#NOT_FINISHED}
+     *                 för den som inte fullföljde
+     * @param n        antal starter (de första n i arrayerna)
+     */
+    public void race(String[] horses, String[] drivers, String[] trainers, int[] finish, int n) {
+        if (n < 2) return;
+        ensureRaceCapacity(n);
+        String[][] names = {horses, drivers, trainers};
+
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            double s = 0;
+            for (int k = 0; k < 3; k++) {
+                String name = names[k][i];
+                int id = name == null || name.isBlank() ? -1 : tables[k].intern(name);
+                ids[k][i] = id;
+                s += SHARE[k] * (id < 0 ? INITIAL : tables[k].rating[id]);
+            }
+            strength[i] = s;
+            sum += s;
+        }
+
+        // räknesortering av placeringarna: hur många på varje, och hur många sämre
+        Arrays.fill(placeCount, 0);
+        for (int i = 0; i < n; i++) {
+            placeCount[place(finish[i])]++;
+        }
+        int below = n;
+        for (int p = 1; p <= PLACES; p++) {
+            below -= placeCount[p];
+            worseThan[p] = below;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int p = place(finish[i]);
+            double actual = (worseThan[p] + 0.5 * (placeCount[p] - 1)) / (n - 1);
+            double field = (sum - strength[i]) / (n - 1);
+            double expected = 1 / (1 + Math.pow(10, (field - strength[i]) / 400));
+            double delta = actual - expected;
+            for (int k = 0; k < 3; k++) {
+                int id = ids[k][i];
+                if (id < 0) continue;
+                Table t = tables[k];
+                t.rating[id] += K[k] * delta;
+                t.starts[id]++;
+            }
+        }
+        races++;
+    }
+
+    /** Oföränderlig kopia för poängsättning. */
+    public Snapshot snapshot() {
+        return new Snapshot(tables[0].copy(), tables[1].copy(), tables[2].copy(), races);
+    }
+
+    private static int place(int finish) {
+        return finish < 1 || finish > PLACES ? PLACES : finish;
+    }
+
+    private void ensureRaceCapacity(int n) {
+        if (n <= strength.length) return;
+        int cap = Math.max(n, strength.length * 2);
+        strength = new double[cap];
+        ids = new int[3][cap];
+    }
+
+    /** Namn -> id och en rating/antal starter per id. */
+    static final class Table {
+        final Map<String, Integer> ids;
+        final List<String> names;
+        double[] rating;
+        int[] starts;
+
+        Table() {
+            this(new HashMap<>(), new ArrayList<>(), new double[64], new int[64]);
+        }
+
+        private Table(Map<String, Integer> ids, List<String> names, double[] rating, int[] starts) {
+            this.ids = ids;
+            this.names = names;
+            this.rating = rating;
+            this.starts = starts;
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        int id(String name) {
+            Integer id = ids.get(NameIndex.key(name));
+            return id == null ? -1 : id;
+        }
+
+        int intern(String name) {
+            String k = NameIndex.key(name);
+            Integer id = ids.get(k);
+            if (id != null) return id;
+            int n = names.size();
+            if (n == rating.length) {
+                rating = Arrays.copyOf(rating, n * 2);
+                starts = Arrays.copyOf(starts, n * 2);
+            }
+            rating[n] = INITIAL;
+            starts[n] = 0;
+            names.add(name.trim());
+            ids.put(k, n);
+            return n;
+        }
+
+        Table copy() {
+            return new Table(Map.copyOf(ids), List.copyOf(names),
+                    Arrays.copyOf(rating, size()), Arrays.copyOf(starts, size()));
+        }
+    }
+
+    /**
+     * Ratings vid ett visst tillfälle. Kan delas mellan trådar.
+     */
+    public static final class Snapshot {
+
+        private final Table[] tables;
+        private final long races;
+
+        private Snapshot(Table horses, Table drivers, Table trainers, long races) {
+            this.tables = new Table[] {horses, drivers, trainers};
+            this.races = races;
+        }
+
+        public long races() {
+            return races;
+        }
+
+        public double rating(Kind kind, String name) {
+            Table t = tables[kind.ordinal()];
+            int id = t.id(name);
+            return id < 0 ? INITIAL : t.rating[id];
+        }
+
+        public int starts(Kind kind, String name) {
+            Table t = tables[kind.ordinal()];
+            int id = t.id(name);
+            return id < 0 ? 0 : t.starts[id];
+        }
+
+        /**
+         * Kuskens rating på drivers.json-skalan 1-5 (1500 = 3, 100 Elo per
+         * steg), eller manual om kusken har färre än {@link #MIN_STARTS} starter.
+         */
+        public double driverRating(String name, double manual) {
+            Table t = tables[Kind.DRIVER.ordinal()];
+            int id = t.id(name);
+            if (id < 0 || t.starts[id] < MIN_STARTS) return manual;
+            return Math.max(1, Math.min(5, 3 + (t.rating[id] - INITIAL) / 100));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.live;
+
+import org.example.analysis.FactorEngine;
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreCalculator;
+import org.example.atg.GameType;
+import org.example.domain.Entry;
+import org.example.domain.Horse;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceToAnalyze;
+import org.example.system.RowCodec;
+import org.example.system.SystemBuilder;
+import org.example.system.SystemBuilder.BuiltSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * En analyserad omgång som hålls uppdaterad under tävlingsdagen.
+ *
+ * Ranking, vinstchanser och föreslaget system räknas en gång; därefter
+ * tar {@link #apply(CardDelta)} emot en strykning eller ett kuskbyte och
+ * poängsätter bara om den avdelning som ändrats. Övriga hästars
+ * särdrag ligger kvar i {@link FactorEngine}s cache och övriga avdelningars
+ * ranking och vinstchanser rörs inte; bara systemet byggs om (millisekunder).
+ *
+ * Alla metoder är synkroniserade så att en instans kan delas mellan trådar.
+ */
+public class CardAnalysis {
+
+    private final FactorEngine engine;
+    private final RaceSimulator sim;
+    private final SystemBuilder builder;
+    private final double rowPrice;
+    private final String gameType;
+    private final String date;
+    private final double turnover;
+
+    private final RaceToAnalyze[] races;
+    private final List<List<EntryScore>> rankings;
+    private final double[][] winProb;      // per avdelning, i rankingordning
+    private final int[][] startNumbers;    // samma ordning
+    private double budget;
+    private BuiltSystem system;
+
+    public CardAnalysis(RaceCard card, FactorEngine engine, RaceSimulator sim, SystemBuilder builder,
+                        double budget, double rowPrice) {
+        this.engine = engine;
+        this.sim = sim;
+        this.builder = builder;
+        this.rowPrice = rowPrice;
+        this.gameType = card.gameType();
+        this.date = card.date();
+        this.turnover = card.turnover();
+        this.budget = budget;
+
+        int legs = card.races().size();
+        races = card.races().toArray(new RaceToAnalyze[0]);
+        rankings = new ArrayList<>(legs);
+        winProb = new double[legs][];
+        startNumbers = new int[legs][];
+
+        engine.prepare(card);
+        for (int leg = 0; leg < legs; leg++) {
+            rankings.add(null);
+            rescore(leg);
+        }
+        rebuildSystem();
+    }
+
+    /** Med calc:s vikter och ratings (samma ranking som --analyze) och spelformens radpris. */
+    public static CardAnalysis of(RaceCard card, ScoreCalculator calc, double budget) {
+        return new CardAnalysis(card, FactorEngine.standard(calc), new RaceSimulator(),
+                new SystemBuilder(), budget, GameType.parse(card.gameType()).rowPrice());
+    }
+
+    /** Tar in en ändring; poängsätter om dess avdelning och bygger om systemet. */
+    public synchronized Update apply(CardDelta delta) {
+        long start = System.nanoTime();
+        int leg = delta.leg() - 1;
+        if (leg < 0 || leg >= races.length) {
+            throw new IllegalArgumentException("Avdelning " + delta.leg() + " finns inte (1-" + races.length + ")");
+        }
+
+        RaceToAnalyze race = races[leg];
+        List<Entry> starters = new ArrayList<>(race.starters());
+        int idx = indexOf(starters, startNumberOf(delta));
+        if (idx < 0) {
+            throw new IllegalArgumentException("Start " + startNumberOf(delta) + " finns inte i avd " + delta.leg());
+        }
+
+        switch (delta) {
+            case CardDelta.Scratch s -> {
+                if (starters.size() == 1) {
+                    throw new IllegalArgumentException("Kan inte stryka sista hästen i avd " + delta.leg());
+                }
+                starters.remove(idx);
+            }
+            case CardDelta.DriverChange c -> {
+                Entry e = starters.get(idx);
+                Horse h = e.horse();
+                starters.set(idx, e.withHorse(new Horse(h.name(), h.trainer(), c.driver(), h.lastRaces())));
+            }
+        }
+        races[leg] = new RaceToAnalyze(race.raceNumber(), race.track(), race.distanceMeters(), race.autoStart(),
+                List.copyOf(starters));
+
+        rescore(leg);
+        rebuildSystem();
+        return new Update(delta, rankings.get(leg), winProb[leg].clone(), system, System.nanoTime() - start);
+    }
+
+    /** Ny budget; bara systemet byggs om. */
+    public synchronized BuiltSystem setBudget(double budget) {
+        this.budget = budget;
+        rebuildSystem();
+        return system;
+    }
+
+    /** Kortet som det ser ut efter alla ändringar. */
+    public synchronized RaceCard card() {
+        return new RaceCard(gameType, date, List.of(races), turnover);
+    }
+
+    public synchronized int legs() {
+        return races.length;
+    }
+
+    /** Avdelningens lopp (1-baserad avdelning). */
+    public synchronized RaceToAnalyze race(int leg) {
+        return races[leg - 1];
+    }
+
+    /** Ranking, bäst först (1-baserad avdelning). */
+    public synchronized List<EntryScore> ranking(int leg) {
+        return rankings.get(leg - 1);
+    }
+
+    /** Vinstchanser i rankingordning (1-baserad avdelning). */
+    public synchronized double[] winProbabilities(int leg) {
+        return winProb[leg - 1].clone();
+    }
+
+    public synchronized BuiltSystem system() {
+        return system;
+    }
+
+    public synchronized double budget() {
+        return budget;
+    }
+
+    private void rescore(int leg) {
+        List<EntryScore> ranking = engine.rankRace(races[leg]);
+        double[] scores = new double[ranking.size()];
+        int[] numbers = new int[ranking.size()];
+        for (int k = 0; k < scores.length; k++) {
+            scores[k] = ranking.get(k).score();
+            numbers[k] = ranking.get(k).entry().startNumber();
+        }
+        rankings.set(leg, ranking);
+        winProb[leg] = sim.winProbabilities(scores);
+        startNumbers[leg] = numbers;
+    }
+
+    private void rebuildSystem() {
+        system = budget >= rowPrice && races.length <= RowCodec.MAX_LEGS
+                ? builder.build(winProb, startNumbers, budget, rowPrice)
+                : null;
+    }
+
+    private static int startNumberOf(CardDelta delta) {
+        return switch (delta) {
+            case CardDelta.Scratch s -> s.startNumber();
+            case CardDelta.DriverChange c -> c.startNumber();
+        };
+    }
+
+    private static int indexOf(List<Entry> starters, int startNumber) {
+        for (int i = 0; i < starters.size(); i++) {
+            if (starters.get(i).startNumber() == startNumber) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Resultatet av en ändring.
+     *
+     * @param ranking  avdelningens nya ranking
+     * @param winProb  avdelningens nya vinstchanser, i rankingordning
+     * @param system   nytt föreslaget system (null om budgeten inte räcker till en rad
+     *                 eller kortet har fler lopp än ett system kan ha)
+     * @param nanos    tid för omräkningen
+     */
+    public record Update(CardDelta delta, List<EntryScore> ranking, double[] winProb, BuiltSystem system, long nanos) {}
+}
@@ -0,0 +1,47 @@
+package org.example.live;
+
+import org.example.domain.Driver;
+import org.example.domain.DriverLoader;
+import org.example.domain.NameIndex;
+
+
+/**
+ * En sen ändring i en omgång. leg är avdelningen (1-baserad), som på kupongen.
+ */
+public sealed interface CardDelta {
+
+    int leg();
+
+    /** Start startNumber i avdelning leg är struken. */
+    record Scratch(int leg, int startNumber) implements CardDelta {}
+
+    /** Ny kusk för start startNumber i avdelning leg. */
+    record DriverChange(int leg, int startNumber, Driver driver) implements CardDelta {}
+
+    /**
+     * Tolkar en rad från live-läget:
+     * <pre>
+     *   stryk &lt;AVD&gt; &lt;STARTNR&gt;
+     *   kusk  &lt;AVD&gt; &lt;STARTNR&gt; &lt;KUSKENS NAMN&gt;
+     * </pre>
+     * Kuskens betyg slås upp i drivers; okända kuskar får 3.
+     */
+    static CardDelta parse(String line, NameIndex<Driver> drivers) {
+        String[] parts = line.trim().split("\\s+", 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Ofullständig ändring: " + line);
+        }
+        int leg = Integer.parseInt(parts[1]);
+        int startNumber = Integer.parseInt(parts[2]);
+        return switch (parts[0].toLowerCase()) {
+            case "stryk" -> new Scratch(leg, startNumber);
+            case "kusk" -> {
+                if (parts.length < 4) {
+                    throw new IllegalArgumentException("Kusknamn saknas: " + line);
+                }
+                yield new DriverChange(leg, startNumber, DriverLoader.find(drivers, parts[3].trim()));
+            }
+            default -> throw new IllegalArgumentException("Okänd ändring: " + parts[0]);
+        };
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.live;
+
+import org.example.analysis.AnalysisReport;
+import org.example.analysis.RaceAnalyzer;
+import org.example.atg.AtgBatchConverter;
+import org.example.atg.AtgParser;
+import org.example.domain.Driver;
+import org.example.domain.DriverLoader;
+import org.example.domain.NameIndex;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceCardFormat;
+import org.example.domain.RaceCardLoader;
+import org.example.history.HistoryStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bevakar en arbetskatalog och håller analyserna aktuella i en och samma
+ * JVM (varm JIT, kusktabell och faktorcache laddade en gång).
+ *
+ * - Ny eller ändrad råfil (*.json från ATG) konverteras med {@link AtgParser}
+ *   till converted-*.json i samma katalog. Nya dumpar för samma omgång
+ *   ersätter kortet; den nyaste råfilen (ändringstid) vinner, även efter
+ *   en omstart, eftersom kortet får sin råfils ändringstid.
+ * - Ny eller ändrad converted-*.json|.rcb analyseras med {@link RaceAnalyzer}
+ *   och rapporten skrivs till analysis-<SPELFORM>-<DATUM>.txt.
+ *
+ * Händelser samlas per fil och en fil hanteras först när den varit tyst i
+ * debounce-tiden, så en fil som skrivs i flera omgångar bara bearbetas en
+ * gång. Rapporter skrivs till en temporär fil och flyttas på plats, så den
+ * som läser dem ser aldrig en halvskriven fil. Konverteringens utfil ger en
+ * ny händelse och analyseras då den vägen.
+ */
+public class CardWatcher implements Closeable {
+
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(500);
+
+    private final Path dir;
+    private final NameIndex<Driver> knownDrivers;
+    private final HistoryStore history;
+    private final RaceAnalyzer analyzer;
+    private final long debounceNanos;
+    private final ExecutorService workers;
+    private final WatchService watchService;
+
+    // bara watcher-tråden rör pending
+    private final Map<Path, Long> pending = new HashMap<>();
+    private final Map<Path, FileTime> processed = new ConcurrentHashMap<>();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final Object convertLock = new Object();   // en råfil i taget: jämförelse och flytt hör ihop
+
+    public CardWatcher(Path dir, NameIndex<Driver> knownDrivers, RaceAnalyzer analyzer,
+                       Duration debounce, int threads) throws IOException {
+        this(dir, knownDrivers, null, analyzer, debounce, threads);
+    }
+
+    /** @param history hästarnas senaste starter vid konvertering, null = ingen historik */
+    public CardWatcher(Path dir, NameIndex<Driver> knownDrivers, HistoryStore history, RaceAnalyzer analyzer,
+                       Duration debounce, int threads) throws IOException {
+        this.dir = dir;
+        this.knownDrivers = knownDrivers;
+        this.history = history;
+        this.analyzer = analyzer;
+        this.debounceNanos = debounce.toNanos();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        this.watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /** CLI: --watch <katalog> [trådar]. Kör tills processen avbryts. */
+    public static void watch(String dir, int threads, HistoryStore history, RaceAnalyzer analyzer)
+            throws IOException {
+        Path path = Path.of(dir);
+        CardWatcher watcher = new CardWatcher(path, DriverLoader.loadDrivers(), history, analyzer,
+                DEFAULT_DEBOUNCE, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watcher.close();
+            } catch (IOException ignored) {
+                // på väg ner ändå
+            }
+        }));
+        System.out.println("👀 Bevakar " + path.toAbsolutePath() + " (Ctrl-C för att sluta)");
+        watcher.run();
+    }
+
+    /** Startar bevakningen i en egen tråd. */
+    public Thread start() {
+        Thread t = new Thread(this::run, "card-watcher");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /** Bevakningsloopen; returnerar när watchern stängs. */
+    public void run() {
+        long pollMillis = Math.max(10, TimeUnit.NANOSECONDS.toMillis(debounceNanos) / 2);
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                        Path file = dir.resolve((Path) event.context());
+                        if (classify(file) != Kind.IGNORE) {
+                            pending.put(file, System.nanoTime());
+                        }
+                    }
+                    key.reset();
+                }
+                dispatchQuiet();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stängd: klart
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Skickar filer som varit tysta i debounce-tiden till arbetstrådarna
+    private void dispatchQuiet() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> e = it.next();
+            if (now - e.getValue() < debounceNanos) continue;
+            Path file = e.getKey();
+            if (!inFlight.add(file)) {
+                e.setValue(now); // bearbetas redan; ta den igen efter nästa tysta period
+                continue;
+            }
+            it.remove();
+            workers.submit(() -> {
+                try {
+                    process(file);
+                } finally {
+                    inFlight.remove(file);
+                }
+            });
+        }
+    }
+
+    private void process(Path file) {
+        try {
+            if (!Files.isRegularFile(file)) return;
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(processed.get(file))) return;
+
+            switch (classify(file)) {
+                case RAW -> {
+                    String gameType = AtgBatchConverter.detectGameType(file);
+                    if (gameType == null) {
+                        System.err.println("⚠ Kunde inte avgöra spelform för " + file.getFileName() + ", hoppar över");
+                    } else {
+                        Path out;
+                        synchronized (convertLock) {
+                            out = AtgParser.convertFile(gameType, file, dir, RaceCardFormat.JSON, knownDrivers,
+                                    history, target -> isNewerThan(modified, target) ? target : null);
+                        }
+                        System.out.println("  " + file.getFileName() + " -> "
+                                + (out != null ? out.getFileName() : "äldre än kortet som finns, hoppar över"));
+                    }
+                }
+                case CARD -> {
+                    Path out = analyze(file);
+                    System.out.println("  " + file.getFileName() + " -> " + out.getFileName());
+                }
+                case IGNORE -> {
+                    return;
+                }
+            }
+            processed.put(file, modified);
+        } catch (Exception e) {
+            System.err.println("❌ " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    // Kortet saknas eller kommer från en råfil som inte är nyare än source
+    private static boolean isNewerThan(FileTime source, Path card) {
+        try {
+            return !Files.exists(card) || Files.getLastModifiedTime(card).compareTo(source) <= 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /** Analyserar ett konverterat kort och skriver rapporten atomiskt. */
+    Path analyze(Path cardFile) throws IOException {
+        RaceCard card = RaceCardLoader.load(cardFile);
+        Path out = dir.resolve(reportName(cardFile));
+        writeAtomically(out, AnalysisReport.text(card, analyzer));
+        return out;
+    }
+
+    /** converted-V86-2025-10-29.json -> analysis-V86-2025-10-29.txt */
+    static String reportName(Path cardFile) {
+        String n = cardFile.getFileName().toString();
+        String stem = n.substring("converted-".length(), n.lastIndexOf('.'));
+        return "analysis-" + stem + ".txt";
+    }
+
+    static void writeAtomically(Path target, String content) throws IOException {
+        Path tmp = target.resolveSibling("." + target.getFileName() + "-" + UUID.randomUUID() + ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    enum Kind { RAW, CARD, IGNORE }
+
+    /** Vad en fil i katalogen är; våra egna rapporter, facit och temporärfiler ignoreras. */
+    static Kind classify(Path file) {
+        String n = file.getFileName().toString();
+        String lower = n.toLowerCase(Locale.ROOT);
+        if (n.startsWith(".")) return Kind.IGNORE;
+        if (n.startsWith("converted-")) {
+            return lower.endsWith(".json") || lower.endsWith(".rcb") ? Kind.CARD : Kind.IGNORE;
+        }
+        return AtgBatchConverter.isRawFile(file) ? Kind.RAW : Kind.IGNORE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package org.example.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.atg.AtgParser;
+import org.example.atg.GameType;
+import org.example.domain.Driver;
+import org.example.domain.DriverLoader;
+import org.example.domain.NameIndex;
+import org.example.domain.Entry;
+import org.example.domain.RaceCard;
+import org.example.domain.RaceCardSink;
+import org.example.domain.RaceToAnalyze;
+import org.example.domain.Track;
+import org.example.domain.TrackLoader;
+import org.example.history.HistoryStore;
+import org.example.system.RowCodec;
+import org.example.system.SystemBuilder;
+import org.example.system.SystemBuilder.BuiltSystem;
+import org.example.system.SystemCoupon;
+import org.example.system.SystemProbability;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Långlivad analysserver (JDK:ns HttpServer), så att skript och dashboards
+ * slipper JVM-start och inläsning av kusk-/bantabeller vid varje anrop.
+ *
+ * Varje anrop körs i en egen virtuell tråd. Kusk- och bantabellerna läses
+ * en gång och delas; de senast använda korten hålls i minnet (LRU) tillsammans
+ * med sin poängsatta batch och vinstchanser. Svar för samma kort och samma
+ * parametrar räknas bara en gång: samtidiga likadana anrop väntar på samma
+ * beräkning i stället för att göra den var för sig.
+ *
+ * Endpoints (alla svar är JSON):
+ *   GET  /health                                  status och tabellstorlekar
+ *   GET  /cards                                   korten i minnet
+ *   POST /cards                                   ladda upp ett konverterat RaceCard (JSON)
+ *   POST /convert/{SPELFORM}                      konvertera ATG:s rådata och lägg kortet i minnet
+ *   GET  /cards/{id}                              kortets sammanfattning, id = SPELFORM-DATUM
+ *   GET  /cards/{id}/rank                         ranking och vinstchanser per lopp
+ *   GET  /cards/{id}/simulate?n=200000&seed=1     Monte Carlo-simulering
+ *   GET  /cards/{id}/system?budget=500            föreslaget system för budgeten
+ */
+public class AnalysisServer implements AutoCloseable {
+
+    public static final int DEFAULT_CARD_CAPACITY = 32;
+
+    static final long DEFAULT_SIMULATIONS = 200_000;
+    static final long MAX_SIMULATIONS = 5_000_000;
+    private static final int MAX_BODY_BYTES = 32 * 1024 * 1024;
+    private static final int MAX_MEMOIZED_RESPONSES = 64;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService threads;
+    private final NameIndex<Driver> knownDrivers;
+    private final NameIndex<Track> tracks;
+    private final HistoryStore history;
+    private final BatchScorer scorer;
+    private final RaceSimulator sim = new RaceSimulator();
+    private final SystemBuilder builder = new SystemBuilder();
+    private final CardCache cards;
+
+    public AnalysisServer(InetSocketAddress address, NameIndex<Driver> knownDrivers, NameIndex<Track> tracks,
+                          int cardCapacity) throws IOException {
+        this(address, knownDrivers, tracks, null, new BatchScorer(), cardCapacity);
+    }
+
+    /**
+     * @param history hästarnas senaste starter vid /convert, null = ingen historik
+     * @param scorer  poängsätter korten (vikter och ratings)
+     */
+    public AnalysisServer(InetSocketAddress address, NameIndex<Driver> knownDrivers, NameIndex<Track> tracks,
+                          HistoryStore history, BatchScorer scorer, int cardCapacity) throws IOException {
+        this.knownDrivers = knownDrivers;
+        this.tracks = tracks;
+        this.history = history;
+        this.scorer = scorer;
+        this.cards = new CardCache(cardCapacity);
+        // stor backlog: hundratals samtidiga anslutningar ska köa i kärnan, inte avvisas
+        this.server = HttpServer.create(address, 1024);
+        this.threads = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(threads);
+        server.createContext("/", this::handle);
+    }
+
+    /** CLI: --serve [PORT]. Kör tills processen avbryts. */
+    public static void serve(int port, HistoryStore history, BatchScorer scorer) throws IOException {
+        AnalysisServer s = new AnalysisServer(new InetSocketAddress(port), DriverLoader.loadDrivers(),
+                TrackLoader.tracks(), history, scorer, DEFAULT_CARD_CAPACITY);
+        Runtime.getRuntime().addShutdownHook(new Thread(s::close));
+        s.start();
+        System.out.println("🌐 Analysservern lyssnar på http://localhost:" + s.port() + "/ (Ctrl-C för att sluta)");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        threads.close();
+    }
+
+    /** Lägger ett kort i minnet (ersätter ett med samma id) och returnerar dess id. */
+    public String put(RaceCard card) {
+        return load(card).id;
+    }
+
+    private LoadedCard load(RaceCard card) {
+        LoadedCard loaded = new LoadedCard(card, scorer, sim);
+        cards.put(loaded.id, loaded);
+        return loaded;
+    }
+
+    // === Routing ===
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String method = ex.getRequestMethod();
+            String[] parts = ex.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+            Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+            try {
+                Object body = route(method, parts, query, ex);
+                if (body instanceof byte[] bytes) {
+                    send(ex, 200, bytes);
+                } else if (body instanceof CardInfo info && method.equals("POST")) {
+                    send(ex, 201, MAPPER.writeValueAsBytes(info));
+                } else {
+                    send(ex, 200, MAPPER.writeValueAsBytes(body));
+                }
+            } catch (HttpError e) {
+                send(ex, e.status, error(e.getMessage()));
+            } catch (IllegalArgumentException | JsonProcessingException e) {
+                send(ex, 400, error(e.getMessage()));
+            } catch (Exception e) {
+                send(ex, 500, error(e.toString()));
+            }
+        }
+    }
+
+    private Object route(String method, String[] p, Map<String, String> q, HttpExchange ex) throws Exception {
+        switch (p[0]) {
+            case "health" -> {
+                requireMethod(method, "GET");
+                return new Health("ok", cards.size(), knownDrivers.size(), tracks.size());
+            }
+            case "convert" -> {
+                requireMethod(method, "POST");
+                if (p.length != 2) throw new HttpError(404, "Använd POST /convert/{SPELFORM}");
+                GameType type = GameType.parse(p[1]);
+                return info(convert(type.name(), body(ex)));
+            }
+            case "cards" -> {
+                if (p.length == 1) {
+                    if (method.equals("POST")) {
+                        RaceCard card = MAPPER.readValue(body(ex), RaceCard.class);
+                        if (card.gameType() == null || card.races() == null) {
+                            throw new IllegalArgumentException("RaceCard saknar gameType eller races");
+                        }
+                        return info(load(card));
+                    }
+                    requireMethod(method, "GET");
+                    return cards.values().stream().map(AnalysisServer::info).toList();
+                }
+                requireMethod(method, "GET");
+                LoadedCard c = cards.get(p[1]);
+                if (c == null) throw new HttpError(404, "Kortet " + p[1] + " finns inte i minnet");
+                if (p.length == 2) return info(c);
+                if (p.length > 3) break;
+                return switch (p[2]) {
+                    case "rank" -> c.memo("rank", () -> json(rank(c)));
+                    case "simulate" -> {
+                        long n = longParam(q, "n", DEFAULT_SIMULATIONS);
+                        long seed = longParam(q, "seed", 1);
+                        if (n < 1 || n > MAX_SIMULATIONS) {
+                            throw new IllegalArgumentException("n måste vara 1-" + MAX_SIMULATIONS);
+                        }
+                        yield c.memo("simulate:" + n + ":" + seed, () -> json(simulate(c, n, seed)));
+                    }
+                    case "system" -> {
+                        double budget = doubleParam(q, "budget", Double.NaN);
+                        if (!(budget > 0)) throw new IllegalArgumentException("budget saknas eller är inte positiv");
+                        yield c.memo("system:" + budget, () -> json(system(c, budget)));
+                    }
+                    default -> throw new HttpError(404, "Okänd resurs: " + p[2]);
+                };
+            }
+            default -> { }
+        }
+        throw new HttpError(404, "Okänd sökväg: " + ex.getRequestURI().getPath());
+    }
+
+    // === Endpoints ===
+
+    private LoadedCard convert(String gameType, byte[] raw) throws IOException {
+        CollectingSink sink = new CollectingSink();
+        AtgParser.streamConvert(gameType, new ByteArrayInputStream(raw), sink, knownDrivers, tracks, history);
+        return load(sink.card());
+    }
+
+    private List<RaceRanking> rank(LoadedCard c) {
+        ScoreBatch b = c.batch;
+        List<RaceRanking> out = new ArrayList<>(b.raceCount());
+        for (int r = 0; r < b.raceCount(); r++) {
+            RaceToAnalyze race = c.card.races().get(r);
+            List<RankedStart> starters = new ArrayList<>(b.starters(r));
+            for (int k = 0; k < b.starters(r); k++) {
+                int i = b.ranked(r, k);
+                Entry e = b.entry(i);
+                Driver d = e.horse().driver();
+                starters.add(new RankedStart(e.startNumber(), e.horse().name(), d == null ? null : d.name(),
+                        b.driverRating(i), b.score(i), c.winProb[i]));
+            }
+            out.add(new RaceRanking(race.raceNumber(), race.track() == null ? null : race.track().name(), starters));
+        }
+        return out;
+    }
+
+    private SimulationResponse simulate(LoadedCard c, long n, long seed) {
+        ScoreBatch b = c.batch;
+        RaceSimulator.SimulationResult res = sim.simulate(b, n, seed);
+        List<RaceSimulation> races = new ArrayList<>(b.raceCount());
+        for (int r = 0; r < b.raceCount(); r++) {
+            List<SimulatedStart> starters = new ArrayList<>(b.starters(r));
+            for (int k = 0; k < b.starters(r); k++) {
+                int i = b.ranked(r, k);
+                starters.add(new SimulatedStart(b.startNumber(i), b.entry(i).horse().name(), b.score(i),
+                        res.win()[i], res.place()[i]));
+            }
+            races.add(new RaceSimulation(b.raceNumber(r), starters));
+        }
+        return new SimulationResponse(c.id, res.simulations(), res.maxHalfWidth(), res.allTopPicksWin(), races);
+    }
+
+    private SystemResponse system(LoadedCard c, double budget) {
+        double rowPrice = GameType.parse(c.card.gameType()).rowPrice();
+        if (budget < rowPrice) {
+            throw new IllegalArgumentException("Budgeten räcker inte till en rad (" + rowPrice + " kr)");
+        }
+        if (c.batch.raceCount() > RowCodec.MAX_LEGS) {
+            throw new IllegalArgumentException("Kortet har fler lopp än ett system kan ha (" + RowCodec.MAX_LEGS + ")");
+        }
+        BuiltSystem s = builder.build(c.batch, c.winProb, budget, rowPrice);
+        SystemCoupon coupon = s.coupon();
+        List<List<Integer>> legs = new ArrayList<>(coupon.legs());
+        for (int leg = 0; leg < coupon.legs(); leg++) {
+            List<Integer> numbers = new ArrayList<>();
+            for (int n : coupon.startNumbers(leg)) numbers.add(n);
+            legs.add(numbers);
+        }
+        double[] errors = new SystemProbability(Math.min(2, coupon.legs() - 1))
+                .errors(c.batch, c.winProb, coupon).clone();
+        return new SystemResponse(c.id, budget, rowPrice, coupon.toString(), legs, s.rows(), s.cost(),
+                s.hitProbability(), errors);
+    }
+
+    private static CardInfo info(LoadedCard c) {
+        return new CardInfo(c.id, c.card.gameType(), c.card.date(), c.batch.raceCount(), c.batch.size());
+    }
+
+    // === Hjälpare ===
+
+    private static byte[] body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw new HttpError(413, "För stor kropp (max " + MAX_BODY_BYTES + " byte)");
+            if (bytes.length == 0) throw new IllegalArgumentException("Tom kropp");
+            return bytes;
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, byte[] body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] json(Object o) {
+        try {
+            return MAPPER.writeValueAsBytes(o);
+        } catch (IOException e) {
+            throw new RuntimeException("Kunde inte skriva JSON", e);
+        }
+    }
+
+    private static byte[] error(String message) {
+        return json(Map.of("error", message == null ? "okänt fel" : message));
+    }
+
+    private static void requireMethod(String method, String expected) throws HttpError {
+        if (!method.equals(expected)) throw new HttpError(405, "Metoden " + method + " stöds inte här");
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> q = new HashMap<>();
+        if (raw == null) return q;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                q.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return q;
+    }
+
+    private static long longParam(Map<String, String> q, String name, long def) {
+        String v = q.get(name);
+        try {
+            return v == null ? def : Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " är inte ett heltal: " + v);
+        }
+    }
+
+    private static double doubleParam(Map<String, String> q, String name, double def) {
+        String v = q.get(name);
+        try {
+            return v == null ? def : Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " är inte ett tal: " + v);
+        }
+    }
+
+    private static final class HttpError extends IOException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Ett kort i minnet: poängsatt och rankat en gång, sedan bara läst
+     * (batchen delas mellan trådarna). Svaren memoiseras per nyckel; de
+     * {@link #MAX_MEMOIZED_RESPONSES} senast använda parameteruppsättningarna
+     * behålls (LRU).
+     */
+    private static final class LoadedCard {
+        final String id;
+        final RaceCard card;
+        final ScoreBatch batch;
+        final double[] winProb;
+        private final LinkedHashMap<String, CompletableFuture<byte[]>> responses =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<byte[]>> eldest) {
+                        return size() > MAX_MEMOIZED_RESPONSES;
+                    }
+                };
+
+        LoadedCard(RaceCard card, BatchScorer scorer, RaceSimulator sim) {
+            this.id = card.gameType().toUpperCase(Locale.ROOT) + "-" + card.date();
+            this.card = card;
+            this.batch = ScoreBatch.of(card);
+            scorer.scoreAndRank(batch);
+            this.winProb = sim.winProbabilities(batch);
+        }
+
+        // Första anropet för en nyckel räknar; samtidiga anrop väntar på samma future.
+        // Låset hålls bara runt uppslaget, aldrig under beräkningen (i Java 21 skulle
+        // den virtuella trådens bärartråd annars vara fast hela tiden).
+        byte[] memo(String key, Supplier<byte[]> compute) throws Exception {
+            CompletableFuture<byte[]> mine = new CompletableFuture<>();
+            CompletableFuture<byte[]> existing;
+            synchronized (responses) {
+                existing = responses.putIfAbsent(key, mine);
+            }
+            if (existing != null) {
+                try {
+                    return existing.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+            try {
+                byte[] result = compute.get();
+                mine.complete(result);
+                return result;
+            } catch (Throwable t) {
+                // även Error: annars väntar alla andra på nyckeln för evigt
+                synchronized (responses) {
+                    responses.remove(key, mine);
+                }
+                mine.completeExceptionally(t);
+                throw t;
+            }
+        }
+    }
+
+    /** De senast använda korten; kort kritisk sektion, inga beräkningar under låset. */
+    private static final class CardCache {
+        private final LinkedHashMap<String, LoadedCard> map;
+
+        CardCache(int capacity) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, LoadedCard> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized LoadedCard get(String id) {
+            return map.get(id.toUpperCase(Locale.ROOT));
+        }
+
+        synchronized void put(String id, LoadedCard card) {
+            map.put(id, card);
+        }
+
+        synchronized List<LoadedCard> values() {
+            return List.copyOf(map.values());
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+
+    /** Samlar den strömmande konverteringens lopp till ett RaceCard i minnet. */
+    private static final class CollectingSink implements RaceCardSink {
+        private String gameType;
+        private String date;
+        private double turnover;
+        private final List<RaceToAnalyze> races = new ArrayList<>();
+
+        @Override
+        public void begin(String gameType, String date) {
+            this.gameType = gameType;
+            this.date = date;
+        }
+
+        @Override
+        public void race(RaceToAnalyze race) {
+            races.add(race);
+        }
+
+        @Override
+        public void end(String date) {
+            this.date = date;
+        }
+
+        @Override
+        public void end(String date, double turnover) {
+            this.date = date;
+            this.turnover = turnover;
+        }
+
+        RaceCard card() {
+            return new RaceCard(gameType, date, List.copyOf(races), turnover);
+        }
+    }
+
+    // === Svar ===
+
+    public record Health(String status, int cards, int drivers, int tracks) {}
+
+    public record CardInfo(String id, String gameType, String date, int races, int starters) {}
+
+    public record RankedStart(int startNumber, String horse, String driver, double driverRating,
+                              double score, double winProbability) {}
+
+    public record RaceRanking(int raceNumber, String track, List<RankedStart> starters) {}
+
+    public record SimulatedStart(int startNumber, String horse, double score, double win, double place) {}
+
+    public record RaceSimulation(int raceNumber, List<SimulatedStart> starters) {}
+
+    public record SimulationResponse(String id, long simulations, double maxHalfWidth, double allTopPicksWin,
+                                     List<RaceSimulation> races) {}
+
+    public record SystemResponse(String id, double budget, double rowPrice, String coupon,
+                                 List<List<Integer>> legs, long rows, double cost, double hitProbability,
+                                 double[] errorProbabilities) {}
+}
@@ -0,0 +1,55 @@
+package org.example.system;
+
+/**
+ * Packar en systemrad (ett startnummer per avdelning) i en long.
+ *
+ * Avdelning leg ligger i bitarna leg * 6 .. leg * 6 + 5, så startnummer
+ * 1-63 och upp till 10 avdelningar ryms. Rader kan därmed räknas, jämföras
+ * och lagras i primitiva arrayer utan att skapa objekt per rad.
+ */
+public final class RowCodec {
+
+    static final int BITS = 6;
+    static final long MASK = (1L << BITS) - 1;
+
+    /** Max antal avdelningar i en packad rad. */
+    public static final int MAX_LEGS = Long.SIZE / BITS;
+
+    /** Högsta startnummer som ryms. */
+    public static final int MAX_START_NUMBER = (int) MASK;
+
+    private RowCodec() {
+    }
+
+    /** Startnumret i avdelning leg (0-baserad). */
+    public static int get(long row, int leg) {
+        return (int) ((row >>> (leg * BITS)) & MASK);
+    }
+
+    /** Raden med startNumber i avdelning leg. */
+    public static long with(long row, int leg, int startNumber) {
+        int shift = leg * BITS;
+        return (row & ~(MASK << shift)) | ((long) startNumber << shift);
+    }
+
+    public static long pack(int... startNumbers) {
+        if (startNumbers.length > MAX_LEGS) {
+            throw new IllegalArgumentException("Max " + MAX_LEGS + " avdelningar, fick " + startNumbers.length);
+        }
+        long row = 0;
+        for (int leg = 0; leg < startNumbers.length; leg++) {
+            row = with(row, leg, startNumbers[leg]);
+        }
+        return row;
+    }
+
+    /** T.ex. "4-1-7-2-11-3" */
+    public static String format(long row, int legs) {
+        StringBuilder sb = new StringBuilder();
+        for (int leg = 0; leg < legs; leg++) {
+            if (leg > 0) sb.append('-');
+            sb.append(get(row, leg));
+        }
+        return sb.toString();
+    }
+}
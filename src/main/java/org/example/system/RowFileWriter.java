@@ -0,0 +1,52 @@
+package org.example.system;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+/**
+ * Skriver rader strömmande till en radfil för inlämning: en rad per spelrad,
+ * startnumren per avdelning kommaseparerade, t.ex. "4,1,7,2,11,3,5,9".
+ *
+ * Används som LongConsumer direkt från {@link RowReducer} eller
+ * {@link SystemCoupon#forEachRow}, så inga rader hålls i minnet.
+ */
+public class RowFileWriter implements LongConsumer, Closeable {
+
+    private final BufferedWriter out;
+    private final int legs;
+    private long written;
+
+    public RowFileWriter(Path file, int legs) throws IOException {
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.legs = legs;
+    }
+
+    @Override
+    public void accept(long row) {
+        try {
+            for (int leg = 0; leg < legs; leg++) {
+                if (leg > 0) out.write(',');
+                out.write(Integer.toString(RowCodec.get(row, leg)));
+            }
+            out.newLine();
+            written++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long written() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,223 @@
+package org.example.system;
+
+import java.util.BitSet;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reducerar ett fullständigt system (R-system) till en delmängd rader med
+ * garanti: om vinnarraden finns i det fulla systemet har någon rad i det
+ * reducerade högst maxErrors fel.
+ *
+ * Raderna numreras med blandad bas (ett index per valt startnummer och
+ * avdelning), så täckningen hålls i en BitSet och en rads "boll" (alla
+ * rader inom maxErrors fel) räknas fram med aritmetik på indexet.
+ *
+ * Urvalet är girig mängdtäckning med lata vinster i hinkar: kandidaterna
+ * ligger i hinken för sin senast kända vinst (antal otäckta rader i bollen),
+ * vinsterna kan bara minska, och när en hink tas fram räknas alla dess
+ * kandidaters vinster om parallellt innan urvalet sker i tur och ordning.
+ * Valda rader skickas direkt till en LongConsumer (se {@link RowFileWriter})
+ * och samlas aldrig i en lista.
+ */
+public class RowReducer {
+
+    /** Största fulla system vi reducerar. */
+    public static final long MAX_ROWS = 50_000_000;
+
+    private final int maxErrors;
+
+    public RowReducer(int maxErrors) {
+        if (maxErrors < 0) {
+            throw new IllegalArgumentException("Antal fel kan inte vara negativt: " + maxErrors);
+        }
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Väljer rader ur coupon och skickar dem till out som packade long
+     * ({@link RowCodec}) i den ordning de väljs.
+     */
+    public Result reduce(SystemCoupon coupon, LongConsumer out) {
+        long full = coupon.rows();
+        if (full > MAX_ROWS) {
+            throw new IllegalArgumentException("För stort system att reducera: " + full + " rader (max " + MAX_ROWS + ")");
+        }
+        Space space = new Space(coupon, maxErrors);
+        int n = (int) full;
+
+        BitSet covered = new BitSet(n);
+        int uncovered = n;
+        long selected = 0;
+
+        // Inget täckt ännu: alla kandidater har hela bollen som vinst
+        int ballSize = space.countUncovered(0, covered);
+        Buckets buckets = new Buckets(ballSize);
+        for (int i = 0; i < n; i++) {
+            buckets.push(ballSize, i);
+        }
+
+        int[] fresh = new int[0];
+        for (int g = ballSize; g > 0 && uncovered > 0; ) {
+            int[] cands = buckets.take(g);
+            int count = buckets.takenSize;
+            if (count == 0) {
+                g--;
+                continue;
+            }
+
+            // Räkna om vinsterna parallellt; covered ändras inte under tiden
+            if (fresh.length < count) {
+                fresh = new int[count];
+            }
+            int[] f = fresh;
+            IntStream.range(0, count).parallel()
+                    .forEach(k -> f[k] = space.countUncovered(cands[k], covered));
+
+            for (int k = 0; k < count && uncovered > 0; k++) {
+                int gain = f[k];
+                if (gain == g) {
+                    // tidigare val i samma hink kan ha tagit en del
+                    gain = space.countUncovered(cands[k], covered);
+                }
+                if (gain == g) {
+                    uncovered -= space.cover(cands[k], covered);
+                    out.accept(space.row(cands[k]));
+                    selected++;
+                } else if (gain > 0) {
+                    buckets.push(gain, cands[k]);
+                }
+            }
+        }
+        return new Result(full, selected, maxErrors);
+    }
+
+    /** Raderna i ett system som index med blandad bas. */
+    static final class Space {
+        final int legs;
+        final int[][] numbers;
+        final int[] radix;
+        final int[] stride;
+        final int maxErrors;
+
+        Space(SystemCoupon coupon, int maxErrors) {
+            legs = coupon.legs();
+            numbers = new int[legs][];
+            radix = new int[legs];
+            stride = new int[legs];
+            int s = 1;
+            for (int leg = legs - 1; leg >= 0; leg--) {
+                numbers[leg] = coupon.startNumbers(leg);
+                radix[leg] = numbers[leg].length;
+                stride[leg] = s;
+                s *= radix[leg];
+            }
+            this.maxErrors = Math.min(maxErrors, legs);
+        }
+
+        int digit(int index, int leg) {
+            return (index / stride[leg]) % radix[leg];
+        }
+
+        long row(int index) {
+            long row = 0;
+            for (int leg = 0; leg < legs; leg++) {
+                row = RowCodec.with(row, leg, numbers[leg][digit(index, leg)]);
+            }
+            return row;
+        }
+
+        int countUncovered(int index, BitSet covered) {
+            return (covered.get(index) ? 0 : 1) + countNeighbours(index, 0, maxErrors, covered);
+        }
+
+        // Otäckta rader som skiljer sig i 1..errors avdelningar från leg och framåt
+        private int countNeighbours(int index, int fromLeg, int errors, BitSet covered) {
+            if (errors == 0) return 0;
+            int count = 0;
+            for (int leg = fromLeg; leg < legs; leg++) {
+                int cur = digit(index, leg);
+                for (int d = 0; d < radix[leg]; d++) {
+                    if (d == cur) continue;
+                    int other = index + (d - cur) * stride[leg];
+                    if (!covered.get(other)) count++;
+                    count += countNeighbours(other, leg + 1, errors - 1, covered);
+                }
+            }
+            return count;
+        }
+
+        /** Täcker bollen runt index, returnerar antal nytäckta. */
+        int cover(int index, BitSet covered) {
+            int n = 0;
+            if (!covered.get(index)) {
+                covered.set(index);
+                n++;
+            }
+            return n + coverNeighbours(index, 0, maxErrors, covered);
+        }
+
+        private int coverNeighbours(int index, int fromLeg, int errors, BitSet covered) {
+            if (errors == 0) return 0;
+            int n = 0;
+            for (int leg = fromLeg; leg < legs; leg++) {
+                int cur = digit(index, leg);
+                for (int d = 0; d < radix[leg]; d++) {
+                    if (d == cur) continue;
+                    int other = index + (d - cur) * stride[leg];
+                    if (!covered.get(other)) {
+                        covered.set(other);
+                        n++;
+                    }
+                    n += coverNeighbours(other, leg + 1, errors - 1, covered);
+                }
+            }
+            return n;
+        }
+    }
+
+    /** En växande int-array per vinstnivå. */
+    private static final class Buckets {
+        private final int[][] data;
+        private final int[] size;
+        int takenSize;
+
+        Buckets(int maxGain) {
+            data = new int[maxGain + 1][];
+            size = new int[maxGain + 1];
+            for (int g = 0; g <= maxGain; g++) {
+                data[g] = new int[16];
+            }
+        }
+
+        void push(int gain, int candidate) {
+            if (size[gain] == data[gain].length) {
+                int[] grown = new int[data[gain].length * 2];
+                System.arraycopy(data[gain], 0, grown, 0, size[gain]);
+                data[gain] = grown;
+            }
+            data[gain][size[gain]++] = candidate;
+        }
+
+        /** Tömmer hinken; innehållet ligger i den returnerade arrayen (takenSize st). */
+        int[] take(int gain) {
+            int[] taken = data[gain];
+            takenSize = size[gain];
+            data[gain] = new int[16];
+            size[gain] = 0;
+            return taken;
+        }
+    }
+
+    /**
+     * @param fullRows    rader i det fulla systemet
+     * @param reducedRows rader i det reducerade
+     * @param maxErrors   garanti: högst så många fel om vinnarraden finns i det fulla
+     */
+    public record Result(long fullRows, long reducedRows, int maxErrors) {
+
+        public double ratio() {
+            return fullRows == 0 ? 0 : (double) reducedRows / fullRows;
+        }
+    }
+}
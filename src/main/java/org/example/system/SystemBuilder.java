@@ -0,0 +1,270 @@
+package org.example.system;
+
+import org.example.analysis.ScoreBatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bygger ett V-spelssystem (spikar och garderingar) inom en budget.
+ *
+ * I varje avdelning tas de k bäst rankade hästarna med; målet är att välja
+ * k per avdelning så att chansen för alla rätt (produkten av avdelningarnas
+ * summerade vinstchanser) blir så hög som möjligt med
+ * k1 * k2 * ... * kn * radpris <= budget.
+ *
+ * Sökningen är branch and bound över k-vektorerna: en gren kapas när även
+ * bästa tänkbara fortsättning (varje återstående avdelning får alla rader
+ * som finns kvar) inte slår det bästa systemet hittills. De första
+ * avdelningarnas val delas ut som fork/join-uppgifter som delar det bästa
+ * värdet, så ett V86-system tar millisekunder.
+ */
+public class SystemBuilder {
+
+    /** Antal avdelningar vars val ger egna fork/join-uppgifter. */
+    private static final int SPLIT_LEGS = 2;
+
+    private final ForkJoinPool pool;
+
+    public SystemBuilder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SystemBuilder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Bästa systemet för en rankad batch.
+     *
+     * @param b         poängsatt och rankad batch, ett lopp per avdelning
+     * @param winProb   vinstchans per start (index som i batchen), t.ex.
+     *                  {@link org.example.analysis.RaceSimulator#winProbabilities}
+     * @param budget    max insats i kronor
+     * @param rowPrice  radpris i kronor
+     */
+    public BuiltSystem build(ScoreBatch b, double[] winProb, double budget, double rowPrice) {
+        int legs = b.raceCount();
+        double[][] legProb = new double[legs][];
+        int[][] legNumbers = new int[legs][];
+        for (int leg = 0; leg < legs; leg++) {
+            int n = b.starters(leg);
+            if (n == 0) {
+                throw new IllegalArgumentException("Lopp " + b.raceNumber(leg) + " saknar startande");
+            }
+            legProb[leg] = new double[n];
+            legNumbers[leg] = new int[n];
+            for (int k = 0; k < n; k++) {
+                int i = b.ranked(leg, k);
+                legProb[leg][k] = winProb[i];
+                legNumbers[leg][k] = b.startNumber(i);
+            }
+        }
+        return build(legProb, legNumbers, budget, rowPrice);
+    }
+
+    /**
+     * Bästa systemet när rankingen redan finns per avdelning.
+     *
+     * @param legProb    vinstchanser per avdelning, i rankingordning (bäst först)
+     * @param legNumbers startnumren i samma ordning
+     */
+    public BuiltSystem build(double[][] legProb, int[][] legNumbers, double budget, double rowPrice) {
+        long maxRows = (long) Math.floor(budget / rowPrice + 1e-9);
+        if (maxRows < 1) {
+            throw new IllegalArgumentException("Budget " + budget + " kr räcker inte till en rad à " + rowPrice + " kr");
+        }
+        int legs = legProb.length;
+        if (legs == 0 || legs > RowCodec.MAX_LEGS) {
+            throw new IllegalArgumentException("Ett system har 1-" + RowCodec.MAX_LEGS + " avdelningar, fick " + legs);
+        }
+
+        // logCum[leg][k] = log(summan av de k bästas vinstchans), k = 1..n
+        double[][] logCum = new double[legs][];
+        for (int leg = 0; leg < legs; leg++) {
+            int n = legProb[leg].length;
+            if (n == 0) {
+                throw new IllegalArgumentException("Avdelning " + (leg + 1) + " saknar startande");
+            }
+            logCum[leg] = new double[n + 1];
+            logCum[leg][0] = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            for (int k = 1; k <= n; k++) {
+                sum += legProb[leg][k - 1];
+                logCum[leg][k] = Math.log(Math.min(1.0, sum));
+            }
+        }
+
+        Search search = new Search(logCum, maxRows);
+        Best best = pool.invoke(new SearchTask(search, 0, 1, 0.0, new int[legs]));
+
+        long[] masks = new long[legs];
+        for (int leg = 0; leg < legs; leg++) {
+            for (int k = 0; k < best.picks[leg]; k++) {
+                masks[leg] |= SystemCoupon.bit(legNumbers[leg][k]);
+            }
+        }
+        SystemCoupon coupon = SystemCoupon.of(masks);
+        return new BuiltSystem(coupon, best.picks, Math.exp(best.logP), coupon.cost(rowPrice));
+    }
+
+    /** Delat, oföränderligt underlag för sökningen plus bästa värdet hittills. */
+    private static final class Search {
+        final double[][] logCum;
+        final long maxRows;
+        final int legs;
+        // bästa logP hittills som double-bitar; bara för att kapa grenar
+        final AtomicLong bestLogP = new AtomicLong(Double.doubleToLongBits(Double.NEGATIVE_INFINITY));
+
+        Search(double[][] logCum, long maxRows) {
+            this.logCum = logCum;
+            this.maxRows = maxRows;
+            this.legs = logCum.length;
+        }
+
+        double bestLogP() {
+            return Double.longBitsToDouble(bestLogP.get());
+        }
+
+        void offer(double logP) {
+            long cur;
+            do {
+                cur = bestLogP.get();
+                if (Double.longBitsToDouble(cur) >= logP) return;
+            } while (!bestLogP.compareAndSet(cur, Double.doubleToLongBits(logP)));
+        }
+
+        // Optimistisk gräns: varje återstående avdelning får alla rader som är kvar
+        double bound(int leg, long rows, double logP) {
+            long left = maxRows / rows;
+            double bound = logP;
+            for (int j = leg; j < legs; j++) {
+                double[] c = logCum[j];
+                bound += c[(int) Math.min(c.length - 1, left)];
+            }
+            return bound;
+        }
+
+        // Avrundningsmarginal så att lika bra system inte kapas
+        boolean prune(double bound) {
+            return bound < bestLogP() - 1e-12;
+        }
+
+        void dfs(int leg, long rows, double logP, int[] picks, Best best) {
+            if (leg == legs) {
+                best.offer(logP, rows, picks);
+                offer(logP);
+                return;
+            }
+            if (prune(bound(leg, rows, logP))) {
+                return;
+            }
+            double[] c = logCum[leg];
+            long maxK = Math.min(c.length - 1, maxRows / rows);
+            // flest hästar först: hittar ett bra system tidigt så att mer kan kapas
+            for (int k = (int) maxK; k >= 1; k--) {
+                picks[leg] = k;
+                dfs(leg + 1, rows * k, logP + c[k], picks, best);
+            }
+            picks[leg] = 0;
+        }
+    }
+
+    private static final class SearchTask extends RecursiveTask<Best> {
+        private final Search search;
+        private final int leg;
+        private final long rows;
+        private final double logP;
+        private final int[] picks;
+
+        SearchTask(Search search, int leg, long rows, double logP, int[] picks) {
+            this.search = search;
+            this.leg = leg;
+            this.rows = rows;
+            this.logP = logP;
+            this.picks = picks;
+        }
+
+        @Override
+        protected Best compute() {
+            Best best = new Best(search.legs);
+            if (leg >= SPLIT_LEGS || leg == search.legs) {
+                search.dfs(leg, rows, logP, picks, best);
+                return best;
+            }
+            if (search.prune(search.bound(leg, rows, logP))) {
+                return best;
+            }
+
+            double[] c = search.logCum[leg];
+            long maxK = Math.min(c.length - 1, search.maxRows / rows);
+            List<SearchTask> tasks = new ArrayList<>();
+            for (int k = (int) maxK; k >= 1; k--) {
+                int[] p = picks.clone();
+                p[leg] = k;
+                tasks.add(new SearchTask(search, leg + 1, rows * k, logP + c[k], p));
+            }
+            for (SearchTask t : invokeAll(tasks)) {
+                best.merge(t.join());
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Bästa k-vektorn i en deluppgift. Ordningen är total (högst logP, sedan
+     * färst rader, sedan lägst k lexikografiskt) så att resultatet inte beror
+     * på trådarnas turordning.
+     */
+    private static final class Best {
+        double logP = Double.NEGATIVE_INFINITY;
+        long rows = Long.MAX_VALUE;
+        final int[] picks;
+        boolean found;
+
+        Best(int legs) {
+            picks = new int[legs];
+        }
+
+        void offer(double logP, long rows, int[] picks) {
+            if (isBetter(logP, rows, picks)) {
+                this.logP = logP;
+                this.rows = rows;
+                System.arraycopy(picks, 0, this.picks, 0, picks.length);
+                found = true;
+            }
+        }
+
+        void merge(Best o) {
+            if (o.found) {
+                offer(o.logP, o.rows, o.picks);
+            }
+        }
+
+        private boolean isBetter(double logP, long rows, int[] picks) {
+            if (!found) return true;
+            int c = Double.compare(logP, this.logP);
+            if (c != 0) return c > 0;
+            if (rows != this.rows) return rows < this.rows;
+            return Arrays.compare(picks, this.picks) < 0;
+        }
+    }
+
+    /**
+     * Ett färdigt system.
+     *
+     * @param picks          antal hästar per avdelning (de bäst rankade)
+     * @param hitProbability chansen för alla rätt enligt vinstchanserna
+     * @param cost           kostnad i kronor
+     */
+    public record BuiltSystem(SystemCoupon coupon, int[] picks, double hitProbability, double cost) {
+
+        public long rows() {
+            return coupon.rows();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.example.system;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Ett V-spelssystem som en bitmask per avdelning: bit n satt = startnummer n
+ * är med (bit 0 används inte). Antal rader är produkten av antal valda per
+ * avdelning och räknas med bitCount; raderna kan gås igenom som packade
+ * long (se {@link RowCodec}) utan att skapa radobjekt.
+ */
+public final class SystemCoupon {
+
+    private final long[] masks;
+
+    private SystemCoupon(long[] masks) {
+        this.masks = masks;
+    }
+
+    /** En mask per avdelning; varje avdelning måste ha minst en häst. */
+    public static SystemCoupon of(long... masks) {
+        if (masks.length == 0 || masks.length > RowCodec.MAX_LEGS) {
+            throw new IllegalArgumentException("Ett system har 1-" + RowCodec.MAX_LEGS + " avdelningar");
+        }
+        long[] copy = new long[masks.length];
+        for (int leg = 0; leg < masks.length; leg++) {
+            copy[leg] = masks[leg] & ~1L;
+            if (copy[leg] == 0) {
+                throw new IllegalArgumentException("Avdelning " + (leg + 1) + " saknar hästar");
+            }
+        }
+        return new SystemCoupon(copy);
+    }
+
+    /** Masken för ett startnummer. */
+    public static long bit(int startNumber) {
+        if (startNumber < 1 || startNumber > RowCodec.MAX_START_NUMBER) {
+            throw new IllegalArgumentException("Startnummer utanför 1-" + RowCodec.MAX_START_NUMBER + ": " + startNumber);
+        }
+        return 1L << startNumber;
+    }
+
+    public int legs() {
+        return masks.length;
+    }
+
+    public long mask(int leg) {
+        return masks[leg];
+    }
+
+    /** Antal valda hästar i avdelning leg. */
+    public int picks(int leg) {
+        return Long.bitCount(masks[leg]);
+    }
+
+    public boolean isSpik(int leg) {
+        return picks(leg) == 1;
+    }
+
+    /** Valda startnummer i avdelning leg, stigande. */
+    public int[] startNumbers(int leg) {
+        int[] out = new int[picks(leg)];
+        long m = masks[leg];
+        for (int k = 0; m != 0; k++) {
+            out[k] = Long.numberOfTrailingZeros(m);
+            m &= m - 1;
+        }
+        return out;
+    }
+
+    /** Antal rader, utan att räkna upp dem. */
+    public long rows() {
+        long rows = 1;
+        for (long m : masks) {
+            rows = Math.multiplyExact(rows, Long.bitCount(m));
+        }
+        return rows;
+    }
+
+    public double cost(double rowPrice) {
+        return rows() * rowPrice;
+    }
+
+    /** true om den packade raden ingår i systemet. */
+    public boolean contains(long row) {
+        for (int leg = 0; leg < masks.length; leg++) {
+            int n = RowCodec.get(row, leg);
+            if (n == 0 || (masks[leg] & (1L << n)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Antal rätt för en packad rad (t.ex. vinnarraden): antal avdelningar där
+     * startnumret är med i systemet.
+     */
+    public int correctLegs(long winners) {
+        int correct = 0;
+        for (int leg = 0; leg < masks.length; leg++) {
+            int n = RowCodec.get(winners, leg);
+            if (n != 0 && (masks[leg] & (1L << n)) != 0) {
+                correct++;
+            }
+        }
+        return correct;
+    }
+
+    /**
+     * Alla rader som packade long, i stigande startnummerordning med sista
+     * avdelningen snabbast (som ett vägmätarverk). Allokerar inget per rad.
+     */
+    public void forEachRow(LongConsumer action) {
+        int legs = masks.length;
+        long[] remaining = new long[legs];
+        long row = 0;
+        for (int leg = 0; leg < legs; leg++) {
+            long m = masks[leg];
+            row = RowCodec.with(row, leg, Long.numberOfTrailingZeros(m));
+            remaining[leg] = m & (m - 1);
+        }
+
+        while (true) {
+            action.accept(row);
+
+            int leg = legs - 1;
+            while (leg >= 0 && remaining[leg] == 0) {
+                // börja om avdelningen och räkna upp nästa
+                long m = masks[leg];
+                row = RowCodec.with(row, leg, Long.numberOfTrailingZeros(m));
+                remaining[leg] = m & (m - 1);
+                leg--;
+            }
+            if (leg < 0) {
+                return;
+            }
+            long r = remaining[leg];
+            row = RowCodec.with(row, leg, Long.numberOfTrailingZeros(r));
+            remaining[leg] = r & (r - 1);
+        }
+    }
+
+    /** T.ex. "4 / 1 3 7 / 2 / ..." */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int leg = 0; leg < masks.length; leg++) {
+            if (leg > 0) sb.append(" / ");
+            int[] numbers = startNumbers(leg);
+            for (int k = 0; k < numbers.length; k++) {
+                if (k > 0) sb.append(' ');
+                sb.append(numbers[k]);
+            }
+        }
+        return sb.toString();
+    }
+}
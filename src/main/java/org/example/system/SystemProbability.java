@@ -0,0 +1,167 @@
+package org.example.system;
+
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+
+import java.util.List;
+
+/**
+ * Exakt fördelning av antal fel för ett system, utan att räkna upp rader.
+ *
+ * Avdelningarna är oberoende och avdelning l blir rätt med chansen h_l,
+ * summan av vinstchanserna för de valda hästarna. Antal fel är alltså en
+ * summa av oberoende Bernoulli-variabler, och fördelningen räknas med en
+ * DP över avdelningarna:
+ *
+ *   P_l(e) = P_l-1(e) * h_l + P_l-1(e - 1) * (1 - h_l)
+ *
+ * Bara e <= maxErrors behövs (utdelning finns för alla rätt och några fel),
+ * så ett system kostar O(avdelningar * maxErrors) oavsett antal rader.
+ *
+ * Instansen håller sina buffertar och allokerar inget i {@link #errors};
+ * den är tänkt som inre loop i en systemsökning och är inte trådsäker
+ * (en per tråd).
+ */
+public final class SystemProbability {
+
+    private final int maxErrors;
+    private final double[] legHit = new double[RowCodec.MAX_LEGS];
+    private final double[] dist;
+
+    public SystemProbability(int maxErrors) {
+        if (maxErrors < 0 || maxErrors > RowCodec.MAX_LEGS) {
+            throw new IllegalArgumentException("maxErrors måste vara 0-" + RowCodec.MAX_LEGS + ": " + maxErrors);
+        }
+        this.maxErrors = maxErrors;
+        this.dist = new double[maxErrors + 1];
+    }
+
+    public int maxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * Chans för exakt e fel, e = 0..maxErrors, i instansens buffert (skrivs
+     * över vid nästa anrop).
+     *
+     * @param legHit chansen att avdelning l blir rätt, för l = 0..legs-1
+     */
+    public double[] errors(double[] legHit, int legs) {
+        double[] d = dist;
+        d[0] = 1;
+        for (int e = 1; e <= maxErrors; e++) {
+            d[e] = 0;
+        }
+        for (int l = 0; l < legs; l++) {
+            double h = Math.min(1.0, legHit[l]);
+            double miss = 1 - h;
+            // baklänges så att d[e - 1] fortfarande är förra avdelningens värde
+            for (int e = Math.min(l + 1, maxErrors); e >= 1; e--) {
+                d[e] = d[e] * h + d[e - 1] * miss;
+            }
+            d[0] *= h;
+        }
+        return d;
+    }
+
+    /** Fördelningen för kupongen, med vinstchanser indexerade som batchen. */
+    public double[] errors(ScoreBatch b, double[] winProb, SystemCoupon coupon) {
+        return errors(legHits(b, winProb, coupon), coupon.legs());
+    }
+
+    /**
+     * Fördelningen när systemet är de picks[l] bäst rankade i varje
+     * avdelning, med cumProb[l][k] = summan av de k bästas vinstchanser
+     * (som i {@link SystemBuilder}). Snabbaste vägen för en sökning över
+     * k-vektorer.
+     */
+    public double[] errors(double[][] cumProb, int[] picks) {
+        for (int l = 0; l < picks.length; l++) {
+            legHit[l] = cumProb[l][picks[l]];
+        }
+        return errors(legHit, picks.length);
+    }
+
+    /**
+     * Chansen per avdelning att kupongen har vinnaren, i instansens buffert.
+     * Batchen har ett lopp per avdelning.
+     */
+    public double[] legHits(ScoreBatch b, double[] winProb, SystemCoupon coupon) {
+        if (coupon.legs() != b.raceCount()) {
+            throw new IllegalArgumentException("Kupongen har " + coupon.legs() + " avdelningar, kortet "
+                    + b.raceCount());
+        }
+        int i = 0;
+        for (int leg = 0; leg < coupon.legs(); leg++) {
+            long mask = coupon.mask(leg);
+            double h = 0;
+            for (int end = i + b.starters(leg); i < end; i++) {
+                h += ((mask >>> b.startNumber(i)) & 1L) * winProb[i];
+            }
+            legHit[leg] = h;
+        }
+        return legHit;
+    }
+
+    /**
+     * Fördelningen för kupongen ur {@link org.example.analysis.RaceAnalyzer}s
+     * ranking: en lista per avdelning, vinstchanser via sim (softmax på score).
+     */
+    public HitDistribution evaluate(List<List<EntryScore>> rankings, RaceSimulator sim, SystemCoupon coupon) {
+        if (coupon.legs() != rankings.size()) {
+            throw new IllegalArgumentException("Kupongen har " + coupon.legs() + " avdelningar, rankingen "
+                    + rankings.size());
+        }
+        for (int leg = 0; leg < coupon.legs(); leg++) {
+            List<EntryScore> ranking = rankings.get(leg);
+            double[] scores = new double[ranking.size()];
+            for (int k = 0; k < scores.length; k++) {
+                scores[k] = ranking.get(k).score();
+            }
+            double[] p = sim.winProbabilities(scores);
+            double h = 0;
+            for (int k = 0; k < p.length; k++) {
+                int n = ranking.get(k).entry().startNumber();
+                if (n >= 1 && n <= RowCodec.MAX_START_NUMBER && (coupon.mask(leg) & (1L << n)) != 0) {
+                    h += p[k];
+                }
+            }
+            legHit[leg] = h;
+        }
+        return new HitDistribution(errors(legHit, coupon.legs()).clone());
+    }
+
+    /** Som {@link #errors(ScoreBatch, double[], SystemCoupon)} men som ett eget objekt. */
+    public HitDistribution evaluate(ScoreBatch b, double[] winProb, SystemCoupon coupon) {
+        return new HitDistribution(errors(b, winProb, coupon).clone());
+    }
+
+    /**
+     * Chans för exakt e fel (index e), 0..maxErrors. Summan är under 1 när
+     * fler fel än maxErrors är möjliga.
+     */
+    public record HitDistribution(double[] byErrors) {
+
+        public int maxErrors() {
+            return byErrors.length - 1;
+        }
+
+        public double allCorrect() {
+            return byErrors[0];
+        }
+
+        public double exactly(int errors) {
+            return errors < byErrors.length ? byErrors[errors] : Double.NaN;
+        }
+
+        /** Chans för högst errors fel. */
+        public double atMost(int errors) {
+            double sum = 0;
+            for (int e = 0; e <= Math.min(errors, byErrors.length - 1); e++) {
+                sum += byErrors[e];
+            }
+            return sum;
+        }
+    }
+}
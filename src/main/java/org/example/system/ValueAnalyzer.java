@@ -0,0 +1,312 @@
+package org.example.system;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.atg.GameType;
+import org.example.domain.Entry;
+import org.example.domain.RaceCard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Spelvärde: våra vinstchanser mot hur publiken har spelat.
+ *
+ * Publikens andel q per häst är V-spelets spelprocent (betDistribution),
+ * normerad per avdelning. Saknas den tas andelen ur vinnaroddsen (1/odds,
+ * normerad), och saknas även de blir alla lika. En häst med p/q > 1 är
+ * understreckad: vi tror mer på den än publiken gör.
+ *
+ * Utdelningen på en rad är ungefär andel * omsättning / (antal publikrader
+ * med samma rad), och antalet publikrader är omsättning / radpris gånger
+ * produkten av q. Förväntad återbetalning för ett system faktoriseras då
+ * per avdelning:
+ *
+ *   E[återbetalning] = andel * radpris * Π_avd Σ_valda p / q
+ *
+ * så värdet för en kupong räknas utan att gå igenom raderna. Våra egna
+ * rader i potten räknas inte med; för stora omsättningar är det försumbart
+ * (se {@link CardValue#payout(long)} för en enskild rad med dem).
+ *
+ * Alla per-häst-beräkningar är enkla loopar över double-arrayer (samma
+ * index som i {@link ScoreBatch}) utan allokering.
+ */
+public class ValueAnalyzer {
+
+    /** Ungefärlig andel av potten som går till alla rätt. */
+    public static final double DEFAULT_TOP_TIER_SHARE = 0.40;
+
+    /** Lägsta publikandel; skyddar p/q mot hästar som ingen har spelat. */
+    static final double MIN_SHARE = 0.001;
+
+    private final BatchScorer scorer;
+    private final double topTierShare;
+
+    public ValueAnalyzer() {
+        this(DEFAULT_TOP_TIER_SHARE);
+    }
+
+    public ValueAnalyzer(double topTierShare) {
+        this(new BatchScorer(), topTierShare);
+    }
+
+    /** @param scorer poängsätter korten i {@link #analyze(RaceCard)} */
+    public ValueAnalyzer(BatchScorer scorer, double topTierShare) {
+        if (!(topTierShare > 0 && topTierShare <= 1)) {
+            throw new IllegalArgumentException("Andelen för alla rätt måste vara i (0, 1]: " + topTierShare);
+        }
+        this.scorer = scorer;
+        this.topTierShare = topTierShare;
+    }
+
+    /** Poängsätter, simulerar vinstchanser och räknar värde för ett helt kort. */
+    public CardValue analyze(RaceCard card) {
+        ScoreBatch batch = ScoreBatch.of(card);
+        scorer.scoreAndRank(batch);
+        double[] winProb = new RaceSimulator().winProbabilities(batch);
+        return analyze(batch, winProb, card.turnover(), GameType.parse(card.gameType()).rowPrice());
+    }
+
+    /**
+     * Värde för en rankad batch.
+     *
+     * @param winProb   vår vinstchans per start (index som i batchen)
+     * @param turnover  omsättning i kronor, 0 om okänd
+     * @param rowPrice  radpris i kronor
+     */
+    public CardValue analyze(ScoreBatch b, double[] winProb, double turnover, double rowPrice) {
+        int n = b.size();
+        if (winProb.length != n) {
+            throw new IllegalArgumentException("winProb har " + winProb.length + " värden, batchen " + n + " starter");
+        }
+        double[] p = winProb.clone();
+        double[] q = new double[n];
+        double[] odds = new double[n];
+        double[] dist = new double[n];
+        for (int i = 0; i < n; i++) {
+            Entry e = b.entry(i);
+            odds[i] = e.winOdds();
+            dist[i] = e.betDistribution();
+        }
+
+        int from = 0;
+        for (int r = 0; r < b.raceCount(); r++) {
+            int to = from + b.starters(r);
+            publicShares(dist, odds, q, from, to);
+            from = to;
+        }
+
+        double[] overlay = new double[n];
+        double[] winEv = new double[n];
+        for (int i = 0; i < n; i++) {
+            overlay[i] = p[i] / q[i];
+        }
+        for (int i = 0; i < n; i++) {
+            // odds 0 = okänt; NaN visar det hellre än ett påhittat värde
+            winEv[i] = odds[i] > 0 ? p[i] * odds[i] - 1 : Double.NaN;
+        }
+        return new CardValue(b, p, q, odds, overlay, winEv, turnover, rowPrice, topTierShare);
+    }
+
+    // q för index from..to (ett lopp): spelprocent, annars 1/odds, annars lika
+    static void publicShares(double[] dist, double[] odds, double[] q, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += dist[i];
+        }
+        if (sum <= 0) {
+            boolean allOdds = true;
+            for (int i = from; i < to; i++) {
+                allOdds &= odds[i] > 1;
+            }
+            for (int i = from; i < to; i++) {
+                q[i] = allOdds ? 1 / odds[i] : 1;
+                sum += q[i];
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                q[i] = dist[i];
+            }
+        }
+
+        double total = 0;
+        for (int i = from; i < to; i++) {
+            q[i] = Math.max(q[i] / sum, MIN_SHARE);
+            total += q[i];
+        }
+        for (int i = from; i < to; i++) {
+            q[i] /= total;
+        }
+    }
+
+    /** Värdet för en häst, för listor och utskrifter. */
+    public record HorseValue(int leg, int raceNumber, int startNumber, String horse,
+                             double modelProbability, double publicShare, double overlay,
+                             double winOdds, double winEv) {
+    }
+
+    /**
+     * Värdet för en kupong.
+     *
+     * @param hitProbability chans för alla rätt enligt vår modell
+     * @param publicShare    publikens andel av raderna som systemet täcker
+     * @param expectedReturn förväntad återbetalning i kronor för alla rätt
+     * @param cost           insats i kronor
+     * @param valueRatio     expectedReturn / cost; över 1 = spelvärde
+     */
+    public record SystemValue(double hitProbability, double publicShare, double expectedReturn,
+                              double cost, double valueRatio) {
+    }
+
+    /** Resultatet för ett kort: arrayer med samma index som batchen. */
+    public static final class CardValue {
+
+        private final ScoreBatch batch;
+        private final double[] p;
+        private final double[] q;
+        private final double[] odds;
+        private final double[] overlay;
+        private final double[] winEv;
+        private final double turnover;
+        private final double rowPrice;
+        private final double share;
+
+        private CardValue(ScoreBatch batch, double[] p, double[] q, double[] odds, double[] overlay,
+                          double[] winEv, double turnover, double rowPrice, double share) {
+            this.batch = batch;
+            this.p = p;
+            this.q = q;
+            this.odds = odds;
+            this.overlay = overlay;
+            this.winEv = winEv;
+            this.turnover = turnover;
+            this.rowPrice = rowPrice;
+            this.share = share;
+        }
+
+        public ScoreBatch batch() {
+            return batch;
+        }
+
+        public double turnover() {
+            return turnover;
+        }
+
+        public double rowPrice() {
+            return rowPrice;
+        }
+
+        public double modelProbability(int index) {
+            return p[index];
+        }
+
+        public double publicShare(int index) {
+            return q[index];
+        }
+
+        /** p / q: över 1 = understreckad, under 1 = överstreckad. */
+        public double overlay(int index) {
+            return overlay[index];
+        }
+
+        /** Förväntad nettovinst per satsad krona på vinnare, NaN utan odds. */
+        public double winEv(int index) {
+            return winEv[index];
+        }
+
+        public HorseValue horse(int index) {
+            int leg = legOf(index);
+            return new HorseValue(leg, batch.raceNumber(leg), batch.startNumber(index),
+                    batch.entry(index).horse().name(), p[index], q[index], overlay[index],
+                    odds[index], winEv[index]);
+        }
+
+        /** Hästar med overlay >= minOverlay, mest understreckad först. */
+        public List<HorseValue> underbet(double minOverlay) {
+            List<HorseValue> out = new ArrayList<>();
+            for (int i = 0; i < overlay.length; i++) {
+                if (overlay[i] >= minOverlay) out.add(horse(i));
+            }
+            out.sort(Comparator.comparingDouble(HorseValue::overlay).reversed());
+            return out;
+        }
+
+        /** Hästar med overlay <= maxOverlay, mest överstreckad först. */
+        public List<HorseValue> overbet(double maxOverlay) {
+            List<HorseValue> out = new ArrayList<>();
+            for (int i = 0; i < overlay.length; i++) {
+                if (overlay[i] <= maxOverlay) out.add(horse(i));
+            }
+            out.sort(Comparator.comparingDouble(HorseValue::overlay));
+            return out;
+        }
+
+        /** Värdet för kupongen, en avdelning per lopp i batchen. */
+        public SystemValue value(SystemCoupon coupon) {
+            if (coupon.legs() != batch.raceCount()) {
+                throw new IllegalArgumentException("Kupongen har " + coupon.legs() + " avdelningar, kortet "
+                        + batch.raceCount());
+            }
+            double hit = 1;
+            double pub = 1;
+            double ret = share * rowPrice;
+            int from = 0;
+            for (int leg = 0; leg < coupon.legs(); leg++) {
+                int to = from + batch.starters(leg);
+                long mask = coupon.mask(leg);
+                double sp = 0;
+                double sq = 0;
+                double so = 0;
+                for (int i = from; i < to; i++) {
+                    // 0 eller 1 utan hopp, så loopen förblir rak
+                    double in = (mask >>> batch.startNumber(i)) & 1L;
+                    sp += in * p[i];
+                    sq += in * q[i];
+                    so += in * overlay[i];
+                }
+                hit *= sp;
+                pub *= sq;
+                ret *= so;
+                from = to;
+            }
+            double cost = coupon.cost(rowPrice);
+            return new SystemValue(hit, pub, ret, cost, ret / cost);
+        }
+
+        /**
+         * Uppskattad utdelning i kronor för en packad vinnarrad (se
+         * {@link RowCodec}) om vi har den raden en gång: vår rad läggs till
+         * publikens i potten när omsättningen är känd.
+         */
+        public double payout(long row) {
+            double q = 1;
+            int from = 0;
+            for (int leg = 0; leg < batch.raceCount(); leg++) {
+                int to = from + batch.starters(leg);
+                int number = RowCodec.get(row, leg);
+                double legShare = MIN_SHARE;
+                for (int i = from; i < to; i++) {
+                    if (batch.startNumber(i) == number) legShare = this.q[i];
+                }
+                q *= legShare;
+                from = to;
+            }
+            if (turnover <= 0) {
+                return share * rowPrice / q;
+            }
+            double publicRows = turnover / rowPrice * q;
+            return share * (turnover + rowPrice) / (publicRows + 1);
+        }
+
+        private int legOf(int index) {
+            int from = 0;
+            for (int leg = 0; leg < batch.raceCount(); leg++) {
+                from += batch.starters(leg);
+                if (index < from) return leg;
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+}
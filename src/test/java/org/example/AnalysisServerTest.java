@@ -0,0 +1,91 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.domain.NameIndex;
+import org.example.server.AnalysisServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Servern ska ta emot ett kort, svara på ranking/simulering/system och
+ * klara många samtidiga anrop mot samma kort med samma svar.
+ */
+public class AnalysisServerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void uploadRankSimulateAndSystemUnderConcurrentLoad() throws Exception {
+        try (AnalysisServer server = new AnalysisServer(new InetSocketAddress("127.0.0.1", 0), NameIndex.empty(), NameIndex.empty(), 4)) {
+            server.start();
+            String base = "http://127.0.0.1:" + server.port();
+            HttpClient client = HttpClient.newHttpClient();
+
+            HttpResponse<String> up = client.send(HttpRequest.newBuilder(URI.create(base + "/cards"))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(TestCards.v4()))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(201, up.statusCode());
+            JsonNode info = MAPPER.readTree(up.body());
+            assertEquals("V4-2025-10-29", info.get("id").asText());
+            assertEquals(24, info.get("starters").asInt());
+
+            JsonNode rank = get(client, base + "/cards/V4-2025-10-29/rank", 200);
+            assertEquals(4, rank.size());
+            double sum = 0;
+            for (JsonNode s : rank.get(0).get("starters")) sum += s.get("winProbability").asDouble();
+            assertEquals(1.0, sum, 1e-9);
+
+            JsonNode system = get(client, base + "/cards/V4-2025-10-29/system?budget=20", 200);
+            assertTrue(system.get("cost").asDouble() <= 20);
+            assertEquals(4, system.get("legs").size());
+
+            // Många samtidiga anrop: alla ska lyckas och ge samma simulering
+            List<CompletableFuture<HttpResponse<String>>> calls = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                String path = i % 2 == 0 ? "/cards/V4-2025-10-29/simulate?n=50000" : "/cards/V4-2025-10-29/rank";
+                calls.add(client.sendAsync(HttpRequest.newBuilder(URI.create(base + path)).build(),
+                        HttpResponse.BodyHandlers.ofString()));
+            }
+            String firstSim = calls.get(0).join().body();
+            for (int i = 0; i < calls.size(); i++) {
+                HttpResponse<String> r = calls.get(i).join();
+                assertEquals(200, r.statusCode());
+                if (i % 2 == 0) assertEquals(firstSim, r.body());
+            }
+            assertEquals(50000, MAPPER.readTree(firstSim).get("simulations").asLong());
+
+            // Fler parameteruppsättningar än minnet rymmer: äldsta trängs ut och räknas om lika
+            String sim1 = client.send(HttpRequest.newBuilder(URI.create(base + "/cards/V4-2025-10-29/simulate?n=1000&seed=1")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            for (int seed = 2; seed <= 100; seed++) {
+                get(client, base + "/cards/V4-2025-10-29/simulate?n=1000&seed=" + seed, 200);
+            }
+            assertEquals(sim1, client.send(HttpRequest.newBuilder(URI.create(base + "/cards/V4-2025-10-29/simulate?n=1000&seed=1")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body());
+
+            get(client, base + "/cards/V86-2025-01-01/rank", 404);
+            get(client, base + "/cards/V4-2025-10-29/system?budget=abc", 400);
+            assertEquals(1, get(client, base + "/health", 200).get("cards").asInt());
+        }
+    }
+
+    private static JsonNode get(HttpClient client, String url, int status) throws Exception {
+        HttpResponse<String> r = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(status, r.statusCode());
+        return MAPPER.readTree(r.body());
+    }
+}
@@ -0,0 +1,255 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.example.atg.AtgApiClient;
+import org.example.atg.AtgApiClient.FetchResult;
+import org.example.atg.AtgDayFetcher;
+import org.example.atg.GameType;
+import org.example.atg.AtgResponseCache;
+import org.example.domain.NameIndex;
+import org.example.domain.RaceCard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AtgApiClient mot en lokal stubbserver: bulk-hämtning (fel i en endpoint
+ * ska inte stoppa resten, gränsen för anrop i luften ska hållas) och
+ * svarscachen (304-revalidering, permanenta svar utan nätverk) och
+ * hämtning av en hel dag (produkt -> spel-id:n -> konverterade kort).
+ */
+public class AtgApiClientTest {
+
+    @Test
+    void fetchAllReturnsEveryEndpointAndRespectsInFlightLimit() throws Exception {
+        AtomicInteger current = new AtomicInteger();
+        AtomicInteger max = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            int now = current.incrementAndGet();
+            max.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            String path = exchange.getRequestURI().getPath();
+            int status = path.endsWith("broken") ? 500 : 200;
+            byte[] body = ("{\"path\":\"" + path + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            current.decrementAndGet();
+        });
+        server.start();
+
+        try (AtgApiClient client = new AtgApiClient("http://127.0.0.1:" + server.getAddress().getPort())) {
+            List<String> endpoints = new ArrayList<>();
+            for (int i = 1; i <= 10; i++) {
+                endpoints.add("products/V86/2025-10-" + (10 + i));
+            }
+            endpoints.add("products/V86/broken");
+
+            List<FetchResult> results = client.fetchAll(endpoints, 3);
+
+            assertEquals(11, results.size());
+            assertEquals(10, results.stream().filter(FetchResult::ok).count());
+            FetchResult failed = results.stream().filter(r -> !r.ok()).findFirst().orElseThrow();
+            assertEquals("products/V86/broken", failed.endpoint());
+            assertTrue(results.stream().filter(FetchResult::ok)
+                    .allMatch(r -> r.body().contains(r.endpoint())));
+            assertTrue(max.get() <= 3, "max i luften var " + max.get());
+            assertFalse(max.get() == 0);
+        } finally {
+            server.stop(0);
+            serverThreads.shutdown();
+        }
+    }
+
+    @Test
+    void errorInOneFetchComesBackAsAResult(@TempDir Path dir) {
+        AtgResponseCache failing = new AtgResponseCache(dir) {
+            @Override
+            public Entry lookup(String endpoint) {
+                throw new StackOverflowError(endpoint);
+            }
+        };
+        try (AtgApiClient client = new AtgApiClient("http://127.0.0.1:1/", failing)) {
+            List<FetchResult> results = client.fetchAll(List.of("a", "b"), 2);
+
+            assertEquals(2, results.size());
+            assertTrue(results.stream().noneMatch(FetchResult::ok));
+            assertTrue(results.stream().allMatch(r -> r.error().getCause() instanceof StackOverflowError));
+        }
+    }
+
+    @Test
+    void cacheRevalidatesWithEtagAndServesFinishedRoundsOffline() throws Exception {
+        AtomicInteger full = new AtomicInteger();
+        AtomicInteger notModified = new AtomicInteger();
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                full.incrementAndGet();
+                byte[] body = "{\"races\":[]}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        Path dir = Files.createTempDirectory("atg-cache");
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        try {
+            // Kalendern revalideras alltid i det här testet
+            AtgResponseCache cache = new AtgResponseCache(dir).ttl("products/V86", Duration.ZERO);
+            try (AtgApiClient client = new AtgApiClient(base, cache)) {
+                assertEquals("{\"races\":[]}", client.getV86Calendar());
+                assertEquals("{\"races\":[]}", client.getV86Calendar());
+                assertEquals(1, full.get());
+                assertEquals(1, notModified.get());
+
+                // Avgjord omgång (datum före idag) -> för evigt, inget nytt anrop
+                client.getV86ProductForDate("2020-01-01");
+                client.getV86ProductForDate("2020-01-01");
+                assertEquals(2, full.get());
+                assertEquals(1, notModified.get());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void brokenMetaOrDateIsACacheMiss(@TempDir Path dir) throws Exception {
+        AtgResponseCache cache = new AtgResponseCache(dir);
+        String endpoint = "products/V86/2020-01-01";
+        cache.store(endpoint, new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), "\"v1\"", null);
+        assertEquals("\"v1\"", cache.lookup(endpoint).etag());
+
+        Path meta;
+        try (Stream<Path> files = Files.list(dir)) {
+            meta = files.filter(p -> p.toString().endsWith(".meta")).findFirst().orElseThrow();
+        }
+        String valid = Files.readString(meta);
+
+        Files.writeString(meta, valid.replaceAll("storedAt=\\d+", "storedAt=abc"));
+        assertNull(cache.lookup(endpoint));
+
+        // meta från ett annat svar (fel storlek) räknas inte
+        Files.writeString(meta, valid.replaceAll("bodyBytes=\\d+", "bodyBytes=1"));
+        assertNull(cache.lookup(endpoint));
+
+        Files.writeString(meta, valid);
+        assertEquals("\"v1\"", cache.touch(endpoint, cache.lookup(endpoint)).etag());
+        assertEquals("\"v1\"", cache.lookup(endpoint).etag());
+
+        assertEquals(AtgResponseCache.FOREVER, cache.ttlFor(endpoint));
+        assertEquals(Duration.ZERO, cache.ttlFor("games/V86_2025-13-45_40_1"));
+    }
+
+    @Test
+    void raceDayEntryIsRevalidatedAfterMidnight(@TempDir Path dir) throws Exception {
+        String endpoint = "games/V86_2025-10-29_5_1";
+        ZoneId zone = ZoneId.of("Europe/Stockholm");
+        Clock raceDay = Clock.fixed(ZonedDateTime.of(2025, 10, 29, 12, 0, 0, 0, zone).toInstant(), zone);
+        Clock nextDay = Clock.fixed(ZonedDateTime.of(2025, 10, 30, 9, 0, 0, 0, zone).toInstant(), zone);
+
+        AtgResponseCache cache = new AtgResponseCache(dir, raceDay);
+        AtgResponseCache.Entry startList = cache.store(endpoint,
+                new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), "\"v1\"", null);
+
+        // startlistan från tävlingsdagen är inte permanent dagen efter
+        AtgResponseCache later = new AtgResponseCache(dir, nextDay);
+        assertEquals(AtgResponseCache.FOREVER, later.ttlFor(endpoint));
+        assertFalse(later.isFresh(endpoint, later.lookup(endpoint)));
+        assertFalse(later.isFresh(endpoint, startList));
+
+        // revaliderad (304) efter dagens slut: nu permanent
+        assertTrue(later.isFresh(endpoint, later.touch(endpoint, later.lookup(endpoint))));
+        assertTrue(later.isFresh(endpoint, later.lookup(endpoint)));
+    }
+
+    @Test
+    void fetchDayConvertsEveryGameOfTheDay(@TempDir Path dir) throws Exception {
+        String product = """
+                { "betTypes": { "V4": { "games": [ { "id": "V4_2025-10-29_5_1" }, { "id": "V4_2025-10-29_7_1" },
+                                                   { "id": "V86_2025-10-29_5_1" } ] } } }
+                """;
+        List<String> requested = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requested.add(path);
+            String body = null;
+            if (path.equals("/products/V4/2025-10-29")) {
+                body = product;
+            } else if (path.startsWith("/games/V4_2025-10-29_")) {
+                String track = path.endsWith("_5_1") ? "Solvalla" : "Åby";
+                body = """
+                        { "id": "%s", "races": [ { "number": 1, "distance": 2140, "startMethod": "auto",
+                          "track": { "name": "%s" },
+                          "starts": [ { "number": 1, "horse": { "name": "Häst" }, "driver": { "name": "Kusk" } } ] } ] }
+                        """.formatted(path.substring("/games/".length()), track);
+            }
+            byte[] bytes = (body != null ? body : "{}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(body != null ? 200 : 404, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        try (AtgApiClient client = new AtgApiClient("http://127.0.0.1:" + server.getAddress().getPort())) {
+            List<Path> files = new AtgDayFetcher(client, NameIndex.empty(), dir)
+                    .fetchAndConvert(List.of(GameType.V4, GameType.V86), "2025-10-29");
+
+            assertEquals(List.of("converted-V4-2025-10-29-1.json", "converted-V4-2025-10-29-2.json"),
+                    files.stream().map(f -> f.getFileName().toString()).toList());
+            ObjectMapper mapper = new ObjectMapper();
+            RaceCard first = mapper.readValue(files.get(0).toFile(), RaceCard.class);
+            RaceCard second = mapper.readValue(files.get(1).toFile(), RaceCard.class);
+            assertEquals("V4", first.gameType());
+            assertEquals("2025-10-29", first.date());
+            assertEquals("Solvalla", first.races().get(0).track().name());
+            assertEquals("Åby", second.races().get(0).track().name());
+            assertEquals("Kusk", second.races().get(0).starters().get(0).horse().driver().name());
+
+            // V86 gick inte den dagen (404) och spel-id:n för andra spelformer hämtas inte
+            assertTrue(requested.contains("/products/V86/2025-10-29"));
+            assertFalse(requested.contains("/games/V86_2025-10-29_5_1"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.atg.AtgBatchConverter;
+import org.example.atg.AtgParser;
+import org.example.atg.HistoryEnricher;
+import org.example.domain.*;
+import org.example.history.HistoryStore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Strömmande konvertering: rådata in, RaceCard ut som går att läsa med ObjectMapper.
+ */
+public class AtgParserTest {
+
+    private static final String RAW = """
+            {
+              "id": "V86_2025-10-29_40_1",
+              "status": "bettable",
+              "races": [
+                {
+                  "number": 1,
+                  "distance": 2140,
+                  "startMethod": "auto",
+                  "track": { "id": 5, "name": "Solvalla" },
+                  "starts": [
+                    { "number": 1, "horse": { "name": "Häst Ett" }, "driver": { "firstName": "Kusk", "lastName": "Ett" } },
+                    { "number": 2, "horse": { "name": "Häst Två", "trainer": "T" }, "driver": { "name": "Kusk Två" } }
+                  ]
+                },
+                {
+                  "number": 2,
+                  "participants": [ { "number": 7, "horse": { "name": "Sen Häst" } } ],
+                  "distance": 1640,
+                  "startMethod": "volte",
+                  "track": { "name": "Åby" }
+                }
+              ]
+            }
+            """;
+
+    @Test
+    void streamConvertWritesReadableRaceCard() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtgParser.ConvertResult result = AtgParser.streamConvert(
+                "V86",
+                new ByteArrayInputStream(RAW.getBytes(StandardCharsets.UTF_8)),
+                out,
+                NameIndex.empty());
+
+        assertEquals("2025-10-29", result.date());
+        assertEquals(2, result.races());
+        assertEquals(3, result.starters());
+
+        RaceCard card = new ObjectMapper().readValue(out.toByteArray(), RaceCard.class);
+        assertEquals("V86", card.gameType());
+        assertEquals("2025-10-29", card.date());
+        assertEquals(2, card.races().size());
+
+        RaceToAnalyze first = card.races().get(0);
+        assertEquals("Solvalla", first.track().name());
+        assertEquals(2140, first.distanceMeters());
+        assertEquals(true, first.autoStart());
+        assertEquals("Kusk Ett", first.starters().get(0).horse().driver().name());
+        assertEquals(1, first.starters().get(0).horse().driver().rating());
+
+        RaceToAnalyze second = card.races().get(1);
+        assertEquals(1640, second.distanceMeters());
+        assertEquals(false, second.autoStart());
+        assertEquals(7, second.starters().get(0).startNumber());
+        assertEquals("Okänd kusk", second.starters().get(0).horse().driver().name());
+    }
+
+    @Test
+    void dateFallsBackToFirstRaceWhenIdHasNoDate() throws Exception {
+        String raw = """
+                { "races": [ { "number": 1, "date": "2025-11-02", "starts": [] } ], "id": "X" }
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtgParser.ConvertResult result = AtgParser.streamConvert(
+                "V64", new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)), out, NameIndex.empty());
+
+        assertEquals("2025-11-02", result.date());
+        RaceCard card = new ObjectMapper().readValue(out.toByteArray(), RaceCard.class);
+        assertEquals("2025-11-02", card.date());
+    }
+
+    @Test
+    void batchSkipsOwnFilesAndKeepsCardsWithSameDate(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("v86-2025-10-29.json"), RAW);
+        Files.writeString(dir.resolve("v86-2025-10-29-kopia.json"), RAW.replace("Häst Ett", "Kopians Häst"));
+        Files.writeString(dir.resolve("results-V86-2025-10-29.json"), "{}");
+        Files.writeString(dir.resolve("analysis-V86-2025-10-29.json"), "{}");
+        Files.writeString(dir.resolve("score-weights.json"), "{}");
+
+        assertTrue(AtgBatchConverter.isRawFile(Path.of("V86.JSON")));
+        assertFalse(AtgBatchConverter.isRawFile(Path.of("results-V86-2025-10-29.json")));
+        assertFalse(AtgBatchConverter.isRawFile(Path.of(".converting-1.tmp.json")));
+
+        AtgBatchConverter.Summary s = new AtgBatchConverter(NameIndex.empty(), 2).convertDirectory(dir);
+        assertEquals(2, s.converted());
+        assertEquals(0, s.failed() + s.skipped());
+
+        List<String> converted;
+        try (Stream<Path> files = Files.list(dir)) {
+            converted = files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("converted-")).sorted().toList();
+        }
+        assertEquals(List.of("converted-V86-2025-10-29-2.json", "converted-V86-2025-10-29.json"), converted);
+
+        // Namnen följer råfilernas sökvägsordning: kopian sorteras först och får grundnamnet
+        assertTrue(Files.readString(dir.resolve("converted-V86-2025-10-29.json")).contains("Kopians Häst"));
+        assertFalse(Files.readString(dir.resolve("converted-V86-2025-10-29-2.json")).contains("Kopians Häst"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertFalse(files.anyMatch(p -> p.getFileName().toString().startsWith(".staged-")));
+        }
+    }
+
+    @Test
+    void historyIsOnlyAddedWhenTheCardDateIsKnown() throws Exception {
+        HistoryStore history = HistoryStore.inMemory();
+        try (HistoryStore.Batch b = history.batch()) {
+            b.add("Häst Ett", 20251001, new RaceResult("Solvalla", 2140, 1, 3, 0, false));
+            b.add("Häst Ett", 20251105, new RaceResult("Solvalla", 2140, 1, 1, 0, false));
+        }
+        List<RaceToAnalyze> races = new ArrayList<>();
+        RaceCardSink collect = new RaceCardSink() {
+            @Override public void begin(String gameType, String date) {}
+            @Override public void race(RaceToAnalyze race) { races.add(race); }
+            @Override public void end(String date) {}
+        };
+        AtgParser.streamConvert("V86", new ByteArrayInputStream(RAW.getBytes(StandardCharsets.UTF_8)),
+                collect, NameIndex.empty(), NameIndex.empty(), null);
+        RaceToAnalyze race = races.get(0);
+        races.clear();
+
+        // Samma steg återanvänt: andra kortets okända datum får inte ärva det förstas
+        HistoryEnricher enricher = new HistoryEnricher(history, collect);
+        enricher.begin("V86", "2025-10-29");
+        enricher.race(race);
+        enricher.begin("V86", null);
+        enricher.race(race);
+
+        assertEquals(List.of(3), races.get(0).starters().get(0).horse().lastRaces().stream()
+                .map(RaceResult::finishPosition).toList());
+        assertTrue(races.get(1).starters().get(0).horse().lastRaces().isEmpty());
+    }
+
+    @Test
+    void sameSourceKeepsItsOutputName() {
+        AtgBatchConverter.OutputNames names = new AtgBatchConverter.OutputNames();
+        Path target = Path.of("converted-V86-2025-10-29.json");
+        assertEquals(target, names.claim(target, Path.of("a.json")));
+        assertEquals(Path.of("converted-V86-2025-10-29-2.json"), names.claim(target, Path.of("b.json")));
+        assertEquals(target, names.claim(target, Path.of("a.json")));
+        assertEquals(Path.of("converted-V86-2025-10-29-2.json"), names.claim(target, Path.of("b.json")));
+    }
+}
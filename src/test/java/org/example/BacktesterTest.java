@@ -0,0 +1,56 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.BatchScorer;
+import org.example.analysis.ScoreWeights;
+import org.example.backtest.BacktestReport;
+import org.example.backtest.Backtester;
+import org.example.domain.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Två lopp med känt facit: ettan vinner det ena och blir tvåa i det andra.
+ */
+public class BacktesterTest {
+
+    @Test
+    void metricsMatchHandComputedValues(@TempDir Path dir) throws Exception {
+        RaceCard card = new RaceCard("V86", "2025-10-29", List.of(race(1), race(2)));
+        try (OutputStream out = Files.newOutputStream(dir.resolve("converted-V86-2025-10-29.rcb"))) {
+            BinaryRaceCardWriter.write(card, out);
+        }
+        RoundResult result = new RoundResult("V86", "2025-10-29", List.of(
+                new RaceOutcome(1, List.of(1, 2, 3), 4.0),
+                new RaceOutcome(2, List.of(2, 1, 3), 3.0)));
+        new ObjectMapper().writeValue(dir.resolve("results-V86-2025-10-29.json").toFile(), result);
+
+        BacktestReport r = new Backtester(new BatchScorer(ScoreWeights.DEFAULTS), 2).run(dir);
+
+        assertEquals(1, r.rounds());
+        assertEquals(0, r.failed());
+        assertEquals(2, r.races());
+        assertEquals(0.5, r.hitRate(), 1e-12);
+        assertEquals(1.0, r.topPickTop3Rate(), 1e-12);
+        assertEquals(1.0, r.winnerInTop3Rate(), 1e-12);
+        assertEquals(2, r.oddsRaces());
+        assertEquals(1.0, r.roi(), 1e-12);          // insats 2, utdelning 4
+        assertEquals(0.75, r.meanSpearman(), 1e-12); // 1.0 och 0.5
+    }
+
+    // Kusk 5/3/1 på spår 1/2/3 -> vår ranking 1, 2, 3
+    private static RaceToAnalyze race(int number) {
+        return new RaceToAnalyze(number, new Track("Solvalla", 196, false), 2140, true, List.of(
+                new Entry(1, new Horse("A" + number, "", new Driver("K1", 5), List.of())),
+                new Entry(2, new Horse("B" + number, "", new Driver("K2", 3), List.of())),
+                new Entry(3, new Horse("C" + number, "", new Driver("K3", 1), List.of()))));
+    }
+}
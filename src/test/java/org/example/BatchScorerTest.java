@@ -0,0 +1,102 @@
+package org.example;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.FactorEngine;
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.*;
+import org.example.history.HistoryStore;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Batch-vägen ska ge exakt samma score och ordning som scoreEntry/rankRace,
+ * även med loppfaktorer och spårstatistik (då också som FactorEngine).
+ */
+public class BatchScorerTest {
+
+    @Test
+    void batchScoresAndRanksExactlyLikeScoreEntry() {
+        List<RaceToAnalyze> races = races();
+
+        ScoreCalculator calc = new ScoreCalculator(ScoreWeights.DEFAULTS);
+        RaceAnalyzer analyzer = new RaceAnalyzer(new ScoreCalculator(ScoreWeights.DEFAULTS));
+        BatchScorer scorer = new BatchScorer(calc);
+        ScoreBatch batch = ScoreBatch.of(races);
+        scorer.scoreAndRank(batch);
+
+        for (int r = 0; r < races.size(); r++) {
+            List<RaceAnalyzer.EntryScore> expected = analyzer.rankRace(races.get(r));
+            assertEquals(expected, scorer.toEntryScores(batch, r));
+            for (int k = 0; k < expected.size(); k++) {
+                int idx = batch.ranked(r, k);
+                assertEquals(calc.scoreEntry(batch.entry(idx)), batch.score(idx));
+            }
+        }
+    }
+
+    @Test
+    void raceFactorsScoreAlikeInBatchAnalyzerAndFactorEngine() {
+        List<RaceToAnalyze> races = races();
+        HistoryStore store = HistoryStore.inMemory();
+        try (HistoryStore.Batch b = store.batch()) {
+            for (int k = 0; k < 20; k++) {
+                b.add("Spår1-" + k, 20250101, new RaceResult("Solvalla", 2140, 1, k < 12 ? 1 : 4, 0, false),
+                        HistoryStore.FLAG_AUTOSTART);
+                b.add("Spår9-" + k, 20250101, new RaceResult("Solvalla", 2140, 9, k < 12 ? 6 : 1, 0, false),
+                        HistoryStore.FLAG_AUTOSTART);
+            }
+        }
+        ScoreWeights w = new ScoreWeights(0.5, 0.4, 0.1, 2.0, 5, 3, 10.0, 8.0, 5.0, 3.0,
+                0.2, 0.3, 0.1, 0.4, 0.5);
+        ScoreCalculator calc = new ScoreCalculator(w, null, store.postPositionStats());
+        BatchScorer scorer = new BatchScorer(calc);
+        FactorEngine engine = FactorEngine.standard(calc);
+        ScoreBatch batch = ScoreBatch.of(races);
+        scorer.scoreAndRank(batch);
+
+        for (int r = 0; r < races.size(); r++) {
+            RaceToAnalyze race = races.get(r);
+            assertEquals(new RaceAnalyzer(calc).rankRace(race), scorer.toEntryScores(batch, r));
+            assertEquals(engine.rankRace(race), scorer.toEntryScores(batch, r));
+            for (int k = 0; k < batch.starters(r); k++) {
+                int idx = batch.ranked(r, k);
+                assertEquals(calc.score(batch.entry(idx), race), batch.score(idx));
+                assertNotEquals(calc.scoreEntry(batch.entry(idx)), batch.score(idx));
+            }
+        }
+
+        // samma batch tillbaka till standardvikterna
+        new BatchScorer(ScoreWeights.DEFAULTS).score(batch);
+        assertEquals(new ScoreCalculator(ScoreWeights.DEFAULTS).scoreEntry(batch.entry(0)), batch.score(0));
+    }
+
+    private static List<RaceToAnalyze> races() {
+        Random rnd = new Random(42);
+        List<RaceToAnalyze> races = new ArrayList<>();
+        for (int r = 1; r <= 8; r++) {
+            List<Entry> starters = new ArrayList<>();
+            int n = 6 + rnd.nextInt(10);
+            for (int s = 1; s <= n; s++) {
+                List<RaceResult> last = new ArrayList<>();
+                for (int k = rnd.nextInt(8); k > 0; k--) {
+                    last.add(new RaceResult("Solvalla", 2140, 1 + rnd.nextInt(12), 1 + rnd.nextInt(12), 75000, false));
+                }
+                // få olika ratings -> många lika score, ordningen vid lika ska också stämma
+                Driver d = new Driver("Kusk " + s, 1 + rnd.nextInt(3));
+                starters.add(new Entry(s, new Horse("Häst " + r + "-" + s, "", d, last)));
+            }
+            races.add(new RaceToAnalyze(r, new Track("Solvalla", 196, false), 2140, true, starters));
+        }
+        return races;
+    }
+}
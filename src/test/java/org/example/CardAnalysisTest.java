@@ -0,0 +1,63 @@
+package org.example;
+
+import org.example.analysis.FactorEngine;
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.*;
+import org.example.live.CardAnalysis;
+import org.example.live.CardDelta;
+import org.example.system.SystemBuilder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Strykningar och kuskbyten ska bara röra sin avdelning, och systemet
+ * ska byggas om utan den strukna hästen.
+ */
+public class CardAnalysisTest {
+
+    @Test
+    void deltaRescoresOnlyAffectedLeg() {
+        FactorEngine engine = FactorEngine.standard(ScoreWeights.DEFAULTS);
+        CardAnalysis analysis = new CardAnalysis(TestCards.v4(), engine, new RaceSimulator(), new SystemBuilder(), 20, 0.25);
+        long computed = engine.computed();
+        List<EntryScore> leg1 = analysis.ranking(1);
+
+        // Stryk favoriten i avd 2
+        int favourite = analysis.ranking(2).get(0).entry().startNumber();
+        CardAnalysis.Update u = analysis.apply(new CardDelta.Scratch(2, favourite));
+
+        assertEquals(computed, engine.computed());
+        assertTrue(leg1 == analysis.ranking(1));
+        assertEquals(5, u.ranking().size());
+        assertFalse(u.ranking().stream().anyMatch(es -> es.entry().startNumber() == favourite));
+        assertEquals(1.0, sum(u.winProb()), 1e-12);
+        assertEquals(0, u.system().coupon().mask(1) & (1L << favourite));
+        assertTrue(u.system().cost() <= 20);
+
+        // Kuskbyte: bara den starten räknas om
+        Driver star = new Driver("Stjärnkusk", 5);
+        CardDelta change = CardDelta.parse("kusk 3 6 Stjärnkusk", NameIndex.of(List.of(star), Driver::name));
+        u = analysis.apply(change);
+        assertEquals(computed + 1, engine.computed());
+        assertEquals(6, u.ranking().get(0).entry().startNumber());
+        assertEquals(star, analysis.card().races().get(2).starters().get(5).horse().driver());
+
+        assertThrows(IllegalArgumentException.class, () -> analysis.apply(new CardDelta.Scratch(2, favourite)));
+        assertThrows(IllegalArgumentException.class, () -> analysis.apply(new CardDelta.Scratch(9, 1)));
+    }
+
+    private static double sum(double[] p) {
+        double s = 0;
+        for (double v : p) s += v;
+        return s;
+    }
+}
@@ -0,0 +1,123 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.AnalysisReport;
+import org.example.analysis.CardBatchAnalyzer;
+import org.example.analysis.CardBatchAnalyzer.Format;
+import org.example.analysis.CardBatchAnalyzer.Summary;
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parallell ranking ska ge samma resultat som lopp för lopp, och en
+ * batch av kort ska rapporteras i filordning oavsett vilket kort som
+ * blir klart först.
+ */
+public class CardBatchAnalyzerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final RaceAnalyzer analyzer = new RaceAnalyzer(new ScoreCalculator(ScoreWeights.DEFAULTS));
+
+    @Test
+    void rankCardMatchesRankRace() {
+        RaceCard card = card("2025-10-29", 8);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            List<List<EntryScore>> parallel = analyzer.rankCard(card, pool);
+            List<List<EntryScore>> common = analyzer.rankCard(card);
+            assertEquals(card.races().size(), parallel.size());
+            for (int r = 0; r < card.races().size(); r++) {
+                assertEquals(analyzer.rankRace(card.races().get(r)), parallel.get(r));
+                assertEquals(parallel.get(r), common.get(r));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(AnalysisReport.text(card, analyzer.rankCard(card, Runnable::run), analyzer.calculator()),
+                AnalysisReport.text(card, analyzer));
+    }
+
+    @Test
+    void batchReportsInFileOrder(@TempDir Path dir) throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int d = 1; d <= 12; d++) {
+            Path f = dir.resolve("converted-V4-2025-10-%02d.json".formatted(d));
+            MAPPER.writeValue(f.toFile(), card("2025-10-%02d".formatted(d), 1 + d % 5));
+            files.add(f);
+        }
+        files.add(5, dir.resolve("saknas.json"));
+
+        StringWriter out = new StringWriter();
+        Summary s = new CardBatchAnalyzer(analyzer, 4).analyze(files, Format.JSON, out);
+        assertEquals(12, s.cards());
+        assertEquals(1, s.failed());
+
+        JsonNode cards = MAPPER.readTree(out.toString());
+        assertEquals(12, cards.size());
+        for (int i = 0; i < 12; i++) {
+            JsonNode c = cards.get(i);
+            assertEquals("2025-10-%02d".formatted(i + 1), c.path("date").asText());
+            assertEquals(1 + (i + 1) % 5, c.path("races").size());
+            JsonNode top = c.path("races").get(0).path("starters").get(0);
+            List<EntryScore> expected = analyzer.rankRace(card(c.path("date").asText(), 1).races().get(0));
+            assertEquals(expected.get(0).entry().startNumber(), top.path("startNumber").asInt());
+            assertEquals(expected.get(0).score(), top.path("score").asDouble());
+        }
+
+        StringWriter text = new StringWriter();
+        new CardBatchAnalyzer(analyzer, 4).analyze(files.subList(0, 2), Format.TEXT, text);
+        String first = AnalysisReport.text(MAPPER.readValue(files.get(0).toFile(), RaceCard.class), analyzer);
+        assertTrue(text.toString().startsWith(first));
+        assertTrue(text.toString().contains("=== Analys för V4 2025-10-02 ==="));
+    }
+
+    @Test
+    void expandHandlesGlobsDirectoriesAndDuplicates(@TempDir Path dir) throws Exception {
+        Path sub = Files.createDirectories(dir.resolve("2025"));
+        Files.writeString(sub.resolve("converted-V86-2025-10-29.json"), "{}");
+        Files.writeString(sub.resolve("converted-V64-2025-10-30.json"), "{}");
+        Files.writeString(sub.resolve("v86-2025-10-29.json"), "{}");
+        Files.writeString(sub.resolve("card.rcb"), "");
+
+        assertEquals(List.of(sub.resolve("converted-V86-2025-10-29.json")),
+                CardBatchAnalyzer.expand(List.of(dir + "/2025/converted-V86-*.json")));
+        assertEquals(List.of(sub.resolve("converted-V64-2025-10-30.json"), sub.resolve("converted-V86-2025-10-29.json")),
+                CardBatchAnalyzer.expand(List.of(dir + "/**/converted-*.json")));
+        assertEquals(List.of(sub.resolve("card.rcb"), sub.resolve("converted-V64-2025-10-30.json"),
+                        sub.resolve("converted-V86-2025-10-29.json")),
+                CardBatchAnalyzer.expand(List.of(sub.toString(), sub.resolve("card.rcb").toString())));
+    }
+
+    private static RaceCard card(String date, int races) {
+        List<RaceToAnalyze> list = new ArrayList<>();
+        for (int r = 1; r <= races; r++) {
+            List<Entry> starters = new ArrayList<>();
+            for (int s = 1; s <= 10; s++) {
+                Driver d = new Driver("Kusk " + r + "-" + s, 1 + (r * 7 + s * 3) % 5);
+                List<RaceResult> form = List.of(new RaceResult("Solvalla", 2140, s, 1 + (r + s) % 8, 0, false));
+                starters.add(new Entry(s, new Horse("Häst " + r + "-" + s, "", d, form)));
+            }
+            list.add(new RaceToAnalyze(r, new Track("Solvalla", 196, false), 2140, true, starters));
+        }
+        return new RaceCard("V4", date, list);
+    }
+}
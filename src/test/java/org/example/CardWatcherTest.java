@@ -0,0 +1,98 @@
+package org.example;
+
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.NameIndex;
+import org.example.live.CardWatcher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ett konverterat kort som dyker upp i katalogen ska ge en analysfil,
+ * och inga temporärfiler ska ligga kvar. Nya råfiler för samma omgång
+ * ersätter kortet, men bara om de är nyare.
+ */
+public class CardWatcherTest {
+
+    @Test
+    void newCardIsAnalyzed(@TempDir Path dir) throws Exception {
+        try (CardWatcher watcher = new CardWatcher(dir, NameIndex.empty(), new RaceAnalyzer(new ScoreCalculator(ScoreWeights.DEFAULTS)), Duration.ofMillis(100), 1)) {
+            watcher.start();
+
+            // Skriv i två omgångar, som en långsam kopiering
+            Path cardFile = dir.resolve("converted-V4-2025-10-29.json");
+            byte[] json = new ObjectMapper().writeValueAsBytes(TestCards.v4());
+            Files.write(cardFile, new byte[0]);
+            Files.write(cardFile, json);
+
+            Path report = dir.resolve("analysis-V4-2025-10-29.txt");
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!Files.exists(report) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertTrue(Files.exists(report));
+            String text = Files.readString(report);
+            assertTrue(text.startsWith("=== Analys för V4 2025-10-29 ==="));
+            assertTrue(text.contains("Lopp 4"));
+            try (var files = Files.list(dir)) {
+                assertFalse(files.anyMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+            }
+        }
+    }
+
+    @Test
+    void newestRawDumpReplacesTheCard(@TempDir Path dir) throws Exception {
+        try (CardWatcher watcher = new CardWatcher(dir, NameIndex.empty(), new RaceAnalyzer(new ScoreCalculator(ScoreWeights.DEFAULTS)), Duration.ofMillis(100), 1)) {
+            watcher.start();
+            Path card = dir.resolve("converted-V4-2025-10-29.json");
+            Path report = dir.resolve("analysis-V4-2025-10-29.txt");
+            long now = System.currentTimeMillis();
+
+            writeRaw(dir.resolve("v4-morgon.json"), "Morgonhäst", now - 3_600_000);
+            awaitContains(card, "Morgonhäst");
+
+            writeRaw(dir.resolve("v4-kvall.json"), "Kvällshäst", now);
+            awaitContains(card, "Kvällshäst");
+            awaitContains(report, "Kvällshäst");
+
+            // en äldre dump som dyker upp igen ersätter inte det nyare kortet
+            writeRaw(dir.resolve("v4-morgon.json"), "Morgonhäst", now - 7_200_000);
+            Thread.sleep(1_000);
+            assertTrue(Files.readString(card).contains("Kvällshäst"));
+            try (var files = Files.list(dir)) {
+                assertEquals(1, files.filter(p -> p.getFileName().toString().startsWith("converted-")).count());
+            }
+        }
+    }
+
+    private static void writeRaw(Path file, String horse, long modifiedMillis) throws Exception {
+        Files.writeString(file, """
+                { "id": "V4_2025-10-29_5_1", "races": [
+                  { "number": 1, "distance": 2140, "startMethod": "auto", "track": { "name": "Solvalla" },
+                    "starts": [ { "number": 1, "horse": { "name": "%s" }, "driver": { "name": "Kusk" } } ] } ] }
+                """.formatted(horse));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+    }
+
+    private static void awaitContains(Path file, String text) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(file) && Files.readString(file).contains(text)) return;
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(file) && Files.readString(file).contains(text), file + " saknar " + text);
+    }
+}
@@ -0,0 +1,77 @@
+package org.example;
+
+import org.example.analysis.FactorEngine;
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Standardmotorn ska ge samma score som ScoreCalculator, och cachen ska
+ * klara nya vikter och strykningar utan att räkna om.
+ */
+public class FactorEngineTest {
+
+    @Test
+    void standardEngineMatchesScoreCalculator() {
+        RaceToAnalyze race = race();
+        ScoreCalculator calc = new ScoreCalculator(ScoreWeights.DEFAULTS);
+        FactorEngine engine = FactorEngine.standard(ScoreWeights.DEFAULTS);
+
+        for (Entry e : race.starters()) {
+            assertEquals(calc.scoreEntry(e), engine.score(e, race));
+        }
+        assertEquals(new RaceAnalyzer(calc).rankRace(race), engine.rankRace(race));
+    }
+
+    @Test
+    void weightChangeAndScratchReuseCachedFeatures() {
+        RaceToAnalyze race = race();
+        FactorEngine engine = FactorEngine.standard(ScoreWeights.DEFAULTS);
+        engine.rankRace(race);
+        assertEquals(race.starters().size(), engine.computed());
+
+        // Ny vikt: samma vektorer, ny ranking
+        FactorEngine gallopHeavy = engine.withWeight("gallop", 1.0);
+        assertNotEquals(engine.rankRace(race), gallopHeavy.rankRace(race));
+        assertEquals(race.starters().size(), engine.computed());
+
+        // Strykning: övriga starter oförändrade
+        List<Entry> left = new ArrayList<>(race.starters());
+        left.remove(0);
+        RaceToAnalyze scratched = new RaceToAnalyze(race.raceNumber(), race.track(), race.distanceMeters(),
+                race.autoStart(), left);
+        gallopHeavy.rankRace(scratched);
+        assertEquals(race.starters().size(), engine.computed());
+
+        // Nytt resultat för en häst: bara den räknas om
+        Entry e = left.get(0);
+        List<RaceResult> last = new ArrayList<>(e.horse().lastRaces());
+        last.add(0, new RaceResult("Åby", 2140, 3, 1, 74000, false));
+        Entry updated = new Entry(e.startNumber(),
+                new Horse(e.horse().name(), e.horse().trainer(), e.horse().driver(), last));
+        engine.features(updated, race);
+        assertEquals(race.starters().size() + 1, engine.computed());
+    }
+
+    private static RaceToAnalyze race() {
+        List<Entry> starters = new ArrayList<>();
+        for (int s = 1; s <= 10; s++) {
+            List<RaceResult> last = new ArrayList<>();
+            for (int k = 0; k < s % 6; k++) {
+                last.add(new RaceResult("Solvalla", 2140 - 500 * (k % 2), s, 1 + (s * k) % 9, 75000, (s + k) % 3 == 0));
+            }
+            Driver d = new Driver("Kusk " + s, 1 + s % 5);
+            starters.add(new Entry(s, new Horse("Häst " + s, "", d, last)));
+        }
+        return new RaceToAnalyze(1, new Track("Solvalla", 196, false), 2140, true, starters);
+    }
+}
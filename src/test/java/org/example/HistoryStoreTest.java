@@ -0,0 +1,95 @@
+package org.example;
+
+import org.example.domain.RaceResult;
+import org.example.history.HistoryStore;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Kolumnlagret på disk: batcher läggs till och överlever omstart, en
+ * avbruten skrivning förstör inte senare batcher, och lastStarts går
+ * bakåt i hästens kedja.
+ */
+public class HistoryStoreTest {
+
+    @Test
+    void batchesAppendAndSurviveReopen(@TempDir Path dir) {
+        HistoryStore store = HistoryStore.open(dir);
+        try (HistoryStore.Batch b = store.batch()) {
+            b.add("Häst A", 20251001, result("Solvalla", 1));
+            b.add("Häst B", 20251001, result("Solvalla", 2));
+        }
+        try (HistoryStore.Batch b = HistoryStore.open(dir).batch()) {
+            b.add("HÄST A", 20251008, result("Åby", 3));
+        }
+
+        HistoryStore reopened = HistoryStore.open(dir);
+        assertEquals(3, reopened.rowCount());
+        assertEquals(2, reopened.horseCount());
+        assertEquals(2, reopened.trackCount());
+        assertEquals(List.of(3, 1), reopened.lastRaces("häst a", 10).stream()
+                .map(RaceResult::finishPosition).toList());
+        assertEquals(List.of(result("Solvalla", 2)), reopened.lastRaces("Häst B", 10));
+    }
+
+    @Test
+    void tornTailIsCutBeforeNextAppend(@TempDir Path dir) throws Exception {
+        try (HistoryStore.Batch b = HistoryStore.open(dir).batch()) {
+            b.add("Häst A", 20251001, result("Solvalla", 1));
+        }
+        // avbruten skrivning: halv post i rows.bin och halv rad i horses.txt
+        Files.write(dir.resolve("rows.bin"), new byte[] {0, 0, 0, 7, 1}, StandardOpenOption.APPEND);
+        Files.write(dir.resolve("horses.txt"), "Halv Hä".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        HistoryStore store = HistoryStore.open(dir);
+        assertEquals(1, store.rowCount());
+        assertEquals(1, store.horseCount());
+        try (HistoryStore.Batch b = store.batch()) {
+            b.add("Häst C", 20251008, result("Solvalla", 4));
+        }
+
+        HistoryStore reopened = HistoryStore.open(dir);
+        assertEquals(2, reopened.rowCount());
+        assertEquals(2, reopened.horseCount());
+        assertEquals("Häst C", reopened.horseName(reopened.horseId("häst c")));
+        assertEquals(List.of(result("Solvalla", 4)), reopened.lastRaces("Häst C", 10));
+        assertEquals(List.of(result("Solvalla", 1)), reopened.lastRaces("Häst A", 10));
+    }
+
+    @Test
+    void lastStartsWalksNewestFirst() {
+        HistoryStore store = HistoryStore.inMemory();
+        try (HistoryStore.Batch b = store.batch()) {
+            for (int d = 1; d <= 6; d++) {
+                b.add("H", 20251000 + d, result("Solvalla", d));
+                b.add("Annan", 20251000 + d, result("Solvalla", 9));
+            }
+        }
+        int h = store.horseId("H");
+        assertEquals(6, store.starts(h));
+
+        int[] rows = new int[4];
+        assertEquals(4, store.lastStarts(h, 4, rows));
+        int[] finishes = new int[4];
+        for (int k = 0; k < 4; k++) finishes[k] = store.finishPosition(rows[k]);
+        assertEquals(List.of(6, 5, 4, 3), List.of(finishes[0], finishes[1], finishes[2], finishes[3]));
+        assertEquals(20251006, store.date(rows[0]));
+
+        int[] all = new int[10];
+        assertEquals(6, store.lastStarts(h, 10, all));
+        assertEquals(-1, store.horseId("Okänd"));
+    }
+
+    private static RaceResult result(String track, int finish) {
+        return new RaceResult(track, 2140, 1, finish, 0, false);
+    }
+}
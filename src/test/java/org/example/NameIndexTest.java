@@ -0,0 +1,70 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.atg.AtgParser;
+import org.example.domain.*;
+import org.example.history.HistoryStore;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Namn ska hittas oavsett skiftläge, diakritiska tecken och mellanslag,
+ * och konverteringen ska ge kända kuskar deras riktiga betyg.
+ */
+public class NameIndexTest {
+
+    @Test
+    void lookupsIgnoreCaseDiacriticsAndSpacing() {
+        assertEquals("orjan kihlstrom", NameIndex.key("  ÖRJAN   Kihlström "));
+        assertEquals("magnus a djuse", NameIndex.key("Magnus A. Djuse"));
+        assertEquals("bjorn goop", NameIndex.key("Bjørn Goop"));
+
+        NameIndex<Driver> drivers = NameIndex.of(List.of(
+                new Driver("Örjan Kihlström", 5),
+                new Driver("Björn Goop", 5),
+                new Driver("Bo Eklöf", 4),
+                new Driver("orjan kihlstrom", 1)), Driver::name);
+
+        assertEquals(3, drivers.size());
+        assertEquals(5, drivers.get("Orjan Kihlstrom").rating());
+        assertEquals(0, drivers.id("ÖRJAN KIHLSTRÖM"));
+        assertEquals(-1, drivers.id("Okänd"));
+        assertNull(drivers.get("Okänd"));
+
+        assertEquals(List.of("Björn Goop", "Bo Eklöf"),
+                drivers.withPrefix("b").stream().map(Driver::name).toList());
+        assertEquals("Björn Goop", drivers.closest("Björn Gop", 2).name());
+        assertNull(drivers.closest("Helt Annan", 2));
+    }
+
+    @Test
+    void converterAndHistoryUseNormalizedNames() throws Exception {
+        String raw = """
+                { "id": "V4_2025-10-29_1_1", "races": [ { "number": 1, "distance": 2140, "startMethod": "auto",
+                  "track": { "name": "Solvalla" },
+                  "starts": [ { "number": 1, "horse": { "name": "A" }, "driver": { "firstName": "Örjan", "lastName": "Kihlström" } } ] } ] }
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtgParser.streamConvert("V4", new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)), out,
+                DriverLoader.loadDrivers());
+        RaceCard card = new ObjectMapper().readValue(out.toByteArray(), RaceCard.class);
+        assertEquals(5, card.races().get(0).starters().get(0).horse().driver().rating());
+        assertTrue(DriverLoader.loadDrivers() == DriverLoader.loadDrivers());
+
+        HistoryStore store = HistoryStore.inMemory();
+        try (HistoryStore.Batch b = store.batch()) {
+            b.add("Månskensbus", 20251001, new RaceResult("Åby", 2140, 3, 1, 74000, false));
+        }
+        assertEquals(0, store.horseId("MANSKENSBUS"));
+        assertEquals("Månskensbus", store.horseName(0));
+    }
+}
@@ -0,0 +1,40 @@
+package org.example;
+
+import org.example.domain.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Binärformatet (.rcb) ska ge tillbaka exakt samma RaceCard som skrevs.
+ */
+public class RaceCardFormatTest {
+
+    @Test
+    void binaryRoundTripGivesSameRaceCard() throws Exception {
+        Driver pro = new Driver("Örjan Kihlström", 5);
+        Horse h1 = new Horse("Mighty Turbo", "Tränare A", pro, List.of(
+                new RaceResult("Solvalla", 2140, 4, 1, 75000, false),
+                new RaceResult("Åby", 1640, 2, 5, 73000, true)));
+        Horse h2 = new Horse("Dark Rocket", "Tränare B", new Driver("Björn Goop", 5), List.of());
+
+        RaceCard card = new RaceCard("V86", "2025-10-29", List.of(
+                new RaceToAnalyze(1, new Track("Solvalla", 196, false), 2140, true,
+                        List.of(new Entry(4, h1), new Entry(8, h2))),
+                new RaceToAnalyze(2, new Track("Färjestad", 177, true), 1640, false,
+                        List.of(new Entry(1, h2)))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRaceCardWriter.write(card, out);
+        MappedRaceCard mapped = MappedRaceCard.wrap(out.toByteArray());
+
+        assertEquals(2, mapped.raceCount());
+        assertEquals(2, mapped.raceNumber(1));
+        assertEquals(card.races().get(1), mapped.race(1));
+        assertEquals(card, mapped.toRaceCard());
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.RaceSimulator.SimulationResult;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreWeights;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Simuleringen ska närma sig de exakta vinstchanserna, ge samma utfall
+ * för samma frö oavsett poolstorlek och sluta när precisionen nåtts.
+ */
+public class RaceSimulatorTest {
+
+    private static ScoreBatch batch() {
+        ScoreBatch b = ScoreBatch.of(TestCards.randomRaces(new Random(3), 4, 5, 6));
+        new BatchScorer(ScoreWeights.DEFAULTS).scoreAndRank(b);
+        return b;
+    }
+
+    @Test
+    void simulateConvergesToWinProbabilities() {
+        ScoreBatch b = batch();
+        RaceSimulator sim = new RaceSimulator();
+        SimulationResult r = sim.simulate(b, 1_000_000, 11);
+        double[] exact = sim.winProbabilities(b);
+
+        assertEquals(1_000_000, r.simulations());
+        assertTrue(r.maxHalfWidth() < 0.002);
+        for (int i = 0; i < b.size(); i++) {
+            assertEquals(exact[i], r.win()[i], r.maxHalfWidth());
+            assertTrue(r.place()[i] >= r.win()[i]);
+        }
+        assertEquals(1.0, Arrays.stream(r.topPickLegs()).sum(), 1e-9);
+    }
+
+    @Test
+    void sameSeedGivesSameResultOnAnyPool() {
+        ScoreBatch b = batch();
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            SimulationResult a = new RaceSimulator(RaceSimulator.DEFAULT_TEMPERATURE, one).simulate(b, 100_000, 5);
+            SimulationResult c = new RaceSimulator(RaceSimulator.DEFAULT_TEMPERATURE, four).simulate(b, 100_000, 5);
+            assertArrayEquals(a.win(), c.win());
+            assertArrayEquals(a.place(), c.place());
+            assertArrayEquals(a.topPickLegs(), c.topPickLegs());
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void simulateUntilStopsWhenPrecisionIsReached() {
+        ScoreBatch b = batch();
+        RaceSimulator sim = new RaceSimulator();
+        List<Long> seen = new ArrayList<>();
+        SimulationResult r = sim.simulateUntil(b, 0.005, 10_000, 10_000_000, 1, p -> seen.add(p.simulations()));
+
+        assertTrue(r.maxHalfWidth() <= 0.005);
+        assertTrue(r.simulations() < 10_000_000);
+        assertEquals(r.simulations() / 10_000, seen.size());
+        assertEquals(r.simulations(), seen.get(seen.size() - 1).longValue());
+
+        // taket vinner över precisionen
+        SimulationResult capped = sim.simulateUntil(b, 0.0, 10_000, 25_000, 1, null);
+        assertEquals(25_000, capped.simulations());
+    }
+
+    @Test
+    void rejectsNonPositiveSizes() {
+        ScoreBatch b = batch();
+        RaceSimulator sim = new RaceSimulator();
+        assertThrows(IllegalArgumentException.class, () -> sim.simulateUntil(b, 0.01, 0, 1000, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> sim.simulateUntil(b, 0.01, 100, 0, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> sim.simulateUntil(b, Double.NaN, 100, 1000, 1, null));
+        assertThrows(IllegalArgumentException.class, () -> sim.simulate(b, 0, 1));
+    }
+}
@@ -0,0 +1,161 @@
+package org.example;
+
+import org.example.analysis.AnalysisReport;
+import org.example.analysis.BatchScorer;
+import org.example.analysis.FactorEngine;
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.atg.AtgResultIngester;
+import org.example.domain.*;
+import org.example.history.HistoryStore;
+import org.example.history.RatingEngine;
+import org.example.history.RatingEngine.Kind;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ratingen ska röra sig åt rätt håll per lopp, överleva en ögonblicksbild
+ * på disk och slå igenom lika i scoreEntry, BatchScorer, FactorEngine och
+ * rapporten.
+ */
+public class RatingEngineTest {
+
+    private static final String[] HORSES = {"Etta", "Tvåa", "Trea", "Galopp"};
+    private static final String[] DRIVERS = {"Bästa Kusk", "Mitt Kusk", "Mitt Kusk 2", "Sämsta Kusk"};
+    private static final String[] TRAINERS = {"T1", null, "T1", "T2"};
+    private static final int[] FINISH = {1, 2, 3, HistoryStore.NOT_FINISHED};
+
+    @Test
+    void winnerGainsAndLastLosesWithZeroSum() {
+        RatingEngine engine = new RatingEngine();
+        engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+
+        assertEquals(1, engine.races());
+        assertTrue(engine.rating(Kind.HORSE, "etta") > RatingEngine.INITIAL);
+        assertTrue(engine.rating(Kind.DRIVER, "Sämsta Kusk") < RatingEngine.INITIAL);
+        double sum = 0;
+        for (String h : HORSES) sum += engine.rating(Kind.HORSE, h) - RatingEngine.INITIAL;
+        assertEquals(0.0, sum, 1e-9);
+        assertEquals(2, engine.starts(Kind.TRAINER, "T1"));
+        assertEquals(2, engine.size(Kind.TRAINER));
+    }
+
+    @Test
+    void snapshotSurvivesSaveAndLoad(@TempDir Path dir) {
+        RatingEngine engine = new RatingEngine();
+        for (int r = 0; r < 3; r++) engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+        Path file = dir.resolve(RatingEngine.FILE_NAME);
+        engine.save(file);
+
+        RatingEngine loaded = RatingEngine.load(file);
+        assertEquals(3, loaded.races());
+        for (Kind k : Kind.values()) {
+            assertEquals(engine.size(k), loaded.size(k));
+        }
+        assertEquals(engine.rating(Kind.DRIVER, "Bästa Kusk"), loaded.rating(Kind.DRIVER, "BÄSTA KUSK"));
+        assertEquals(3, loaded.starts(Kind.HORSE, "Tvåa"));
+        assertEquals(0, RatingEngine.load(dir.resolve("saknas.bin")).races());
+    }
+
+    @Test
+    void driverRatingFallsBackUntilEnoughStarts() {
+        RatingEngine engine = new RatingEngine();
+        for (int r = 0; r < RatingEngine.MIN_STARTS - 1; r++) engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+        assertEquals(2.0, engine.snapshot().driverRating("Bästa Kusk", 2));
+
+        engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+        RatingEngine.Snapshot snap = engine.snapshot();
+        assertTrue(snap.driverRating("Bästa Kusk", 2) > 3.0);
+        assertTrue(snap.driverRating("Sämsta Kusk", 5) < 3.0);
+        assertEquals(4.0, snap.driverRating("Okänd", 4));
+
+        // ögonblicksbilden ändras inte av senare lopp
+        double before = snap.rating(Kind.HORSE, "Etta");
+        engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+        assertEquals(before, snap.rating(Kind.HORSE, "Etta"));
+    }
+
+    @Test
+    void batchMatchesScoreEntryWithLearnedRatings() {
+        RatingEngine engine = new RatingEngine();
+        for (int r = 0; r < 20; r++) engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+        ScoreCalculator calc = new ScoreCalculator(ScoreWeights.DEFAULTS, engine.snapshot());
+
+        List<Entry> starters = List.of(
+                new Entry(1, new Horse("Etta", "T1", new Driver("Bästa Kusk", 1), List.of())),
+                new Entry(2, new Horse("Ny", "T3", new Driver("Ny Kusk", 4), List.of())));
+        ScoreBatch batch = ScoreBatch.of(List.of(new RaceToAnalyze(1, new Track("Solvalla", 196, false), 2140, true, starters)));
+        new BatchScorer(calc).scoreAndRank(batch);
+
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(calc.scoreEntry(batch.entry(i)), batch.score(i));
+        }
+        assertTrue(calc.driverRating(starters.get(0).horse().driver()) > 1.0);
+        assertEquals(4.0, calc.driverRating(starters.get(1).horse().driver()));
+        assertEquals(1, batch.startNumber(batch.ranked(0, 0)));
+
+        // tillbaka till manuella betyg
+        new BatchScorer(ScoreWeights.DEFAULTS).score(batch);
+        assertEquals(new ScoreCalculator(ScoreWeights.DEFAULTS).scoreEntry(batch.entry(0)), batch.score(0));
+    }
+
+    @Test
+    void factorEngineAndReportUseTheSameLearnedRatings() {
+        RatingEngine engine = new RatingEngine();
+        for (int r = 0; r < 20; r++) engine.race(HORSES, DRIVERS, TRAINERS, FINISH, 4);
+        ScoreCalculator calc = new ScoreCalculator(ScoreWeights.DEFAULTS, engine.snapshot());
+
+        Driver best = new Driver("Bästa Kusk", 1);
+        RaceToAnalyze race = new RaceToAnalyze(1, new Track("Solvalla", 196, false), 2140, true, List.of(
+                new Entry(1, new Horse("Etta", "T1", best, List.of())),
+                new Entry(2, new Horse("Ny", "T3", new Driver("Ny Kusk", 4), List.of()))));
+        FactorEngine factors = FactorEngine.standard(calc);
+        for (Entry e : race.starters()) {
+            assertEquals(calc.scoreEntry(e), factors.score(e, race));
+        }
+        assertEquals(new RaceAnalyzer(calc).rankRace(race), factors.rankRace(race));
+
+        RaceCard card = new RaceCard("V4", "2025-10-29", List.of(race));
+        String report = AnalysisReport.text(card, new RaceAnalyzer(calc));
+        assertTrue(report.contains(String.format("(%.1f/5)", calc.driverRating(best))));
+        assertFalse(report.contains("(1.0/5)"));
+    }
+
+    @Test
+    void ingestUpdatesRatingsOnlyForNewRaces() throws Exception {
+        String raw = """
+                { "id": "V4_2025-10-29_5_1", "races": [
+                  { "number": 1, "distance": 2140, "startMethod": "auto", "track": { "name": "Solvalla" },
+                    "starts": [
+                      { "number": 1, "driver": { "firstName": "Anna", "lastName": "Kusk" },
+                        "horse": { "name": "Snabb", "trainer": { "firstName": "Tom", "lastName": "Tränare" } },
+                        "result": { "finishOrder": 1 } },
+                      { "number": 2, "driver": { "firstName": "Bo", "lastName": "Kusk" },
+                        "horse": { "name": "Långsam", "trainer": "Tom Tränare" },
+                        "result": { "finishOrder": 2 } }
+                    ] } ] }
+                """;
+        HistoryStore store = HistoryStore.inMemory();
+        RatingEngine engine = new RatingEngine();
+        AtgResultIngester ingester = new AtgResultIngester(store, engine);
+        ingester.ingest(new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)));
+        ingester.ingest(new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, engine.races());
+        assertEquals(1, engine.starts(Kind.DRIVER, "Anna Kusk"));
+        assertEquals(2, engine.starts(Kind.TRAINER, "Tom Tränare"));
+        assertTrue(engine.rating(Kind.HORSE, "Snabb") > engine.rating(Kind.HORSE, "Långsam"));
+    }
+}
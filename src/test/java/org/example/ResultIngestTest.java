@@ -0,0 +1,151 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.atg.AtgParser;
+import org.example.atg.AtgResultIngester;
+import org.example.atg.AtgResultIngester.IngestResult;
+import org.example.backtest.Backtester;
+import org.example.domain.*;
+import org.example.history.HistoryStore;
+import org.example.history.RatingEngine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Avgjorda lopp ska hamna i historiken en gång, överleva omstart och
+ * följa med som lastRaces när ett senare kort konverteras.
+ */
+public class ResultIngestTest {
+
+    private static final String RESULTS = """
+            { "id": "V4_2025-10-29_5_1", "races": [
+              { "number": 1, "distance": 2140, "startMethod": "auto", "track": { "name": "Solvalla" },
+                "starts": [
+                  { "number": 1, "postPosition": 1, "horse": { "name": "Snabb" },
+                    "result": { "finishOrder": 1, "kmTime": { "minutes": 1, "seconds": 12, "tenths": 3 } } },
+                  { "number": 2, "postPosition": 2, "distance": 2160, "horse": { "name": "Galoppör" },
+                    "result": { "place": 0, "galloped": true, "disqualified": true } },
+                  { "number": 3, "scratched": true, "horse": { "name": "Struken" } },
+                  { "number": 4, "postPosition": 4, "horse": { "name": "Trea" },
+                    "result": { "finishOrder": 3, "kmTime": { "minutes": 1, "seconds": 13, "tenths": 0 } } }
+                ] },
+              { "number": 2, "distance": 1640, "startMethod": "volte", "track": { "name": "Solvalla" },
+                "starts": [ { "number": 1, "horse": { "name": "Ej Avgjord" } } ] }
+            ] }
+            """;
+
+    @Test
+    void ingestAppendsOnceAndSurvivesReopen(@TempDir Path dir) throws Exception {
+        Path raw = dir.resolve("v4-2025-10-29.json");
+        Files.writeString(raw, RESULTS);
+        Path historyDir = dir.resolve("history");
+
+        HistoryStore store = HistoryStore.open(historyDir);
+        IngestResult first = new AtgResultIngester(store).ingestFile(raw);
+        assertEquals(new IngestResult(1, 3, 0), first);
+
+        IngestResult again = new AtgResultIngester(store).ingestFile(raw);
+        assertEquals(new IngestResult(1, 0, 3), again);
+        assertEquals(3, store.rowCount());
+
+        HistoryStore reopened = HistoryStore.open(historyDir);
+        assertEquals(3, reopened.rowCount());
+        assertEquals(List.of(new RaceResult("Solvalla", 2140, 1, 1, 72_300, false)),
+                reopened.lastRaces("snabb", 10));
+        assertEquals(List.of(new RaceResult("Solvalla", 2160, 2, HistoryStore.NOT_FINISHED, 0, true)),
+                reopened.lastRaces("Galoppör", 10));
+        int[] rows = new int[1];
+        assertEquals(1, reopened.lastStarts(reopened.horseId("Trea"), 1, rows));
+        assertEquals(20251029, reopened.date(rows[0]));
+        assertEquals(3, reopened.finishPosition(rows[0]));
+        assertEquals(true, reopened.autoStart(rows[0]));
+    }
+
+    @Test
+    void olderResultsAreLinkedInDateOrder() {
+        HistoryStore store = HistoryStore.inMemory();
+        try (HistoryStore.Batch b = store.batch()) {
+            b.add("H", 20251020, new RaceResult("Åby", 2140, 1, 1, 0, false));
+            b.add("H", 20251001, new RaceResult("Åby", 2140, 2, 2, 0, false));
+            b.add("H", 20251010, new RaceResult("Åby", 2140, 3, 3, 0, false));
+        }
+        List<RaceResult> last = store.lastRaces("H", 10);
+        assertEquals(List.of(1, 3, 2), last.stream().map(RaceResult::finishPosition).toList());
+        assertEquals(List.of(3, 2), store.lastRaces("H", 10, 20251020).stream()
+                .map(RaceResult::finishPosition).toList());
+    }
+
+    @Test
+    void conversionAttachesHistoryBeforeCardDate() throws Exception {
+        HistoryStore store = HistoryStore.inMemory();
+        new AtgResultIngester(store).ingest(new ByteArrayInputStream(RESULTS.getBytes(StandardCharsets.UTF_8)));
+
+        RaceCard later = convert(store, "2025-11-05");
+        RaceCard sameDay = convert(store, "2025-10-29");
+
+        List<RaceResult> form = later.races().get(0).starters().get(0).horse().lastRaces();
+        assertEquals(1, form.size());
+        assertEquals(1, form.get(0).finishPosition());
+        assertEquals(List.of(), later.races().get(0).starters().get(1).horse().lastRaces());
+        assertEquals(List.of(), sameDay.races().get(0).starters().get(0).horse().lastRaces());
+    }
+
+    @Test
+    void ingestWritesResultsNextToTheCard(@TempDir Path dir) throws Exception {
+        Path raw = dir.resolve("v4-2025-10-29.json");
+        Files.writeString(raw, RESULTS.replace("\"number\": 1, \"postPosition\": 1,",
+                "\"number\": 1, \"postPosition\": 1, \"pools\": { \"vinnare\": { \"odds\": 345 } },"));
+        Files.writeString(dir.resolve("converted-V4-2025-10-29.json"), "{}");
+
+        new AtgResultIngester(HistoryStore.inMemory()).ingestDirectory(dir);
+
+        Path results = dir.resolve("results-V4-2025-10-29.json");
+        RoundResult round = RoundResultLoader.load(results);
+        assertEquals(new RoundResult("V4", "2025-10-29", List.of(new RaceOutcome(1, List.of(1, 4), 3.45))), round);
+        assertEquals(List.of(new Backtester.Round(dir.resolve("converted-V4-2025-10-29.json"), results)),
+                Backtester.findRounds(dir));
+
+        // utan resultatkatalog skrivs inget facit
+        Files.delete(results);
+        new AtgResultIngester(HistoryStore.inMemory()).ingestFile(raw);
+        assertEquals(false, Files.exists(results));
+    }
+
+    @Test
+    void directoryIsReadInRoundOrderAndRatedPerFile(@TempDir Path dir) throws Exception {
+        // namnordningen är den omvända mot omgångarnas datum
+        Files.writeString(dir.resolve("a-senare.json"), RESULTS.replace("2025-10-29", "2025-11-05"));
+        Files.writeString(dir.resolve("b-tidigare.json"), RESULTS);
+        Path ratingFile = dir.resolve("ratings").resolve(RatingEngine.FILE_NAME);
+        HistoryStore store = HistoryStore.inMemory();
+
+        new AtgResultIngester(store, new RatingEngine(), ratingFile).ingestDirectory(dir);
+
+        assertEquals(20251029, store.date(0));
+        assertEquals(20251105, store.date(store.rowCount() - 1));
+        assertEquals(2L, RatingEngine.load(ratingFile).races());
+    }
+
+    private static RaceCard convert(HistoryStore store, String date) throws Exception {
+        String raw = """
+                { "id": "V4_%s_5_1", "races": [
+                  { "number": 1, "distance": 2140, "startMethod": "auto", "track": { "name": "Solvalla" },
+                    "starts": [ { "number": 1, "horse": { "name": "SNABB" } },
+                                { "number": 2, "horse": { "name": "Ny Häst" } } ] } ] }
+                """.formatted(date);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtgParser.streamConvert("V4", new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)),
+                RaceCardFormat.JSON.writer(out), NameIndex.empty(), NameIndex.empty(), store);
+        return new ObjectMapper().readValue(out.toByteArray(), RaceCard.class);
+    }
+}
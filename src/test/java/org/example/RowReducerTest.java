@@ -0,0 +1,75 @@
+package org.example;
+
+import org.example.system.RowCodec;
+import org.example.system.RowFileWriter;
+import org.example.system.RowReducer;
+import org.example.system.SystemCoupon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Det reducerade systemet ska hålla garantin: varje rad i det fulla
+ * systemet har högst maxErrors fel mot någon vald rad.
+ */
+public class RowReducerTest {
+
+    @Test
+    void reducedRowsCoverFullSystemWithinMaxErrors(@TempDir Path dir) throws Exception {
+        SystemCoupon coupon = SystemCoupon.of(
+                mask(1, 2, 3),
+                mask(4),
+                mask(1, 5, 6, 9),
+                mask(2, 3),
+                mask(7, 8, 10),
+                mask(1, 2, 3, 4, 5));
+
+        for (int maxErrors = 0; maxErrors <= 2; maxErrors++) {
+            List<Long> reduced = new ArrayList<>();
+            RowReducer.Result res = new RowReducer(maxErrors).reduce(coupon, reduced::add);
+
+            assertEquals(coupon.rows(), res.fullRows());
+            assertEquals(reduced.size(), res.reducedRows());
+            reduced.forEach(row -> assertTrue(coupon.contains(row)));
+
+            int e = maxErrors;
+            coupon.forEachRow(row -> assertTrue(
+                    reduced.stream().anyMatch(r -> coupon.legs() - correct(r, row, coupon.legs()) <= e),
+                    "Otäckt rad " + RowCodec.format(row, coupon.legs())));
+        }
+
+        Path out = dir.resolve("rows.txt");
+        long count;
+        try (RowFileWriter w = new RowFileWriter(out, coupon.legs())) {
+            count = new RowReducer(1).reduce(coupon, w).reducedRows();
+        }
+        List<String> lines = Files.readAllLines(out);
+        assertEquals(count, lines.size());
+        assertTrue(count < coupon.rows());
+        assertEquals(6, lines.get(0).split(",").length);
+    }
+
+    private static long mask(int... startNumbers) {
+        long m = 0;
+        for (int n : startNumbers) {
+            m |= SystemCoupon.bit(n);
+        }
+        return m;
+    }
+
+    private static int correct(long a, long b, int legs) {
+        int c = 0;
+        for (int leg = 0; leg < legs; leg++) {
+            if (RowCodec.get(a, leg) == RowCodec.get(b, leg)) c++;
+        }
+        return c;
+    }
+}
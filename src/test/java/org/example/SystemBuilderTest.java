@@ -0,0 +1,82 @@
+package org.example;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreWeights;
+import org.example.system.RowCodec;
+import org.example.system.SystemBuilder;
+import org.example.system.SystemBuilder.BuiltSystem;
+import org.example.system.SystemCoupon;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Systembyggaren ska hitta samma optimum som en fullständig genomräkning,
+ * och kupongens rader ska kunna räknas upp utan dubbletter.
+ */
+public class SystemBuilderTest {
+
+    @Test
+    void buildFindsSameOptimumAsExhaustiveSearch() {
+        ScoreBatch batch = ScoreBatch.of(TestCards.randomRaces(new Random(7), 5, 5, 8));
+        new BatchScorer(ScoreWeights.DEFAULTS).scoreAndRank(batch);
+        double[] p = new RaceSimulator().winProbabilities(batch);
+
+        for (long maxRows : new long[] {1, 7, 48, 300, 2000}) {
+            BuiltSystem system = new SystemBuilder().build(batch, p, maxRows * 0.25, 0.25);
+
+            double[] best = {-1};
+            int[] picks = new int[batch.raceCount()];
+            exhaustive(batch, p, 0, 1, 1.0, maxRows, picks, best);
+
+            assertTrue(system.rows() <= maxRows);
+            assertEquals(best[0], system.hitProbability(), 1e-12);
+            assertEquals(system.rows() * 0.25, system.cost(), 1e-9);
+        }
+    }
+
+    @Test
+    void couponEnumeratesEveryRowOnce() {
+        SystemCoupon coupon = SystemCoupon.of(
+                SystemCoupon.bit(4),
+                SystemCoupon.bit(1) | SystemCoupon.bit(3) | SystemCoupon.bit(12),
+                SystemCoupon.bit(2) | SystemCoupon.bit(5),
+                SystemCoupon.bit(7));
+
+        Set<Long> rows = new HashSet<>();
+        coupon.forEachRow(row -> {
+            assertTrue(coupon.contains(row));
+            rows.add(row);
+        });
+
+        assertEquals(6, coupon.rows());
+        assertEquals(6, rows.size());
+        assertTrue(rows.contains(RowCodec.pack(4, 12, 5, 7)));
+        assertEquals(3, coupon.correctLegs(RowCodec.pack(4, 2, 5, 7)));
+        assertArrayEquals(new int[] {1, 3, 12}, coupon.startNumbers(1));
+        assertEquals("4 / 1 3 12 / 2 5 / 7", coupon.toString());
+    }
+
+    private static void exhaustive(ScoreBatch b, double[] p, int leg, long rows, double prob, long maxRows,
+                                   int[] picks, double[] best) {
+        if (leg == b.raceCount()) {
+            best[0] = Math.max(best[0], prob);
+            return;
+        }
+        double cum = 0;
+        for (int k = 1; k <= b.starters(leg) && rows * k <= maxRows; k++) {
+            cum += p[b.ranked(leg, k - 1)];
+            picks[leg] = k;
+            exhaustive(b, p, leg + 1, rows * k, prob * Math.min(1.0, cum), maxRows, picks, best);
+        }
+    }
+}
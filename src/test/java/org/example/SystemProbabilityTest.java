@@ -0,0 +1,123 @@
+package org.example;
+
+import org.example.analysis.BatchScorer;
+import org.example.analysis.RaceAnalyzer;
+import org.example.analysis.RaceAnalyzer.EntryScore;
+import org.example.analysis.RaceSimulator;
+import org.example.analysis.ScoreBatch;
+import org.example.analysis.ScoreCalculator;
+import org.example.analysis.ScoreWeights;
+import org.example.domain.*;
+import org.example.system.RowCodec;
+import org.example.system.SystemCoupon;
+import org.example.system.SystemProbability;
+import org.example.system.SystemProbability.HitDistribution;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Fördelningen av antal fel ska vara exakt samma som om alla utfall
+ * räknas upp, oavsett vilken väg vinstchanserna kommer in.
+ */
+public class SystemProbabilityTest {
+
+    @Test
+    void distributionMatchesEnumerationOfAllOutcomes() {
+        Random rnd = new Random(11);
+        List<RaceToAnalyze> races = TestCards.randomRaces(rnd, 5, 4, 5);
+        ScoreBatch batch = ScoreBatch.of(races);
+        new BatchScorer(ScoreWeights.DEFAULTS).scoreAndRank(batch);
+        double[] p = new RaceSimulator().winProbabilities(batch);
+
+        for (int round = 0; round < 20; round++) {
+            SystemCoupon coupon = randomCoupon(rnd, batch);
+
+            // alla vinnarrader med sin sannolikhet, räknat på antal rätt
+            double[] expected = new double[batch.raceCount() + 1];
+            enumerate(batch, p, coupon, 0, 0, 1.0, expected);
+
+            SystemProbability full = new SystemProbability(batch.raceCount());
+            double[] errors = full.errors(batch, p, coupon);
+            for (int e = 0; e <= batch.raceCount(); e++) {
+                assertEquals(expected[e], errors[e], 1e-12);
+            }
+
+            double[] truncated = new SystemProbability(2).errors(batch, p, coupon);
+            assertEquals(3, truncated.length);
+            for (int e = 0; e <= 2; e++) {
+                assertEquals(expected[e], truncated[e], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void picksAndEntryScoresGiveSameDistributionAsCoupon() {
+        Random rnd = new Random(5);
+        List<RaceToAnalyze> races = TestCards.randomRaces(rnd, 4, 4, 5);
+        ScoreBatch batch = ScoreBatch.of(races);
+        new BatchScorer(ScoreWeights.DEFAULTS).scoreAndRank(batch);
+        RaceSimulator sim = new RaceSimulator();
+        double[] p = sim.winProbabilities(batch);
+
+        int[] picks = {2, 1, 3, 2};
+        double[][] cum = new double[batch.raceCount()][];
+        long[] masks = new long[batch.raceCount()];
+        for (int leg = 0; leg < batch.raceCount(); leg++) {
+            cum[leg] = new double[batch.starters(leg) + 1];
+            for (int k = 1; k <= batch.starters(leg); k++) {
+                int i = batch.ranked(leg, k - 1);
+                cum[leg][k] = cum[leg][k - 1] + p[i];
+                if (k <= picks[leg]) masks[leg] |= SystemCoupon.bit(batch.startNumber(i));
+            }
+        }
+        SystemCoupon coupon = SystemCoupon.of(masks);
+
+        SystemProbability sp = new SystemProbability(2);
+        HitDistribution fromBatch = sp.evaluate(batch, p, coupon);
+        double[] fromPicks = sp.errors(cum, picks);
+
+        RaceAnalyzer analyzer = new RaceAnalyzer(new ScoreCalculator(ScoreWeights.DEFAULTS));
+        List<List<EntryScore>> rankings = new ArrayList<>();
+        for (RaceToAnalyze race : races) {
+            rankings.add(analyzer.rankRace(race));
+        }
+        HitDistribution fromRanking = sp.evaluate(rankings, sim, coupon);
+
+        for (int e = 0; e <= 2; e++) {
+            assertEquals(fromBatch.exactly(e), fromPicks[e], 1e-12);
+            assertEquals(fromBatch.exactly(e), fromRanking.exactly(e), 1e-9);
+        }
+        assertEquals(fromBatch.allCorrect() + fromBatch.exactly(1), fromBatch.atMost(1), 1e-15);
+    }
+
+    private static void enumerate(ScoreBatch b, double[] p, SystemCoupon coupon, int leg, long row, double prob,
+                                  double[] byErrors) {
+        if (leg == b.raceCount()) {
+            byErrors[b.raceCount() - coupon.correctLegs(row)] += prob;
+            return;
+        }
+        int from = 0;
+        for (int r = 0; r < leg; r++) from += b.starters(r);
+        for (int i = from; i < from + b.starters(leg); i++) {
+            enumerate(b, p, coupon, leg + 1, RowCodec.with(row, leg, b.startNumber(i)), prob * p[i], byErrors);
+        }
+    }
+
+    private static SystemCoupon randomCoupon(Random rnd, ScoreBatch b) {
+        long[] masks = new long[b.raceCount()];
+        for (int leg = 0; leg < masks.length; leg++) {
+            while (masks[leg] == 0) {
+                for (int n = 1; n <= b.starters(leg); n++) {
+                    if (rnd.nextInt(3) == 0) masks[leg] |= SystemCoupon.bit(n);
+                }
+            }
+        }
+        return SystemCoupon.of(masks);
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import org.example.domain.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Gemensamma testkort: ett fast V4-kort och slumpade lopp.
+ */
+final class TestCards {
+
+    private TestCards() {}
+
+    /** V4 2025-10-29 på Solvalla: 4 avdelningar med 6 starter utan form. */
+    static RaceCard v4() {
+        List<RaceToAnalyze> races = new ArrayList<>();
+        for (int r = 1; r <= 4; r++) {
+            List<Entry> starters = new ArrayList<>();
+            for (int s = 1; s <= 6; s++) {
+                Driver d = new Driver("Kusk " + r + "-" + s, 1 + (r + s) % 4);
+                starters.add(new Entry(s, new Horse("Häst " + r + "-" + s, "", d, List.of())));
+            }
+            races.add(new RaceToAnalyze(r, new Track("Solvalla", 196, false), 2140, true, starters));
+        }
+        return new RaceCard("V4", "2025-10-29", races);
+    }
+
+    /**
+     * races lopp med minStarters + [0, extraStarters) starter, upp till fem
+     * gamla resultat och kuskbetyg 1-5.
+     */
+    static List<RaceToAnalyze> randomRaces(Random rnd, int races, int minStarters, int extraStarters) {
+        List<RaceToAnalyze> list = new ArrayList<>();
+        for (int r = 1; r <= races; r++) {
+            List<Entry> starters = new ArrayList<>();
+            int n = minStarters + rnd.nextInt(extraStarters);
+            for (int s = 1; s <= n; s++) {
+                List<RaceResult> last = new ArrayList<>();
+                for (int k = rnd.nextInt(6); k > 0; k--) {
+                    last.add(new RaceResult("Solvalla", 2140, 1 + rnd.nextInt(12), 1 + rnd.nextInt(12), 75000, false));
+                }
+                Driver d = new Driver("Kusk " + s, 1 + rnd.nextInt(5));
+                starters.add(new Entry(s, new Horse("Häst " + r + "-" + s, "", d, last)));
+            }
+            list.add(new RaceToAnalyze(r, new Track("Solvalla", 196, false), 2140, true, starters));
+        }
+        return list;
+    }
+}
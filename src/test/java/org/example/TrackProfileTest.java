@@ -0,0 +1,93 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.FactorEngine;
+import org.example.analysis.ScoreWeights;
+import org.example.atg.AtgParser;
+import org.example.domain.*;
+import org.example.history.HistoryStore;
+import org.example.history.PostPositionStats;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Konverteringen ska ge loppen riktig banprofil, och spårstatistiken ur
+ * historiken ska skilja på bana, distans och startmetod.
+ */
+public class TrackProfileTest {
+
+    @Test
+    void conversionFillsInTrackProfile() throws Exception {
+        String raw = """
+                { "id": "V4_2025-10-29_1_1", "races": [
+                  { "number": 1, "distance": 2140, "startMethod": "auto", "track": { "name": "SOLVALLA" },
+                    "starts": [ { "number": 1, "horse": { "name": "A" }, "driver": { "name": "K" } } ] },
+                  { "number": 2, "distance": 1640, "startMethod": "volte", "track": { "name": "Farjestad" },
+                    "starts": [ { "number": 1, "horse": { "name": "B" }, "driver": { "name": "K" } } ] },
+                  { "number": 3, "distance": 1640, "startMethod": "volte", "track": { "name": "Okänd Bana" },
+                    "starts": [ { "number": 1, "horse": { "name": "C" }, "driver": { "name": "K" } } ] } ] }
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtgParser.streamConvert("V4", new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)), out,
+                NameIndex.empty());
+        RaceCard card = new ObjectMapper().readValue(out.toByteArray(), RaceCard.class);
+
+        assertEquals(new Track("SOLVALLA", 196, false), card.races().get(0).track());
+        assertEquals(new Track("Farjestad", 177, true), card.races().get(1).track());
+        assertEquals(new Track("Okänd Bana", 0, false), card.races().get(2).track());
+    }
+
+    @Test
+    void postStatsAreKeyedOnTrackDistanceAndStartMethod() {
+        HistoryStore store = HistoryStore.inMemory();
+        try (HistoryStore.Batch b = store.batch()) {
+            // Åby, medeldistans, autostart: spår 1 vinner 8 av 10, spår 8 aldrig
+            for (int k = 0; k < 10; k++) {
+                b.add("H" + k, 20250101 + k, new RaceResult("Åby", 2140, 1, k < 8 ? 1 : 2, 0, false),
+                        HistoryStore.FLAG_AUTOSTART);
+                b.add("G" + k, 20250101 + k, new RaceResult("Åby", 2140, 8, k < 8 ? 5 : 1, 0, false),
+                        HistoryStore.FLAG_AUTOSTART);
+            }
+        }
+        PostPositionStats stats = store.postPositionStats();
+        assertTrue(stats == store.postPositionStats());
+        assertEquals(10, stats.starts("ÅBY", 2140, true, 1));
+        assertEquals(8, stats.wins("Aby", 2100, true, 1));
+        assertEquals(0, stats.starts("Åby", 2140, false, 1));
+        assertEquals(0, stats.starts("Åby", 1640, true, 1));
+        assertTrue(stats.advantage("Åby", 2140, true, 1) > 1.2);
+        assertTrue(stats.advantage("Åby", 2140, true, 8) < 0.8);
+        // Okänd bana: samma spår över alla banor
+        assertEquals(stats.winRate("Solvalla", 2140, true, 1), stats.winRate("Mantorp", 2140, true, 1), 1e-12);
+
+        RaceToAnalyze race = new RaceToAnalyze(1, new Track("Åby", 180, false), 2140, true, List.of(
+                new Entry(1, new Horse("X", "", new Driver("K", 3), List.of())),
+                new Entry(8, new Horse("Y", "", new Driver("K", 3), List.of()))));
+        FactorEngine engine = FactorEngine.standard(ScoreWeights.DEFAULTS, stats).withWeight("postStats", 1.0);
+        assertTrue(engine.features(race.starters().get(0), race)[7] > engine.features(race.starters().get(1), race)[7]);
+
+        try (HistoryStore.Batch b = store.batch()) {
+            b.add("Ny", 20250201, new RaceResult("Åby", 2140, 1, 1, 0, false), HistoryStore.FLAG_AUTOSTART);
+        }
+        assertEquals(11, store.postPositionStats().starts("Åby", 2140, true, 1));
+
+        // bara starter före datumet, för backtest
+        assertEquals(5, store.postPositionStatsBefore(20250106).starts("Åby", 2140, true, 1));
+        assertEquals(10, store.postPositionStatsBefore(20250201).starts("Åby", 2140, true, 1));
+
+        // cachas per dag tills nya rader läggs till
+        assertTrue(store.postPositionStatsBefore(20250106) == store.postPositionStatsBefore(20250106));
+        try (HistoryStore.Batch b = store.batch()) {
+            b.add("Ny", 20250101, new RaceResult("Åby", 2140, 1, 1, 0, false), HistoryStore.FLAG_AUTOSTART);
+        }
+        assertEquals(6, store.postPositionStatsBefore(20250106).starts("Åby", 2140, true, 1));
+    }
+}
@@ -0,0 +1,160 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.ScoreBatch;
+import org.example.atg.AtgParser;
+import org.example.domain.*;
+import org.example.system.RowCodec;
+import org.example.system.SystemCoupon;
+import org.example.system.ValueAnalyzer;
+import org.example.system.ValueAnalyzer.CardValue;
+import org.example.system.ValueAnalyzer.HorseValue;
+import org.example.system.ValueAnalyzer.SystemValue;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Odds, spelprocent och omsättning ska följa med kortet genom konvertering
+ * och binärformat, och spelvärdet ska stämma med en genomräkning av raderna.
+ */
+public class ValueAnalyzerTest {
+
+    private static final String RAW = """
+            {
+              "id": "V86_2025-10-29_40_1",
+              "races": [
+                {
+                  "number": 1,
+                  "distance": 2140,
+                  "startMethod": "auto",
+                  "track": { "name": "Solvalla" },
+                  "starts": [
+                    { "number": 1, "horse": { "name": "Häst Ett" },
+                      "pools": { "vinnare": { "odds": 345 }, "V86": { "betDistribution": 2534 } } },
+                    { "number": 2, "horse": { "name": "Häst Två" } }
+                  ]
+                }
+              ],
+              "pools": { "V86": { "turnover": 6543210000 } }
+            }
+            """;
+
+    @Test
+    void parserReadsOddsDistributionAndTurnover() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtgParser.streamConvert("V86", new ByteArrayInputStream(RAW.getBytes(StandardCharsets.UTF_8)),
+                out, NameIndex.empty());
+
+        RaceCard card = new ObjectMapper().readValue(out.toByteArray(), RaceCard.class);
+        Entry first = card.races().get(0).starters().get(0);
+        assertEquals(3.45, first.winOdds(), 1e-9);
+        assertEquals(0.2534, first.betDistribution(), 1e-9);
+        assertEquals(0.0, card.races().get(0).starters().get(1).winOdds());
+        assertEquals(65_432_100.0, card.turnover(), 1e-6);
+    }
+
+    @Test
+    void binaryRoundTripKeepsOddsAndTurnover() throws Exception {
+        RaceCard card = card(1_000_000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRaceCardWriter.write(card, out);
+        MappedRaceCard mapped = MappedRaceCard.wrap(out.toByteArray());
+
+        assertEquals(1_000_000.0, mapped.turnover());
+        assertEquals(card, mapped.toRaceCard());
+    }
+
+    @Test
+    void systemValueMatchesRowByRowSum() {
+        RaceCard card = card(0);
+        ScoreBatch batch = ScoreBatch.of(card);
+        double[] p = {0.5, 0.3, 0.2, 0.6, 0.4, 0.1, 0.2, 0.7};
+        CardValue value = new ValueAnalyzer(0.4).analyze(batch, p, 0, 1.0);
+
+        // avd 1 har spelprocent, avd 2 bara odds, avd 3 ingenting
+        assertEquals(0.2, value.publicShare(0), 1e-12);
+        assertEquals(2.5, value.overlay(0), 1e-12);
+        assertEquals(0.8, value.publicShare(4), 1e-12);
+        assertEquals(0.5, value.overlay(4), 1e-12);
+        assertEquals(1.0 / 3, value.publicShare(5), 1e-12);
+        assertEquals(0.5 * 4.0 - 1, value.winEv(0), 1e-12);
+        assertTrue(Double.isNaN(value.winEv(5)));
+
+        List<HorseValue> under = value.underbet(1.5);
+        assertEquals(List.of(4, 1, 8), under.stream().map(HorseValue::startNumber).toList());
+        assertEquals(3.0, under.get(0).overlay(), 1e-12);
+        assertEquals(6, value.overbet(0.6).get(0).startNumber());
+
+        SystemCoupon coupon = SystemCoupon.of(
+                SystemCoupon.bit(1) | SystemCoupon.bit(3),
+                SystemCoupon.bit(4) | SystemCoupon.bit(5),
+                SystemCoupon.bit(8));
+        SystemValue sv = value.value(coupon);
+
+        double[] sum = {0, 0};
+        coupon.forEachRow(row -> {
+            double prob = 1;
+            for (int leg = 0; leg < coupon.legs(); leg++) {
+                prob *= p[index(batch, leg, RowCodec.get(row, leg))];
+            }
+            sum[0] += prob;
+            sum[1] += prob * value.payout(row);
+        });
+
+        assertEquals(sum[0], sv.hitProbability(), 1e-12);
+        assertEquals(sum[1], sv.expectedReturn(), 1e-9);
+        assertEquals(4.0, sv.cost(), 1e-12);
+        assertEquals(sv.expectedReturn() / 4.0, sv.valueRatio(), 1e-12);
+    }
+
+    @Test
+    void payoutCountsOurRowWhenTurnoverIsKnown() {
+        ScoreBatch batch = ScoreBatch.of(card(1000));
+        CardValue value = new ValueAnalyzer(0.5).analyze(batch,
+                new double[] {0.5, 0.3, 0.2, 0.6, 0.4, 0.1, 0.2, 0.7}, 1000, 1.0);
+
+        long row = RowCodec.pack(1, 4, 8);
+        double q = value.publicShare(0) * value.publicShare(3) * value.publicShare(7);
+        // 1000 rader i potten, q * 1000 av dem är publikens vinnarrader, plus vår
+        assertEquals(0.5 * 1001 / (1000 * q + 1), value.payout(row), 1e-9);
+    }
+
+    private static int index(ScoreBatch b, int leg, int startNumber) {
+        int from = 0;
+        for (int r = 0; r < leg; r++) from += b.starters(r);
+        for (int i = from; i < from + b.starters(leg); i++) {
+            if (b.startNumber(i) == startNumber) return i;
+        }
+        throw new IllegalArgumentException();
+    }
+
+    private static RaceCard card(double turnover) {
+        Track track = new Track("Solvalla", 196, false);
+        return new RaceCard("V86", "2025-10-29", List.of(
+                new RaceToAnalyze(1, track, 2140, true, List.of(
+                        new Entry(1, horse("A"), 4.0, 0.10),
+                        new Entry(2, horse("B"), 2.0, 0.30),
+                        new Entry(3, horse("C"), 8.0, 0.10))),
+                new RaceToAnalyze(2, track, 1640, false, List.of(
+                        new Entry(4, horse("D"), 5.0, 0),
+                        new Entry(5, horse("E"), 1.25, 0))),
+                new RaceToAnalyze(3, track, 2640, false, List.of(
+                        new Entry(6, horse("F")),
+                        new Entry(7, horse("G")),
+                        new Entry(8, horse("H"))))),
+                turnover);
+    }
+
+    private static Horse horse(String name) {
+        return new Horse(name, "Tränare", new Driver("Kusk " + name, 3), List.of());
+    }
+}
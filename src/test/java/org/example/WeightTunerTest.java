@@ -0,0 +1,81 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.analysis.ScoreWeights;
+import org.example.backtest.Backtester;
+import org.example.backtest.WeightTuner;
+import org.example.domain.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * I det syntetiska arkivet vinner alltid spår 1, oavsett kusk.
+ * Tunern ska hitta det och vikterna ska gå att spara och läsa tillbaka.
+ */
+public class WeightTunerTest {
+
+    @Test
+    void tunerLearnsThatPostOneWins(@TempDir Path dir) throws Exception {
+        Random rnd = new Random(3);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int d = 1; d <= 20; d++) {
+            String date = String.format("2025-01-%02d", d);
+            List<RaceToAnalyze> races = new ArrayList<>();
+            List<RaceOutcome> outcomes = new ArrayList<>();
+            for (int r = 1; r <= 4; r++) {
+                List<Entry> starters = new ArrayList<>();
+                for (int s = 1; s <= 8; s++) {
+                    Driver driver = new Driver("K" + s, 1 + rnd.nextInt(5));
+                    starters.add(new Entry(s, new Horse("H" + d + "-" + r + "-" + s, "", driver, List.of())));
+                }
+                races.add(new RaceToAnalyze(r, new Track("Solvalla", 196, false), 2140, true, starters));
+                outcomes.add(new RaceOutcome(r, List.of(1, 2, 3), 3.0));
+            }
+            try (OutputStream out = Files.newOutputStream(dir.resolve("converted-V86-" + date + ".rcb"))) {
+                BinaryRaceCardWriter.write(new RaceCard("V86", date, races), out);
+            }
+            mapper.writeValue(dir.resolve("results-V86-" + date + ".json").toFile(),
+                    new RoundResult("V86", date, outcomes));
+        }
+
+        WeightTuner tuner = new WeightTuner(ScoreWeights.DEFAULTS);
+        List<Backtester.Round> rounds = Backtester.findRounds(dir);
+        WeightTuner.Features train = tuner.features(rounds, false);
+        WeightTuner.Features validation = tuner.features(rounds, true);
+        assertEquals(64, train.races());
+        assertEquals(16, validation.races());
+
+        WeightTuner.Result result = tuner.search(train, 500, 1L);
+        WeightTuner.Score before = tuner.evaluate(validation, ScoreWeights.DEFAULTS);
+        WeightTuner.Score after = tuner.evaluate(validation, result.best());
+
+        assertTrue(result.score().logLikelihood() > result.baseline().logLikelihood());
+        assertTrue(after.logLikelihood() > before.logLikelihood());
+        assertEquals(1.0, after.hitRate(), 1e-12);
+        // utan historik tunas inte spårstatistiken
+        assertEquals(ScoreWeights.DEFAULTS.postStatsWeight(), result.best().postStatsWeight());
+
+        Path file = dir.resolve(ScoreWeights.FILE_NAME);
+        result.best().save(file);
+        assertEquals(result.best(), ScoreWeights.load(file));
+
+        // äldre fil utan loppfaktorerna: de blir 0
+        Files.writeString(file, """
+                { "driverWeight": 0.5, "formWeight": 0.4, "postWeight": 0.1, "driverMultiplier": 2.0,
+                  "formWindow": 5, "formMaxPlace": 3,
+                  "postOne": 10.0, "postInner": 8.0, "postMiddle": 5.0, "postOuter": 3.0 }
+                """);
+        assertEquals(ScoreWeights.DEFAULTS, ScoreWeights.load(file));
+    }
+}